@@ -8,6 +8,7 @@ import org.apache.logging.log4j.Logger;
 
 import lp.reactive.reactiverest.model.HttpRequest;
 import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.service.CallHandle;
 import lp.reactive.reactiverest.service.RestService;
 
 /**
@@ -37,12 +38,14 @@ public class AsyncAPI {
 	 *            a prepared {@link HttpRequest} used for api call
 	 * @param consumerOnSuccess,
 	 *            the consumer of asynchronous executing
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess)
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess)
 			throws ExecutionException {
-		handleRequest(httpRequest, consumerOnSuccess, null, 1);
+		return handleRequest(httpRequest, consumerOnSuccess, null, 1);
 	}
 
 	/**
@@ -57,12 +60,14 @@ public class AsyncAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess, int attempts)
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess, int attempts)
 			throws ExecutionException {
-		handleRequest(httpRequest, consumerOnSuccess, null, attempts);
+		return handleRequest(httpRequest, consumerOnSuccess, null, attempts);
 	}
 
 	/**
@@ -75,12 +80,14 @@ public class AsyncAPI {
 	 *            the consumer of asynchronous executing
 	 * @param consumerOnError,
 	 *            the consumer of possible asynchronous errors
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError) throws ExecutionException {
-		handleRequest(httpRequest, consumerOnSuccess, consumerOnError, 1);
+		return handleRequest(httpRequest, consumerOnSuccess, consumerOnError, 1);
 	}
 
 	/**
@@ -97,12 +104,14 @@ public class AsyncAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError, int attempts) throws ExecutionException {
-		handleRequest(httpRequest, consumerOnSuccess, consumerOnError, attempts);
+		return handleRequest(httpRequest, consumerOnSuccess, consumerOnError, attempts);
 	}
 
 	/**
@@ -117,16 +126,19 @@ public class AsyncAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	private static void handleRequest(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	private static CallHandle handleRequest(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError, int attempts) throws ExecutionException {
 		if (httpRequest != null) {
 			LOGGER.debug("Asynchronous call to API with http request: " + httpRequest.toString());
-			RestService.callAsync(httpRequest, consumerOnSuccess, consumerOnError, attempts);
+			return RestService.callAsync(httpRequest, consumerOnSuccess, consumerOnError, attempts);
 		} else {
 			LOGGER.error("HttpRequest must not be null");
+			return null;
 		}
 	}
 
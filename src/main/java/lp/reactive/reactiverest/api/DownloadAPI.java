@@ -0,0 +1,122 @@
+package lp.reactive.reactiverest.api;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.ProgressListener;
+import lp.reactive.reactiverest.service.RestService;
+
+/**
+ * This class exposes the API to download large resources to files over
+ * parallel connections.
+ *
+ * @author lucapompei
+ */
+public class DownloadAPI {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(DownloadAPI.class);
+
+	/**
+	 * The default maximum number of ranges fetched concurrently
+	 */
+	private static final int DEFAULT_PARALLELISM = 4;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code DownloadAPI}
+	 */
+	private DownloadAPI() {
+		// Empty implementation
+	}
+
+	/**
+	 * This API is used to download the resource of the given http request to a
+	 * file, split into up to {@value DEFAULT_PARALLELISM} byte ranges fetched
+	 * concurrently
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@link HttpRequest} of the resource
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @return the length of the downloaded resource or {@code -1} if some
+	 *         error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	public static long download(HttpRequest httpRequest, Path file) throws ExecutionException, IOException {
+		return handleRequest(httpRequest, file, DEFAULT_PARALLELISM, 1, null);
+	}
+
+	/**
+	 * This API is used to download the resource of the given http request to a
+	 * file, split into up to the given number of byte ranges fetched
+	 * concurrently, each one resumed up to the given number of attempts
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@link HttpRequest} of the resource
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @param parallelism,
+	 *            the maximum number of ranges fetched concurrently
+	 * @param attempts,
+	 *            the maximum number of attempts of each range
+	 * @param listener,
+	 *            the listener notified, from any thread, of the bytes written,
+	 *            or {@code null}
+	 * @return the length of the downloaded resource or {@code -1} if some
+	 *         error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	public static long download(HttpRequest httpRequest, Path file, int parallelism, int attempts,
+			ProgressListener listener) throws ExecutionException, IOException {
+		return handleRequest(httpRequest, file, parallelism, attempts, listener);
+	}
+
+	/**
+	 * This method handles all download requests on the base of the incoming
+	 * parameters
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@link HttpRequest} of the resource
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @param parallelism,
+	 *            the maximum number of ranges fetched concurrently
+	 * @param attempts,
+	 *            the maximum number of attempts of each range
+	 * @param listener,
+	 *            the listener of the bytes written or {@code null}
+	 * @return the length of the downloaded resource or {@code -1} if some
+	 *         error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	private static long handleRequest(HttpRequest httpRequest, Path file, int parallelism, int attempts,
+			ProgressListener listener) throws ExecutionException, IOException {
+		if (httpRequest == null || file == null) {
+			LOGGER.error("HttpRequest and file must not be null");
+			return -1;
+		}
+		LOGGER.debug("Download with http request: " + httpRequest.toString());
+		return RestService.callDownload(httpRequest, file, parallelism, attempts, listener);
+	}
+
+}
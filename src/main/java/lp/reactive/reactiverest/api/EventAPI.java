@@ -5,6 +5,7 @@ import org.apache.logging.log4j.Logger;
 
 import lp.reactive.reactiverest.model.HttpRequest;
 import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.service.CallHandle;
 import lp.reactive.reactiverest.service.CoordinatorService;
 import lp.reactive.reactiverest.service.RestService;
 import lp.reactive.reactiverest.utils.TextUtils;
@@ -40,9 +41,11 @@ public class EventAPI {
 	 * @param eventIdentifier,
 	 *            the unique identifier to recognize the response event on event bus
 	 *            when it is emitted
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, String eventIdentifier) {
-		handleRequest(httpRequest, eventIdentifier, 1);
+	public static CallHandle call(HttpRequest httpRequest, String eventIdentifier) {
+		return handleRequest(httpRequest, eventIdentifier, 1);
 	}
 
 	/**
@@ -58,9 +61,11 @@ public class EventAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, String eventIdentifier, int attempts) {
-		handleRequest(httpRequest, eventIdentifier, attempts);
+	public static CallHandle call(HttpRequest httpRequest, String eventIdentifier, int attempts) {
+		return handleRequest(httpRequest, eventIdentifier, attempts);
 	}
 
 	/**
@@ -75,18 +80,22 @@ public class EventAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	private static void handleRequest(HttpRequest httpRequest, String eventIdentifier, int attempts) {
+	private static CallHandle handleRequest(HttpRequest httpRequest, String eventIdentifier, int attempts) {
 		if (httpRequest != null) {
 			if (TextUtils.isNullOrEmpty(eventIdentifier)) {
 				LOGGER.error("EventIdentifier must be not null");
+				return null;
 			} else {
 				LOGGER.debug("Event based call to API with http request: " + httpRequest.toString()
 						+ " and eventIdentifier: " + eventIdentifier);
-				RestService.callEvent(httpRequest, eventIdentifier, CoordinatorAPI.getCoordinator(), attempts);
+				return RestService.callEvent(httpRequest, eventIdentifier, CoordinatorAPI.getCoordinator(), attempts);
 			}
 		} else {
 			LOGGER.error("HttpRequest must not be null");
+			return null;
 		}
 	}
 
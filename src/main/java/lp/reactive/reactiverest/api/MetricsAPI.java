@@ -0,0 +1,56 @@
+package lp.reactive.reactiverest.api;
+
+import java.util.Map;
+
+import lp.reactive.reactiverest.service.MetricsService;
+
+/**
+ * This class exposes the API to read the metrics collected during the REST
+ * communications.
+ *
+ * @author lucapompei
+ */
+public class MetricsAPI {
+
+	/**
+	 * Private constructor for an utility class, construct a new {@code MetricsAPI}
+	 */
+	private MetricsAPI() {
+		// Empty implementation
+	}
+
+	/**
+	 * This API is used to retrieve a snapshot of all the collected metrics
+	 *
+	 * @return the current values of all the metrics, sorted by name
+	 */
+	public static Map<String, Number> getMetrics() {
+		return MetricsService.getMetrics();
+	}
+
+	/**
+	 * This API is used to retrieve the current value of a metric
+	 *
+	 * @param name,
+	 *            the name of the metric
+	 * @return the current value of the metric or {@code null} if not found
+	 */
+	public static Number getMetric(String name) {
+		return MetricsService.getMetric(name);
+	}
+
+	/**
+	 * This API is used to retrieve the current value of a metric referring to a
+	 * base url
+	 *
+	 * @param name,
+	 *            the name of the metric
+	 * @param baseUrl,
+	 *            the base url the metric refers to
+	 * @return the current value of the metric or {@code null} if not found
+	 */
+	public static Number getMetric(String name, String baseUrl) {
+		return MetricsService.getMetric(MetricsService.nameOf(name, baseUrl));
+	}
+
+}
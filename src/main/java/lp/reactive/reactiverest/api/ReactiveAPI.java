@@ -6,6 +6,7 @@ import org.apache.logging.log4j.Logger;
 import io.reactivex.functions.Consumer;
 import lp.reactive.reactiverest.model.HttpRequest;
 import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.service.CallHandle;
 import lp.reactive.reactiverest.service.RestService;
 
 /**
@@ -35,9 +36,11 @@ public class ReactiveAPI {
 	 *            a prepared {@link HttpRequest} used for api call
 	 * @param consumerOnSuccess,
 	 *            the provided consumer that react to http response
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess) {
-		handleRequest(httpRequest, consumerOnSuccess, null, 1);
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess) {
+		return handleRequest(httpRequest, consumerOnSuccess, null, 1);
 	}
 
 	/**
@@ -52,9 +55,11 @@ public class ReactiveAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess, int attempts) {
-		handleRequest(httpRequest, consumerOnSuccess, null, attempts);
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess, int attempts) {
+		return handleRequest(httpRequest, consumerOnSuccess, null, attempts);
 	}
 
 	/**
@@ -67,10 +72,12 @@ public class ReactiveAPI {
 	 *            the provided consumer that react to http response
 	 * @param consumerOnError,
 	 *            the provided consumer that react to http error
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError) {
-		handleRequest(httpRequest, consumerOnSuccess, consumerOnError, 1);
+		return handleRequest(httpRequest, consumerOnSuccess, consumerOnError, 1);
 	}
 
 	/**
@@ -87,10 +94,12 @@ public class ReactiveAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	public static CallHandle call(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError, int attempts) {
-		handleRequest(httpRequest, consumerOnSuccess, consumerOnError, attempts);
+		return handleRequest(httpRequest, consumerOnSuccess, consumerOnError, attempts);
 	}
 
 	/**
@@ -106,14 +115,17 @@ public class ReactiveAPI {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	private static void handleRequest(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	private static CallHandle handleRequest(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError, int attempts) {
 		if (httpRequest != null) {
 			LOGGER.debug("Reactive call to API with http request: " + httpRequest.toString());
-			RestService.callReact(httpRequest, consumerOnSuccess, consumerOnError, attempts);
+			return RestService.callReact(httpRequest, consumerOnSuccess, consumerOnError, attempts);
 		} else {
 			LOGGER.error("HttpRequest must not be null");
+			return null;
 		}
 	}
 
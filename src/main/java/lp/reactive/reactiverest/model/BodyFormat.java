@@ -0,0 +1,85 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This enum represents the set of handled formats of the request and response
+ * bodies: the json text and the binary formats, more compact and faster to
+ * encode and decode, usable when both ends support them
+ *
+ * @author lucapompei
+ */
+public enum BodyFormat {
+
+    /**
+     * The json text format
+     */
+    JSON("application/json"),
+
+    /**
+     * The Smile binary json format
+     */
+    SMILE("application/x-jackson-smile"),
+
+    /**
+     * The CBOR binary format, described by RFC 7049
+     */
+    CBOR("application/cbor"),
+
+    /**
+     * The MessagePack binary format
+     */
+    MESSAGE_PACK("application/x-msgpack");
+
+    /**
+     * The media type of the format
+     */
+    private final String mediaType;
+
+    /**
+     * Construct a new {@link BodyFormat}
+     *
+     * @param mediaType,
+     *            the media type of the format
+     */
+    BodyFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Getter method for retrieve the media type
+     *
+     * @return the media type of the format
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Retrieve the format of the given media type, e.g. the value of a
+     * {@code Content-Type} header
+     *
+     * @param mediaType,
+     *            the media type, with or without parameters
+     * @return the {@link BodyFormat} of the media type, {@link #JSON} if
+     *         missing or not a binary format
+     */
+    public static BodyFormat fromMediaType(String mediaType) {
+        if (mediaType == null) {
+            return JSON;
+        }
+        int parameters = mediaType.indexOf(';');
+        String type = (parameters < 0 ? mediaType : mediaType.substring(0, parameters)).trim().toLowerCase();
+        switch (type) {
+            case "application/x-jackson-smile":
+            case "application/smile":
+                return SMILE;
+            case "application/cbor":
+                return CBOR;
+            case "application/x-msgpack":
+            case "application/msgpack":
+                return MESSAGE_PACK;
+            default:
+                return JSON;
+        }
+    }
+
+}
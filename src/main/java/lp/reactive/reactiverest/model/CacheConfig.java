@@ -0,0 +1,214 @@
+package lp.reactive.reactiverest.model;
+
+import java.io.File;
+
+/**
+ * This entity represents the configuration of the http response cache: an
+ * in-memory tier, bounded by the size in bytes of the cached responses, with an
+ * optional off-heap store for the large bodies, and an optional disk tier
+ *
+ * @author lucapompei
+ */
+public class CacheConfig {
+
+	/**
+	 * The maximum size, in bytes, of the responses cached in memory or {@code 0}
+	 * to disable the in-memory tier
+	 */
+	private final long maxSize;
+
+	/**
+	 * The maximum size, in bytes, of a single response cached in memory
+	 */
+	private final long maxEntrySize;
+
+	/**
+	 * The maximum size, in bytes, of the bodies stored off-heap or {@code 0} to
+	 * keep them on the heap
+	 */
+	private final long maxOffHeapSize;
+
+	/**
+	 * The directory of the disk tier or {@code null} to disable it
+	 */
+	private final File directory;
+
+	/**
+	 * The maximum size, in bytes, of the responses cached on disk
+	 */
+	private final long maxDiskSize;
+
+	/**
+	 * Constructor a new {@link CacheConfig} starting from the given
+	 * {@param builder}
+	 */
+	private CacheConfig(Builder builder) {
+		this.maxSize = builder.maxSize;
+		this.maxOffHeapSize = builder.maxSize > 0 ? builder.maxOffHeapSize : 0;
+		long memorySize = Math.max(maxSize, maxOffHeapSize);
+		this.maxEntrySize = builder.maxEntrySize < 0 ? memorySize / 4 : Math.min(builder.maxEntrySize, memorySize);
+		this.directory = builder.directory;
+		this.maxDiskSize = builder.maxDiskSize;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum size of the in-memory tier
+	 *
+	 * @return the maximum size in bytes of the responses cached in memory or
+	 *         {@code 0} if the in-memory tier is disabled
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum size of a single cached response
+	 *
+	 * @return the maximum size in bytes of a single response cached in memory
+	 */
+	public long getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum size of the off-heap store
+	 *
+	 * @return the maximum size in bytes of the bodies stored off-heap or
+	 *         {@code 0} if the bodies are kept on the heap
+	 */
+	public long getMaxOffHeapSize() {
+		return maxOffHeapSize;
+	}
+
+	/**
+	 * Getter method for retrieve the directory of the disk tier
+	 *
+	 * @return the directory of the disk tier or {@code null} if the disk tier is
+	 *         disabled
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum size of the disk tier
+	 *
+	 * @return the maximum size in bytes of the responses cached on disk
+	 */
+	public long getMaxDiskSize() {
+		return maxDiskSize;
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "CacheConfig: memory " + maxSize + " bytes (entries up to " + maxEntrySize + " bytes)"
+				+ (maxOffHeapSize == 0 ? "" : ", off-heap " + maxOffHeapSize + " bytes")
+				+ (directory == null ? "" : ", disk " + maxDiskSize + " bytes in " + directory);
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link CacheConfig}
+	 */
+	public static class Builder {
+
+		/**
+		 * The maximum size of the in-memory tier
+		 */
+		private long maxSize;
+
+		/**
+		 * The maximum size of a single response, a quarter of the in-memory tier,
+		 * or of the off-heap store if larger, by default
+		 */
+		private long maxEntrySize = -1;
+
+		/**
+		 * The maximum size of the off-heap store, disabled by default
+		 */
+		private long maxOffHeapSize;
+
+		/**
+		 * The directory of the disk tier, disabled by default
+		 */
+		private File directory;
+
+		/**
+		 * The maximum size of the disk tier
+		 */
+		private long maxDiskSize;
+
+		/**
+		 * Constructor of {@link Builder} based on mandatory parameters
+		 *
+		 * @param maxSize,
+		 *            the maximum size in bytes of the responses cached in memory,
+		 *            {@code 0} to cache them on disk only
+		 */
+		public Builder(long maxSize) {
+			this.maxSize = Math.max(0, maxSize);
+		}
+
+		/**
+		 * Setter method for the maximum size of a single response cached in
+		 * memory, the larger ones are not cached in memory
+		 *
+		 * @param maxEntrySize,
+		 *            the maximum size in bytes of a single response
+		 * @return a {@link Builder} with the maximum entry size set
+		 */
+		public Builder maxEntrySize(long maxEntrySize) {
+			this.maxEntrySize = Math.max(0, maxEntrySize);
+			return this;
+		}
+
+		/**
+		 * Setter method for the off-heap store of the in-memory tier: the bodies
+		 * of at least 32 KB are moved out of the heap, so that the large cached
+		 * responses do not lengthen the garbage collection pauses, and are read
+		 * directly from there. The headers of the responses stay on the heap,
+		 * hence the in-memory tier must be enabled
+		 *
+		 * @param maxOffHeapSize,
+		 *            the maximum size in bytes of the bodies stored off-heap,
+		 *            within the maximum direct memory of the JVM
+		 * @return a {@link Builder} with the off-heap store set
+		 */
+		public Builder offHeap(long maxOffHeapSize) {
+			this.maxOffHeapSize = Math.max(0, maxOffHeapSize);
+			return this;
+		}
+
+		/**
+		 * Setter method for the disk tier, caching on disk the cacheable responses
+		 * so that they survive the evictions from memory and the restarts
+		 *
+		 * @param directory,
+		 *            the directory where to cache the responses, used by this
+		 *            cache only
+		 * @param maxDiskSize,
+		 *            the maximum size in bytes of the responses cached on disk
+		 * @return a {@link Builder} with the disk tier set
+		 */
+		public Builder disk(File directory, long maxDiskSize) {
+			this.directory = directory;
+			this.maxDiskSize = Math.max(0, maxDiskSize);
+			return this;
+		}
+
+		/**
+		 * Build a new {@link CacheConfig} based on constructed and configured
+		 * {@link Builder}
+		 *
+		 * @return a {@link CacheConfig}
+		 */
+		public CacheConfig build() {
+			return new CacheConfig(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,232 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the client-side caching policy of a GET request,
+ * refining the freshness decided by the server: a fixed time to live, a window
+ * in which a stale response is served while it is refreshed in the background,
+ * a window in which a stale response is served when the server fails, and a
+ * short time during which a failure is cached
+ *
+ * @author lucapompei
+ */
+public class CachePolicy {
+
+	/**
+	 * The time, in milliseconds, a response stays fresh, or {@code 0} to use the
+	 * freshness decided by the server
+	 */
+	private final long ttl;
+
+	/**
+	 * The time, in milliseconds, after the expiration during which the stale
+	 * response is served while a background request refreshes it
+	 */
+	private final long staleWhileRevalidate;
+
+	/**
+	 * The time, in milliseconds, after the expiration during which the stale
+	 * response is served if the server cannot be reached or fails
+	 */
+	private final long staleIfError;
+
+	/**
+	 * The time, in milliseconds, a failure is cached and served again without
+	 * contacting the server
+	 */
+	private final long negativeTtl;
+
+	/**
+	 * Constructor a new {@link CachePolicy} starting from the given
+	 * {@param builder}
+	 */
+	private CachePolicy(Builder builder) {
+		this.ttl = builder.ttl;
+		this.staleWhileRevalidate = builder.staleWhileRevalidate;
+		this.staleIfError = builder.staleIfError;
+		this.negativeTtl = builder.negativeTtl;
+	}
+
+	/**
+	 * Getter method for retrieve the time to live
+	 *
+	 * @return the time in milliseconds a response stays fresh or {@code 0} if
+	 *         the freshness is decided by the server
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Getter method for retrieve the stale while revalidate window
+	 *
+	 * @return the time in milliseconds after the expiration during which the
+	 *         stale response is served while refreshed in the background
+	 */
+	public long getStaleWhileRevalidate() {
+		return staleWhileRevalidate;
+	}
+
+	/**
+	 * Getter method for retrieve the stale if error window
+	 *
+	 * @return the time in milliseconds after the expiration during which the
+	 *         stale response is served if the server fails
+	 */
+	public long getStaleIfError() {
+		return staleIfError;
+	}
+
+	/**
+	 * Getter method for retrieve the negative time to live
+	 *
+	 * @return the time in milliseconds a failure is cached
+	 */
+	public long getNegativeTtl() {
+		return negativeTtl;
+	}
+
+	/**
+	 * Check if the given object is a cache policy with the same windows
+	 *
+	 * @param obj,
+	 *            the object to compare
+	 * @return a boolean indicating if the given object is an equal cache policy
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CachePolicy)) {
+			return false;
+		}
+		CachePolicy other = (CachePolicy) obj;
+		return ttl == other.ttl && staleWhileRevalidate == other.staleWhileRevalidate
+				&& staleIfError == other.staleIfError && negativeTtl == other.negativeTtl;
+	}
+
+	/**
+	 * Return the hash code of this cache policy, consistent with
+	 * {@link #equals(Object)}
+	 *
+	 * @return the hash code of this cache policy
+	 */
+	public int hashCode() {
+		return Objects.hash(ttl, staleWhileRevalidate, staleIfError, negativeTtl);
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "CachePolicy: ttl " + (ttl > 0 ? ttl + " ms" : "from server") + ", stale-while-revalidate "
+				+ staleWhileRevalidate + " ms, stale-if-error " + staleIfError + " ms, negative ttl " + negativeTtl
+				+ " ms";
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link CachePolicy}
+	 */
+	public static class Builder {
+
+		/**
+		 * The time to live, decided by the server by default
+		 */
+		private long ttl;
+
+		/**
+		 * The stale while revalidate window, none by default
+		 */
+		private long staleWhileRevalidate;
+
+		/**
+		 * The stale if error window, none by default
+		 */
+		private long staleIfError;
+
+		/**
+		 * The negative time to live, none by default
+		 */
+		private long negativeTtl;
+
+		/**
+		 * Setter method for the time to live, overriding the freshness decided by
+		 * the server, a {@code no-store} response excepted
+		 *
+		 * @param ttl,
+		 *            the time a response stays fresh
+		 * @param unit,
+		 *            the time unit of the time to live
+		 * @return a {@link Builder} with the time to live set
+		 */
+		public Builder ttl(long ttl, TimeUnit unit) {
+			this.ttl = Math.max(0, unit.toMillis(ttl));
+			return this;
+		}
+
+		/**
+		 * Setter method for the stale while revalidate window: an expired
+		 * response is served at once and a single background request per url
+		 * refreshes it
+		 *
+		 * @param staleWhileRevalidate,
+		 *            the time after the expiration during which the stale
+		 *            response is served
+		 * @param unit,
+		 *            the time unit of the window
+		 * @return a {@link Builder} with the stale while revalidate window set
+		 */
+		public Builder staleWhileRevalidate(long staleWhileRevalidate, TimeUnit unit) {
+			this.staleWhileRevalidate = Math.max(0, unit.toMillis(staleWhileRevalidate));
+			return this;
+		}
+
+		/**
+		 * Setter method for the stale if error window: an expired response is
+		 * served when the server cannot be reached or answers with a server error
+		 *
+		 * @param staleIfError,
+		 *            the time after the expiration during which the stale
+		 *            response is served
+		 * @param unit,
+		 *            the time unit of the window
+		 * @return a {@link Builder} with the stale if error window set
+		 */
+		public Builder staleIfError(long staleIfError, TimeUnit unit) {
+			this.staleIfError = Math.max(0, unit.toMillis(staleIfError));
+			return this;
+		}
+
+		/**
+		 * Setter method for the negative time to live: error responses and
+		 * connection failures are cached and served again for this time, sparing
+		 * a failing server
+		 *
+		 * @param negativeTtl,
+		 *            the time a failure is cached
+		 * @param unit,
+		 *            the time unit of the negative time to live
+		 * @return a {@link Builder} with the negative time to live set
+		 */
+		public Builder negativeTtl(long negativeTtl, TimeUnit unit) {
+			this.negativeTtl = Math.max(0, unit.toMillis(negativeTtl));
+			return this;
+		}
+
+		/**
+		 * Build a new {@link CachePolicy} based on constructed and configured
+		 * {@link Builder}
+		 *
+		 * @return a {@link CachePolicy}
+		 */
+		public CachePolicy build() {
+			return new CachePolicy(this);
+		}
+
+	}
+
+}
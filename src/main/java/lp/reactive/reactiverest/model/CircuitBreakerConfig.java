@@ -0,0 +1,269 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the configuration of the circuit breaker protecting
+ * the api calls made to a base url
+ *
+ * @author lucapompei
+ */
+public class CircuitBreakerConfig {
+
+	/**
+	 * The percentage of failed calls above which the circuit opens
+	 */
+	private final int failureRateThreshold;
+
+	/**
+	 * The percentage of slow calls above which the circuit opens
+	 */
+	private final int slowCallRateThreshold;
+
+	/**
+	 * The duration, in milliseconds, above which a call is considered slow
+	 */
+	private final long slowCallDuration;
+
+	/**
+	 * The number of most recent calls used to compute the failure and slow call
+	 * rates
+	 */
+	private final int slidingWindowSize;
+
+	/**
+	 * The minimum number of calls needed to compute the rates
+	 */
+	private final int minimumNumberOfCalls;
+
+	/**
+	 * The time, in milliseconds, the circuit stays open before letting trial
+	 * calls through
+	 */
+	private final long waitDurationInOpenState;
+
+	/**
+	 * The number of trial calls permitted while the circuit is half-open
+	 */
+	private final int permittedCallsInHalfOpenState;
+
+	/**
+	 * Constructor a new {@link CircuitBreakerConfig} starting from the given
+	 * {@param builder}
+	 */
+	private CircuitBreakerConfig(Builder builder) {
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallDuration = builder.slowCallDuration;
+		this.slidingWindowSize = builder.slidingWindowSize;
+		this.minimumNumberOfCalls = Math.min(builder.minimumNumberOfCalls, builder.slidingWindowSize);
+		this.waitDurationInOpenState = builder.waitDurationInOpenState;
+		this.permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+	}
+
+	/**
+	 * Getter method for retrieve the failure rate threshold
+	 *
+	 * @return the percentage of failed calls above which the circuit opens
+	 */
+	public int getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	/**
+	 * Getter method for retrieve the slow call rate threshold
+	 *
+	 * @return the percentage of slow calls above which the circuit opens
+	 */
+	public int getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	/**
+	 * Getter method for retrieve the slow call duration
+	 *
+	 * @return the duration in milliseconds above which a call is considered slow
+	 */
+	public long getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	/**
+	 * Getter method for retrieve the sliding window size
+	 *
+	 * @return the number of most recent calls used to compute the rates
+	 */
+	public int getSlidingWindowSize() {
+		return slidingWindowSize;
+	}
+
+	/**
+	 * Getter method for retrieve the minimum number of calls
+	 *
+	 * @return the minimum number of calls needed to compute the rates
+	 */
+	public int getMinimumNumberOfCalls() {
+		return minimumNumberOfCalls;
+	}
+
+	/**
+	 * Getter method for retrieve the wait duration in open state
+	 *
+	 * @return the time in milliseconds the circuit stays open
+	 */
+	public long getWaitDurationInOpenState() {
+		return waitDurationInOpenState;
+	}
+
+	/**
+	 * Getter method for retrieve the permitted calls in half-open state
+	 *
+	 * @return the number of trial calls permitted while the circuit is half-open
+	 */
+	public int getPermittedCallsInHalfOpenState() {
+		return permittedCallsInHalfOpenState;
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link CircuitBreakerConfig}
+	 */
+	public static class Builder {
+
+		/**
+		 * The failure rate threshold, 50% by default
+		 */
+		private int failureRateThreshold = 50;
+
+		/**
+		 * The slow call rate threshold, 100% by default
+		 */
+		private int slowCallRateThreshold = 100;
+
+		/**
+		 * The slow call duration, 10 seconds by default
+		 */
+		private long slowCallDuration = TimeUnit.SECONDS.toMillis(10);
+
+		/**
+		 * The sliding window size, 100 calls by default
+		 */
+		private int slidingWindowSize = 100;
+
+		/**
+		 * The minimum number of calls, 20 by default
+		 */
+		private int minimumNumberOfCalls = 20;
+
+		/**
+		 * The wait duration in open state, 30 seconds by default
+		 */
+		private long waitDurationInOpenState = TimeUnit.SECONDS.toMillis(30);
+
+		/**
+		 * The permitted calls in half-open state, 5 by default
+		 */
+		private int permittedCallsInHalfOpenState = 5;
+
+		/**
+		 * Setter method for the failure rate threshold
+		 *
+		 * @param failureRateThreshold,
+		 *            the percentage of failed calls above which the circuit opens
+		 * @return a {@link Builder} with the failure rate threshold set
+		 */
+		public Builder failureRateThreshold(int failureRateThreshold) {
+			this.failureRateThreshold = failureRateThreshold;
+			return this;
+		}
+
+		/**
+		 * Setter method for the slow call rate threshold
+		 *
+		 * @param slowCallRateThreshold,
+		 *            the percentage of slow calls above which the circuit opens
+		 * @return a {@link Builder} with the slow call rate threshold set
+		 */
+		public Builder slowCallRateThreshold(int slowCallRateThreshold) {
+			this.slowCallRateThreshold = slowCallRateThreshold;
+			return this;
+		}
+
+		/**
+		 * Setter method for the slow call duration
+		 *
+		 * @param slowCallDuration,
+		 *            the duration above which a call is considered slow
+		 * @param unit,
+		 *            the time unit of the duration
+		 * @return a {@link Builder} with the slow call duration set
+		 */
+		public Builder slowCallDuration(long slowCallDuration, TimeUnit unit) {
+			this.slowCallDuration = unit.toMillis(slowCallDuration);
+			return this;
+		}
+
+		/**
+		 * Setter method for the sliding window size
+		 *
+		 * @param slidingWindowSize,
+		 *            the number of most recent calls used to compute the rates
+		 * @return a {@link Builder} with the sliding window size set
+		 */
+		public Builder slidingWindowSize(int slidingWindowSize) {
+			this.slidingWindowSize = Math.max(1, slidingWindowSize);
+			return this;
+		}
+
+		/**
+		 * Setter method for the minimum number of calls
+		 *
+		 * @param minimumNumberOfCalls,
+		 *            the minimum number of calls needed to compute the rates
+		 * @return a {@link Builder} with the minimum number of calls set
+		 */
+		public Builder minimumNumberOfCalls(int minimumNumberOfCalls) {
+			this.minimumNumberOfCalls = Math.max(1, minimumNumberOfCalls);
+			return this;
+		}
+
+		/**
+		 * Setter method for the wait duration in open state
+		 *
+		 * @param waitDurationInOpenState,
+		 *            the time the circuit stays open before letting trial calls
+		 *            through
+		 * @param unit,
+		 *            the time unit of the duration
+		 * @return a {@link Builder} with the wait duration in open state set
+		 */
+		public Builder waitDurationInOpenState(long waitDurationInOpenState, TimeUnit unit) {
+			this.waitDurationInOpenState = unit.toMillis(waitDurationInOpenState);
+			return this;
+		}
+
+		/**
+		 * Setter method for the permitted calls in half-open state
+		 *
+		 * @param permittedCallsInHalfOpenState,
+		 *            the number of trial calls permitted while the circuit is
+		 *            half-open
+		 * @return a {@link Builder} with the permitted calls in half-open state set
+		 */
+		public Builder permittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+			this.permittedCallsInHalfOpenState = Math.max(1, permittedCallsInHalfOpenState);
+			return this;
+		}
+
+		/**
+		 * Build a new {@link CircuitBreakerConfig} based on constructed and
+		 * configured {@link Builder}
+		 *
+		 * @return a {@link CircuitBreakerConfig}
+		 */
+		public CircuitBreakerConfig build() {
+			return new CircuitBreakerConfig(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This class represents the event emitted when the circuit breaker of a base
+ * url changes its state
+ *
+ * @author lucapompei
+ */
+public class CircuitBreakerEvent {
+
+    /**
+     * The base url protected by the circuit breaker
+     */
+    private final String baseUrl;
+
+    /**
+     * The previous state of the circuit breaker
+     */
+    private final CircuitBreakerState fromState;
+
+    /**
+     * The new state of the circuit breaker
+     */
+    private final CircuitBreakerState toState;
+
+    /**
+     * The failure rate, in percentage, that caused the transition or {@code -1}
+     * if not available
+     */
+    private final float failureRate;
+
+    /**
+     * The slow call rate, in percentage, that caused the transition or
+     * {@code -1} if not available
+     */
+    private final float slowCallRate;
+
+    /**
+     * Construct a new {@link CircuitBreakerEvent}
+     *
+     * @param baseUrl,
+     *         the base url protected by the circuit breaker
+     * @param fromState,
+     *         the previous state of the circuit breaker
+     * @param toState,
+     *         the new state of the circuit breaker
+     * @param failureRate,
+     *         the failure rate that caused the transition or {@code -1}
+     * @param slowCallRate,
+     *         the slow call rate that caused the transition or {@code -1}
+     */
+    public CircuitBreakerEvent(String baseUrl, CircuitBreakerState fromState, CircuitBreakerState toState,
+            float failureRate, float slowCallRate) {
+        this.baseUrl = baseUrl;
+        this.fromState = fromState;
+        this.toState = toState;
+        this.failureRate = failureRate;
+        this.slowCallRate = slowCallRate;
+    }
+
+    /**
+     * Retrieve the base url protected by the circuit breaker
+     *
+     * @return the base url protected by the circuit breaker
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Retrieve the previous state of the circuit breaker
+     *
+     * @return the previous state of the circuit breaker
+     */
+    public CircuitBreakerState getFromState() {
+        return fromState;
+    }
+
+    /**
+     * Retrieve the new state of the circuit breaker
+     *
+     * @return the new state of the circuit breaker
+     */
+    public CircuitBreakerState getToState() {
+        return toState;
+    }
+
+    /**
+     * Retrieve the failure rate that caused the transition
+     *
+     * @return the failure rate in percentage or {@code -1} if not available
+     */
+    public float getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Retrieve the slow call rate that caused the transition
+     *
+     * @return the slow call rate in percentage or {@code -1} if not available
+     */
+    public float getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    /**
+     * Return a prepared string to represent this event
+     *
+     * @return a prepared string to represent this event
+     */
+    public String toString() {
+        return "CircuitBreakerEvent: " + baseUrl + " " + fromState + " -> " + toState + " (failure rate "
+                + failureRate + "%, slow call rate " + slowCallRate + "%)";
+    }
+
+}
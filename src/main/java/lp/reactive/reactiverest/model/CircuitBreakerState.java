@@ -0,0 +1,26 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This enum represents the set of states of a circuit breaker
+ *
+ * @author lucapompei
+ */
+public enum CircuitBreakerState {
+
+    /**
+     * The calls flow normally and their outcomes are recorded
+     */
+    CLOSED,
+
+    /**
+     * The calls fail fast without reaching the server
+     */
+    OPEN,
+
+    /**
+     * A limited number of trial calls is let through to decide whether to close
+     * or to open again the circuit
+     */
+    HALF_OPEN
+
+}
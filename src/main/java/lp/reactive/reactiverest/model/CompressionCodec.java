@@ -0,0 +1,101 @@
+package lp.reactive.reactiverest.model;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * This entity represents a content coding, as named by the
+ * {@code Content-Encoding} and {@code Accept-Encoding} headers, able to
+ * compress the request bodies and to decompress the response bodies. Further
+ * codings, e.g. zstd or brotli, are plugged in by implementing this interface
+ * and registering the codec to the {@code CompressionService}
+ *
+ * @author lucapompei
+ */
+public interface CompressionCodec {
+
+	/**
+	 * The gzip coding
+	 */
+	CompressionCodec GZIP = new CompressionCodec() {
+
+		@Override
+		public String getEncoding() {
+			return "gzip";
+		}
+
+		@Override
+		public Sink compress(Sink sink) {
+			return new GzipSink(sink);
+		}
+
+		@Override
+		public Source decompress(Source source) {
+			return new GzipSource(source);
+		}
+
+	};
+
+	/**
+	 * The deflate coding, a zlib stream
+	 */
+	CompressionCodec DEFLATE = new CompressionCodec() {
+
+		@Override
+		public String getEncoding() {
+			return "deflate";
+		}
+
+		@Override
+		public Sink compress(Sink sink) {
+			return new DeflaterSink(sink, new Deflater());
+		}
+
+		@Override
+		public Source decompress(Source source) {
+			return new InflaterSource(Okio.buffer(source), new Inflater());
+		}
+
+	};
+
+	/**
+	 * Getter method for retrieve the name of the coding
+	 *
+	 * @return the name of the coding used by the {@code Content-Encoding} header,
+	 *         e.g. {@code gzip}
+	 */
+	String getEncoding();
+
+	/**
+	 * Wrap the given sink so that the bytes written to it are compressed. Closing
+	 * the returned sink completes the compressed stream and closes the given one
+	 *
+	 * @param sink,
+	 *            the sink receiving the compressed bytes
+	 * @return the sink compressing the bytes written to it
+	 * @throws IOException
+	 *             if the compressed stream cannot be started
+	 */
+	Sink compress(Sink sink) throws IOException;
+
+	/**
+	 * Wrap the given source so that the bytes read from it are decompressed
+	 *
+	 * @param source,
+	 *            the source of the compressed bytes
+	 * @return the source of the decompressed bytes
+	 * @throws IOException
+	 *             if the compressed stream cannot be read
+	 */
+	Source decompress(Source source) throws IOException;
+
+}
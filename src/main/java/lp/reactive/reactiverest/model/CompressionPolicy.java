@@ -0,0 +1,166 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.Objects;
+
+/**
+ * This entity represents the compression of the request bodies: the coding
+ * used, which must be registered to the {@code CompressionService}, and the
+ * size below which a body is sent uncompressed, since compressing a few bytes
+ * costs more than it saves
+ *
+ * @author lucapompei
+ */
+public class CompressionPolicy {
+
+	/**
+	 * The default size, in bytes, below which a body is not compressed
+	 */
+	public static final long DEFAULT_MIN_SIZE = 1024;
+
+	/**
+	 * The policy sending the bodies uncompressed, e.g. to override the policy of
+	 * the base url for a single request
+	 */
+	public static final CompressionPolicy NONE = new Builder().encoding(null).build();
+
+	/**
+	 * The name of the coding or {@code null} if the bodies are not compressed
+	 */
+	private final String encoding;
+
+	/**
+	 * The size, in bytes, below which a body is not compressed
+	 */
+	private final long minSize;
+
+	/**
+	 * Constructor a new {@link CompressionPolicy} starting from the given
+	 * {@param builder}
+	 */
+	private CompressionPolicy(Builder builder) {
+		this.encoding = builder.encoding;
+		this.minSize = builder.minSize;
+	}
+
+	/**
+	 * Getter method for retrieve the coding
+	 *
+	 * @return the name of the coding or {@code null} if the bodies are not
+	 *         compressed
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Getter method for retrieve the minimum size
+	 *
+	 * @return the size in bytes below which a body is not compressed
+	 */
+	public long getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Getter method for retrieve if the bodies are compressed
+	 *
+	 * @return a boolean indicating if the bodies are compressed
+	 */
+	public boolean isEnabled() {
+		return encoding != null;
+	}
+
+	/**
+	 * Check if the given object is a compression policy with the same coding and
+	 * minimum size
+	 *
+	 * @param obj,
+	 *            the object to compare
+	 * @return a boolean indicating if the given object is an equal compression
+	 *         policy
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompressionPolicy)) {
+			return false;
+		}
+		CompressionPolicy other = (CompressionPolicy) obj;
+		return Objects.equals(encoding, other.encoding) && minSize == other.minSize;
+	}
+
+	/**
+	 * Return the hash code of this compression policy, consistent with
+	 * {@link #equals(Object)}
+	 *
+	 * @return the hash code of this compression policy
+	 */
+	public int hashCode() {
+		return Objects.hash(encoding, minSize);
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "CompressionPolicy: " + (isEnabled() ? encoding + " from " + minSize + " bytes" : "none");
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link CompressionPolicy}
+	 */
+	public static class Builder {
+
+		/**
+		 * The coding, gzip by default
+		 */
+		private String encoding = CompressionCodec.GZIP.getEncoding();
+
+		/**
+		 * The minimum size, {@value CompressionPolicy#DEFAULT_MIN_SIZE} bytes by
+		 * default
+		 */
+		private long minSize = DEFAULT_MIN_SIZE;
+
+		/**
+		 * Setter method for the coding
+		 *
+		 * @param encoding,
+		 *            the name of a registered coding, e.g. {@code gzip}, or
+		 *            {@code null} to send the bodies uncompressed
+		 * @return a {@link Builder} with the coding set
+		 */
+		public Builder encoding(String encoding) {
+			this.encoding = encoding;
+			return this;
+		}
+
+		/**
+		 * Setter method for the minimum size. The bodies of unknown length are
+		 * always compressed
+		 *
+		 * @param minSize,
+		 *            the size in bytes below which a body is not compressed
+		 * @return a {@link Builder} with the minimum size set
+		 */
+		public Builder minSize(long minSize) {
+			this.minSize = Math.max(0, minSize);
+			return this;
+		}
+
+		/**
+		 * Build a new {@link CompressionPolicy} based on constructed and
+		 * configured {@link Builder}
+		 *
+		 * @return a {@link CompressionPolicy}
+		 */
+		public CompressionPolicy build() {
+			return new CompressionPolicy(this);
+		}
+
+	}
+
+}
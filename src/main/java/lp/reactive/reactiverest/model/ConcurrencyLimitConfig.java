@@ -0,0 +1,272 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the configuration of the adaptive concurrency limit
+ * applied to the api calls made to a base url
+ *
+ * @author lucapompei
+ */
+public class ConcurrencyLimitConfig {
+
+	/**
+	 * The number of in-flight calls allowed before any latency is observed
+	 */
+	private final int initialLimit;
+
+	/**
+	 * The lowest number of in-flight calls the limit can shrink to
+	 */
+	private final int minLimit;
+
+	/**
+	 * The highest number of in-flight calls the limit can grow to
+	 */
+	private final int maxLimit;
+
+	/**
+	 * The ratio applied to the limit when congestion is detected
+	 */
+	private final double backoffRatio;
+
+	/**
+	 * The ratio between the observed latency and the no-load latency above which
+	 * the upstream is considered congested
+	 */
+	private final double rttTolerance;
+
+	/**
+	 * The time, in milliseconds, an exceeding call waits for a free slot before
+	 * being shed
+	 */
+	private final long maxQueueWait;
+
+	/**
+	 * The maximum number of calls waiting for a free slot
+	 */
+	private final int maxQueueSize;
+
+	/**
+	 * Constructor a new {@link ConcurrencyLimitConfig} starting from the given
+	 * {@param builder}
+	 */
+	private ConcurrencyLimitConfig(Builder builder) {
+		this.minLimit = builder.minLimit;
+		this.maxLimit = Math.max(builder.minLimit, builder.maxLimit);
+		this.initialLimit = Math.min(Math.max(builder.initialLimit, this.minLimit), this.maxLimit);
+		this.backoffRatio = builder.backoffRatio;
+		this.rttTolerance = builder.rttTolerance;
+		this.maxQueueWait = builder.maxQueueWait;
+		this.maxQueueSize = builder.maxQueueSize;
+	}
+
+	/**
+	 * Getter method for retrieve the initial limit
+	 *
+	 * @return the number of in-flight calls allowed before any latency is
+	 *         observed
+	 */
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	/**
+	 * Getter method for retrieve the minimum limit
+	 *
+	 * @return the lowest number of in-flight calls the limit can shrink to
+	 */
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum limit
+	 *
+	 * @return the highest number of in-flight calls the limit can grow to
+	 */
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * Getter method for retrieve the backoff ratio
+	 *
+	 * @return the ratio applied to the limit when congestion is detected
+	 */
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	/**
+	 * Getter method for retrieve the latency tolerance
+	 *
+	 * @return the ratio between the observed and the no-load latency above which
+	 *         the upstream is considered congested
+	 */
+	public double getRttTolerance() {
+		return rttTolerance;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum queue wait
+	 *
+	 * @return the time in milliseconds an exceeding call waits for a free slot
+	 */
+	public long getMaxQueueWait() {
+		return maxQueueWait;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum queue size
+	 *
+	 * @return the maximum number of calls waiting for a free slot
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link ConcurrencyLimitConfig}
+	 */
+	public static class Builder {
+
+		/**
+		 * The initial limit, 20 calls by default
+		 */
+		private int initialLimit = 20;
+
+		/**
+		 * The minimum limit, 1 call by default
+		 */
+		private int minLimit = 1;
+
+		/**
+		 * The maximum limit, 200 calls by default
+		 */
+		private int maxLimit = 200;
+
+		/**
+		 * The backoff ratio, 0.9 by default
+		 */
+		private double backoffRatio = 0.9;
+
+		/**
+		 * The latency tolerance, 2 times the no-load latency by default
+		 */
+		private double rttTolerance = 2.0;
+
+		/**
+		 * The maximum queue wait, 50 milliseconds by default
+		 */
+		private long maxQueueWait = 50;
+
+		/**
+		 * The maximum queue size, 100 calls by default
+		 */
+		private int maxQueueSize = 100;
+
+		/**
+		 * Setter method for the initial limit
+		 *
+		 * @param initialLimit,
+		 *            the number of in-flight calls allowed before any latency is
+		 *            observed
+		 * @return a {@link Builder} with the initial limit set
+		 */
+		public Builder initialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		/**
+		 * Setter method for the minimum limit
+		 *
+		 * @param minLimit,
+		 *            the lowest number of in-flight calls the limit can shrink to
+		 * @return a {@link Builder} with the minimum limit set
+		 */
+		public Builder minLimit(int minLimit) {
+			this.minLimit = Math.max(1, minLimit);
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum limit
+		 *
+		 * @param maxLimit,
+		 *            the highest number of in-flight calls the limit can grow to
+		 * @return a {@link Builder} with the maximum limit set
+		 */
+		public Builder maxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * Setter method for the backoff ratio
+		 *
+		 * @param backoffRatio,
+		 *            the ratio, between 0.5 and 1, applied to the limit when
+		 *            congestion is detected
+		 * @return a {@link Builder} with the backoff ratio set
+		 */
+		public Builder backoffRatio(double backoffRatio) {
+			this.backoffRatio = Math.min(Math.max(0.5, backoffRatio), 1);
+			return this;
+		}
+
+		/**
+		 * Setter method for the latency tolerance
+		 *
+		 * @param rttTolerance,
+		 *            the ratio, not lower than 1, between the observed and the
+		 *            no-load latency above which the upstream is considered
+		 *            congested
+		 * @return a {@link Builder} with the latency tolerance set
+		 */
+		public Builder rttTolerance(double rttTolerance) {
+			this.rttTolerance = Math.max(1, rttTolerance);
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum queue wait, zero to shed the exceeding
+		 * calls immediately
+		 *
+		 * @param maxQueueWait,
+		 *            the time an exceeding call waits for a free slot
+		 * @param unit,
+		 *            the time unit of the wait
+		 * @return a {@link Builder} with the maximum queue wait set
+		 */
+		public Builder maxQueueWait(long maxQueueWait, TimeUnit unit) {
+			this.maxQueueWait = Math.max(0, unit.toMillis(maxQueueWait));
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum queue size
+		 *
+		 * @param maxQueueSize,
+		 *            the maximum number of calls waiting for a free slot
+		 * @return a {@link Builder} with the maximum queue size set
+		 */
+		public Builder maxQueueSize(int maxQueueSize) {
+			this.maxQueueSize = Math.max(0, maxQueueSize);
+			return this;
+		}
+
+		/**
+		 * Build a new {@link ConcurrencyLimitConfig} based on constructed and
+		 * configured {@link Builder}
+		 *
+		 * @return a {@link ConcurrencyLimitConfig}
+		 */
+		public ConcurrencyLimitConfig build() {
+			return new ConcurrencyLimitConfig(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,199 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the policy used to hedge an http request: if no
+ * response arrives within the hedge delay, a duplicate request is sent and the
+ * first response obtained is used, while the other request is cancelled
+ *
+ * @author lucapompei
+ */
+public class HedgePolicy {
+
+	/**
+	 * The delay, in milliseconds, after which the duplicate request is sent. When
+	 * the dynamic delay is enabled, it is used until enough latencies are observed
+	 */
+	private final long delay;
+
+	/**
+	 * A variable indicating if the delay is computed from the observed 95th
+	 * percentile latency of the api endpoint
+	 */
+	private final boolean dynamicDelay;
+
+	/**
+	 * The lower bound, in milliseconds, of the dynamic delay
+	 */
+	private final long minDelay;
+
+	/**
+	 * A variable indicating if non idempotent http methods can be hedged
+	 */
+	private final boolean nonIdempotentAllowed;
+
+	/**
+	 * Constructor a new {@link HedgePolicy} starting from the given
+	 * {@param builder}
+	 */
+	private HedgePolicy(Builder builder) {
+		this.delay = builder.delay;
+		this.dynamicDelay = builder.dynamicDelay;
+		this.minDelay = builder.minDelay;
+		this.nonIdempotentAllowed = builder.nonIdempotentAllowed;
+	}
+
+	/**
+	 * Getter method for retrieve the hedge delay
+	 *
+	 * @return the hedge delay in milliseconds
+	 */
+	public long getDelay() {
+		return delay;
+	}
+
+	/**
+	 * Return a boolean indicating if the delay is computed from the observed
+	 * 95th percentile latency of the api endpoint
+	 *
+	 * @return a boolean indicating if the dynamic delay is enabled or not
+	 */
+	public boolean isDynamicDelay() {
+		return dynamicDelay;
+	}
+
+	/**
+	 * Getter method for retrieve the lower bound of the dynamic delay
+	 *
+	 * @return the minimum dynamic delay in milliseconds
+	 */
+	public long getMinDelay() {
+		return minDelay;
+	}
+
+	/**
+	 * Return a boolean indicating if non idempotent http methods can be hedged
+	 *
+	 * @return a boolean indicating if non idempotent http methods can be hedged
+	 */
+	public boolean isNonIdempotentAllowed() {
+		return nonIdempotentAllowed;
+	}
+
+	/**
+	 * Return a boolean indicating if the given http method can be hedged using
+	 * this policy
+	 *
+	 * @param httpMethod,
+	 *            the http method to check
+	 * @return a boolean indicating if the given http method can be hedged
+	 */
+	public boolean isApplicableTo(HttpMethod httpMethod) {
+		return nonIdempotentAllowed || httpMethod.isIdempotent();
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "HedgePolicy: delay=" + getDelay() + "ms" + (isDynamicDelay() ? " (dynamic p95, at least " + getMinDelay() + "ms)" : "")
+				+ (isNonIdempotentAllowed() ? ", non idempotent allowed" : "");
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link HedgePolicy}
+	 */
+	public static class Builder {
+
+		/**
+		 * The hedge delay in milliseconds
+		 */
+		private long delay;
+
+		/**
+		 * A variable indicating if the dynamic delay is enabled
+		 */
+		private boolean dynamicDelay;
+
+		/**
+		 * The lower bound of the dynamic delay in milliseconds
+		 */
+		private long minDelay = 10;
+
+		/**
+		 * A variable indicating if non idempotent http methods can be hedged
+		 */
+		private boolean nonIdempotentAllowed;
+
+		/**
+		 * Constructor of {@link Builder} based on mandatory parameters
+		 *
+		 * @param delay,
+		 *            the delay after which the duplicate request is sent
+		 * @param unit,
+		 *            the time unit of the delay
+		 */
+		public Builder(long delay, TimeUnit unit) {
+			this.delay = unit.toMillis(delay);
+		}
+
+		/**
+		 * Setter method for the dynamic delay, computed from the observed 95th
+		 * percentile latency of the api endpoint. The configured delay is used
+		 * until enough latencies are observed
+		 *
+		 * @param dynamicDelay,
+		 *            a boolean indicating if the dynamic delay is enabled
+		 * @return a {@link Builder} with the dynamic delay set
+		 */
+		public Builder dynamicDelay(boolean dynamicDelay) {
+			this.dynamicDelay = dynamicDelay;
+			return this;
+		}
+
+		/**
+		 * Setter method for the lower bound of the dynamic delay, 10 milliseconds
+		 * by default, so that an api endpoint answering within a millisecond is
+		 * not hedged as soon as the request is sent
+		 *
+		 * @param minDelay,
+		 *            the minimum dynamic delay
+		 * @param unit,
+		 *            the time unit of the minimum dynamic delay
+		 * @return a {@link Builder} with the minimum dynamic delay set
+		 */
+		public Builder minDelay(long minDelay, TimeUnit unit) {
+			this.minDelay = Math.max(0, unit.toMillis(minDelay));
+			return this;
+		}
+
+		/**
+		 * Setter method to allow hedging of non idempotent http methods, that are
+		 * excluded by default
+		 *
+		 * @param nonIdempotentAllowed,
+		 *            a boolean indicating if non idempotent http methods can be
+		 *            hedged
+		 * @return a {@link Builder} with the non idempotent option set
+		 */
+		public Builder nonIdempotentAllowed(boolean nonIdempotentAllowed) {
+			this.nonIdempotentAllowed = nonIdempotentAllowed;
+			return this;
+		}
+
+		/**
+		 * Build a new {@link HedgePolicy} based on constructed and configured
+		 * {@link Builder}
+		 *
+		 * @return a {@link HedgePolicy}
+		 */
+		public HedgePolicy build() {
+			return new HedgePolicy(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,631 @@
+package lp.reactive.reactiverest.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+import lp.reactive.reactiverest.utils.JsonUtils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * This entity represents the body of an http request, set through the
+ * {@link HttpRequest.Builder}: raw bytes, a json payload serialized once, an
+ * object serialized in the body format of the base url, a file, or a source
+ * streamed to the connection. The bytes, buffers and json payloads are sent as
+ * they are by every attempt, without being copied or serialized again, and the
+ * files are read in chunks, without being loaded on the heap
+ *
+ * @author lucapompei
+ */
+public class HttpBody {
+
+	/**
+	 * The media type of the json payloads
+	 */
+	private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+	/**
+	 * The maximum number of bytes of a file transferred at once, between two
+	 * progress notifications
+	 */
+	private static final long TRANSFER_SIZE = 64 * 1024;
+
+	/**
+	 * The kind of the body
+	 */
+	private final Kind kind;
+
+	/**
+	 * The media type of the body or {@code null} if unknown or decided by the
+	 * body format
+	 */
+	private final MediaType mediaType;
+
+	/**
+	 * The content of the body, depending on its kind: the bytes, the buffer,
+	 * the object, the stream supplier, the request body, the file path or the
+	 * file channel
+	 */
+	private final Object content;
+
+	/**
+	 * The position of the body in the file channel
+	 */
+	private final long position;
+
+	/**
+	 * Construct a new {@link HttpBody}
+	 *
+	 * @param kind,
+	 *            the kind of the body
+	 * @param mediaType,
+	 *            the media type of the body
+	 * @param content,
+	 *            the content of the body
+	 * @param position,
+	 *            the position of the body in the file channel
+	 */
+	private HttpBody(Kind kind, MediaType mediaType, Object content, long position) {
+		this.kind = kind;
+		this.mediaType = mediaType;
+		this.content = content;
+		this.position = position;
+	}
+
+	/**
+	 * Create a body of raw bytes, sent without being copied
+	 *
+	 * @param bytes,
+	 *            the bytes of the body, not to be modified once the request is
+	 *            built
+	 * @param mediaType,
+	 *            the media type of the body or {@code null} if unknown
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofBytes(byte[] bytes, String mediaType) {
+		return new HttpBody(Kind.BYTES, parse(mediaType), Objects.requireNonNull(bytes, "Bytes cannot be null"), 0);
+	}
+
+	/**
+	 * Create a body of the bytes between the position and the limit of the given
+	 * buffer, heap or direct, sent without being copied
+	 *
+	 * @param buffer,
+	 *            the buffer holding the body, not to be modified once the
+	 *            request is built
+	 * @param mediaType,
+	 *            the media type of the body or {@code null} if unknown
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofBuffer(ByteBuffer buffer, String mediaType) {
+		return new HttpBody(Kind.BUFFER, parse(mediaType),
+				Objects.requireNonNull(buffer, "Buffer cannot be null").asReadOnlyBuffer(), 0);
+	}
+
+	/**
+	 * Create a body of an already serialized json payload, encoded once
+	 *
+	 * @param json,
+	 *            the json payload
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofJson(String json) {
+		return new HttpBody(Kind.BYTES, JSON_MEDIA_TYPE,
+				Objects.requireNonNull(json, "Json cannot be null").getBytes(StandardCharsets.UTF_8), 0);
+	}
+
+	/**
+	 * Create a body of an object, serialized in the body format of the base url
+	 * once for all the attempts of an api call
+	 *
+	 * @param value,
+	 *            the object to serialize
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofValue(Object value) {
+		return new HttpBody(Kind.VALUE, null, value, 0);
+	}
+
+	/**
+	 * Create a body streamed to the connection from the streams opened by the
+	 * given supplier, one for each attempt, so that the body is never held in
+	 * memory
+	 *
+	 * @param streamSupplier,
+	 *            the supplier opening a new stream of the body
+	 * @param mediaType,
+	 *            the media type of the body or {@code null} if unknown
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofStream(Callable<InputStream> streamSupplier, String mediaType) {
+		return new HttpBody(Kind.STREAM, parse(mediaType),
+				Objects.requireNonNull(streamSupplier, "Stream supplier cannot be null"), 0);
+	}
+
+	/**
+	 * Create a body sent as it is
+	 *
+	 * @param requestBody,
+	 *            the request body, which must be writable more than once to be
+	 *            retried or hedged
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofRequestBody(RequestBody requestBody) {
+		return new HttpBody(Kind.REQUEST_BODY, null,
+				Objects.requireNonNull(requestBody, "Request body cannot be null"), 0);
+	}
+
+	/**
+	 * Create a body of the content of a file, opened and read in chunks by each
+	 * attempt
+	 *
+	 * @param file,
+	 *            the path of the file
+	 * @param mediaType,
+	 *            the media type of the body or {@code null} if unknown
+	 * @return the {@link HttpBody}
+	 */
+	static HttpBody ofFile(Path file, String mediaType) {
+		return new HttpBody(Kind.FILE, parse(mediaType), Objects.requireNonNull(file, "File cannot be null"), 0);
+	}
+
+	/**
+	 * Create a body of the content of a file channel, from its current position
+	 * to its end, read in chunks by each attempt through positional reads. The
+	 * channel is left open
+	 *
+	 * @param channel,
+	 *            the file channel
+	 * @param mediaType,
+	 *            the media type of the body or {@code null} if unknown
+	 * @return the {@link HttpBody}
+	 * @throws IllegalArgumentException,
+	 *             if the position of the channel cannot be read
+	 */
+	static HttpBody ofChannel(FileChannel channel, String mediaType) {
+		Objects.requireNonNull(channel, "File channel cannot be null");
+		try {
+			return new HttpBody(Kind.CHANNEL, parse(mediaType), channel, channel.position());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to read the position of the file channel", e);
+		}
+	}
+
+	/**
+	 * Convert this body to the request body of an api call, serializing the
+	 * object, if any, in the given format
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} of the base url
+	 * @return the {@link RequestBody} or {@code null} if the object cannot be
+	 *         serialized or the file cannot be read
+	 */
+	public RequestBody toRequestBody(BodyFormat format) {
+		return toRequestBody(format, null);
+	}
+
+	/**
+	 * Convert this body to the request body of an api call, serializing the
+	 * object, if any, in the given format and notifying the given listener of
+	 * the bytes sent
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} of the base url
+	 * @param listener,
+	 *            the listener of the upload progress or {@code null}
+	 * @return the {@link RequestBody} or {@code null} if the object cannot be
+	 *         serialized or the file cannot be read
+	 */
+	public RequestBody toRequestBody(BodyFormat format, ProgressListener listener) {
+		RequestBody requestBody;
+		switch (kind) {
+		case FILE:
+			try {
+				Path file = (Path) content;
+				return new FileRequestBody(mediaType, file, null, 0, Files.size(file), listener);
+			} catch (IOException e) {
+				return null;
+			}
+		case CHANNEL:
+			try {
+				FileChannel channel = (FileChannel) content;
+				return new FileRequestBody(mediaType, null, channel, position,
+						Math.max(0, channel.size() - position), listener);
+			} catch (IOException e) {
+				return null;
+			}
+		case BYTES:
+			requestBody = RequestBody.create(mediaType, (byte[]) content);
+			break;
+		case BUFFER:
+			requestBody = new BufferRequestBody(mediaType, (ByteBuffer) content);
+			break;
+		case STREAM:
+			requestBody = new StreamRequestBody(mediaType, (Callable<?>) content);
+			break;
+		case REQUEST_BODY:
+			requestBody = (RequestBody) content;
+			break;
+		default:
+			BodyFormat bodyFormat = format == null ? BodyFormat.JSON : format;
+			byte[] serialized = JsonUtils.toBytes(content, bodyFormat);
+			if (serialized == null) {
+				return null;
+			}
+			requestBody = RequestBody.create(bodyFormat == BodyFormat.JSON ? JSON_MEDIA_TYPE
+					: MediaType.parse(bodyFormat.getMediaType()), serialized);
+			break;
+		}
+		return listener == null ? requestBody : new ProgressRequestBody(requestBody, listener);
+	}
+
+	/**
+	 * Parse the given media type
+	 *
+	 * @param mediaType,
+	 *            the media type or {@code null}
+	 * @return the {@link MediaType} or {@code null} if missing or not valid
+	 */
+	private static MediaType parse(String mediaType) {
+		return mediaType == null ? null : MediaType.parse(mediaType);
+	}
+
+	/**
+	 * Check if the given object is a body with the same content: the bytes,
+	 * buffers, json payloads and files are compared by content or path, the
+	 * objects by equality and the streamed bodies and file channels by identity
+	 *
+	 * @param obj,
+	 *            the object to compare
+	 * @return a boolean indicating if the given object is an equal body
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HttpBody)) {
+			return false;
+		}
+		HttpBody other = (HttpBody) obj;
+		if (kind != other.kind || position != other.position || !Objects.equals(mediaType, other.mediaType)) {
+			return false;
+		}
+		switch (kind) {
+		case BYTES:
+			return Arrays.equals((byte[]) content, (byte[]) other.content);
+		case STREAM:
+		case REQUEST_BODY:
+		case CHANNEL:
+			return content == other.content;
+		default:
+			return Objects.equals(content, other.content);
+		}
+	}
+
+	/**
+	 * Return the hash code of this body, consistent with
+	 * {@link #equals(Object)}
+	 *
+	 * @return the hash code of this body
+	 */
+	public int hashCode() {
+		int contentHash;
+		switch (kind) {
+		case BYTES:
+			contentHash = Arrays.hashCode((byte[]) content);
+			break;
+		case STREAM:
+		case REQUEST_BODY:
+		case CHANNEL:
+			contentHash = System.identityHashCode(content);
+			break;
+		default:
+			contentHash = Objects.hashCode(content);
+			break;
+		}
+		return Objects.hash(kind, mediaType, contentHash, position);
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		switch (kind) {
+		case BYTES:
+			return "[" + ((byte[]) content).length + " bytes " + mediaType + "]";
+		case BUFFER:
+			return "[" + ((ByteBuffer) content).remaining() + " bytes " + mediaType + "]";
+		case FILE:
+			return "[file " + content + " " + mediaType + "]";
+		case CHANNEL:
+			return "[file channel from " + position + " " + mediaType + "]";
+		case STREAM:
+		case REQUEST_BODY:
+			return "[streamed body]";
+		default:
+			return String.valueOf(content);
+		}
+	}
+
+	/**
+	 * This enum represents the kinds of body
+	 */
+	private enum Kind {
+		BYTES, BUFFER, VALUE, STREAM, REQUEST_BODY, FILE, CHANNEL
+	}
+
+	/**
+	 * This class represents a request body sending the bytes of a buffer,
+	 * through a view of the buffer for each attempt
+	 */
+	private static final class BufferRequestBody extends RequestBody {
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType mediaType;
+
+		/**
+		 * The buffer holding the body
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Construct a new {@link BufferRequestBody}
+		 *
+		 * @param mediaType,
+		 *            the media type of the body
+		 * @param buffer,
+		 *            the buffer holding the body
+		 */
+		private BufferRequestBody(MediaType mediaType, ByteBuffer buffer) {
+			this.mediaType = mediaType;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return mediaType;
+		}
+
+		@Override
+		public long contentLength() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			ByteBuffer source = buffer.duplicate();
+			while (source.hasRemaining()) {
+				sink.write(source);
+			}
+		}
+
+	}
+
+	/**
+	 * This class represents a request body streamed from a new stream for each
+	 * attempt, with no known length
+	 */
+	private static final class StreamRequestBody extends RequestBody {
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType mediaType;
+
+		/**
+		 * The supplier opening a new stream of the body
+		 */
+		private final Callable<?> streamSupplier;
+
+		/**
+		 * Construct a new {@link StreamRequestBody}
+		 *
+		 * @param mediaType,
+		 *            the media type of the body
+		 * @param streamSupplier,
+		 *            the supplier opening a new stream of the body
+		 */
+		private StreamRequestBody(MediaType mediaType, Callable<?> streamSupplier) {
+			this.mediaType = mediaType;
+			this.streamSupplier = streamSupplier;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return mediaType;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			InputStream stream;
+			try {
+				stream = (InputStream) streamSupplier.call();
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("Unable to open the request body", e);
+			}
+			try (Source source = Okio.source(stream)) {
+				sink.writeAll(source);
+			}
+		}
+
+	}
+
+	/**
+	 * This class represents a request body sending a region of a file in
+	 * chunks of up to {@value TRANSFER_SIZE} bytes, handed by the file channel
+	 * straight to the sink of the connection, so that the memory stays bounded
+	 * whatever the size of the file
+	 */
+	private static final class FileRequestBody extends RequestBody {
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType mediaType;
+
+		/**
+		 * The path of the file opened by each attempt or {@code null} if the
+		 * channel is given
+		 */
+		private final Path file;
+
+		/**
+		 * The channel of the file or {@code null} if the file is opened by each
+		 * attempt
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * The position and the length of the region sent
+		 */
+		private final long position;
+		private final long length;
+
+		/**
+		 * The listener of the upload progress or {@code null}
+		 */
+		private final ProgressListener listener;
+
+		/**
+		 * Construct a new {@link FileRequestBody}
+		 *
+		 * @param mediaType,
+		 *            the media type of the body
+		 * @param file,
+		 *            the path of the file opened by each attempt
+		 * @param channel,
+		 *            the channel of the file
+		 * @param position,
+		 *            the position of the region sent
+		 * @param length,
+		 *            the length of the region sent
+		 * @param listener,
+		 *            the listener of the upload progress
+		 */
+		private FileRequestBody(MediaType mediaType, Path file, FileChannel channel, long position, long length,
+				ProgressListener listener) {
+			this.mediaType = mediaType;
+			this.file = file;
+			this.channel = channel;
+			this.position = position;
+			this.length = length;
+			this.listener = listener;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return mediaType;
+		}
+
+		@Override
+		public long contentLength() {
+			return length;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			FileChannel source = channel == null ? FileChannel.open(file, StandardOpenOption.READ) : channel;
+			try {
+				long sent = 0;
+				while (sent < length) {
+					// positional transfers, leaving the position of the channel unchanged
+					long transferred = source.transferTo(position + sent, Math.min(TRANSFER_SIZE, length - sent),
+							sink);
+					if (transferred <= 0) {
+						throw new IOException("The file was truncated while being sent");
+					}
+					sent += transferred;
+					if (listener != null) {
+						listener.onProgress(sent, length);
+					}
+				}
+			} finally {
+				if (channel == null) {
+					source.close();
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * This class represents a request body notifying the bytes written by
+	 * another one
+	 */
+	private static final class ProgressRequestBody extends RequestBody {
+
+		/**
+		 * The request body written
+		 */
+		private final RequestBody delegate;
+
+		/**
+		 * The listener of the upload progress
+		 */
+		private final ProgressListener listener;
+
+		/**
+		 * Construct a new {@link ProgressRequestBody}
+		 *
+		 * @param delegate,
+		 *            the request body written
+		 * @param listener,
+		 *            the listener of the upload progress
+		 */
+		private ProgressRequestBody(RequestBody delegate, ProgressListener listener) {
+			this.delegate = delegate;
+			this.listener = listener;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() throws IOException {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			long total = contentLength();
+			BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+
+				private long transferred;
+
+				@Override
+				public void write(Buffer source, long byteCount) throws IOException {
+					super.write(source, byteCount);
+					transferred += byteCount;
+					listener.onProgress(transferred, total);
+				}
+			});
+			delegate.writeTo(counting);
+			// hand the remaining bytes to the connection, leaving it open
+			counting.emit();
+		}
+
+	}
+
+}
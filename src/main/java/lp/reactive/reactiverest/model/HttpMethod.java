@@ -30,6 +30,17 @@ public enum HttpMethod {
     /**
      * Reference to http {@link DELETE} method type
      */
-    DELETE
+    DELETE;
+
+    /**
+     * Return a boolean indicating if the http method is idempotent, i.e. if
+     * sending the same request more than once has the same effect as sending it
+     * once
+     *
+     * @return a boolean indicating if the http method is idempotent or not
+     */
+    public boolean isIdempotent() {
+        return this != POST;
+    }
 
 }
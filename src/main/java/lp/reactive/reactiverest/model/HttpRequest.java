@@ -1,9 +1,27 @@
 package lp.reactive.reactiverest.model;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.RequestBody;
 
 /**
- * This entity represents the http request used to make api call
+ * This entity represents the http request used to make api call. Two http
+ * requests are equal when they would send the same request to the server and
+ * get the same response back, i.e. same base url, api endpoint, http method,
+ * headers, query string, body parameters, body, call timeout, cache and
+ * compression policies and streaming, regardless of the other timeouts and
+ * policies. The maps given to the builder are copied when the http request is
+ * built, and its key of equality is computed once
  *
  * @author lucapompei
  */
@@ -47,6 +65,79 @@ public class HttpRequest {
 	 */
 	private final Map<String, String> bodyParams;
 
+	/**
+	 * The body used instead of the body parameters or {@code null}
+	 */
+	private final HttpBody body;
+
+	/**
+	 * The listener of the upload progress of the body or {@code null}
+	 */
+	private final ProgressListener uploadListener;
+
+	/**
+	 * The maximum time, in milliseconds, to wait while connecting to the server
+	 * or {@code 0} to use the REST client default
+	 */
+	private final long connectTimeout;
+
+	/**
+	 * The maximum time, in milliseconds, to wait for new data from the server
+	 * or {@code 0} to use the REST client default
+	 */
+	private final long readTimeout;
+
+	/**
+	 * The maximum time, in milliseconds, for the whole api call, including
+	 * every retry and the waits between them, or {@code 0} for no deadline
+	 */
+	private final long callTimeout;
+
+	/**
+	 * The policy used to hedge the api call or {@code null} if the api call is
+	 * not hedged
+	 */
+	private final HedgePolicy hedgePolicy;
+
+	/**
+	 * The policy deciding which failed attempts are retried
+	 */
+	private final RetryPolicy retryPolicy;
+
+	/**
+	 * The boolean indicating if the api call can share a single upstream call
+	 * with the concurrent identical ones
+	 */
+	private final boolean singleFlight;
+
+	/**
+	 * The client-side caching policy or {@code null} if the caching is decided
+	 * by the server only
+	 */
+	private final CachePolicy cachePolicy;
+
+	/**
+	 * The compression policy of the body or {@code null} if the one of the base
+	 * url applies
+	 */
+	private final CompressionPolicy compressionPolicy;
+
+	/**
+	 * The boolean indicating if the response body is streamed instead of
+	 * buffered in memory
+	 */
+	private final boolean streaming;
+
+	/**
+	 * The immutable key of equality of this http request
+	 */
+	private final List<Object> key;
+
+	/**
+	 * The hash code of the key of equality, computed once
+	 */
+	private final int hash;
+
 	/**
 	 * Constructor a new {@link HttpRequest} starting from the given
 	 * {@param builder}
@@ -55,10 +146,25 @@ public class HttpRequest {
 		this.baseUrl = builder.baseUrl;
 		this.apiEndpoint = builder.apiEndpoint;
 		this.httpMethod = builder.httpMethod;
-		this.headers = builder.headers;
-		this.queryParams = builder.queryParams;
+		this.headers = copyOf(builder.headers);
+		this.queryParams = copyOf(builder.queryParams);
 		this.queryString = builder.queryString;
-		this.bodyParams = builder.bodyParams;
+		this.bodyParams = copyOf(builder.bodyParams);
+		this.body = builder.body;
+		this.uploadListener = builder.uploadListener;
+		this.connectTimeout = builder.connectTimeout;
+		this.readTimeout = builder.readTimeout;
+		this.callTimeout = builder.callTimeout;
+		this.hedgePolicy = builder.hedgePolicy;
+		this.retryPolicy = builder.retryPolicy;
+		this.singleFlight = builder.singleFlight;
+		this.cachePolicy = builder.cachePolicy;
+		this.compressionPolicy = builder.compressionPolicy;
+		this.streaming = builder.streaming;
+		this.key = Collections.unmodifiableList(Arrays.asList(baseUrl, apiEndpoint, getMethodOrDefault(),
+				queryString, nullToEmpty(headers), nullToEmpty(queryParams), nullToEmpty(bodyParams), body,
+				callTimeout, cachePolicy, compressionPolicy, streaming));
+		this.hash = key.hashCode();
 	}
 
 	/**
@@ -124,6 +230,176 @@ public class HttpRequest {
 		return bodyParams;
 	}
 
+	/**
+	 * Getter method for retrieve the body
+	 *
+	 * @return the body used instead of the body parameters or {@code null} if
+	 *         the body parameters are used
+	 */
+	public HttpBody getBody() {
+		return body;
+	}
+
+	/**
+	 * Getter method for retrieve the upload listener
+	 *
+	 * @return the listener of the upload progress of the body or {@code null}
+	 *         if not set
+	 */
+	public ProgressListener getUploadListener() {
+		return uploadListener;
+	}
+
+	/**
+	 * Getter method for retrieve the connect timeout
+	 *
+	 * @return the connect timeout in milliseconds or {@code 0} if the REST
+	 *         client default is used
+	 */
+	public long getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Getter method for retrieve the read timeout
+	 *
+	 * @return the read timeout in milliseconds or {@code 0} if the REST client
+	 *         default is used
+	 */
+	public long getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Getter method for retrieve the total call timeout
+	 *
+	 * @return the total call timeout in milliseconds or {@code 0} if no deadline
+	 *         is set
+	 */
+	public long getCallTimeout() {
+		return callTimeout;
+	}
+
+	/**
+	 * Getter method for retrieve the hedge policy
+	 *
+	 * @return the hedge policy or {@code null} if the api call is not hedged
+	 */
+	public HedgePolicy getHedgePolicy() {
+		return hedgePolicy;
+	}
+
+	/**
+	 * Getter method for retrieve the retry policy
+	 *
+	 * @return the retry policy, {@link RetryPolicy#DEFAULT} if not specified
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Getter method for retrieve if the api call can be deduplicated
+	 *
+	 * @return a boolean indicating if the api call can share a single upstream
+	 *         call with the concurrent identical ones
+	 */
+	public boolean isSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * Getter method for retrieve the cache policy
+	 *
+	 * @return the client-side caching policy or {@code null} if the caching is
+	 *         decided by the server only
+	 */
+	public CachePolicy getCachePolicy() {
+		return cachePolicy;
+	}
+
+	/**
+	 * Getter method for retrieve the compression policy
+	 *
+	 * @return the compression policy of the body or {@code null} if the one of
+	 *         the base url applies
+	 */
+	public CompressionPolicy getCompressionPolicy() {
+		return compressionPolicy;
+	}
+
+	/**
+	 * Getter method for retrieve if the response body is streamed
+	 *
+	 * @return a boolean indicating if the response body is streamed instead of
+	 *         buffered in memory
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Check if the given object is an http request sending the same request to
+	 * the server and getting the same response back
+	 *
+	 * @param obj,
+	 *            the object to compare
+	 * @return a boolean indicating if the given object is an equal http request
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HttpRequest)) {
+			return false;
+		}
+		HttpRequest other = (HttpRequest) obj;
+		return hash == other.hash && key.equals(other.key);
+	}
+
+	/**
+	 * Return the hash code of this http request, computed once on the fields
+	 * used by {@link #equals(Object)}. The body is not to be modified once the
+	 * http request is built
+	 *
+	 * @return the hash code of this http request
+	 */
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Retrieve the http method actually used, GET if not specified
+	 *
+	 * @return the http method actually used
+	 */
+	private HttpMethod getMethodOrDefault() {
+		return httpMethod == null ? HttpMethod.GET : httpMethod;
+	}
+
+	/**
+	 * Return an unmodifiable copy of the given map, keeping its iteration order
+	 *
+	 * @param map,
+	 *            the map to copy
+	 * @return an unmodifiable copy of the given map or {@code null} if the map
+	 *         is {@code null}
+	 */
+	private static Map<String, String> copyOf(Map<String, String> map) {
+		return map == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(map));
+	}
+
+	/**
+	 * Return the given map or an empty one if {@code null}
+	 *
+	 * @param map,
+	 *            the map to check
+	 * @return the given map or an empty one
+	 */
+	private static Map<String, String> nullToEmpty(Map<String, String> map) {
+		return map == null ? Collections.emptyMap() : map;
+	}
+
 	/**
 	 * Return a prepared string to represent this object
 	 *
@@ -132,7 +408,15 @@ public class HttpRequest {
 	public String toString() {
 		return "HttpRequest:\n" + "Url: " + getBaseUrl() + getApiEndpoint() + "\n" + "Method: " + getHttpMethod() + "\n"
 				+ "Headers: " + getHeaders() + "\n" + "Query param: " + getQueryParams() + "\nQuery string: "
-				+ getQueryString() + "\n" + "Body params:" + " " + getBodyParams();
+				+ getQueryString() + "\n"
+				+ (getBody() == null ? "Body params:" + " " + getBodyParams() : "Body: " + getBody())
+				+ "\nTimeouts: connect="
+				+ getConnectTimeout() + "ms, read=" + getReadTimeout() + "ms, call=" + getCallTimeout() + "ms"
+				+ (getHedgePolicy() == null ? "" : "\n" + getHedgePolicy()) + "\n" + getRetryPolicy()
+				+ (isSingleFlight() ? "\nSingle flight" : "")
+				+ (getCachePolicy() == null ? "" : "\n" + getCachePolicy())
+				+ (getCompressionPolicy() == null ? "" : "\n" + getCompressionPolicy())
+				+ (isStreaming() ? "\nStreaming" : "");
 	}
 
 	/**
@@ -176,6 +460,61 @@ public class HttpRequest {
 		 */
 		private Map<String, String> bodyParams;
 
+		/**
+		 * The body used instead of the body parameters
+		 */
+		private HttpBody body;
+
+		/**
+		 * The listener of the upload progress of the body
+		 */
+		private ProgressListener uploadListener;
+
+		/**
+		 * The connect timeout in milliseconds
+		 */
+		private long connectTimeout;
+
+		/**
+		 * The read timeout in milliseconds
+		 */
+		private long readTimeout;
+
+		/**
+		 * The total call timeout in milliseconds
+		 */
+		private long callTimeout;
+
+		/**
+		 * The hedge policy
+		 */
+		private HedgePolicy hedgePolicy;
+
+		/**
+		 * The retry policy, {@link RetryPolicy#DEFAULT} by default
+		 */
+		private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+
+		/**
+		 * The single flight, disabled by default
+		 */
+		private boolean singleFlight;
+
+		/**
+		 * The cache policy
+		 */
+		private CachePolicy cachePolicy;
+
+		/**
+		 * The compression policy
+		 */
+		private CompressionPolicy compressionPolicy;
+
+		/**
+		 * The streaming of the response body, disabled by default
+		 */
+		private boolean streaming;
+
 		/**
 		 * Constructor of {@link Builder} based on mandatory parameters
 		 *
@@ -250,6 +589,274 @@ public class HttpRequest {
 			return this;
 		}
 
+		/**
+		 * Setter method for a body of raw bytes, used instead of the body
+		 * parameters and sent by every attempt without being copied
+		 *
+		 * @param body,
+		 *            the bytes of the body, not to be modified once the request
+		 *            is built
+		 * @param mediaType,
+		 *            the media type of the body or {@code null} if unknown
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(byte[] body, String mediaType) {
+			this.body = HttpBody.ofBytes(body, mediaType);
+			return this;
+		}
+
+		/**
+		 * Setter method for a body of the bytes between the position and the
+		 * limit of the given buffer, heap or direct, used instead of the body
+		 * parameters and sent by every attempt without being copied
+		 *
+		 * @param body,
+		 *            the buffer holding the body, not to be modified once the
+		 *            request is built
+		 * @param mediaType,
+		 *            the media type of the body or {@code null} if unknown
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(ByteBuffer body, String mediaType) {
+			this.body = HttpBody.ofBuffer(body, mediaType);
+			return this;
+		}
+
+		/**
+		 * Setter method for an already serialized json body, used instead of the
+		 * body parameters. The payload is encoded once and sent as it is by every
+		 * attempt, whatever the body format of the base url
+		 *
+		 * @param json,
+		 *            the json payload
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder jsonBody(String json) {
+			this.body = HttpBody.ofJson(json);
+			return this;
+		}
+
+		/**
+		 * Setter method for an object body, used instead of the body parameters,
+		 * serialized in the body format of the base url by the cached writer of
+		 * its class, once for all the attempts of an api call
+		 *
+		 * @param body,
+		 *            the object to serialize
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(Object body) {
+			this.body = HttpBody.ofValue(body);
+			return this;
+		}
+
+		/**
+		 * Setter method for a body streamed to the connection, used instead of the
+		 * body parameters. A new stream is opened for each attempt and closed once
+		 * sent, so that the body is never held in memory
+		 *
+		 * @param body,
+		 *            the supplier opening a new stream of the body
+		 * @param mediaType,
+		 *            the media type of the body or {@code null} if unknown
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(Callable<InputStream> body, String mediaType) {
+			this.body = HttpBody.ofStream(body, mediaType);
+			return this;
+		}
+
+		/**
+		 * Setter method for a body sent as it is, used instead of the body
+		 * parameters, e.g. to write the body to the connection as it is produced.
+		 * The body must be writable more than once to be retried or hedged
+		 *
+		 * @param body,
+		 *            the request body
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(RequestBody body) {
+			this.body = HttpBody.ofRequestBody(body);
+			return this;
+		}
+
+		/**
+		 * Setter method for a file body, used instead of the body parameters. The
+		 * file is opened by each attempt and handed to the connection in chunks by
+		 * its channel, without being loaded on the heap
+		 *
+		 * @param file,
+		 *            the path of the file
+		 * @param mediaType,
+		 *            the media type of the body or {@code null} if unknown
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(Path file, String mediaType) {
+			this.body = HttpBody.ofFile(file, mediaType);
+			return this;
+		}
+
+		/**
+		 * Setter method for a body read from a file channel, from its current
+		 * position to its end, used instead of the body parameters. Each attempt
+		 * reads the channel in chunks through positional reads, leaving its
+		 * position unchanged, and the channel is not closed
+		 *
+		 * @param channel,
+		 *            the file channel, open for reading until the api call
+		 *            completes
+		 * @param mediaType,
+		 *            the media type of the body or {@code null} if unknown
+		 * @return a {@link Builder} with a body set
+		 */
+		public Builder body(FileChannel channel, String mediaType) {
+			this.body = HttpBody.ofChannel(channel, mediaType);
+			return this;
+		}
+
+		/**
+		 * Setter method for the listener of the upload progress of the body, set
+		 * through one of the body methods. A file body is notified once for each
+		 * chunk read, any other body once for each chunk written to the
+		 * connection
+		 *
+		 * @param uploadListener,
+		 *            the listener of the upload progress
+		 * @return a {@link Builder} with an upload listener set
+		 */
+		public Builder uploadListener(ProgressListener uploadListener) {
+			this.uploadListener = uploadListener;
+			return this;
+		}
+
+		/**
+		 * Setter method for the connect timeout, applied to each attempt
+		 *
+		 * @param timeout,
+		 *            the maximum time to wait while connecting to the server
+		 * @param unit,
+		 *            the time unit of the given timeout
+		 * @return a {@link Builder} with a connect timeout set
+		 */
+		public Builder connectTimeout(long timeout, TimeUnit unit) {
+			this.connectTimeout = unit.toMillis(timeout);
+			return this;
+		}
+
+		/**
+		 * Setter method for the read timeout, applied to each attempt
+		 *
+		 * @param timeout,
+		 *            the maximum time to wait for new data from the server
+		 * @param unit,
+		 *            the time unit of the given timeout
+		 * @return a {@link Builder} with a read timeout set
+		 */
+		public Builder readTimeout(long timeout, TimeUnit unit) {
+			this.readTimeout = unit.toMillis(timeout);
+			return this;
+		}
+
+		/**
+		 * Setter method for the total call timeout. The budget is shared by every
+		 * attempt and by the waits between them: when it is exceeded the in-flight
+		 * call is cancelled and no further attempt is made
+		 *
+		 * @param timeout,
+		 *            the maximum time for the whole api call
+		 * @param unit,
+		 *            the time unit of the given timeout
+		 * @return a {@link Builder} with a total call timeout set
+		 */
+		public Builder callTimeout(long timeout, TimeUnit unit) {
+			this.callTimeout = unit.toMillis(timeout);
+			return this;
+		}
+
+		/**
+		 * Setter method for the hedge policy, used to send a duplicate request when
+		 * no response arrives within the hedge delay
+		 *
+		 * @param hedgePolicy,
+		 *            the policy used to hedge the api call
+		 * @return a {@link Builder} with a hedge policy set
+		 */
+		public Builder hedgePolicy(HedgePolicy hedgePolicy) {
+			this.hedgePolicy = hedgePolicy;
+			return this;
+		}
+
+		/**
+		 * Setter method for the retry policy, deciding which failed attempts are
+		 * retried when more than one attempt is allowed
+		 *
+		 * @param retryPolicy,
+		 *            the policy deciding which failed attempts are retried
+		 * @return a {@link Builder} with a retry policy set
+		 */
+		public Builder retryPolicy(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy == null ? RetryPolicy.DEFAULT : retryPolicy;
+			return this;
+		}
+
+		/**
+		 * Setter method for the single flight: when enabled, the concurrent
+		 * identical api calls with an idempotent http method share a single
+		 * upstream call and each of them receives its own copy of the response
+		 *
+		 * @param singleFlight,
+		 *            a boolean indicating if the api call can share a single
+		 *            upstream call with the concurrent identical ones
+		 * @return a {@link Builder} with the single flight set
+		 */
+		public Builder singleFlight(boolean singleFlight) {
+			this.singleFlight = singleFlight;
+			return this;
+		}
+
+		/**
+		 * Setter method for the cache policy, applied to a GET request when its
+		 * response is cached in memory
+		 *
+		 * @param cachePolicy,
+		 *            the client-side caching policy
+		 * @return a {@link Builder} with a cache policy set
+		 */
+		public Builder cachePolicy(CachePolicy cachePolicy) {
+			this.cachePolicy = cachePolicy;
+			return this;
+		}
+
+		/**
+		 * Setter method for the compression policy of the body, taking
+		 * precedence over the one of the base url, e.g.
+		 * {@link CompressionPolicy#NONE} to send this body uncompressed
+		 *
+		 * @param compressionPolicy,
+		 *            the compression policy of the body
+		 * @return a {@link Builder} with a compression policy set
+		 */
+		public Builder compressionPolicy(CompressionPolicy compressionPolicy) {
+			this.compressionPolicy = compressionPolicy;
+			return this;
+		}
+
+		/**
+		 * Setter method for the streaming of the response body: when enabled, the
+		 * body is not buffered in memory but read from the connection as it is
+		 * consumed, through the streaming accessors of the {@link HttpResponse},
+		 * which must be read or closed to release the connection. A streaming api
+		 * call is never deduplicated
+		 *
+		 * @param streaming,
+		 *            a boolean indicating if the response body is streamed
+		 * @return a {@link Builder} with the streaming set
+		 */
+		public Builder streaming(boolean streaming) {
+			this.streaming = streaming;
+			return this;
+		}
+
 		/**
 		 * Build a new {@link HttpRequest} based on constructed and configured
 		 * {@link Builder}
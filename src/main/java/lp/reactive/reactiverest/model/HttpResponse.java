@@ -1,23 +1,141 @@
 package lp.reactive.reactiverest.model;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.reactivex.Flowable;
+import lp.reactive.reactiverest.utils.BufferPool;
+import lp.reactive.reactiverest.utils.JsonStreamReader;
 import lp.reactive.reactiverest.utils.JsonUtils;
+import lp.reactive.reactiverest.utils.PooledBuffer;
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
 import retrofit2.Response;
 
 /**
- * This entity represents the response obtained after making an http request
+ * This entity represents the response obtained after making an http request.
+ * Only the status, the headers and the body of the raw response are kept, and
+ * the derived values, like the status line or the map of the headers, are
+ * built on first use. A body buffered in memory can be read any number of
+ * times, as a whole, through {@link #getJsonBody()}, or streamed, through the
+ * streaming accessors, each read getting its own view of the same bytes; a
+ * body streamed from the connection can be consumed only once, either way. A
+ * body in a binary {@link BodyFormat}, recognized by its {@code Content-Type},
+ * is decoded by the mapper of its format and read as a whole as the
+ * equivalent json. Closing the response releases its body, giving the
+ * connection of a streaming api call back to the pool, so that a response can
+ * be used in a try-with-resources block
  *
  * @author lucapompei
  */
-public class HttpResponse {
+public class HttpResponse implements AutoCloseable {
+
+	/**
+	 * The default size, in bytes, of the chunks of a streamed body
+	 */
+	private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	/**
+	 * The maximum number of bytes written at once to a file, between two
+	 * progress notifications
+	 */
+	private static final int TRANSFER_SIZE = 64 * 1024;
+
+	/**
+	 * The byte order marks recognized when reading the body as a string, and
+	 * their charsets, in the order they are checked
+	 */
+	private static final byte[][] BOMS = { { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, { (byte) 0xFE, (byte) 0xFF },
+			{ (byte) 0xFF, (byte) 0xFE }, { 0, 0, (byte) 0xFE, (byte) 0xFF }, { (byte) 0xFF, (byte) 0xFE, 0, 0 } };
+	private static final Charset[] BOM_CHARSETS = { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE,
+			StandardCharsets.UTF_16LE, Charset.forName("UTF-32BE"), Charset.forName("UTF-32LE") };
+
+	/**
+	 * The http status code
+	 */
+	private final int status;
+
+	/**
+	 * The http status message
+	 */
+	private final String message;
+
+	/**
+	 * The protocol of the response
+	 */
+	private final Protocol protocol;
 
 	/**
-	 * The raw response obtained from http request
+	 * The url used for the http request
 	 */
-	private Response<ResponseBody> rawResponse;
+	private final HttpUrl url;
+
+	/**
+	 * The headers of the response
+	 */
+	private final Headers headers;
+
+	/**
+	 * The boolean indicating if the response has been served from the cache
+	 */
+	private final boolean fromCache;
+
+	/**
+	 * The boolean indicating if the body is read from the connection as it is
+	 * consumed
+	 */
+	private final boolean streaming;
+
+	/**
+	 * The body, if no errors occur, otherwise the error body, or {@code null}
+	 * once the response is closed
+	 */
+	private volatile ResponseBody body;
+
+	/**
+	 * The bytes of a body buffered in memory, read through a new view by each
+	 * accessor, or {@code null} if the body is streamed from the connection
+	 */
+	private volatile Buffer content;
+
+	/**
+	 * The status line, once built
+	 */
+	private String statusCode;
+
+	/**
+	 * The headers by lowercase name, once built
+	 */
+	private Map<String, List<String>> headerMap;
+
+	/**
+	 * The format of the body, once parsed from its {@code Content-Type}
+	 */
+	private BodyFormat bodyFormat;
+
+	/**
+	 * The json body, once read
+	 */
+	private String jsonBody;
 
 	/**
 	 * Construct a {@link HttpResponse} using the raw response obtained from http
@@ -27,16 +145,61 @@ public class HttpResponse {
 	 *            the raw response obtained from http request
 	 */
 	public HttpResponse(Response<ResponseBody> rawResponse) {
-		this.rawResponse = rawResponse;
+		this(rawResponse, false);
+	}
+
+	/**
+	 * Construct a {@link HttpResponse} using the raw response obtained from http
+	 * request
+	 *
+	 * @param rawResponse,
+	 *            the raw response obtained from http request
+	 * @param streaming,
+	 *            a boolean indicating if the body is read from the connection
+	 *            as it is consumed
+	 */
+	public HttpResponse(Response<ResponseBody> rawResponse, boolean streaming) {
+		okhttp3.Response raw = rawResponse.raw();
+		this.status = raw.code();
+		this.message = raw.message();
+		this.protocol = raw.protocol();
+		this.url = raw.request().url();
+		this.headers = raw.headers();
+		this.fromCache = raw.cacheResponse() != null;
+		this.streaming = streaming;
+		this.body = rawResponse.isSuccessful() ? rawResponse.body() : rawResponse.errorBody();
+		if (body != null) {
+			// the source of a body buffered by retrofit, or by the memory budgets, is the buffer itself
+			BufferedSource source = body.source();
+			if (source instanceof Buffer) {
+				this.content = (Buffer) source;
+			}
+		}
 	}
 
 	/**
-	 * Retrieve the raw response obtained from http request
+	 * Retrieve the raw response obtained from http request, rebuilt from the
+	 * status, the headers and the body kept by this response: the request, the
+	 * network and the prior responses are not kept, and the cache response is
+	 * only a marker. A body buffered in memory is read through a new view, a
+	 * streamed one is shared with this response
 	 *
 	 * @return the raw response obtained from http request
 	 */
 	public Response<ResponseBody> getRawResponse() {
-		return this.rawResponse;
+		Request request = new Request.Builder().url(url).build();
+		okhttp3.Response.Builder raw = new okhttp3.Response.Builder().request(request).protocol(protocol)
+				.code(status).message(message).headers(headers);
+		if (fromCache) {
+			raw.cacheResponse(new okhttp3.Response.Builder().request(request).protocol(protocol).code(status)
+					.message(message).build());
+		}
+		ResponseBody responseBody = getResponseBody();
+		if (isSuccessful()) {
+			return Response.success(responseBody, raw.build());
+		}
+		return Response.error(responseBody == null ? ResponseBody.create(null, new byte[0]) : responseBody,
+				raw.build());
 	}
 
 	/**
@@ -45,7 +208,7 @@ public class HttpResponse {
 	 * @return the absolute url used for the http request
 	 */
 	public String getCalledUrl() {
-		return rawResponse.raw().request().url().toString();
+		return url.toString();
 	}
 
 	/**
@@ -53,32 +216,503 @@ public class HttpResponse {
 	 *
 	 * @return the http status code of the raw response
 	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Retrieve the http status message of the raw response
+	 *
+	 * @return the http status message of the raw response
+	 */
+	public String getStatusMessage() {
+		return message;
+	}
+
+	/**
+	 * Retrieve the http status code and message of the raw response, built on
+	 * the first call and kept for the following ones
+	 *
+	 * @return the http status code and message of the raw response
+	 */
 	public String getStatusCode() {
-		return rawResponse.raw().code() + " " + rawResponse.raw().message();
+		if (statusCode == null) {
+			statusCode = status + " " + message;
+		}
+		return statusCode;
 	}
 
 	/**
 	 * Retrieve the json body of the raw response if no errors occur, otherwise
-	 * return the json error body
+	 * return the json error body. The body is read on the first call and kept
+	 * for the following ones
 	 *
 	 * @return the json body of the raw response if no errors occur, otherwise
 	 *         return the json error body
 	 */
 	public String getJsonBody() {
-		if (rawResponse.isSuccessful()) {
-			ResponseBody responseBody = rawResponse.body();
-			if (responseBody != null) {
-				try {
-					return responseBody.string();
+		if (jsonBody == null) {
+			jsonBody = readJsonBody();
+		}
+		return jsonBody;
+	}
+
+	/**
+	 * Retrieve the body of the raw response if no errors occur, otherwise the
+	 * error body, converted from json to the given class. The bytes of the body
+	 * are parsed directly, without decoding them into a string first, and a
+	 * streamed body is consumed unless already read by {@link #getJsonBody()}
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param cls,
+	 *            the class of the object represented by the body
+	 * @return the object represented by the body or {@code null} if there is
+	 *         no body or some exception occurs during conversion
+	 */
+	public <T> T getBody(Class<T> cls) {
+		if (jsonBody != null && isSuccessful()) {
+			return JsonUtils.fromJson(jsonBody, cls);
+		}
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return null;
+		}
+		try (InputStream stream = responseBody.byteStream()) {
+			return JsonUtils.fromJson(stream, getBodyFormat(), cls);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve the body of the raw response if no errors occur, otherwise the
+	 * error body, converted from json to the given generic type. The bytes of
+	 * the body are parsed directly, without decoding them into a string first,
+	 * and a streamed body is consumed unless already read by
+	 * {@link #getJsonBody()}
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param typeReference,
+	 *            the reference to the generic type of the object represented by
+	 *            the body
+	 * @return the object represented by the body or {@code null} if there is
+	 *         no body or some exception occurs during conversion
+	 */
+	public <T> T getBody(TypeReference<T> typeReference) {
+		if (jsonBody != null && isSuccessful()) {
+			return JsonUtils.fromJson(jsonBody, typeReference);
+		}
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return null;
+		}
+		try (InputStream stream = responseBody.byteStream()) {
+			return JsonUtils.fromJson(stream, getBodyFormat(), typeReference);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve some fields of the body of the raw response if no errors occur,
+	 * otherwise of the error body. The body is scanned with the streaming
+	 * parser: the subtrees with no requested field are skipped, only the
+	 * requested values are built, and the reading stops once all of them are
+	 * found. A streamed body is consumed unless already read by
+	 * {@link #getJsonBody()}
+	 *
+	 * @param paths,
+	 *            the paths of the fields, as json pointers, e.g.
+	 *            {@code /items/0/id}, or as dotted paths, e.g.
+	 *            {@code items[0].id}
+	 * @return the values of the fields found, by path, in the order of the
+	 *         paths, or {@code null} if there is no body or some exception
+	 *         occurs during conversion
+	 */
+	public Map<String, JsonNode> getBodyFields(String... paths) {
+		if (jsonBody != null && isSuccessful()) {
+			return JsonUtils.project(jsonBody, paths);
+		}
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return null;
+		}
+		return JsonUtils.project(responseBody.byteStream(), getBodyFormat(), paths);
+	}
+
+	/**
+	 * Retrieve the elements of the body of the raw response if no errors occur,
+	 * otherwise of the error body, converted from json to the given class
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param cls,
+	 *            the class of the objects represented by the elements
+	 * @return the {@link Flowable} of the objects represented by the elements
+	 * @see #getBodyElements(TypeReference)
+	 */
+	public <T> Flowable<T> getBodyElements(Class<T> cls) {
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return Flowable.empty();
+		}
+		BodyFormat format = getBodyFormat();
+		return getBodyElements(() -> JsonUtils.readValues(responseBody.byteStream(), format, cls));
+	}
+
+	/**
+	 * Retrieve the elements of the body of the raw response if no errors occur,
+	 * otherwise of the error body, converted from json to the given generic
+	 * type. The elements of a top-level json array, or the values of a newline
+	 * delimited json stream, are parsed incrementally as they are requested, so
+	 * that the first element is emitted as soon as received and, with a
+	 * streaming api call, the memory stays bounded whatever the size of the
+	 * body. The {@code null} elements are skipped, the body is closed when the
+	 * stream completes, fails or is cancelled, and the stream can be subscribed
+	 * only once
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param typeReference,
+	 *            the reference to the generic type of the objects represented
+	 *            by the elements
+	 * @return the {@link Flowable} of the objects represented by the elements
+	 */
+	public <T> Flowable<T> getBodyElements(TypeReference<T> typeReference) {
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return Flowable.empty();
+		}
+		BodyFormat format = getBodyFormat();
+		return getBodyElements(() -> JsonUtils.readValues(responseBody.byteStream(), format, typeReference));
+	}
+
+	/**
+	 * Emit the elements read by the reader opened by the given supplier, one for
+	 * each request of the subscriber
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param readerSupplier,
+	 *            the supplier opening the reader of the elements
+	 * @return the {@link Flowable} of the elements
+	 */
+	private static <T> Flowable<T> getBodyElements(Callable<JsonStreamReader<T>> readerSupplier) {
+		return Flowable.generate(readerSupplier, (reader, emitter) -> {
+			T element = reader.next();
+			if (element == null) {
+				emitter.onComplete();
+			} else {
+				emitter.onNext(element);
+			}
+		}, JsonStreamReader::close);
+	}
+
+	/**
+	 * Retrieve the source of the body if no errors occur, otherwise of the error
+	 * body, reading the body as it is consumed. The source must be exhausted or
+	 * closed, or the response closed, to release the connection of a streaming
+	 * api call
+	 *
+	 * @return the {@link BufferedSource} of the body or {@code null} if there is
+	 *         no body
+	 */
+	public BufferedSource getBodySource() {
+		ResponseBody responseBody = getResponseBody();
+		return responseBody == null ? null : responseBody.source();
+	}
+
+	/**
+	 * Retrieve the input stream of the body if no errors occur, otherwise of the
+	 * error body, reading the body as it is consumed. The stream must be
+	 * exhausted or closed, or the response closed, to release the connection of
+	 * a streaming api call
+	 *
+	 * @return the {@link InputStream} of the body or {@code null} if there is no
+	 *         body
+	 */
+	public InputStream getBodyStream() {
+		ResponseBody responseBody = getResponseBody();
+		return responseBody == null ? null : responseBody.byteStream();
+	}
+
+	/**
+	 * Retrieve the body, if no errors occur, otherwise the error body, as a
+	 * stream of chunks of up to {@value DEFAULT_CHUNK_SIZE} bytes
+	 *
+	 * @return the {@link Flowable} of the chunks of the body
+	 */
+	public Flowable<ByteBuffer> getBodyChunks() {
+		return getBodyChunks(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Retrieve the body, if no errors occur, otherwise the error body, as a
+	 * stream of chunks. The body is read as the chunks are requested, so that a
+	 * body of any size is processed in constant memory, and it is closed when
+	 * the stream completes, fails or is cancelled. A chunk carries the bytes
+	 * already received, without waiting for the chunk to be full. The stream can
+	 * be subscribed only once
+	 *
+	 * @param chunkSize,
+	 *            the maximum size in bytes of a chunk
+	 * @return the {@link Flowable} of the chunks of the body
+	 */
+	public Flowable<ByteBuffer> getBodyChunks(int chunkSize) {
+		if (chunkSize <= 0) {
+			return Flowable.error(new IllegalArgumentException("Chunk size must be positive"));
+		}
+		ResponseBody responseBody = getResponseBody();
+		if (responseBody == null) {
+			return Flowable.empty();
+		}
+		return Flowable.generate(responseBody::source, (source, emitter) -> {
+			ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+			if (source.read(chunk) == -1) {
+				emitter.onComplete();
+				return;
+			}
+			// fill the chunk with the bytes already buffered only
+			while (chunk.hasRemaining() && source.buffer().size() > 0) {
+				source.read(chunk);
+			}
+			chunk.flip();
+			emitter.onNext(chunk);
+		}, BufferedSource::close);
+	}
+
+	/**
+	 * Write the body, if no errors occur, otherwise the error body, to the given
+	 * file
+	 *
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @return the number of bytes written
+	 * @throws IOException,
+	 *             if the body cannot be read or the file cannot be written
+	 * @see #writeTo(Path, ProgressListener)
+	 */
+	public long writeTo(Path file) throws IOException {
+		return writeTo(file, null);
+	}
+
+	/**
+	 * Write the body, if no errors occur, otherwise the error body, to the given
+	 * file. The body is copied to the file channel through a pooled direct
+	 * buffer, in chunks of up to {@value TRANSFER_SIZE} bytes, so that, with a
+	 * streaming api call, a body of any size is written in constant memory. A
+	 * streamed body is consumed and closed
+	 *
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @param listener,
+	 *            the listener notified of the bytes written for each chunk or
+	 *            {@code null}
+	 * @return the number of bytes written
+	 * @throws IOException,
+	 *             if the body cannot be read or the file cannot be written
+	 */
+	public long writeTo(Path file, ProgressListener listener) throws IOException {
+		ResponseBody responseBody = getResponseBody();
+		long written = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (responseBody == null) {
+				return 0;
+			}
+			long total = responseBody.contentLength();
+			try (BufferedSource source = responseBody.source();
+					PooledBuffer pooledBuffer = BufferPool.acquireDirect(TRANSFER_SIZE)) {
+				ByteBuffer buffer = pooledBuffer.buffer();
+				boolean exhausted = false;
+				while (!exhausted) {
+					buffer.clear();
+					while (buffer.hasRemaining() && !exhausted) {
+						exhausted = source.read(buffer) == -1;
+					}
+					buffer.flip();
+					if (!buffer.hasRemaining()) {
+						break;
+					}
+					while (buffer.hasRemaining()) {
+						written += channel.write(buffer);
+					}
+					if (listener != null) {
+						listener.onProgress(written, total);
+					}
+				}
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Read the json body of the raw response if no errors occur, otherwise the
+	 * json error body
+	 *
+	 * @return the json body of the raw response if no errors occur, otherwise
+	 *         return the json error body
+	 */
+	private String readJsonBody() {
+		ResponseBody responseBody = getResponseBody();
+		if (isSuccessful() && responseBody != null) {
+			BodyFormat format = getBodyFormat();
+			if (format != BodyFormat.JSON) {
+				// a binary body is transcoded to the equivalent json
+				try (InputStream stream = responseBody.byteStream()) {
+					return JsonUtils.toJson(stream, format);
 				} catch (IOException e) {
 					return null;
 				}
-			} else {
-				return JsonUtils.toJson(rawResponse.errorBody());
+			}
+			try {
+				return readString(responseBody);
+			} catch (IOException e) {
+				return null;
 			}
 		} else {
-			return JsonUtils.toJson(rawResponse.errorBody());
+			return JsonUtils.toJson(isSuccessful() ? null : responseBody);
+		}
+	}
+
+	/**
+	 * Read the given body as a string, decoded with the charset of its
+	 * {@code Content-Type} unless it starts with a byte order mark. The bytes
+	 * are read into a pooled heap buffer, grown as needed, so that only the
+	 * string is allocated. The body is consumed and closed
+	 *
+	 * @param responseBody,
+	 *            the body to read
+	 * @return the body as a string
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	private static String readString(ResponseBody responseBody) throws IOException {
+		long length = responseBody.contentLength();
+		MediaType contentType = responseBody.contentType();
+		try (BufferedSource source = responseBody.source()) {
+			PooledBuffer pooledBuffer = BufferPool
+					.acquire(length >= 0 && length < Integer.MAX_VALUE ? (int) length : BufferPool.MIN_POOLED_SIZE);
+			try {
+				ByteBuffer buffer = pooledBuffer.buffer();
+				while (true) {
+					if (!buffer.hasRemaining()) {
+						if (source.exhausted()) {
+							break;
+						}
+						// a body of unknown length is moved to a buffer twice as large
+						PooledBuffer largerBuffer = BufferPool
+								.acquire((int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * buffer.limit(), 1L)));
+						buffer.flip();
+						largerBuffer.buffer().put(buffer);
+						pooledBuffer.close();
+						pooledBuffer = largerBuffer;
+						buffer = largerBuffer.buffer();
+					}
+					if (source.read(buffer) == -1) {
+						break;
+					}
+				}
+				buffer.flip();
+				return decode(buffer.array(), buffer.arrayOffset(), buffer.remaining(),
+						contentType == null ? StandardCharsets.UTF_8 : contentType.charset(StandardCharsets.UTF_8));
+			} finally {
+				pooledBuffer.close();
+			}
+		}
+	}
+
+	/**
+	 * Decode the given bytes with the charset of their byte order mark, if any,
+	 * otherwise with the given one
+	 *
+	 * @param bytes,
+	 *            the array of the bytes
+	 * @param offset,
+	 *            the offset of the first byte
+	 * @param length,
+	 *            the number of bytes
+	 * @param charset,
+	 *            the charset used without a byte order mark
+	 * @return the decoded string
+	 */
+	private static String decode(byte[] bytes, int offset, int length, Charset charset) {
+		for (int i = 0; i < BOMS.length; i++) {
+			byte[] bom = BOMS[i];
+			if (length >= bom.length && startsWith(bytes, offset, bom)) {
+				return new String(bytes, offset + bom.length, length - bom.length, BOM_CHARSETS[i]);
+			}
 		}
+		return new String(bytes, offset, length, charset);
+	}
+
+	/**
+	 * Check if the given bytes start with the given prefix
+	 *
+	 * @param bytes,
+	 *            the array of the bytes
+	 * @param offset,
+	 *            the offset of the first byte
+	 * @param prefix,
+	 *            the prefix
+	 * @return a boolean indicating if the bytes start with the prefix
+	 */
+	private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Retrieve the format of the body, from the {@code Content-Type} of the
+	 * response, parsed on the first call and kept for the following ones
+	 *
+	 * @return the {@link BodyFormat} of the body, json if not a binary format
+	 */
+	public BodyFormat getBodyFormat() {
+		if (bodyFormat == null) {
+			bodyFormat = BodyFormat.fromMediaType(headers.get("Content-Type"));
+		}
+		return bodyFormat;
+	}
+
+	/**
+	 * Retrieve the body of the raw response if no errors occur, otherwise the
+	 * error body. A body buffered in memory is returned as a new view of its
+	 * bytes, so that it can be read again
+	 *
+	 * @return the body or the error body or {@code null} if there is no body or
+	 *         the response is closed
+	 */
+	private ResponseBody getResponseBody() {
+		ResponseBody responseBody = body;
+		Buffer buffered = content;
+		if (responseBody == null || buffered == null) {
+			return responseBody;
+		}
+		// the clone shares the segments of the buffer, without copying the bytes
+		return ResponseBody.create(responseBody.contentType(), buffered.size(), buffered.clone());
+	}
+
+	/**
+	 * Retrieve the length of the body, if no errors occur, otherwise of the
+	 * error body
+	 *
+	 * @return the length in bytes of the body or {@code -1} if unknown, there
+	 *         is no body or the response is closed
+	 */
+	public long getContentLength() {
+		ResponseBody responseBody = body;
+		Buffer buffered = content;
+		if (responseBody == null) {
+			return -1;
+		}
+		return buffered == null ? responseBody.contentLength() : buffered.size();
 	}
 
 	/**
@@ -87,7 +721,43 @@ public class HttpResponse {
 	 * @return the headers from the http response
 	 */
 	public Headers getHeaders() {
-		return rawResponse.headers();
+		return headers;
+	}
+
+	/**
+	 * Return the last value of the given header from the http response
+	 *
+	 * @param name,
+	 *            the case insensitive name of the header
+	 * @return the value of the header or {@code null} if not present
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * Return the headers from the http response by lowercase name, built on the
+	 * first call and kept for the following ones
+	 *
+	 * @return the unmodifiable map of the values of the headers by lowercase
+	 *         name
+	 */
+	public Map<String, List<String>> getHeaderMap() {
+		if (headerMap == null) {
+			headerMap = Collections.unmodifiableMap(headers.toMultimap());
+		}
+		return headerMap;
+	}
+
+	/**
+	 * Return a boolean indicating if the http response has been served from the
+	 * response cache, with no network traffic or after a revalidation answered
+	 * with {@code 304 Not Modified}
+	 *
+	 * @return a boolean indicating if the http response comes from the cache
+	 */
+	public boolean isFromCache() {
+		return fromCache;
 	}
 
 	/**
@@ -96,16 +766,60 @@ public class HttpResponse {
 	 * @return a boolean indicating if the http response has been successful or not
 	 */
 	public boolean isSuccessful() {
-		return rawResponse.isSuccessful();
+		return status >= 200 && status < 300;
 	}
 
 	/**
-	 * Return a prepared string to represent the obtained response
+	 * Return a boolean indicating if the body is read from the connection as it
+	 * is consumed, as requested by the api call
+	 *
+	 * @return a boolean indicating if the body is streamed
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Return a boolean indicating if the http response is closed
+	 *
+	 * @return a boolean indicating if the body of the http response has been
+	 *         released
+	 */
+	public boolean isClosed() {
+		return body == null;
+	}
+
+	/**
+	 * Release the body of the http response, giving the connection of a
+	 * streaming api call back to the pool and the bytes of a buffered body back
+	 * to the memory budgets. The json body already read is kept, the other
+	 * accessors then find no body. Closing the response again has no effect
+	 */
+	@Override
+	public void close() {
+		ResponseBody responseBody;
+		synchronized (this) {
+			responseBody = body;
+			body = null;
+			content = null;
+		}
+		if (responseBody != null) {
+			responseBody.close();
+		}
+	}
+
+	/**
+	 * Return a prepared string to represent the obtained response, without
+	 * consuming a streamed body or reading a closed one
 	 *
 	 * @return a prepared string to represent the obtained response
 	 */
 	public String toString() {
-		return "HttpResponse:\nUrl: " + getCalledUrl() + "\n" + getStatusCode() + "\n" + getJsonBody();
+		String description = jsonBody;
+		if (description == null) {
+			description = isClosed() ? "[closed body]" : content == null ? "[streamed body]" : getJsonBody();
+		}
+		return "HttpResponse:\nUrl: " + getCalledUrl() + "\n" + getStatusCode() + "\n" + description;
 	}
 
 }
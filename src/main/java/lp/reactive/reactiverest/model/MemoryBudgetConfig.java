@@ -0,0 +1,185 @@
+package lp.reactive.reactiverest.model;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the configuration of a budget bounding the bytes of
+ * the response bodies buffered in memory, for all the hosts or for a single
+ * one, and the behaviour when a body does not fit in the bytes left
+ *
+ * @author lucapompei
+ */
+public class MemoryBudgetConfig {
+
+	/**
+	 * The maximum number of bytes buffered at once
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The behaviour when a body does not fit in the bytes left
+	 */
+	private final MemoryBudgetMode mode;
+
+	/**
+	 * The maximum time, in milliseconds, an api call waits for the bytes of its
+	 * body before failing
+	 */
+	private final long maxWait;
+
+	/**
+	 * The directory of the temporary files of the spilled bodies
+	 */
+	private final Path spillDirectory;
+
+	/**
+	 * Constructor a new {@link MemoryBudgetConfig} starting from the given
+	 * {@param builder}
+	 */
+	private MemoryBudgetConfig(Builder builder) {
+		this.maxBytes = builder.maxBytes;
+		this.mode = builder.mode;
+		this.maxWait = builder.mode == MemoryBudgetMode.WAIT ? builder.maxWait : 0;
+		this.spillDirectory = builder.spillDirectory;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum bytes
+	 *
+	 * @return the maximum number of bytes buffered at once
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Getter method for retrieve the mode
+	 *
+	 * @return the behaviour when a body does not fit in the bytes left
+	 */
+	public MemoryBudgetMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum wait
+	 *
+	 * @return the maximum time in milliseconds an api call waits for the bytes
+	 *         of its body
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Getter method for retrieve the spill directory
+	 *
+	 * @return the directory of the temporary files of the spilled bodies
+	 */
+	public Path getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Return a prepared string to represent this memory budget configuration
+	 *
+	 * @return a prepared string to represent this memory budget configuration
+	 */
+	public String toString() {
+		return "MemoryBudgetConfig: " + maxBytes + " bytes, mode " + mode + ", max wait " + maxWait
+				+ " ms, spill directory " + spillDirectory;
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link MemoryBudgetConfig}
+	 */
+	public static class Builder {
+
+		/**
+		 * The maximum bytes
+		 */
+		private final long maxBytes;
+
+		/**
+		 * The mode, {@link MemoryBudgetMode#WAIT} by default
+		 */
+		private MemoryBudgetMode mode = MemoryBudgetMode.WAIT;
+
+		/**
+		 * The maximum wait, 5 seconds by default
+		 */
+		private long maxWait = TimeUnit.SECONDS.toMillis(5);
+
+		/**
+		 * The spill directory, the temporary directory of the system by default
+		 */
+		private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+		/**
+		 * Constructor a new {@link Builder} with the mandatory maximum bytes
+		 *
+		 * @param maxBytes,
+		 *            the maximum number of bytes buffered at once
+		 */
+		public Builder(long maxBytes) {
+			this.maxBytes = Math.max(1, maxBytes);
+		}
+
+		/**
+		 * Setter method for the mode
+		 *
+		 * @param mode,
+		 *            the behaviour when a body does not fit in the bytes left
+		 * @return a {@link Builder} with the mode set
+		 */
+		public Builder mode(MemoryBudgetMode mode) {
+			this.mode = mode == null ? MemoryBudgetMode.WAIT : mode;
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum wait, used in {@link MemoryBudgetMode#WAIT}
+		 * mode only
+		 *
+		 * @param maxWait,
+		 *            the maximum time an api call waits for the bytes of its body
+		 *            before failing
+		 * @param unit,
+		 *            the time unit of the wait
+		 * @return a {@link Builder} with the maximum wait set
+		 */
+		public Builder maxWait(long maxWait, TimeUnit unit) {
+			this.maxWait = Math.max(0, unit.toMillis(maxWait));
+			return this;
+		}
+
+		/**
+		 * Setter method for the spill directory, used in
+		 * {@link MemoryBudgetMode#SPILL} mode only
+		 *
+		 * @param spillDirectory,
+		 *            the directory of the temporary files of the spilled bodies
+		 * @return a {@link Builder} with the spill directory set
+		 */
+		public Builder spillDirectory(Path spillDirectory) {
+			if (spillDirectory != null) {
+				this.spillDirectory = spillDirectory;
+			}
+			return this;
+		}
+
+		/**
+		 * Build a new {@link MemoryBudgetConfig} based on constructed and
+		 * configured {@link Builder}
+		 *
+		 * @return a {@link MemoryBudgetConfig}
+		 */
+		public MemoryBudgetConfig build() {
+			return new MemoryBudgetConfig(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This enum represents the set of behaviours of a memory budget when a
+ * response body does not fit in the bytes left
+ *
+ * @author lucapompei
+ */
+public enum MemoryBudgetMode {
+
+    /**
+     * A synchronous api call waits for the release of the bytes of other
+     * bodies, the body of an asynchronous one is spilled as in {@link #SPILL}
+     */
+    WAIT,
+
+    /**
+     * The body is written to a temporary file instead of being kept in memory
+     */
+    SPILL,
+
+    /**
+     * The api call fails immediately
+     */
+    FAIL_FAST
+
+}
@@ -0,0 +1,24 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This interface is to use to follow the progress of a body sent to or
+ * received from the server. The listener is notified once for each chunk
+ * transferred, not for each byte, on the thread moving the body, hence it
+ * should return quickly
+ *
+ * @author lucapompei
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+	/**
+	 * Notify the progress of a transfer
+	 *
+	 * @param transferred,
+	 *            the number of bytes transferred so far
+	 * @param total,
+	 *            the total number of bytes to transfer or {@code -1} if unknown
+	 */
+	void onProgress(long transferred, long total);
+
+}
@@ -0,0 +1,204 @@
+package lp.reactive.reactiverest.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This entity represents the configuration of the token bucket limiting the
+ * rate of the api calls made to a base url or to one of its api endpoints
+ *
+ * @author lucapompei
+ */
+public class RateLimitConfig {
+
+	/**
+	 * The number of permits granted in each period
+	 */
+	private final int permits;
+
+	/**
+	 * The period, in nanoseconds, in which the permits are granted
+	 */
+	private final long periodNanos;
+
+	/**
+	 * The number of permits that can be used in a burst after an idle period
+	 */
+	private final int burst;
+
+	/**
+	 * The behaviour when no permit is immediately available
+	 */
+	private final RateLimitMode mode;
+
+	/**
+	 * The maximum time, in milliseconds, an api call waits for a permit before
+	 * failing
+	 */
+	private final long maxWait;
+
+	/**
+	 * Constructor a new {@link RateLimitConfig} starting from the given
+	 * {@param builder}
+	 */
+	private RateLimitConfig(Builder builder) {
+		this.permits = builder.permits;
+		this.periodNanos = builder.periodNanos;
+		this.burst = builder.burst > 0 ? builder.burst : builder.permits;
+		this.mode = builder.mode;
+		this.maxWait = builder.mode == RateLimitMode.FAIL_FAST ? 0 : builder.maxWait;
+	}
+
+	/**
+	 * Getter method for retrieve the permits
+	 *
+	 * @return the number of permits granted in each period
+	 */
+	public int getPermits() {
+		return permits;
+	}
+
+	/**
+	 * Getter method for retrieve the period
+	 *
+	 * @return the period in nanoseconds in which the permits are granted
+	 */
+	public long getPeriodNanos() {
+		return periodNanos;
+	}
+
+	/**
+	 * Getter method for retrieve the burst
+	 *
+	 * @return the number of permits that can be used in a burst
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Getter method for retrieve the mode
+	 *
+	 * @return the behaviour when no permit is immediately available
+	 */
+	public RateLimitMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum wait
+	 *
+	 * @return the maximum time in milliseconds an api call waits for a permit
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Return a prepared string to represent this rate limit configuration
+	 *
+	 * @return a prepared string to represent this rate limit configuration
+	 */
+	public String toString() {
+		return "RateLimitConfig: " + permits + " permits every " + TimeUnit.NANOSECONDS.toMillis(periodNanos)
+				+ " ms, burst " + burst + ", mode " + mode + ", max wait " + maxWait + " ms";
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link RateLimitConfig}
+	 */
+	public static class Builder {
+
+		/**
+		 * The permits
+		 */
+		private final int permits;
+
+		/**
+		 * The period
+		 */
+		private final long periodNanos;
+
+		/**
+		 * The burst, equal to the permits by default
+		 */
+		private int burst;
+
+		/**
+		 * The mode, {@link RateLimitMode#WAIT} by default
+		 */
+		private RateLimitMode mode = RateLimitMode.WAIT;
+
+		/**
+		 * The maximum wait, 5 seconds by default
+		 */
+		private long maxWait = TimeUnit.SECONDS.toMillis(5);
+
+		/**
+		 * Constructor a new {@link Builder} with the mandatory rate
+		 *
+		 * @param permits,
+		 *            the number of permits granted in each period
+		 * @param period,
+		 *            the period in which the permits are granted
+		 * @param unit,
+		 *            the time unit of the period
+		 */
+		public Builder(int permits, long period, TimeUnit unit) {
+			this.permits = Math.max(1, permits);
+			this.periodNanos = Math.max(1, unit.toNanos(period));
+		}
+
+		/**
+		 * Setter method for the burst
+		 *
+		 * @param burst,
+		 *            the number of permits that can be used in a burst after an
+		 *            idle period
+		 * @return a {@link Builder} with the burst set
+		 */
+		public Builder burst(int burst) {
+			this.burst = Math.max(1, burst);
+			return this;
+		}
+
+		/**
+		 * Setter method for the mode
+		 *
+		 * @param mode,
+		 *            the behaviour when no permit is immediately available
+		 * @return a {@link Builder} with the mode set
+		 */
+		public Builder mode(RateLimitMode mode) {
+			this.mode = mode == null ? RateLimitMode.WAIT : mode;
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum wait, ignored in
+		 * {@link RateLimitMode#FAIL_FAST} mode
+		 *
+		 * @param maxWait,
+		 *            the maximum time an api call waits for a permit before
+		 *            failing
+		 * @param unit,
+		 *            the time unit of the wait
+		 * @return a {@link Builder} with the maximum wait set
+		 */
+		public Builder maxWait(long maxWait, TimeUnit unit) {
+			this.maxWait = Math.max(0, unit.toMillis(maxWait));
+			return this;
+		}
+
+		/**
+		 * Build a new {@link RateLimitConfig} based on constructed and configured
+		 * {@link Builder}
+		 *
+		 * @return a {@link RateLimitConfig}
+		 */
+		public RateLimitConfig build() {
+			return new RateLimitConfig(this);
+		}
+
+	}
+
+}
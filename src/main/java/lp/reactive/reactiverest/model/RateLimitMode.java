@@ -0,0 +1,23 @@
+package lp.reactive.reactiverest.model;
+
+/**
+ * This enum represents the set of behaviours of a rate limiter when no permit
+ * is immediately available
+ *
+ * @author lucapompei
+ */
+public enum RateLimitMode {
+
+    /**
+     * The api call waits for the next permit: a synchronous api call blocks its
+     * calling thread, while an asynchronous, reactive or event based api call is
+     * delayed on a timer without blocking any thread
+     */
+    WAIT,
+
+    /**
+     * The api call fails immediately
+     */
+    FAIL_FAST
+
+}
@@ -0,0 +1,365 @@
+package lp.reactive.reactiverest.model;
+
+import java.net.ConnectException;
+import java.net.UnknownServiceException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+/**
+ * This entity represents the policy deciding which failed attempts of an api
+ * call are retried and how long to wait before retrying. Only transient
+ * failures are retried and, unless explicitly allowed, requests with a
+ * non-idempotent http method are retried only when they never reached the
+ * server
+ *
+ * @author lucapompei
+ */
+public class RetryPolicy {
+
+	/**
+	 * The policy used when an http request does not specify one: transient
+	 * status codes and connection errors are retried every 2 seconds
+	 */
+	public static final RetryPolicy DEFAULT = new RetryPolicy.Builder().build();
+
+	/**
+	 * The http status codes signalling a transient failure
+	 */
+	private final Set<Integer> retryableStatusCodes;
+
+	/**
+	 * The boolean indicating if connection errors are retried
+	 */
+	private final boolean retryOnIOException;
+
+	/**
+	 * The exceptions signalling a permanent failure, never retried
+	 */
+	private final List<Class<? extends Throwable>> nonRetryableExceptions;
+
+	/**
+	 * The boolean indicating if the requests with a non-idempotent http method
+	 * can be retried even when they may have reached the server
+	 */
+	private final boolean nonIdempotentAllowed;
+
+	/**
+	 * The time, in milliseconds, to wait before the first retry
+	 */
+	private final long delay;
+
+	/**
+	 * The multiplier applied to the wait at each new retry
+	 */
+	private final double backoffMultiplier;
+
+	/**
+	 * The maximum time, in milliseconds, to wait before a retry
+	 */
+	private final long maxDelay;
+
+	/**
+	 * The boolean indicating if the wait requested by the server through the
+	 * {@code Retry-After} header is honoured
+	 */
+	private final boolean retryAfterHonored;
+
+	/**
+	 * Constructor a new {@link RetryPolicy} starting from the given
+	 * {@param builder}
+	 */
+	private RetryPolicy(Builder builder) {
+		this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<>(builder.retryableStatusCodes));
+		this.retryOnIOException = builder.retryOnIOException;
+		this.nonRetryableExceptions = Collections.unmodifiableList(new ArrayList<>(builder.nonRetryableExceptions));
+		this.nonIdempotentAllowed = builder.nonIdempotentAllowed;
+		this.delay = builder.delay;
+		this.backoffMultiplier = builder.backoffMultiplier;
+		this.maxDelay = Math.max(builder.delay, builder.maxDelay);
+		this.retryAfterHonored = builder.retryAfterHonored;
+	}
+
+	/**
+	 * Getter method for retrieve the retryable status codes
+	 *
+	 * @return the http status codes signalling a transient failure
+	 */
+	public Set<Integer> getRetryableStatusCodes() {
+		return retryableStatusCodes;
+	}
+
+	/**
+	 * Getter method for retrieve if connection errors are retried
+	 *
+	 * @return a boolean indicating if connection errors are retried
+	 */
+	public boolean isRetryOnIOException() {
+		return retryOnIOException;
+	}
+
+	/**
+	 * Getter method for retrieve if non-idempotent requests can be retried
+	 *
+	 * @return a boolean indicating if the requests with a non-idempotent http
+	 *         method can be retried even when they may have reached the server
+	 */
+	public boolean isNonIdempotentAllowed() {
+		return nonIdempotentAllowed;
+	}
+
+	/**
+	 * Getter method for retrieve the maximum delay
+	 *
+	 * @return the maximum time in milliseconds to wait before a retry
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * Getter method for retrieve if the {@code Retry-After} header is honoured
+	 *
+	 * @return a boolean indicating if the wait requested by the server is
+	 *         honoured
+	 */
+	public boolean isRetryAfterHonored() {
+		return retryAfterHonored;
+	}
+
+	/**
+	 * Check if an attempt answered with the given status code can be retried
+	 *
+	 * @param httpMethod,
+	 *            the http method of the request
+	 * @param statusCode,
+	 *            the http status code of the response
+	 * @return a boolean indicating if the attempt can be retried
+	 */
+	public boolean isRetryable(HttpMethod httpMethod, int statusCode) {
+		return retryableStatusCodes.contains(statusCode) && (nonIdempotentAllowed || httpMethod.isIdempotent());
+	}
+
+	/**
+	 * Check if an attempt failed with the given error can be retried
+	 *
+	 * @param httpMethod,
+	 *            the http method of the request
+	 * @param error,
+	 *            the error of the attempt
+	 * @return a boolean indicating if the attempt can be retried
+	 */
+	public boolean isRetryable(HttpMethod httpMethod, Throwable error) {
+		if (!retryOnIOException) {
+			return false;
+		}
+		for (Class<? extends Throwable> nonRetryableException : nonRetryableExceptions) {
+			if (nonRetryableException.isInstance(error)) {
+				return false;
+			}
+		}
+		// a refused connection proves that the request never reached the server
+		return nonIdempotentAllowed || httpMethod.isIdempotent() || error instanceof ConnectException;
+	}
+
+	/**
+	 * Retrieve the time to wait before the given retry
+	 *
+	 * @param retry,
+	 *            the number of the retry, starting from 1
+	 * @return the time in milliseconds to wait before the retry
+	 */
+	public long getDelay(int retry) {
+		double backoff = delay * Math.pow(backoffMultiplier, Math.max(0, retry - 1));
+		return (long) Math.min(maxDelay, backoff);
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "RetryPolicy: status codes " + retryableStatusCodes + ", delay " + delay + " ms x" + backoffMultiplier
+				+ " up to " + maxDelay + " ms" + (nonIdempotentAllowed ? ", non-idempotent allowed" : "")
+				+ (retryAfterHonored ? ", honouring Retry-After" : "");
+	}
+
+	/**
+	 * Static builder to build and configure a new {@link RetryPolicy}
+	 */
+	public static class Builder {
+
+		/**
+		 * The retryable status codes, 408, 429, 500, 502, 503 and 504 by default
+		 */
+		private Set<Integer> retryableStatusCodes = new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504));
+
+		/**
+		 * The retry on connection errors, enabled by default
+		 */
+		private boolean retryOnIOException = true;
+
+		/**
+		 * The non-retryable exceptions, the ones signalling a permanent TLS or
+		 * configuration problem by default
+		 */
+		private List<Class<? extends Throwable>> nonRetryableExceptions = new ArrayList<>(
+				Arrays.asList(SSLHandshakeException.class, SSLPeerUnverifiedException.class,
+						UnknownServiceException.class));
+
+		/**
+		 * The non-idempotent permission, disabled by default
+		 */
+		private boolean nonIdempotentAllowed;
+
+		/**
+		 * The delay, 2 seconds by default
+		 */
+		private long delay = TimeUnit.SECONDS.toMillis(2);
+
+		/**
+		 * The backoff multiplier, 1 (i.e. a fixed delay) by default
+		 */
+		private double backoffMultiplier = 1;
+
+		/**
+		 * The maximum delay, 30 seconds by default
+		 */
+		private long maxDelay = TimeUnit.SECONDS.toMillis(30);
+
+		/**
+		 * The retry after honouring, enabled by default
+		 */
+		private boolean retryAfterHonored = true;
+
+		/**
+		 * Setter method for the retryable status codes, replacing the default ones
+		 *
+		 * @param statusCodes,
+		 *            the http status codes signalling a transient failure
+		 * @return a {@link Builder} with the retryable status codes set
+		 */
+		public Builder retryableStatusCodes(int... statusCodes) {
+			this.retryableStatusCodes = new HashSet<>();
+			for (int statusCode : statusCodes) {
+				this.retryableStatusCodes.add(statusCode);
+			}
+			return this;
+		}
+
+		/**
+		 * Setter method for the retry on connection errors
+		 *
+		 * @param retryOnIOException,
+		 *            a boolean indicating if connection errors are retried
+		 * @return a {@link Builder} with the retry on connection errors set
+		 */
+		public Builder retryOnIOException(boolean retryOnIOException) {
+			this.retryOnIOException = retryOnIOException;
+			return this;
+		}
+
+		/**
+		 * Add an exception signalling a permanent failure, never retried
+		 *
+		 * @param exceptionClass,
+		 *            the class of the exception, its subclasses included
+		 * @return a {@link Builder} with the non-retryable exception added
+		 */
+		public Builder nonRetryableException(Class<? extends Throwable> exceptionClass) {
+			if (exceptionClass != null) {
+				this.nonRetryableExceptions.add(exceptionClass);
+			}
+			return this;
+		}
+
+		/**
+		 * Setter method for the non-idempotent permission
+		 *
+		 * @param nonIdempotentAllowed,
+		 *            a boolean indicating if the requests with a non-idempotent
+		 *            http method can be retried even when they may have reached
+		 *            the server
+		 * @return a {@link Builder} with the non-idempotent permission set
+		 */
+		public Builder nonIdempotentAllowed(boolean nonIdempotentAllowed) {
+			this.nonIdempotentAllowed = nonIdempotentAllowed;
+			return this;
+		}
+
+		/**
+		 * Setter method for the delay
+		 *
+		 * @param delay,
+		 *            the time to wait before the first retry
+		 * @param unit,
+		 *            the time unit of the delay
+		 * @return a {@link Builder} with the delay set
+		 */
+		public Builder delay(long delay, TimeUnit unit) {
+			this.delay = Math.max(0, unit.toMillis(delay));
+			return this;
+		}
+
+		/**
+		 * Setter method for the backoff multiplier
+		 *
+		 * @param backoffMultiplier,
+		 *            the multiplier, not lower than 1, applied to the wait at each
+		 *            new retry
+		 * @return a {@link Builder} with the backoff multiplier set
+		 */
+		public Builder backoffMultiplier(double backoffMultiplier) {
+			this.backoffMultiplier = Math.max(1, backoffMultiplier);
+			return this;
+		}
+
+		/**
+		 * Setter method for the maximum delay, a longer wait requested through
+		 * the {@code Retry-After} header stops the retries
+		 *
+		 * @param maxDelay,
+		 *            the maximum time to wait before a retry
+		 * @param unit,
+		 *            the time unit of the delay
+		 * @return a {@link Builder} with the maximum delay set
+		 */
+		public Builder maxDelay(long maxDelay, TimeUnit unit) {
+			this.maxDelay = Math.max(0, unit.toMillis(maxDelay));
+			return this;
+		}
+
+		/**
+		 * Setter method for the retry after honouring
+		 *
+		 * @param retryAfterHonored,
+		 *            a boolean indicating if the wait requested by the server
+		 *            through the {@code Retry-After} header is honoured
+		 * @return a {@link Builder} with the retry after honouring set
+		 */
+		public Builder retryAfterHonored(boolean retryAfterHonored) {
+			this.retryAfterHonored = retryAfterHonored;
+			return this;
+		}
+
+		/**
+		 * Build a new {@link RetryPolicy} based on constructed and configured
+		 * {@link Builder}
+		 *
+		 * @return a {@link RetryPolicy}
+		 */
+		public RetryPolicy build() {
+			return new RetryPolicy(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,59 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import lp.reactive.reactiverest.model.BodyFormat;
+import lp.reactive.reactiverest.utils.JsonUtils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * This factory converts the request bodies of a REST client to a
+ * {@link BodyFormat}, labelled with the media type of the format. Each body is
+ * converted by the mapper in use at the time of the call, so that the REST
+ * clients already created follow {@code JsonUtils.configure}. The response
+ * bodies are left to the {@code HttpResponse}, which decodes them by their
+ * {@code Content-Type}
+ *
+ * @author lucapompei
+ */
+class BodyFormatConverterFactory extends Converter.Factory {
+
+	/**
+	 * The format of the request bodies
+	 */
+	private final BodyFormat format;
+
+	/**
+	 * The media type of the request bodies
+	 */
+	private final MediaType mediaType;
+
+	/**
+	 * Construct a new {@link BodyFormatConverterFactory}
+	 *
+	 * @param format,
+	 *            the format of the request bodies
+	 */
+	BodyFormatConverterFactory(BodyFormat format) {
+		this.format = format;
+		this.mediaType = MediaType.parse(format.getMediaType());
+	}
+
+	@Override
+	public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+			Annotation[] methodAnnotations, Retrofit retrofit) {
+		return value -> {
+			byte[] bytes = JsonUtils.toBytes(value, format);
+			if (bytes == null) {
+				throw new IOException("Unable to convert the request body to " + format);
+			}
+			return RequestBody.create(mediaType, bytes);
+		};
+	}
+
+}
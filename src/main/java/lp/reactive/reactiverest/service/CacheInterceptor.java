@@ -0,0 +1,361 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CachePolicy;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * This interceptor serves the GET requests from the in-memory tier of the http
+ * response cache. Fresh responses are served without any network traffic,
+ * stale ones with an entity tag or a last modified date are revalidated with a
+ * conditional request, and a {@code 304 Not Modified} response is answered with
+ * the cached body. The requests with other http methods invalidate the cached
+ * response of their url. As the responses are keyed by url only, a request
+ * carrying credentials is neither answered from the cache nor stored in it,
+ * unless the server marks its response as shareable. The client-side caching policy of a request travels
+ * with the call as an internal header, which is removed before the request is
+ * sent to the server
+ *
+ * @author lucapompei
+ */
+public class CacheInterceptor implements Interceptor {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CacheInterceptor.class);
+
+	/**
+	 * Internal header carrying the client-side caching policy
+	 */
+	static final String CACHE_POLICY_HEADER = "X-ReactiveRest-Cache-Policy";
+
+	/**
+	 * Internal header marking a background refresh of a stale response
+	 */
+	static final String REFRESH_HEADER = "X-ReactiveRest-Cache-Refresh";
+
+	/**
+	 * The urls whose stale response is being refreshed in the background
+	 */
+	private static final Set<String> REFRESHING = ConcurrentHashMap.newKeySet();
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		String policyHeader = request.header(CACHE_POLICY_HEADER);
+		boolean refresh = request.header(REFRESH_HEADER) != null;
+		CachePolicy policy = policyHeader == null ? null : decode(policyHeader);
+		ResponseCache cache = policy == null ? ResponseCacheService.getMemoryCache()
+				: ResponseCacheService.getOrCreateMemoryCache();
+		if (policyHeader != null || refresh) {
+			request = request.newBuilder().removeHeader(CACHE_POLICY_HEADER).removeHeader(REFRESH_HEADER).build();
+		}
+		if (cache == null) {
+			return chain.proceed(request);
+		}
+		String url = request.url().toString();
+		if (!"GET".equals(request.method())) {
+			// a request changing the resource makes its cached response obsolete
+			Response response = chain.proceed(request);
+			if (response.code() < 500) {
+				cache.remove(url);
+			}
+			return response;
+		}
+		CacheControl requestCacheControl = request.cacheControl();
+		if (requestCacheControl.noStore() || request.header("Range") != null
+				|| (policy == null && !ResponseCacheService.isConfigured())) {
+			// the default tier created for the caching policies leaves the
+			// other requests to the network
+			return chain.proceed(request);
+		}
+		ResponseCache.Entry cached = cache.get(url);
+		try {
+			return intercept(chain, request, cache, url, cached, policy, refresh);
+		} finally {
+			if (cached != null) {
+				cached.release();
+			}
+		}
+	}
+
+	/**
+	 * Serve the given GET request from the cached response, from the network or
+	 * from both
+	 *
+	 * @param chain,
+	 *            the interceptor chain
+	 * @param request,
+	 *            the request to serve, without the internal headers
+	 * @param cache,
+	 *            the in-memory tier
+	 * @param url,
+	 *            the url of the request
+	 * @param entry,
+	 *            the cached response, referenced by the caller, or {@code null}
+	 *            if none
+	 * @param policy,
+	 *            the caching policy or {@code null} if none
+	 * @param refresh,
+	 *            a boolean indicating if the request is a background refresh
+	 * @return the response
+	 * @throws IOException,
+	 *             if the request fails and no cached response can be served
+	 */
+	private static Response intercept(Chain chain, Request request, ResponseCache cache, String url,
+			ResponseCache.Entry entry, CachePolicy policy, boolean refresh) throws IOException {
+		CacheControl requestCacheControl = request.cacheControl();
+		long ttl = policy == null ? 0 : policy.getTtl();
+		long now = System.currentTimeMillis();
+		if (entry != null && !entry.matches(request)) {
+			entry = null;
+		}
+		if (entry != null && entry.isNegative()) {
+			if (!refresh && policy != null && entry.getElapsed(now) < policy.getNegativeTtl()) {
+				MetricsService.increment(ResponseCacheService.NEGATIVE_HIT_METRIC);
+				if (entry.isFailure()) {
+					throw entry.toFailure();
+				}
+				return entry.toResponse(request, null);
+			}
+			entry = null;
+		}
+		if (entry != null && !refresh) {
+			if (entry.isFresh(requestCacheControl, ttl, now)) {
+				MetricsService.increment(ResponseCacheService.HIT_METRIC);
+				return entry.toResponse(request, null);
+			}
+			if (policy != null && entry.getStaleness(ttl, now) < policy.getStaleWhileRevalidate()
+					&& !requestCacheControl.noCache()) {
+				MetricsService.increment(ResponseCacheService.STALE_REVALIDATE_METRIC);
+				refresh(url, chain.request());
+				return entry.toResponse(request, null);
+			}
+		}
+		if (requestCacheControl.onlyIfCached()) {
+			// the request forbids the network, as OkHttp does
+			return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(504)
+					.message("Unsatisfiable Request (only-if-cached)").body(ResponseBody.create(null, new byte[0]))
+					.sentRequestAtMillis(-1L).receivedResponseAtMillis(System.currentTimeMillis()).build();
+		}
+		boolean conditional = entry != null && entry.hasValidators() && request.header("If-None-Match") == null
+				&& request.header("If-Modified-Since") == null;
+		Response networkResponse;
+		try {
+			networkResponse = chain.proceed(conditional ? entry.conditional(request) : request);
+		} catch (IOException ex) {
+			if (isAbandoned(chain.call())) {
+				// the client gave up on the call, which says nothing about the server
+				throw ex;
+			}
+			if (isStaleIfError(entry, policy, ttl, refresh)) {
+				LOGGER.debug("Serving the stale response of %s after %s", url, ex.getMessage());
+				MetricsService.increment(ResponseCacheService.STALE_ERROR_METRIC);
+				return entry.toResponse(request, null);
+			}
+			if (!refresh && policy != null && policy.getNegativeTtl() > 0 && !ResponseCache.hasCredentials(request)) {
+				cache.put(url, new ResponseCache.Entry(request, ex));
+			}
+			throw ex;
+		}
+		if (conditional && networkResponse.code() == 304) {
+			MetricsService.increment(ResponseCacheService.REVALIDATED_METRIC);
+			networkResponse.close();
+			ResponseCache.Entry revalidated = entry.revalidate(request, networkResponse);
+			Response response = revalidated.toResponse(request, networkResponse);
+			if (revalidated.matches(request)) {
+				cache.put(url, revalidated);
+			} else {
+				revalidated.release();
+				cache.remove(url);
+			}
+			return response;
+		}
+		if (networkResponse.code() >= 500 && isStaleIfError(entry, policy, ttl, refresh)) {
+			LOGGER.debug("Serving the stale response of %s after a %s response", url, networkResponse.code());
+			MetricsService.increment(ResponseCacheService.STALE_ERROR_METRIC);
+			networkResponse.close();
+			return entry.toResponse(request, null);
+		}
+		if (!refresh) {
+			MetricsService.increment(ResponseCacheService.MISS_METRIC);
+		}
+		if (policy != null && networkResponse.code() >= 400) {
+			// the failures are cached for the negative time to live only
+			if (!refresh && policy.getNegativeTtl() > 0
+					&& ResponseCache.isShareable(request, networkResponse.cacheControl())) {
+				store(cache, url, request, networkResponse, ttl, true);
+			} else if (!refresh || networkResponse.code() < 500) {
+				cache.remove(url);
+			}
+		} else if (ResponseCache.isCacheable(request, networkResponse)) {
+			store(cache, url, request, networkResponse, ttl, false);
+		} else if (!ResponseCache.isShareable(request, networkResponse.cacheControl())) {
+			// the private response of a request carrying credentials leaves the
+			// response shared by the other callers in place
+			LOGGER.debug("Not caching the private response of %s", url);
+		} else if (!refresh || networkResponse.code() < 500) {
+			// a failed refresh keeps the stale response
+			cache.remove(url);
+		}
+		return networkResponse;
+	}
+
+	/**
+	 * Encode the given caching policy as the value of the internal header
+	 *
+	 * @param policy,
+	 *            the caching policy
+	 * @return the value of the internal header
+	 */
+	static String encode(CachePolicy policy) {
+		return policy.getTtl() + "," + policy.getStaleWhileRevalidate() + "," + policy.getStaleIfError() + ","
+				+ policy.getNegativeTtl();
+	}
+
+	/**
+	 * Decode the caching policy carried by the internal header
+	 *
+	 * @param value,
+	 *            the value of the internal header
+	 * @return the {@link CachePolicy} or {@code null} if the value is invalid
+	 */
+	private static CachePolicy decode(String value) {
+		String[] values = value.split(",");
+		if (values.length != 4) {
+			return null;
+		}
+		try {
+			return new CachePolicy.Builder().ttl(Long.parseLong(values[0]), TimeUnit.MILLISECONDS)
+					.staleWhileRevalidate(Long.parseLong(values[1]), TimeUnit.MILLISECONDS)
+					.staleIfError(Long.parseLong(values[2]), TimeUnit.MILLISECONDS)
+					.negativeTtl(Long.parseLong(values[3]), TimeUnit.MILLISECONDS).build();
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check if the given call failed because the client gave up on it, i.e. it
+	 * was cancelled, as a hedged attempt losing the race or a cancelled api
+	 * call, or it ran out of its deadline. The read timeout of an attempt is
+	 * clamped to the remaining milliseconds of the deadline, so the deadline
+	 * is considered expired within its last millisecond
+	 *
+	 * @param call,
+	 *            the failed call
+	 * @return a boolean indicating if the call was abandoned by the client
+	 */
+	private static boolean isAbandoned(Call call) {
+		if (call.isCanceled()) {
+			return true;
+		}
+		String deadlineHeader = call.request().header(TimeoutInterceptor.DEADLINE_HEADER);
+		return deadlineHeader != null
+				&& Long.parseLong(deadlineHeader) - System.nanoTime() < TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Check if the given stale response can be served after a failure
+	 *
+	 * @param entry,
+	 *            the cached response or {@code null} if none
+	 * @param policy,
+	 *            the caching policy or {@code null} if none
+	 * @param ttl,
+	 *            the client-side time to live in milliseconds
+	 * @param refresh,
+	 *            a boolean indicating if the request is a background refresh
+	 * @return a boolean indicating if the stale response can be served
+	 */
+	private static boolean isStaleIfError(ResponseCache.Entry entry, CachePolicy policy, long ttl,
+			boolean refresh) {
+		return entry != null && policy != null && !refresh
+				&& entry.getStaleness(ttl, System.currentTimeMillis()) < policy.getStaleIfError();
+	}
+
+	/**
+	 * Refresh in the background the stale response of the given url, unless a
+	 * refresh is already in progress
+	 *
+	 * @param url,
+	 *            the url of the stale response
+	 * @param request,
+	 *            the request to send, with its caching policy
+	 */
+	private static void refresh(String url, Request request) {
+		if (!REFRESHING.add(url)) {
+			return;
+		}
+		MetricsService.increment(ResponseCacheService.REFRESH_METRIC);
+		Request refreshRequest = request.newBuilder().header(REFRESH_HEADER, "true").build();
+		ClientService.getHttpClient().newCall(refreshRequest).enqueue(new Callback() {
+			@Override
+			public void onResponse(Call call, Response response) {
+				REFRESHING.remove(url);
+				response.close();
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				REFRESHING.remove(url);
+				LOGGER.error("Background refresh of %s failed: %s", url, e.getMessage());
+				MetricsService.increment(ResponseCacheService.REFRESH_FAILED_METRIC);
+			}
+		});
+	}
+
+	/**
+	 * Cache the given response, if reusable and not larger than the maximum
+	 * entry size. The body is peeked, so that it is still readable by the caller
+	 *
+	 * @param cache,
+	 *            the cache where to store the response
+	 * @param url,
+	 *            the url of the response
+	 * @param request,
+	 *            the request of the response
+	 * @param response,
+	 *            the response to cache
+	 * @param ttl,
+	 *            the client-side time to live in milliseconds
+	 * @param negative,
+	 *            a boolean indicating if the response is a failure to cache
+	 * @throws IOException,
+	 *             if the body cannot be read
+	 */
+	private static void store(ResponseCache cache, String url, Request request, Response response, long ttl,
+			boolean negative) throws IOException {
+		ResponseBody body = response.body();
+		if (body == null || body.contentLength() > cache.getMaxEntrySize()) {
+			cache.remove(url);
+			return;
+		}
+		MediaType contentType = body.contentType();
+		ResponseBody peeked = response.peekBody(cache.getMaxEntrySize() + 1);
+		byte[] bytes = peeked.bytes();
+		ResponseCache.Entry entry = new ResponseCache.Entry(request, response, contentType, bytes, negative);
+		if (bytes.length > cache.getMaxEntrySize() || (!negative && !entry.isReusable(ttl))) {
+			cache.remove(url);
+			return;
+		}
+		cache.put(url, entry);
+	}
+
+}
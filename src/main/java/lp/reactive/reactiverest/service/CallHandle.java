@@ -0,0 +1,179 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class represents the handle of an issued api call, usable to follow its
+ * state and to cancel it. Cancelling a call cancels the in-flight http request
+ * and any pending retry, and no consumer or event is notified afterwards. All
+ * the methods are safe to be called from any thread
+ *
+ * @author lucapompei
+ */
+public class CallHandle {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CallHandle.class);
+
+	/**
+	 * The states of an api call
+	 */
+	public enum State {
+
+		/**
+		 * The api call is in progress, possibly waiting for a retry
+		 */
+		RUNNING,
+
+		/**
+		 * The api call completed with a response
+		 */
+		COMPLETED,
+
+		/**
+		 * The api call failed with an error
+		 */
+		FAILED,
+
+		/**
+		 * The api call was cancelled
+		 */
+		CANCELLED
+
+	}
+
+	/**
+	 * The state of the api call
+	 */
+	private final AtomicReference<State> state = new AtomicReference<>(State.RUNNING);
+
+	/**
+	 * The latch released when the api call is cancelled, used to wake up waits
+	 * between retries
+	 */
+	private final CountDownLatch cancellation = new CountDownLatch(1);
+
+	/**
+	 * The action cancelling the current step of the api call, that is the
+	 * in-flight http request or the pending retry
+	 */
+	private volatile Runnable canceller;
+
+	/**
+	 * Retrieve the state of the api call
+	 *
+	 * @return the state of the api call
+	 */
+	public State getState() {
+		return state.get();
+	}
+
+	/**
+	 * Return a boolean indicating if the api call was cancelled or not
+	 *
+	 * @return a boolean indicating if the api call was cancelled or not
+	 */
+	public boolean isCancelled() {
+		return state.get() == State.CANCELLED;
+	}
+
+	/**
+	 * Return a boolean indicating if the api call is terminated or not, because
+	 * completed, failed or cancelled
+	 *
+	 * @return a boolean indicating if the api call is terminated or not
+	 */
+	public boolean isDone() {
+		return state.get() != State.RUNNING;
+	}
+
+	/**
+	 * Cancel the api call, if still running, cancelling the in-flight http
+	 * request and any pending retry
+	 *
+	 * @return a boolean indicating if the api call was cancelled by this
+	 *         invocation
+	 */
+	public boolean cancel() {
+		if (!state.compareAndSet(State.RUNNING, State.CANCELLED)) {
+			return false;
+		}
+		LOGGER.debug("Cancelling api call");
+		cancellation.countDown();
+		Runnable currentCanceller = canceller;
+		if (currentCanceller != null) {
+			currentCanceller.run();
+		}
+		return true;
+	}
+
+	/**
+	 * Track the current step of the api call, so that it can be cancelled
+	 *
+	 * @param stepCanceller,
+	 *            the action cancelling the current step
+	 * @return a boolean indicating if the api call is still running, if not the
+	 *         step has been already cancelled
+	 */
+	boolean track(Runnable stepCanceller) {
+		this.canceller = stepCanceller;
+		if (isCancelled()) {
+			// the api call was cancelled concurrently
+			stepCanceller.run();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Wait the given time unless the api call is cancelled meanwhile
+	 *
+	 * @param millis,
+	 *            the time to wait in milliseconds
+	 * @return a boolean indicating if the api call was cancelled or not
+	 */
+	boolean awaitCancellation(long millis) {
+		try {
+			return cancellation.await(millis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			// Unhandled exception
+			Thread.currentThread().interrupt();
+			return isCancelled();
+		}
+	}
+
+	/**
+	 * Mark the api call as completed
+	 *
+	 * @return a boolean indicating if the api call was still running
+	 */
+	boolean complete() {
+		return state.compareAndSet(State.RUNNING, State.COMPLETED);
+	}
+
+	/**
+	 * Mark the api call as failed
+	 *
+	 * @return a boolean indicating if the api call was still running
+	 */
+	boolean fail() {
+		return state.compareAndSet(State.RUNNING, State.FAILED);
+	}
+
+	/**
+	 * Return a prepared string to represent this object
+	 *
+	 * @return a prepared string to represent this object
+	 */
+	public String toString() {
+		return "CallHandle: " + getState();
+	}
+
+}
@@ -0,0 +1,352 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CircuitBreakerConfig;
+import lp.reactive.reactiverest.model.CircuitBreakerEvent;
+import lp.reactive.reactiverest.model.CircuitBreakerState;
+
+/**
+ * This class represents the circuit breaker protecting the api calls made to a
+ * base url. The outcomes of the most recent calls are kept in a sliding window
+ * and, when the failure rate or the slow call rate exceeds its threshold, the
+ * circuit opens and the calls fail fast. After a wait, a limited number of
+ * trial calls decides whether the circuit closes or opens again
+ *
+ * @author lucapompei
+ */
+public class CircuitBreaker {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CircuitBreaker.class);
+
+	/**
+	 * The outcome flags stored in the sliding window
+	 */
+	private static final byte OUTCOME_FAILURE = 1;
+	private static final byte OUTCOME_SLOW = 2;
+
+	/**
+	 * The base url protected by this circuit breaker
+	 */
+	private final String baseUrl;
+
+	/**
+	 * The configuration of this circuit breaker
+	 */
+	private final CircuitBreakerConfig config;
+
+	/**
+	 * The listener notified of the state transitions
+	 */
+	private final Consumer<CircuitBreakerEvent> listener;
+
+	/**
+	 * The ring of the outcomes of the most recent calls
+	 */
+	private final byte[] window;
+
+	/**
+	 * The next position of the ring and the number of recorded outcomes
+	 */
+	private int windowIndex;
+	private int windowCount;
+
+	/**
+	 * The number of failed and slow calls in the ring
+	 */
+	private int failedCalls;
+	private int slowCalls;
+
+	/**
+	 * The current state
+	 */
+	private volatile CircuitBreakerState state = CircuitBreakerState.CLOSED;
+
+	/**
+	 * The instant, expressed as {@link System#nanoTime()}, at which the circuit
+	 * opened
+	 */
+	private long openedAt;
+
+	/**
+	 * The generation of the current state, increased at each transition, so
+	 * that the outcomes of the calls permitted in a previous state are ignored
+	 */
+	private long generation;
+
+	/**
+	 * The number of trial calls permitted and completed in half-open state
+	 */
+	private int halfOpenPermitted;
+	private int halfOpenCompleted;
+
+	/**
+	 * Construct a new {@link CircuitBreaker}
+	 *
+	 * @param baseUrl,
+	 *            the base url protected by the circuit breaker
+	 * @param config,
+	 *            the configuration of the circuit breaker
+	 * @param listener,
+	 *            the listener notified of the state transitions
+	 */
+	CircuitBreaker(String baseUrl, CircuitBreakerConfig config, Consumer<CircuitBreakerEvent> listener) {
+		this.baseUrl = baseUrl;
+		this.config = config;
+		this.listener = listener;
+		this.window = new byte[config.getSlidingWindowSize()];
+	}
+
+	/**
+	 * Retrieve the current state
+	 *
+	 * @return the current state of the circuit breaker
+	 */
+	public CircuitBreakerState getState() {
+		return state;
+	}
+
+	/**
+	 * Retrieve the base url protected by this circuit breaker
+	 *
+	 * @return the base url protected by this circuit breaker
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Try to obtain the permission to make a call
+	 *
+	 * @return the {@link Permission} of the call, used to record its outcome,
+	 *         or {@code null} if the call must fail fast
+	 */
+	public Permission tryAcquirePermission() {
+		CircuitBreakerEvent event = null;
+		Permission permission;
+		synchronized (this) {
+			if (state == CircuitBreakerState.OPEN && System.nanoTime() - openedAt >= TimeUnit.MILLISECONDS
+					.toNanos(config.getWaitDurationInOpenState())) {
+				event = transitionTo(CircuitBreakerState.HALF_OPEN, -1, -1);
+			}
+			switch (state) {
+			case CLOSED:
+				permission = new Permission(generation);
+				break;
+			case HALF_OPEN:
+				permission = null;
+				if (halfOpenPermitted < config.getPermittedCallsInHalfOpenState()) {
+					halfOpenPermitted++;
+					permission = new Permission(generation);
+				}
+				break;
+			default:
+				permission = null;
+				break;
+			}
+		}
+		publish(event);
+		return permission;
+	}
+
+	/**
+	 * Record the outcome of a permitted call
+	 *
+	 * @param permitGeneration,
+	 *            the generation of the state in which the call was permitted
+	 * @param durationMillis,
+	 *            the duration of the call in milliseconds
+	 * @param failed,
+	 *            a boolean indicating if the call failed or not
+	 */
+	private void onResult(long permitGeneration, long durationMillis, boolean failed) {
+		byte outcome = (byte) ((failed ? OUTCOME_FAILURE : 0)
+				| (durationMillis > config.getSlowCallDuration() ? OUTCOME_SLOW : 0));
+		CircuitBreakerEvent event = null;
+		synchronized (this) {
+			if (permitGeneration != generation) {
+				// a late outcome of a call permitted before the last transition
+				return;
+			}
+			record(outcome);
+			if (state == CircuitBreakerState.HALF_OPEN) {
+				halfOpenCompleted++;
+				if (halfOpenCompleted >= config.getPermittedCallsInHalfOpenState()) {
+					event = isAboveThresholds(halfOpenCompleted)
+							? transitionTo(CircuitBreakerState.OPEN, getFailureRate(), getSlowCallRate())
+							: transitionTo(CircuitBreakerState.CLOSED, getFailureRate(), getSlowCallRate());
+				}
+			} else if (windowCount >= config.getMinimumNumberOfCalls() && isAboveThresholds(windowCount)) {
+				event = transitionTo(CircuitBreakerState.OPEN, getFailureRate(), getSlowCallRate());
+			}
+		}
+		publish(event);
+	}
+
+	/**
+	 * Release the permission of a call whose outcome must not be recorded, e.g.
+	 * because cancelled by the caller
+	 *
+	 * @param permitGeneration,
+	 *            the generation of the state in which the call was permitted
+	 */
+	private synchronized void onIgnored(long permitGeneration) {
+		if (permitGeneration == generation && state == CircuitBreakerState.HALF_OPEN
+				&& halfOpenPermitted > halfOpenCompleted) {
+			halfOpenPermitted--;
+		}
+	}
+
+	/**
+	 * Retrieve the failure rate of the calls in the sliding window
+	 *
+	 * @return the failure rate in percentage or {@code -1} if no call is recorded
+	 */
+	public synchronized float getFailureRate() {
+		return windowCount == 0 ? -1 : failedCalls * 100f / windowCount;
+	}
+
+	/**
+	 * Retrieve the slow call rate of the calls in the sliding window
+	 *
+	 * @return the slow call rate in percentage or {@code -1} if no call is
+	 *         recorded
+	 */
+	public synchronized float getSlowCallRate() {
+		return windowCount == 0 ? -1 : slowCalls * 100f / windowCount;
+	}
+
+	/**
+	 * Record an outcome in the sliding window, replacing the oldest one
+	 *
+	 * @param outcome,
+	 *            the outcome flags to record
+	 */
+	private void record(byte outcome) {
+		if (windowCount == window.length) {
+			byte evicted = window[windowIndex];
+			failedCalls -= evicted & OUTCOME_FAILURE;
+			slowCalls -= (evicted & OUTCOME_SLOW) >> 1;
+		} else {
+			windowCount++;
+		}
+		window[windowIndex] = outcome;
+		failedCalls += outcome & OUTCOME_FAILURE;
+		slowCalls += (outcome & OUTCOME_SLOW) >> 1;
+		windowIndex = (windowIndex + 1) % window.length;
+	}
+
+	/**
+	 * Check if the failure rate or the slow call rate exceeds its threshold
+	 *
+	 * @param calls,
+	 *            the number of calls used to compute the rates
+	 * @return a boolean indicating if a threshold is exceeded
+	 */
+	private boolean isAboveThresholds(int calls) {
+		return failedCalls * 100 >= config.getFailureRateThreshold() * calls
+				|| slowCalls * 100 >= config.getSlowCallRateThreshold() * calls;
+	}
+
+	/**
+	 * Move the circuit breaker to the given state, resetting the sliding window
+	 *
+	 * @param newState,
+	 *            the new state
+	 * @param failureRate,
+	 *            the failure rate that caused the transition
+	 * @param slowCallRate,
+	 *            the slow call rate that caused the transition
+	 * @return the event describing the transition
+	 */
+	private CircuitBreakerEvent transitionTo(CircuitBreakerState newState, float failureRate, float slowCallRate) {
+		CircuitBreakerState oldState = state;
+		state = newState;
+		generation++;
+		if (newState == CircuitBreakerState.OPEN) {
+			openedAt = System.nanoTime();
+		}
+		halfOpenPermitted = 0;
+		halfOpenCompleted = 0;
+		windowIndex = 0;
+		windowCount = 0;
+		failedCalls = 0;
+		slowCalls = 0;
+		return new CircuitBreakerEvent(baseUrl, oldState, newState, failureRate, slowCallRate);
+	}
+
+	/**
+	 * Publish the given event, if any, to the listener
+	 *
+	 * @param event,
+	 *            the event to publish or {@code null}
+	 */
+	private void publish(CircuitBreakerEvent event) {
+		if (event == null) {
+			return;
+		}
+		if (event.getToState() == CircuitBreakerState.OPEN) {
+			LOGGER.error(event.toString());
+		} else {
+			LOGGER.info(event.toString());
+		}
+		if (listener != null) {
+			try {
+				listener.accept(event);
+			} catch (Exception e) {
+				LOGGER.error("Error during notifying circuit breaker event", e);
+			}
+		}
+	}
+
+	/**
+	 * The permission of a single call, recording its outcome only if the
+	 * circuit breaker is still in the state in which the call was permitted
+	 */
+	public final class Permission {
+
+		/**
+		 * The generation of the state in which the call was permitted
+		 */
+		private final long generation;
+
+		/**
+		 * Construct a new {@link Permission}
+		 *
+		 * @param generation,
+		 *            the generation of the state in which the call was permitted
+		 */
+		private Permission(long generation) {
+			this.generation = generation;
+		}
+
+		/**
+		 * Record the outcome of the permitted call
+		 *
+		 * @param durationMillis,
+		 *            the duration of the call in milliseconds
+		 * @param failed,
+		 *            a boolean indicating if the call failed or not
+		 */
+		public void onResult(long durationMillis, boolean failed) {
+			CircuitBreaker.this.onResult(generation, durationMillis, failed);
+		}
+
+		/**
+		 * Release the permission of the call, whose outcome must not be
+		 * recorded, e.g. because cancelled by the caller
+		 */
+		public void onIgnored() {
+			CircuitBreaker.this.onIgnored(generation);
+		}
+
+	}
+
+}
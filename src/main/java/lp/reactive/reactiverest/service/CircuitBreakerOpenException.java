@@ -0,0 +1,40 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+/**
+ * This exception signals that an api call failed fast because the circuit
+ * breaker of its base url is open
+ *
+ * @author lucapompei
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The base url whose circuit is open
+	 */
+	private final String baseUrl;
+
+	/**
+	 * Construct a new {@link CircuitBreakerOpenException}
+	 *
+	 * @param baseUrl,
+	 *            the base url whose circuit is open
+	 */
+	public CircuitBreakerOpenException(String baseUrl) {
+		super("Circuit breaker is open for base url " + baseUrl);
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * Retrieve the base url whose circuit is open
+	 *
+	 * @return the base url whose circuit is open
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+}
@@ -0,0 +1,163 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CircuitBreakerConfig;
+import lp.reactive.reactiverest.model.CircuitBreakerEvent;
+import lp.reactive.reactiverest.model.CircuitBreakerState;
+
+/**
+ * This service handles the circuit breakers protecting the api calls, one for
+ * each base url. Circuit breakers are disabled by default and can be enabled
+ * for a single base url or for all of them
+ *
+ * @author lucapompei
+ */
+public class CircuitBreakerService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CircuitBreakerService.class);
+
+	/**
+	 * The configurations of the circuit breakers, by base url
+	 */
+	private static final Map<String, CircuitBreakerConfig> CONFIGS = new ConcurrentHashMap<>();
+
+	/**
+	 * The circuit breakers, by base url
+	 */
+	private static final Map<String, CircuitBreaker> CIRCUIT_BREAKERS = new ConcurrentHashMap<>();
+
+	/**
+	 * The listeners notified of the state transitions of all the circuit
+	 * breakers
+	 */
+	private static final List<Consumer<CircuitBreakerEvent>> LISTENERS = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The configuration used for the base urls without a specific one or
+	 * {@code null} if they are not protected
+	 */
+	private static volatile CircuitBreakerConfig defaultConfig;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code CircuitBreakerService}
+	 */
+	private CircuitBreakerService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Enable the circuit breaker of the given base url, replacing any previous
+	 * one
+	 *
+	 * @param baseUrl,
+	 *            the base url to protect
+	 * @param config,
+	 *            the configuration of the circuit breaker
+	 */
+	public static void configure(String baseUrl, CircuitBreakerConfig config) {
+		if (baseUrl == null || config == null) {
+			LOGGER.error("Base url and circuit breaker configuration cannot be null");
+			return;
+		}
+		CONFIGS.put(baseUrl, config);
+		CIRCUIT_BREAKERS.remove(baseUrl);
+	}
+
+	/**
+	 * Enable the circuit breakers of all the base urls without a specific
+	 * configuration, or disable them if the given configuration is {@code null}
+	 *
+	 * @param config,
+	 *            the configuration of the circuit breakers or {@code null}
+	 */
+	public static void configureDefault(CircuitBreakerConfig config) {
+		defaultConfig = config;
+		CIRCUIT_BREAKERS.keySet().removeIf(baseUrl -> !CONFIGS.containsKey(baseUrl));
+	}
+
+	/**
+	 * Register a listener notified of the state transitions of all the circuit
+	 * breakers
+	 *
+	 * @param listener,
+	 *            the listener to register
+	 */
+	public static void addListener(Consumer<CircuitBreakerEvent> listener) {
+		if (listener == null) {
+			LOGGER.error("Unable to register null listener");
+			return;
+		}
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * Unregister a listener of the state transitions
+	 *
+	 * @param listener,
+	 *            the listener to unregister
+	 */
+	public static void removeListener(Consumer<CircuitBreakerEvent> listener) {
+		LISTENERS.remove(listener);
+	}
+
+	/**
+	 * Retrieve the state of the circuit breaker of the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url to check
+	 * @return the state of the circuit breaker or {@code null} if the base url
+	 *         is not protected
+	 */
+	public static CircuitBreakerState getState(String baseUrl) {
+		CircuitBreaker circuitBreaker = getCircuitBreaker(baseUrl);
+		return circuitBreaker == null ? null : circuitBreaker.getState();
+	}
+
+	/**
+	 * Retrieve the circuit breaker of the given base url, creating it if
+	 * necessary
+	 *
+	 * @param baseUrl,
+	 *            the base url to protect
+	 * @return the {@link CircuitBreaker} of the base url or {@code null} if the
+	 *         base url is not protected
+	 */
+	static CircuitBreaker getCircuitBreaker(String baseUrl) {
+		if (baseUrl == null) {
+			return null;
+		}
+		CircuitBreaker circuitBreaker = CIRCUIT_BREAKERS.get(baseUrl);
+		if (circuitBreaker != null) {
+			return circuitBreaker;
+		}
+		CircuitBreakerConfig config = CONFIGS.getOrDefault(baseUrl, defaultConfig);
+		if (config == null) {
+			return null;
+		}
+		return CIRCUIT_BREAKERS.computeIfAbsent(baseUrl,
+				url -> new CircuitBreaker(url, config, CircuitBreakerService::publish));
+	}
+
+	/**
+	 * Publish the given event to all the registered listeners
+	 *
+	 * @param event,
+	 *            the event to publish
+	 */
+	private static void publish(CircuitBreakerEvent event) {
+		LISTENERS.forEach(listener -> listener.accept(event));
+	}
+
+}
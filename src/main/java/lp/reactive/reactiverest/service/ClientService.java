@@ -1,5 +1,7 @@
 package lp.reactive.reactiverest.service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -10,8 +12,10 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
-import lp.reactive.reactiverest.utils.JsonUtils;
+import lp.reactive.reactiverest.model.BodyFormat;
 import lp.reactive.reactiverest.utils.TextUtils;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 
 /**
@@ -31,6 +35,21 @@ public class ClientService {
 	 */
 	private static final int CACHE_REST_CLIENTS_SIZE = 10;
 
+	/**
+	 * The http client shared by all REST clients, so that they share the same
+	 * connection pool and dispatcher. It is replaced only to change the disk
+	 * cache, keeping connection pool and dispatcher
+	 */
+	private static volatile OkHttpClient httpClient = new OkHttpClient.Builder()
+			.addInterceptor(new TimeoutInterceptor()).addInterceptor(new CacheInterceptor())
+			.addInterceptor(new CompressionInterceptor()).build();
+
+	/**
+	 * The body formats negotiated with the base urls, by base url. The base urls
+	 * missing use json
+	 */
+	private static final Map<String, BodyFormat> BODY_FORMATS = new ConcurrentHashMap<>();
+
 	/**
 	 * A cache object used to handle multiple {@link Retrofit} REST client based on
 	 * different base url. If a cached object exists, the cache retrieves it,
@@ -49,8 +68,10 @@ public class ClientService {
 								"No valid base url specified for REST client, it cannot be null or empty: " + baseUrl);
 						return null;
 					} else {
+						BodyFormat format = getBodyFormat(baseUrl);
 						return new Retrofit.Builder().baseUrl(TextUtils.configHttpProtocolForBaseUrl(baseUrl))
-								.addConverterFactory(JsonUtils.getConverterInstance()).build();
+								.client(httpClient).addConverterFactory(new BodyFormatConverterFactory(format))
+								.build();
 					}
 				}
 			});
@@ -83,4 +104,63 @@ public class ClientService {
 		}
 	}
 
+	/**
+	 * Set the format of the request bodies sent to the given base url and of the
+	 * response bodies requested to it through the {@code Accept} header, still
+	 * accepting json as fallback. The responses are decoded by their
+	 * {@code Content-Type}, whatever the format requested
+	 *
+	 * @param baseUrl,
+	 *            the base url
+	 * @param format,
+	 *            the {@link BodyFormat} to negotiate or {@code null} to restore
+	 *            json
+	 */
+	public static void setBodyFormat(String baseUrl, BodyFormat format) {
+		if (TextUtils.isNullOrEmpty(baseUrl)) {
+			LOGGER.error("No valid base url for body format, it cannot be null or empty: " + baseUrl);
+			return;
+		}
+		if (format == null || format == BodyFormat.JSON) {
+			BODY_FORMATS.remove(baseUrl);
+		} else {
+			BODY_FORMATS.put(baseUrl, format);
+		}
+		CACHE_REST_CLIENT.invalidate(baseUrl);
+	}
+
+	/**
+	 * Retrieve the format negotiated with the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url
+	 * @return the {@link BodyFormat} set by
+	 *         {@link #setBodyFormat(String, BodyFormat)}, json by default
+	 */
+	public static BodyFormat getBodyFormat(String baseUrl) {
+		return baseUrl == null ? BodyFormat.JSON : BODY_FORMATS.getOrDefault(baseUrl, BodyFormat.JSON);
+	}
+
+	/**
+	 * Retrieve the shared http client, e.g. to send a request outside of any
+	 * REST client
+	 *
+	 * @return the shared {@link OkHttpClient}
+	 */
+	static OkHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * Replace the disk cache of the shared http client, discarding the REST
+	 * clients built on the previous one
+	 *
+	 * @param cache,
+	 *            the disk cache or {@code null} to disable it
+	 */
+	static synchronized void setCache(Cache cache) {
+		httpClient = httpClient.newBuilder().cache(cache).build();
+		CACHE_REST_CLIENT.invalidateAll();
+	}
+
 }
@@ -0,0 +1,310 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CompressionCodec;
+import lp.reactive.reactiverest.model.CompressionPolicy;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * This interceptor compresses the request bodies and decompresses the response
+ * bodies with the codecs registered to the {@link CompressionService},
+ * counting the bytes before and after each conversion. The compression policy
+ * of a request travels with the call as an internal header, which is removed
+ * before the request is sent to the server. The responses are decompressed
+ * only when the {@code Accept-Encoding} header was set by this interceptor,
+ * which replaces the transparent gzip decompression of the http client: a gzip
+ * response is then decompressed even if the gzip codec is not registered
+ *
+ * @author lucapompei
+ */
+public class CompressionInterceptor implements Interceptor {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CompressionInterceptor.class);
+
+	/**
+	 * Internal header carrying the compression policy
+	 */
+	static final String COMPRESSION_POLICY_HEADER = "X-ReactiveRest-Compression";
+
+	/**
+	 * The maximum length, in bytes, of a body compressed in memory, so that it
+	 * is sent with its length and uncompressed if it does not shrink. The longer
+	 * bodies and the ones of unknown length are compressed while sent
+	 */
+	private static final long MAX_BUFFERED_SIZE = 1024 * 1024;
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		String policyHeader = request.header(COMPRESSION_POLICY_HEADER);
+		if (policyHeader != null) {
+			request = compress(request.newBuilder().removeHeader(COMPRESSION_POLICY_HEADER).build(), policyHeader);
+		}
+		String acceptEncoding = CompressionService.getAcceptEncoding();
+		if (acceptEncoding == null || request.header("Accept-Encoding") != null || request.header("Range") != null) {
+			// the accepted codings chosen by the caller are left to the caller
+			return chain.proceed(request);
+		}
+		Response response = chain.proceed(request.newBuilder().header("Accept-Encoding", acceptEncoding).build());
+		return decompress(response);
+	}
+
+	/**
+	 * Encode the compression policy as the value of the internal header
+	 *
+	 * @param policy,
+	 *            the compression policy
+	 * @return the value of the internal header
+	 */
+	static String encode(CompressionPolicy policy) {
+		return policy.getEncoding() + "," + policy.getMinSize();
+	}
+
+	/**
+	 * Compress the body of the given request as stated by the internal header
+	 *
+	 * @param request,
+	 *            the request without the internal header
+	 * @param policyHeader,
+	 *            the value of the internal header
+	 * @return the request with the compressed body or the given one if the body
+	 *         is not compressed
+	 * @throws IOException
+	 *             if the body cannot be compressed
+	 */
+	private static Request compress(Request request, String policyHeader) throws IOException {
+		RequestBody body = request.body();
+		if (body == null || request.header("Content-Encoding") != null) {
+			return request;
+		}
+		int separator = policyHeader.lastIndexOf(',');
+		CompressionCodec codec = CompressionService.getCodec(policyHeader.substring(0, Math.max(separator, 0)));
+		if (codec == null) {
+			LOGGER.warn("No codec registered for the compression policy %s, the body is sent uncompressed",
+					policyHeader);
+			return request;
+		}
+		long minSize = Long.parseLong(policyHeader.substring(separator + 1));
+		long length = body.contentLength();
+		if (length >= 0 && length < minSize) {
+			MetricsService.increment(CompressionService.SKIPPED_METRIC);
+			return request;
+		}
+		RequestBody compressedBody;
+		if (length >= 0 && length <= MAX_BUFFERED_SIZE) {
+			Buffer raw = new Buffer();
+			body.writeTo(raw);
+			Buffer compressed = new Buffer();
+			BufferedSink compressor = Okio.buffer(codec.compress(compressed));
+			compressor.write(raw.clone(), raw.size());
+			compressor.close();
+			if (compressed.size() >= raw.size()) {
+				// an incompressible body is sent as it is
+				MetricsService.increment(CompressionService.SKIPPED_METRIC);
+				return request.newBuilder().method(request.method(), new BufferedRequestBody(body.contentType(), raw))
+						.build();
+			}
+			count(raw.size(), compressed.size());
+			compressedBody = new BufferedRequestBody(body.contentType(), compressed);
+		} else {
+			compressedBody = new CompressingRequestBody(body, codec);
+		}
+		return request.newBuilder().header("Content-Encoding", codec.getEncoding())
+				.method(request.method(), compressedBody).build();
+	}
+
+	/**
+	 * Decompress the body of the given response if its coding is registered or
+	 * is gzip
+	 *
+	 * @param response,
+	 *            the response to decompress
+	 * @return the response with the decompressed body or the given one
+	 * @throws IOException
+	 *             if the body cannot be decompressed
+	 */
+	private static Response decompress(Response response) throws IOException {
+		ResponseBody body = response.body();
+		String encoding = response.header("Content-Encoding");
+		CompressionCodec codec = CompressionService.getCodec(encoding);
+		if (codec == null && encoding != null && "gzip".equalsIgnoreCase(encoding.trim())) {
+			// the http client no longer decompresses the gzip responses it did not ask for
+			codec = CompressionCodec.GZIP;
+		}
+		if (body == null || codec == null || body.contentLength() == 0 || response.code() == 204
+				|| response.code() == 304 || "HEAD".equals(response.request().method())) {
+			return response;
+		}
+		MetricsService.increment(CompressionService.DECOMPRESSED_METRIC);
+		Source compressed = new ForwardingSource(body.source()) {
+			@Override
+			public long read(Buffer sink, long byteCount) throws IOException {
+				long read = super.read(sink, byteCount);
+				if (read > 0) {
+					MetricsService.add(CompressionService.DECOMPRESSION_COMPRESSED_BYTES_METRIC, read);
+				}
+				return read;
+			}
+		};
+		Source raw = new ForwardingSource(codec.decompress(compressed)) {
+			@Override
+			public long read(Buffer sink, long byteCount) throws IOException {
+				long read = super.read(sink, byteCount);
+				if (read > 0) {
+					MetricsService.add(CompressionService.DECOMPRESSION_RAW_BYTES_METRIC, read);
+				}
+				return read;
+			}
+		};
+		return response.newBuilder().removeHeader("Content-Encoding").removeHeader("Content-Length")
+				.body(ResponseBody.create(body.contentType(), -1L, Okio.buffer(raw))).build();
+	}
+
+	/**
+	 * Count a compressed request body
+	 *
+	 * @param rawBytes,
+	 *            the bytes before the compression
+	 * @param compressedBytes,
+	 *            the bytes after the compression
+	 */
+	private static void count(long rawBytes, long compressedBytes) {
+		MetricsService.increment(CompressionService.COMPRESSED_METRIC);
+		MetricsService.add(CompressionService.RAW_BYTES_METRIC, rawBytes);
+		MetricsService.add(CompressionService.COMPRESSED_BYTES_METRIC, compressedBytes);
+	}
+
+	/**
+	 * A request body already in memory, written again by every attempt
+	 */
+	private static class BufferedRequestBody extends RequestBody {
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType contentType;
+
+		/**
+		 * The content of the body
+		 */
+		private final Buffer content;
+
+		/**
+		 * Construct a new {@link BufferedRequestBody}
+		 *
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param content,
+		 *            the content of the body
+		 */
+		BufferedRequestBody(MediaType contentType, Buffer content) {
+			this.contentType = contentType;
+			this.content = content;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return contentType;
+		}
+
+		@Override
+		public long contentLength() {
+			return content.size();
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			sink.write(content.clone(), content.size());
+		}
+
+	}
+
+	/**
+	 * A request body compressed while it is written, of unknown length
+	 */
+	private static class CompressingRequestBody extends RequestBody {
+
+		/**
+		 * The uncompressed body
+		 */
+		private final RequestBody body;
+
+		/**
+		 * The codec compressing the body
+		 */
+		private final CompressionCodec codec;
+
+		/**
+		 * Construct a new {@link CompressingRequestBody}
+		 *
+		 * @param body,
+		 *            the uncompressed body
+		 * @param codec,
+		 *            the codec compressing the body
+		 */
+		CompressingRequestBody(RequestBody body, CompressionCodec codec) {
+			this.body = body;
+			this.codec = codec;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			long[] compressedBytes = new long[1];
+			// the compressed stream is completed without closing the sink of the connection
+			Sink target = new ForwardingSink(sink) {
+				@Override
+				public void write(Buffer source, long byteCount) throws IOException {
+					super.write(source, byteCount);
+					compressedBytes[0] += byteCount;
+				}
+
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			};
+			long[] rawBytes = new long[1];
+			BufferedSink compressor = Okio.buffer(new ForwardingSink(codec.compress(target)) {
+				@Override
+				public void write(Buffer source, long byteCount) throws IOException {
+					super.write(source, byteCount);
+					rawBytes[0] += byteCount;
+				}
+			});
+			body.writeTo(compressor);
+			compressor.close();
+			count(rawBytes[0], compressedBytes[0]);
+		}
+
+	}
+
+}
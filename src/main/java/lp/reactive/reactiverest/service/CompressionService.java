@@ -0,0 +1,165 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CompressionCodec;
+import lp.reactive.reactiverest.model.CompressionPolicy;
+
+/**
+ * This service handles the content codings of the bodies. The registered
+ * codecs are advertised through the {@code Accept-Encoding} header of the
+ * requests not setting it and decompress their responses, gzip only by
+ * default. The request bodies are sent uncompressed unless a
+ * {@link CompressionPolicy} is set for the base url or for the request
+ *
+ * @author lucapompei
+ */
+public class CompressionService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(CompressionService.class);
+
+	/**
+	 * The names of the metrics: the request bodies compressed and skipped, being
+	 * too small or not shrinking, and the bytes before and after the compression
+	 * of the request bodies and the decompression of the response bodies
+	 */
+	public static final String COMPRESSED_METRIC = "compression.requests";
+	public static final String SKIPPED_METRIC = "compression.skipped";
+	public static final String RAW_BYTES_METRIC = "compression.raw.bytes";
+	public static final String COMPRESSED_BYTES_METRIC = "compression.compressed.bytes";
+	public static final String DECOMPRESSED_METRIC = "decompression.responses";
+	public static final String DECOMPRESSION_COMPRESSED_BYTES_METRIC = "decompression.compressed.bytes";
+	public static final String DECOMPRESSION_RAW_BYTES_METRIC = "decompression.raw.bytes";
+
+	/**
+	 * The registered codecs, by coding name
+	 */
+	private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+	/**
+	 * The compression policies, by base url
+	 */
+	private static final Map<String, CompressionPolicy> POLICIES = new ConcurrentHashMap<>();
+
+	/**
+	 * The value of the {@code Accept-Encoding} header listing the registered
+	 * codecs or {@code null} if none is registered
+	 */
+	private static volatile String acceptEncoding;
+
+	static {
+		registerCodec(CompressionCodec.GZIP);
+	}
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code CompressionService}
+	 */
+	private CompressionService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Register a codec, replacing the one with the same coding name, so that it
+	 * can compress the request bodies and decompress the response bodies
+	 *
+	 * @param codec,
+	 *            the codec to register
+	 */
+	public static synchronized void registerCodec(CompressionCodec codec) {
+		if (codec == null || codec.getEncoding() == null) {
+			LOGGER.error("Codec and its coding name cannot be null");
+			return;
+		}
+		CODECS.put(codec.getEncoding().toLowerCase(), codec);
+		updateAcceptEncoding();
+	}
+
+	/**
+	 * Unregister the codec of the given coding. When no codec is registered, the
+	 * transparent gzip decompression of the http client applies, otherwise the
+	 * gzip responses are still decompressed by the {@link CompressionInterceptor}
+	 *
+	 * @param encoding,
+	 *            the name of the coding
+	 */
+	public static synchronized void unregisterCodec(String encoding) {
+		if (encoding != null) {
+			CODECS.remove(encoding.toLowerCase());
+			updateAcceptEncoding();
+		}
+	}
+
+	/**
+	 * Retrieve the codec of the given coding
+	 *
+	 * @param encoding,
+	 *            the name of the coding, e.g. the value of a
+	 *            {@code Content-Encoding} header
+	 * @return the registered {@link CompressionCodec} or {@code null} if none
+	 */
+	public static CompressionCodec getCodec(String encoding) {
+		return encoding == null ? null : CODECS.get(encoding.trim().toLowerCase());
+	}
+
+	/**
+	 * Enable the compression of the request bodies sent to the given base url,
+	 * or disable it if the given policy is {@code null}. A policy set on a
+	 * request takes precedence
+	 *
+	 * @param baseUrl,
+	 *            the base url
+	 * @param policy,
+	 *            the {@link CompressionPolicy} or {@code null}
+	 */
+	public static void configure(String baseUrl, CompressionPolicy policy) {
+		if (baseUrl == null) {
+			LOGGER.error("Base url cannot be null");
+			return;
+		}
+		if (policy == null) {
+			POLICIES.remove(baseUrl);
+		} else {
+			POLICIES.put(baseUrl, policy);
+		}
+	}
+
+	/**
+	 * Retrieve the compression policy of the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url
+	 * @return the {@link CompressionPolicy} or {@code null} if the request bodies
+	 *         are sent uncompressed
+	 */
+	public static CompressionPolicy getPolicy(String baseUrl) {
+		return baseUrl == null ? null : POLICIES.get(baseUrl);
+	}
+
+	/**
+	 * Retrieve the value of the {@code Accept-Encoding} header advertising the
+	 * registered codecs
+	 *
+	 * @return the value of the header or {@code null} if no codec is registered
+	 */
+	static String getAcceptEncoding() {
+		return acceptEncoding;
+	}
+
+	/**
+	 * Update the value of the {@code Accept-Encoding} header after a change of
+	 * the registered codecs
+	 */
+	private static void updateAcceptEncoding() {
+		acceptEncoding = CODECS.isEmpty() ? null : CODECS.keySet().stream().sorted().collect(Collectors.joining(", "));
+	}
+
+}
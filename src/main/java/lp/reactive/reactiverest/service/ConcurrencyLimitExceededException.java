@@ -0,0 +1,40 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+/**
+ * This exception signals that an api call was shed because the concurrency
+ * limit of its base url was reached and no slot freed up in time
+ *
+ * @author lucapompei
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The base url whose concurrency limit was reached
+	 */
+	private final String baseUrl;
+
+	/**
+	 * Construct a new {@link ConcurrencyLimitExceededException}
+	 *
+	 * @param baseUrl,
+	 *            the base url whose concurrency limit was reached
+	 */
+	public ConcurrencyLimitExceededException(String baseUrl) {
+		super("Concurrency limit reached for base url " + baseUrl);
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * Retrieve the base url whose concurrency limit was reached
+	 *
+	 * @return the base url whose concurrency limit was reached
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+}
@@ -0,0 +1,382 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.ConcurrencyLimitConfig;
+
+/**
+ * This class represents the adaptive limit of the in-flight api calls made to
+ * a base url. The limit follows an AIMD scheme driven by the observed latency:
+ * as in TCP Vegas, the calls queued at the upstream are estimated from the
+ * ratio between the no-load latency and the smoothed latency. The limit grows
+ * additively while the estimated queue stays within the tolerance and it
+ * shrinks multiplicatively, at most once per round trip, when the queue grows
+ * beyond it or an attempt is dropped. The calls exceeding the limit wait
+ * briefly for a free slot and are shed afterwards
+ *
+ * @author lucapompei
+ */
+public class ConcurrencyLimiter {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(ConcurrencyLimiter.class);
+
+	/**
+	 * The number of latency samples after which the no-load latency is probed
+	 * again, so that it follows a changing upstream
+	 */
+	private static final int RTT_PROBE_SAMPLES = 1000;
+
+	/**
+	 * The weight of a new latency sample in the smoothed latency
+	 */
+	private static final double RTT_SMOOTHING = 0.1;
+
+	/**
+	 * The number of calls always allowed to queue at the upstream, so that the
+	 * latency jitter of fast upstreams does not pin a small limit to its minimum
+	 */
+	private static final double MIN_QUEUE_ALLOWANCE = 4;
+
+	/**
+	 * The action returned when there is nothing to cancel
+	 */
+	private static final Runnable NO_OP = () -> {
+		// nothing to cancel
+	};
+
+	/**
+	 * The base url whose calls are limited
+	 */
+	private final String baseUrl;
+
+	/**
+	 * The configuration of this limiter
+	 */
+	private final ConcurrencyLimitConfig config;
+
+	/**
+	 * The calls waiting for a free slot
+	 */
+	private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+	/**
+	 * The current limit, kept fractional to allow the additive increase
+	 */
+	private double limit;
+
+	/**
+	 * The number of in-flight calls
+	 */
+	private int inFlight;
+
+	/**
+	 * The lowest latency observed since the last probe, in nanoseconds
+	 */
+	private long minRttNanos = Long.MAX_VALUE;
+
+	/**
+	 * The number of latency samples since the last probe
+	 */
+	private int rttSamples;
+
+	/**
+	 * The exponentially smoothed latency, in nanoseconds, so that a single
+	 * outlier does not shrink the limit
+	 */
+	private double smoothedRttNanos;
+
+	/**
+	 * The instant, expressed as {@link System#nanoTime()}, of the last decrease
+	 */
+	private long lastDecreaseNanos;
+
+	/**
+	 * Construct a new {@link ConcurrencyLimiter}
+	 *
+	 * @param baseUrl,
+	 *            the base url whose calls are limited
+	 * @param config,
+	 *            the configuration of the limiter
+	 */
+	ConcurrencyLimiter(String baseUrl, ConcurrencyLimitConfig config) {
+		this.baseUrl = baseUrl;
+		this.config = config;
+		this.limit = config.getInitialLimit();
+		this.lastDecreaseNanos = System.nanoTime();
+	}
+
+	/**
+	 * Retrieve the base url whose calls are limited
+	 *
+	 * @return the base url whose calls are limited
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Retrieve the current limit
+	 *
+	 * @return the number of in-flight calls currently allowed
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Retrieve the number of in-flight calls
+	 *
+	 * @return the number of in-flight calls
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Retrieve the number of calls waiting for a free slot
+	 *
+	 * @return the number of calls waiting for a free slot
+	 */
+	public synchronized int getQueued() {
+		return waiters.size();
+	}
+
+	/**
+	 * Retrieve the time an exceeding call waits for a free slot before being shed
+	 *
+	 * @return the maximum queue wait in milliseconds
+	 */
+	long getMaxQueueWait() {
+		return config.getMaxQueueWait();
+	}
+
+	/**
+	 * Acquire a slot for a call, waiting at most the given time. One of the given
+	 * actions is always run exactly once, on the calling thread when the outcome
+	 * is immediate or on the thread releasing a slot or expiring the wait
+	 * otherwise
+	 *
+	 * @param maxWaitMillis,
+	 *            the maximum time to wait for a free slot
+	 * @param timer,
+	 *            the timer used to expire the wait
+	 * @param onAcquired,
+	 *            the action run when the slot is acquired
+	 * @param onRejected,
+	 *            the action run when the call is shed or its wait is cancelled
+	 * @return the action cancelling the wait
+	 */
+	Runnable acquire(long maxWaitMillis, HashedWheelTimer timer, Runnable onAcquired, Runnable onRejected) {
+		Waiter waiter = null;
+		boolean acquired = false;
+		synchronized (this) {
+			if (waiters.isEmpty() && inFlight < (int) limit) {
+				inFlight++;
+				acquired = true;
+			} else if (maxWaitMillis > 0 && waiters.size() < config.getMaxQueueSize()) {
+				waiter = new Waiter(onAcquired, onRejected);
+				waiters.addLast(waiter);
+			}
+		}
+		if (acquired) {
+			onAcquired.run();
+			return NO_OP;
+		}
+		if (waiter == null) {
+			shed(onRejected);
+			return NO_OP;
+		}
+		Waiter queued = waiter;
+		queued.expiration = timer.schedule(() -> {
+			if (remove(queued)) {
+				shed(queued.onRejected);
+			}
+		}, maxWaitMillis, TimeUnit.MILLISECONDS);
+		return () -> {
+			if (remove(queued)) {
+				queued.cancelExpiration();
+				queued.onRejected.run();
+			}
+		};
+	}
+
+	/**
+	 * Acquire a slot for a call only if one is free now, without queueing nor
+	 * shedding the call otherwise
+	 *
+	 * @return a boolean indicating if the slot was acquired or not
+	 */
+	synchronized boolean tryAcquire() {
+		if (waiters.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Release the slot of a completed call, adapting the limit to its outcome
+	 *
+	 * @param rttNanos,
+	 *            the latency of the call in nanoseconds
+	 * @param dropped,
+	 *            a boolean indicating if the call was dropped, e.g. timed out or
+	 *            rejected because of overload
+	 */
+	void release(long rttNanos, boolean dropped) {
+		List<Waiter> granted;
+		synchronized (this) {
+			inFlight--;
+			long now = System.nanoTime();
+			if (!dropped) {
+				if (++rttSamples >= RTT_PROBE_SAMPLES) {
+					rttSamples = 0;
+					minRttNanos = rttNanos;
+				} else {
+					minRttNanos = Math.min(minRttNanos, rttNanos);
+				}
+				smoothedRttNanos = smoothedRttNanos == 0 ? rttNanos
+						: smoothedRttNanos + RTT_SMOOTHING * (rttNanos - smoothedRttNanos);
+			}
+			if (dropped || isCongested()) {
+				// decrease at most once per round trip, the calls in flight
+				// during the last one do not reflect the decreased limit yet
+				if (now - lastDecreaseNanos >= smoothedRttNanos) {
+					limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+					lastDecreaseNanos = now;
+				}
+			} else if ((inFlight + 1) * 2 >= limit) {
+				// increase only when the limit is actually used
+				limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+			}
+			granted = grant();
+		}
+		granted.forEach(Waiter::acquired);
+	}
+
+	/**
+	 * Release the slot of a call whose outcome must not affect the limit, e.g.
+	 * because cancelled by the caller
+	 */
+	void releaseIgnored() {
+		List<Waiter> granted;
+		synchronized (this) {
+			inFlight--;
+			granted = grant();
+		}
+		granted.forEach(Waiter::acquired);
+	}
+
+	/**
+	 * Check if the upstream is congested, i.e. the calls estimated to be queued
+	 * at the upstream exceed the tolerated ones
+	 *
+	 * @return a boolean indicating if the upstream is congested
+	 */
+	private boolean isCongested() {
+		double queued = limit * (1 - minRttNanos / smoothedRttNanos);
+		double allowance = Math.max(MIN_QUEUE_ALLOWANCE, limit * (1 - 1 / config.getRttTolerance()));
+		return queued > allowance;
+	}
+
+	/**
+	 * Assign the free slots to the waiting calls, in arrival order
+	 *
+	 * @return the waiting calls that acquired a slot
+	 */
+	private List<Waiter> grant() {
+		List<Waiter> granted = new ArrayList<>();
+		while (!waiters.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			granted.add(waiters.pollFirst());
+		}
+		return granted;
+	}
+
+	/**
+	 * Remove the given call from the waiting ones
+	 *
+	 * @param waiter,
+	 *            the waiting call
+	 * @return a boolean indicating if the call was still waiting
+	 */
+	private synchronized boolean remove(Waiter waiter) {
+		return waiters.remove(waiter);
+	}
+
+	/**
+	 * Shed a call exceeding the limit
+	 *
+	 * @param onRejected,
+	 *            the action run when the call is shed
+	 */
+	private void shed(Runnable onRejected) {
+		LOGGER.debug("Concurrency limit reached for base url %s, shedding the call", baseUrl);
+		MetricsService.increment(MetricsService.nameOf(ConcurrencyLimiterService.SHED_METRIC, baseUrl));
+		onRejected.run();
+	}
+
+	/**
+	 * This class represents a call waiting for a free slot
+	 */
+	private static class Waiter {
+
+		/**
+		 * The action run when the slot is acquired
+		 */
+		private final Runnable onAcquired;
+
+		/**
+		 * The action run when the call is shed or its wait is cancelled
+		 */
+		private final Runnable onRejected;
+
+		/**
+		 * The scheduled expiration of the wait
+		 */
+		private volatile HashedWheelTimer.Timeout expiration;
+
+		/**
+		 * Construct a new {@link Waiter}
+		 *
+		 * @param onAcquired,
+		 *            the action run when the slot is acquired
+		 * @param onRejected,
+		 *            the action run when the call is shed or its wait is cancelled
+		 */
+		private Waiter(Runnable onAcquired, Runnable onRejected) {
+			this.onAcquired = onAcquired;
+			this.onRejected = onRejected;
+		}
+
+		/**
+		 * Notify the call that it acquired a slot
+		 */
+		private void acquired() {
+			cancelExpiration();
+			onAcquired.run();
+		}
+
+		/**
+		 * Cancel the scheduled expiration of the wait, if any
+		 */
+		private void cancelExpiration() {
+			HashedWheelTimer.Timeout timeout = expiration;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+		}
+
+	}
+
+}
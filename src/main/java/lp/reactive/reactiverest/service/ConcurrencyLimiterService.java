@@ -0,0 +1,132 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.ConcurrencyLimitConfig;
+
+/**
+ * This service handles the adaptive concurrency limiters applied to the api
+ * calls, one for each base url. Concurrency limiters are disabled by default
+ * and can be enabled for a single base url or for all of them. The live limit,
+ * the in-flight calls, the waiting calls and the shed calls of each base url
+ * are exposed as metrics
+ *
+ * @author lucapompei
+ */
+public class ConcurrencyLimiterService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(ConcurrencyLimiterService.class);
+
+	/**
+	 * The names of the metrics of each base url
+	 */
+	public static final String LIMIT_METRIC = "concurrency.limit";
+	public static final String IN_FLIGHT_METRIC = "concurrency.inflight";
+	public static final String QUEUED_METRIC = "concurrency.queued";
+	public static final String SHED_METRIC = "concurrency.shed";
+
+	/**
+	 * The configurations of the concurrency limiters, by base url
+	 */
+	private static final Map<String, ConcurrencyLimitConfig> CONFIGS = new ConcurrentHashMap<>();
+
+	/**
+	 * The concurrency limiters, by base url
+	 */
+	private static final Map<String, ConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+	/**
+	 * The configuration used for the base urls without a specific one or
+	 * {@code null} if they are not limited
+	 */
+	private static volatile ConcurrencyLimitConfig defaultConfig;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code ConcurrencyLimiterService}
+	 */
+	private ConcurrencyLimiterService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Enable the concurrency limiter of the given base url, replacing any
+	 * previous one
+	 *
+	 * @param baseUrl,
+	 *            the base url to limit
+	 * @param config,
+	 *            the configuration of the concurrency limiter
+	 */
+	public static void configure(String baseUrl, ConcurrencyLimitConfig config) {
+		if (baseUrl == null || config == null) {
+			LOGGER.error("Base url and concurrency limit configuration cannot be null");
+			return;
+		}
+		CONFIGS.put(baseUrl, config);
+		LIMITERS.remove(baseUrl);
+	}
+
+	/**
+	 * Enable the concurrency limiters of all the base urls without a specific
+	 * configuration, or disable them if the given configuration is {@code null}
+	 *
+	 * @param config,
+	 *            the configuration of the concurrency limiters or {@code null}
+	 */
+	public static void configureDefault(ConcurrencyLimitConfig config) {
+		defaultConfig = config;
+		LIMITERS.keySet().removeIf(baseUrl -> !CONFIGS.containsKey(baseUrl));
+	}
+
+	/**
+	 * Retrieve the current concurrency limit of the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url to check
+	 * @return the number of in-flight calls currently allowed or {@code -1} if
+	 *         the base url is not limited
+	 */
+	public static int getLimit(String baseUrl) {
+		ConcurrencyLimiter limiter = getLimiter(baseUrl);
+		return limiter == null ? -1 : limiter.getLimit();
+	}
+
+	/**
+	 * Retrieve the concurrency limiter of the given base url, creating it if
+	 * necessary
+	 *
+	 * @param baseUrl,
+	 *            the base url to limit
+	 * @return the {@link ConcurrencyLimiter} of the base url or {@code null} if
+	 *         the base url is not limited
+	 */
+	static ConcurrencyLimiter getLimiter(String baseUrl) {
+		if (baseUrl == null) {
+			return null;
+		}
+		ConcurrencyLimiter limiter = LIMITERS.get(baseUrl);
+		if (limiter != null) {
+			return limiter;
+		}
+		ConcurrencyLimitConfig config = CONFIGS.getOrDefault(baseUrl, defaultConfig);
+		if (config == null) {
+			return null;
+		}
+		return LIMITERS.computeIfAbsent(baseUrl, url -> {
+			ConcurrencyLimiter newLimiter = new ConcurrencyLimiter(url, config);
+			MetricsService.registerGauge(MetricsService.nameOf(LIMIT_METRIC, url), newLimiter::getLimit);
+			MetricsService.registerGauge(MetricsService.nameOf(IN_FLIGHT_METRIC, url), newLimiter::getInFlight);
+			MetricsService.registerGauge(MetricsService.nameOf(QUEUED_METRIC, url), newLimiter::getQueued);
+			return newLimiter;
+		});
+	}
+
+}
@@ -0,0 +1,136 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class represents the time budget of an api call, shared by all its
+ * attempts and by the waits between them
+ *
+ * @author lucapompei
+ */
+public final class Deadline {
+
+	/**
+	 * The deadline used when no total call timeout is configured
+	 */
+	private static final Deadline NONE = new Deadline(0, 0);
+
+	/**
+	 * The configured timeout in milliseconds, {@code 0} if no deadline is set
+	 */
+	private final long timeoutMillis;
+
+	/**
+	 * The instant, expressed as {@link System#nanoTime()}, at which the deadline
+	 * expires
+	 */
+	private final long deadlineNanos;
+
+	/**
+	 * Construct a new {@link Deadline}
+	 *
+	 * @param timeoutMillis,
+	 *            the configured timeout in milliseconds
+	 * @param deadlineNanos,
+	 *            the instant at which the deadline expires
+	 */
+	private Deadline(long timeoutMillis, long deadlineNanos) {
+		this.timeoutMillis = timeoutMillis;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	/**
+	 * Create a new {@link Deadline} expiring after the given timeout from now
+	 *
+	 * @param timeoutMillis,
+	 *            the timeout in milliseconds, a value lower or equal than
+	 *            {@code 0} means no deadline
+	 * @return a new {@link Deadline}
+	 */
+	public static Deadline after(long timeoutMillis) {
+		if (timeoutMillis <= 0) {
+			return NONE;
+		}
+		return new Deadline(timeoutMillis, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+	}
+
+	/**
+	 * Retrieve a {@link Deadline} that never expires
+	 *
+	 * @return a {@link Deadline} that never expires
+	 */
+	public static Deadline none() {
+		return NONE;
+	}
+
+	/**
+	 * Return a boolean indicating if a deadline is set or not
+	 *
+	 * @return a boolean indicating if a deadline is set or not
+	 */
+	public boolean isSet() {
+		return timeoutMillis > 0;
+	}
+
+	/**
+	 * Retrieve the instant at which the deadline expires
+	 *
+	 * @return the instant, expressed as {@link System#nanoTime()}, at which the
+	 *         deadline expires
+	 */
+	public long getDeadlineNanos() {
+		return deadlineNanos;
+	}
+
+	/**
+	 * Retrieve the remaining budget
+	 *
+	 * @return the remaining budget in milliseconds, {@code 0} if the deadline is
+	 *         expired or {@link Long#MAX_VALUE} if no deadline is set
+	 */
+	public long remainingMillis() {
+		if (!isSet()) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+	}
+
+	/**
+	 * Return a boolean indicating if the deadline is expired or not
+	 *
+	 * @return a boolean indicating if the deadline is expired or not
+	 */
+	public boolean isExpired() {
+		return isSet() && deadlineNanos - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * Return a boolean indicating if the remaining budget is enough to wait the
+	 * given time and still start a new attempt
+	 *
+	 * @param waitMillis,
+	 *            the time to wait in milliseconds
+	 * @return a boolean indicating if the remaining budget allows the given wait
+	 */
+	public boolean allows(long waitMillis) {
+		return remainingMillis() > waitMillis;
+	}
+
+	/**
+	 * Create the exception used to signal that the deadline is exceeded
+	 *
+	 * @param cause,
+	 *            the possible error caught by the last attempt
+	 * @return an {@link InterruptedIOException} describing the exceeded deadline
+	 */
+	public InterruptedIOException exceeded(Throwable cause) {
+		InterruptedIOException exception = new InterruptedIOException(
+				"Call deadline of " + timeoutMillis + " ms exceeded");
+		if (cause != null) {
+			exception.initCause(cause);
+		}
+		return exception;
+	}
+
+}
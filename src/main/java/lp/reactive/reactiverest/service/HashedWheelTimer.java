@@ -0,0 +1,470 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * This timer schedules short tasks, such as call deadlines, retry backoffs and
+ * hedge triggers, on a hashed timing wheel. Scheduling and cancelling a task
+ * are O(1) operations regardless of the number of pending tasks, at the price
+ * of a precision bounded by the tick duration. Tasks are executed by a single
+ * worker thread, so they must be short and must not block
+ *
+ * @author lucapompei
+ */
+public class HashedWheelTimer {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(HashedWheelTimer.class);
+
+	/**
+	 * The maximum number of new timeouts moved into the wheel at each tick, to
+	 * avoid starving the expiration of the current bucket
+	 */
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	/**
+	 * The worker states
+	 */
+	private static final int WORKER_INIT = 0;
+	private static final int WORKER_STARTED = 1;
+	private static final int WORKER_STOPPED = 2;
+
+	/**
+	 * The duration of a tick in nanoseconds
+	 */
+	private final long tickNanos;
+
+	/**
+	 * The wheel buckets, the number of buckets is a power of two
+	 */
+	private final Bucket[] wheel;
+
+	/**
+	 * The mask used to map a tick to its bucket
+	 */
+	private final int mask;
+
+	/**
+	 * The timeouts scheduled but not yet moved into the wheel
+	 */
+	private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The timeouts cancelled but not yet removed from the wheel
+	 */
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The number of scheduled timeouts neither expired nor cancelled
+	 */
+	private final LongAdder pendingCount = new LongAdder();
+
+	/**
+	 * The worker state
+	 */
+	private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+
+	/**
+	 * The latch used to publish the start time of the worker
+	 */
+	private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+	/**
+	 * The worker thread
+	 */
+	private final Thread workerThread;
+
+	/**
+	 * The instant, expressed as {@link System#nanoTime()}, at which the worker
+	 * started
+	 */
+	private volatile long startTime;
+
+	/**
+	 * Construct a new {@link HashedWheelTimer}
+	 *
+	 * @param name,
+	 *            the name of the worker thread
+	 * @param tickDuration,
+	 *            the duration of a tick, that is the precision of the timer
+	 * @param unit,
+	 *            the time unit of the tick duration
+	 * @param ticksPerWheel,
+	 *            the number of buckets of the wheel, rounded up to a power of two
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0 || ticksPerWheel <= 0) {
+			throw new IllegalArgumentException("Tick duration and ticks per wheel must be greater than 0");
+		}
+		this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+		int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		this.wheel = new Bucket[Math.max(size, 1)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build();
+		this.workerThread = threadFactory.newThread(new Worker());
+	}
+
+	/**
+	 * Schedule the given task to be executed once after the given delay
+	 *
+	 * @param task,
+	 *            the short, non-blocking task to execute
+	 * @param delay,
+	 *            the delay after which the task is executed
+	 * @param unit,
+	 *            the time unit of the delay
+	 * @return the {@link Timeout} handle usable to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (task == null) {
+			throw new IllegalArgumentException("Task cannot be null");
+		}
+		start();
+		long deadline = System.nanoTime() + Math.max(0, unit.toNanos(delay)) - startTime;
+		if (delay > 0 && deadline < 0) {
+			// guard against overflow
+			deadline = Long.MAX_VALUE;
+		}
+		Timeout timeout = new Timeout(task, deadline);
+		pendingCount.increment();
+		pendingTimeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Retrieve the number of scheduled tasks neither executed nor cancelled
+	 *
+	 * @return the number of pending tasks
+	 */
+	public long pendingTimeouts() {
+		return pendingCount.sum();
+	}
+
+	/**
+	 * Stop the worker thread, pending tasks are discarded
+	 */
+	public void stop() {
+		if (workerState.getAndSet(WORKER_STOPPED) == WORKER_STARTED) {
+			workerThread.interrupt();
+		}
+	}
+
+	/**
+	 * Start the worker thread if necessary and wait until its start time is
+	 * published
+	 */
+	private void start() {
+		int state = workerState.get();
+		if (state == WORKER_INIT && workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+			workerThread.start();
+		} else if (state == WORKER_STOPPED) {
+			throw new IllegalStateException("Cannot schedule tasks on a stopped timer");
+		}
+		while (startTime == 0) {
+			try {
+				startTimeInitialized.await();
+			} catch (InterruptedException e) {
+				// Unhandled exception
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The worker moving the timeouts into the wheel and expiring them
+	 */
+	private final class Worker implements Runnable {
+
+		/**
+		 * The current tick, only accessed by the worker thread
+		 */
+		private long tick;
+
+		@Override
+		public void run() {
+			long now = System.nanoTime();
+			// 0 is used as the not initialized marker
+			startTime = now == 0 ? 1 : now;
+			startTimeInitialized.countDown();
+			while (workerState.get() == WORKER_STARTED) {
+				long deadline = waitForNextTick();
+				if (deadline > 0) {
+					processCancelledTimeouts();
+					transferTimeoutsToBuckets();
+					wheel[(int) (tick & mask)].expireTimeouts(deadline);
+					tick++;
+				}
+			}
+		}
+
+		/**
+		 * Wait until the next tick is reached
+		 *
+		 * @return the time elapsed since the start of the worker or {@code -1} if
+		 *         the worker was stopped while waiting
+		 */
+		private long waitForNextTick() {
+			long deadline = tickNanos * (tick + 1);
+			while (true) {
+				long current = System.nanoTime() - startTime;
+				long sleepMillis = (deadline - current + 999999) / 1000000;
+				if (sleepMillis <= 0) {
+					return current;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException e) {
+					if (workerState.get() == WORKER_STOPPED) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Remove the cancelled timeouts from their buckets
+		 */
+		private void processCancelledTimeouts() {
+			Timeout timeout;
+			while ((timeout = cancelledTimeouts.poll()) != null) {
+				if (timeout.bucket != null) {
+					timeout.bucket.remove(timeout);
+				}
+			}
+		}
+
+		/**
+		 * Move the scheduled timeouts into the buckets of the wheel
+		 */
+		private void transferTimeoutsToBuckets() {
+			for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+				Timeout timeout = pendingTimeouts.poll();
+				if (timeout == null) {
+					return;
+				}
+				if (timeout.state.get() != Timeout.STATE_INIT) {
+					// cancelled before being moved into the wheel
+					continue;
+				}
+				long calculated = timeout.deadline / tickNanos;
+				timeout.remainingRounds = (calculated - tick) / wheel.length;
+				// expired timeouts are put in the current bucket
+				long ticks = Math.max(calculated, tick);
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+
+	}
+
+	/**
+	 * A bucket of the wheel, implemented as a doubly linked list only accessed by
+	 * the worker thread
+	 */
+	private final class Bucket {
+
+		/**
+		 * The head of the list
+		 */
+		private Timeout head;
+
+		/**
+		 * The tail of the list
+		 */
+		private Timeout tail;
+
+		/**
+		 * Append the given timeout to the bucket
+		 *
+		 * @param timeout,
+		 *            the timeout to add
+		 */
+		private void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = timeout;
+				tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		/**
+		 * Remove the given timeout from the bucket
+		 *
+		 * @param timeout,
+		 *            the timeout to remove
+		 * @return the timeout following the removed one
+		 */
+		private Timeout remove(Timeout timeout) {
+			Timeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+			return next;
+		}
+
+		/**
+		 * Expire all the timeouts of the bucket whose deadline is reached
+		 *
+		 * @param deadline,
+		 *            the time elapsed since the start of the worker
+		 */
+		private void expireTimeouts(long deadline) {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					next = remove(timeout);
+					if (timeout.deadline <= deadline) {
+						timeout.expire();
+					} else {
+						// moved again into the wheel at the next tick, never dropped
+						LOGGER.debug("Timeout placed into a wrong bucket, deadline %d > %d, rescheduling",
+								timeout.deadline, deadline);
+						pendingTimeouts.add(timeout);
+					}
+				} else if (timeout.isCancelled()) {
+					next = remove(timeout);
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+	}
+
+	/**
+	 * The handle of a scheduled task, usable to cancel it
+	 */
+	public final class Timeout {
+
+		/**
+		 * The timeout states
+		 */
+		private static final int STATE_INIT = 0;
+		private static final int STATE_CANCELLED = 1;
+		private static final int STATE_EXPIRED = 2;
+
+		/**
+		 * The task to execute
+		 */
+		private final Runnable task;
+
+		/**
+		 * The deadline, relative to the start of the worker
+		 */
+		private final long deadline;
+
+		/**
+		 * The state of this timeout
+		 */
+		private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+		/**
+		 * The number of full wheel rounds to wait before the expiration, only
+		 * accessed by the worker thread
+		 */
+		private long remainingRounds;
+
+		/**
+		 * The links of the bucket list, only accessed by the worker thread
+		 */
+		private Timeout next;
+		private Timeout prev;
+		private Bucket bucket;
+
+		/**
+		 * Construct a new {@link Timeout}
+		 *
+		 * @param task,
+		 *            the task to execute
+		 * @param deadline,
+		 *            the deadline, relative to the start of the worker
+		 */
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel the task if not yet executed. It is safe to call this method from
+		 * any thread
+		 *
+		 * @return a boolean indicating if the task was cancelled by this invocation
+		 */
+		public boolean cancel() {
+			if (!state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+				return false;
+			}
+			pendingCount.decrement();
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		/**
+		 * Return a boolean indicating if the task was cancelled or not
+		 *
+		 * @return a boolean indicating if the task was cancelled or not
+		 */
+		public boolean isCancelled() {
+			return state.get() == STATE_CANCELLED;
+		}
+
+		/**
+		 * Return a boolean indicating if the task was executed or not
+		 *
+		 * @return a boolean indicating if the task was executed or not
+		 */
+		public boolean isExpired() {
+			return state.get() == STATE_EXPIRED;
+		}
+
+		/**
+		 * Execute the task if not cancelled
+		 */
+		private void expire() {
+			if (!state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+				return;
+			}
+			pendingCount.decrement();
+			try {
+				task.run();
+			} catch (Throwable t) {
+				LOGGER.error("Error during executing a timer task", t);
+			}
+		}
+
+	}
+
+}
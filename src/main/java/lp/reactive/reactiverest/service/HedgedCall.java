@@ -0,0 +1,212 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * This class executes a hedged attempt of an api call: the call is sent and, if
+ * no response arrives within the hedge delay and the duplicate is admitted, a
+ * duplicate is sent. Each sent call is admitted on its own, so that its outcome
+ * is recorded by its own admission. The first response is delivered to the
+ * callback and the other call is cancelled, while a failure is delivered only
+ * when no call is left in flight
+ *
+ * @author lucapompei
+ */
+class HedgedCall {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(HedgedCall.class);
+
+	/**
+	 * The prepared call cloned for each sent request
+	 */
+	private final Call<ResponseBody> call;
+
+	/**
+	 * The callback receiving the outcome of the hedged attempt
+	 */
+	private final Callback<ResponseBody> callback;
+
+	/**
+	 * The calls sent so far
+	 */
+	private final List<Call<ResponseBody>> sentCalls = new ArrayList<>(2);
+
+	/**
+	 * The number of sent calls still in flight
+	 */
+	private int inFlight;
+
+	/**
+	 * A variable indicating if the outcome was already delivered
+	 */
+	private boolean done;
+
+	/**
+	 * The timer sending the duplicate call
+	 */
+	private volatile HashedWheelTimer.Timeout hedgeTimer;
+
+	/**
+	 * Construct a new {@link HedgedCall}
+	 *
+	 * @param call,
+	 *            the prepared call cloned for each sent request
+	 * @param callback,
+	 *            the callback receiving the outcome of the hedged attempt
+	 */
+	HedgedCall(Call<ResponseBody> call, Callback<ResponseBody> callback) {
+		this.call = call;
+		this.callback = callback;
+	}
+
+	/**
+	 * Send the call and schedule its duplicate. An admission decorates the
+	 * callback of a sent call, recording its outcome before the hedged attempt
+	 * handles it
+	 *
+	 * @param timer,
+	 *            the timer used to schedule the duplicate
+	 * @param delayMillis,
+	 *            the delay after which the duplicate is sent
+	 * @param admission,
+	 *            the admission of the call, already taken
+	 * @param hedgeAdmission,
+	 *            the supplier taking the admission of the duplicate, e.g. from
+	 *            the budget capping the duplicates, or returning {@code null} if
+	 *            the duplicate is not admitted
+	 */
+	void start(HashedWheelTimer timer, long delayMillis, UnaryOperator<Callback<ResponseBody>> admission,
+			Supplier<UnaryOperator<Callback<ResponseBody>>> hedgeAdmission) {
+		send(register(), admission);
+		synchronized (this) {
+			if (done) {
+				// the call completed before the duplicate could be scheduled
+				return;
+			}
+		}
+		hedgeTimer = timer.schedule(() -> {
+			Call<ResponseBody> hedgedCall;
+			UnaryOperator<Callback<ResponseBody>> hedgedAdmission;
+			synchronized (this) {
+				// the admission is taken only while the outcome is still pending
+				if (done) {
+					return;
+				}
+				hedgedAdmission = hedgeAdmission.get();
+				if (hedgedAdmission == null) {
+					LOGGER.debug("The hedged request is not admitted, no hedged request is sent");
+					return;
+				}
+				hedgedCall = register();
+			}
+			LOGGER.debug("No response within " + delayMillis + " ms, sending a hedged request");
+			send(hedgedCall, hedgedAdmission);
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancel all the sent calls and the pending duplicate
+	 */
+	void cancel() {
+		HashedWheelTimer.Timeout timer = hedgeTimer;
+		if (timer != null) {
+			timer.cancel();
+		}
+		List<Call<ResponseBody>> calls;
+		synchronized (this) {
+			calls = new ArrayList<>(sentCalls);
+		}
+		calls.forEach(Call::cancel);
+	}
+
+	/**
+	 * Register a new clone of the prepared call as in flight
+	 *
+	 * @return the clone of the prepared call
+	 */
+	private synchronized Call<ResponseBody> register() {
+		Call<ResponseBody> sentCall = call.clone();
+		sentCalls.add(sentCall);
+		inFlight++;
+		return sentCall;
+	}
+
+	/**
+	 * Send the given registered call
+	 *
+	 * @param sentCall,
+	 *            the registered clone of the prepared call
+	 * @param admission,
+	 *            the admission of the call, recording its outcome
+	 */
+	private void send(Call<ResponseBody> sentCall, UnaryOperator<Callback<ResponseBody>> admission) {
+		sentCall.enqueue(admission.apply(new Callback<ResponseBody>() {
+			@Override
+			public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+				List<Call<ResponseBody>> losers = new ArrayList<>(2);
+				synchronized (HedgedCall.this) {
+					inFlight--;
+					if (done) {
+						// a response was already delivered
+						closeQuietly(response);
+						return;
+					}
+					done = true;
+					sentCalls.stream().filter(c -> c != call).forEach(losers::add);
+				}
+				HashedWheelTimer.Timeout timer = hedgeTimer;
+				if (timer != null) {
+					timer.cancel();
+				}
+				losers.forEach(Call::cancel);
+				callback.onResponse(call, response);
+			}
+
+			@Override
+			public void onFailure(Call<ResponseBody> call, Throwable t) {
+				synchronized (HedgedCall.this) {
+					inFlight--;
+					if (done || inFlight > 0) {
+						// the outcome depends on the other call
+						return;
+					}
+					done = true;
+				}
+				HashedWheelTimer.Timeout timer = hedgeTimer;
+				if (timer != null) {
+					timer.cancel();
+				}
+				callback.onFailure(call, t);
+			}
+		}));
+	}
+
+	/**
+	 * Close the body of a discarded response
+	 *
+	 * @param response,
+	 *            the discarded response
+	 */
+	private static void closeQuietly(Response<ResponseBody> response) {
+		ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+		if (body != null) {
+			body.close();
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * This class keeps the most recent latencies observed for an api endpoint and
+ * estimates their percentiles
+ *
+ * @author lucapompei
+ */
+public class LatencyTracker {
+
+	/**
+	 * The maximum number of api endpoints tracked simultaneously
+	 */
+	private static final int CACHE_TRACKERS_SIZE = 1000;
+
+	/**
+	 * The number of most recent latencies kept for each api endpoint
+	 */
+	private static final int SAMPLES_SIZE = 256;
+
+	/**
+	 * The minimum number of latencies needed to estimate a percentile
+	 */
+	private static final int MIN_SAMPLES = 20;
+
+	/**
+	 * The number of new latencies after which a cached percentile is recomputed
+	 */
+	private static final int RECOMPUTE_INTERVAL = 16;
+
+	/**
+	 * A cache object used to handle the trackers of the api endpoints. The
+	 * objects stored in cache expire after 1 hour spent by its last usage
+	 */
+	private static final LoadingCache<String, LatencyTracker> CACHE_TRACKERS = CacheBuilder.newBuilder()
+			.maximumSize(CACHE_TRACKERS_SIZE).expireAfterAccess(1, TimeUnit.HOURS)
+			.build(new CacheLoader<String, LatencyTracker>() {
+				@Override
+				public LatencyTracker load(String endpoint) {
+					return new LatencyTracker();
+				}
+			});
+
+	/**
+	 * The ring of the most recent latencies in milliseconds
+	 */
+	private final AtomicLongArray samples = new AtomicLongArray(SAMPLES_SIZE);
+
+	/**
+	 * The number of latencies recorded since the creation of the tracker
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * The last computed 95th percentile, {@code -1} if not yet available
+	 */
+	private volatile long cachedP95 = -1;
+
+	/**
+	 * The number of latencies recorded when the cached percentile was computed
+	 */
+	private volatile long cachedP95Count;
+
+	/**
+	 * Retrieve the tracker of the given api endpoint, creating it if necessary
+	 *
+	 * @param baseUrl,
+	 *            the base url of the api endpoint
+	 * @param apiEndpoint,
+	 *            the relative path of the api endpoint
+	 * @return the {@link LatencyTracker} of the api endpoint
+	 */
+	public static LatencyTracker of(String baseUrl, String apiEndpoint) {
+		return CACHE_TRACKERS.getUnchecked(baseUrl + apiEndpoint);
+	}
+
+	/**
+	 * Record a new observed latency
+	 *
+	 * @param latencyMillis,
+	 *            the observed latency in milliseconds
+	 */
+	public void record(long latencyMillis) {
+		long index = count.getAndIncrement();
+		samples.set((int) (index % SAMPLES_SIZE), latencyMillis);
+	}
+
+	/**
+	 * Estimate the 95th percentile of the recent latencies
+	 *
+	 * @return the 95th percentile in milliseconds or {@code -1} if not enough
+	 *         latencies were observed
+	 */
+	public long getP95() {
+		long currentCount = count.get();
+		if (currentCount < MIN_SAMPLES) {
+			return -1;
+		}
+		if (cachedP95 < 0 || currentCount - cachedP95Count >= RECOMPUTE_INTERVAL) {
+			cachedP95 = getPercentile(0.95);
+			cachedP95Count = currentCount;
+		}
+		return cachedP95;
+	}
+
+	/**
+	 * Estimate the given percentile of the recent latencies
+	 *
+	 * @param percentile,
+	 *            the percentile to estimate, between 0 and 1
+	 * @return the percentile in milliseconds or {@code -1} if not enough
+	 *         latencies were observed
+	 */
+	public long getPercentile(double percentile) {
+		int size = (int) Math.min(count.get(), SAMPLES_SIZE);
+		if (size < MIN_SAMPLES) {
+			return -1;
+		}
+		long[] sorted = new long[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = samples.get(i);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile * size) - 1;
+		return sorted[Math.max(0, Math.min(index, size - 1))];
+	}
+
+}
@@ -0,0 +1,123 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import lp.reactive.reactiverest.model.MemoryBudgetConfig;
+
+/**
+ * This class counts the bytes of the response bodies buffered in memory
+ * against a maximum, letting the api calls wait for the bytes released by the
+ * other bodies
+ *
+ * @author lucapompei
+ */
+class MemoryBudget {
+
+	/**
+	 * The name of the budget, the host or {@code global}
+	 */
+	private final String name;
+
+	/**
+	 * The configuration of the budget
+	 */
+	private final MemoryBudgetConfig config;
+
+	/**
+	 * The bytes currently buffered, guarded by this budget
+	 */
+	private long used;
+
+	/**
+	 * Construct a new {@link MemoryBudget}
+	 *
+	 * @param name,
+	 *            the name of the budget, the host or {@code global}
+	 * @param config,
+	 *            the configuration of the budget
+	 */
+	MemoryBudget(String name, MemoryBudgetConfig config) {
+		this.name = name;
+		this.config = config;
+	}
+
+	/**
+	 * Acquire the given bytes, waiting for them up to the given time. The bytes
+	 * are refused at once if the body would exceed the whole budget by itself
+	 *
+	 * @param bytes,
+	 *            the bytes to acquire
+	 * @param held,
+	 *            the bytes already held by the same body
+	 * @param waitMillis,
+	 *            the maximum time to wait for the bytes
+	 * @return a boolean indicating if the bytes were acquired
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	synchronized boolean acquire(long bytes, long held, long waitMillis) throws InterruptedIOException {
+		if (held + bytes > config.getMaxBytes()) {
+			return false;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+		boolean waited = false;
+		while (used + bytes > config.getMaxBytes()) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (!waited) {
+				MetricsService.increment(MemoryBudgetService.WAIT_METRIC);
+				waited = true;
+			}
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the memory budget of " + name);
+			}
+		}
+		used += bytes;
+		return true;
+	}
+
+	/**
+	 * Release the given bytes, waking up the api calls waiting for them
+	 *
+	 * @param bytes,
+	 *            the bytes to release
+	 */
+	synchronized void release(long bytes) {
+		used -= bytes;
+		notifyAll();
+	}
+
+	/**
+	 * Getter method for retrieve the bytes currently buffered
+	 *
+	 * @return the bytes currently buffered
+	 */
+	synchronized long getUsed() {
+		return used;
+	}
+
+	/**
+	 * Getter method for retrieve the name
+	 *
+	 * @return the name of the budget, the host or {@code global}
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Getter method for retrieve the configuration
+	 *
+	 * @return the configuration of the budget
+	 */
+	MemoryBudgetConfig getConfig() {
+		return config;
+	}
+
+}
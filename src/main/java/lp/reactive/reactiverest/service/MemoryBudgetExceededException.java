@@ -0,0 +1,42 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+/**
+ * This exception signals that an api call failed because its response body did
+ * not fit in time in the memory budget of all the hosts or of its host
+ *
+ * @author lucapompei
+ */
+public class MemoryBudgetExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The name of the exceeded memory budget, the host or {@code global}
+	 */
+	private final String name;
+
+	/**
+	 * Construct a new {@link MemoryBudgetExceededException}
+	 *
+	 * @param name,
+	 *            the name of the exceeded memory budget, the host or
+	 *            {@code global}
+	 */
+	public MemoryBudgetExceededException(String name) {
+		super("Memory budget exceeded for " + name);
+		this.name = name;
+	}
+
+	/**
+	 * Retrieve the name of the exceeded memory budget
+	 *
+	 * @return the name of the exceeded memory budget, the host or
+	 *         {@code global}
+	 */
+	public String getName() {
+		return name;
+	}
+
+}
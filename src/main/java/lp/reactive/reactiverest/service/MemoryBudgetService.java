@@ -0,0 +1,539 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.MemoryBudgetConfig;
+import lp.reactive.reactiverest.model.MemoryBudgetMode;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Response;
+
+/**
+ * This service bounds the bytes of the response bodies buffered in memory,
+ * globally and for a single host. When a budget is configured, the bodies are
+ * read from the connection by this service instead of the REST client, and
+ * each chunk is counted against the budgets before being buffered: a body not
+ * fitting waits for the bytes of other bodies, is spilled to a temporary file
+ * or fails the api call, as configured. Only a synchronous api call waits: an
+ * asynchronous one is buffered on a thread of the http client, which cannot
+ * be blocked, hence its body is spilled instead. The bytes are released when the body
+ * is closed, with its response, a spilled body being deleted once read, or at
+ * the latest when it is garbage collected
+ *
+ * @author lucapompei
+ */
+public class MemoryBudgetService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(MemoryBudgetService.class);
+
+	/**
+	 * The names of the metrics: the bytes buffered, globally and by host, and
+	 * the bodies that waited, were spilled or failed the api call
+	 */
+	public static final String USED_METRIC = "memory.budget.used";
+	public static final String WAIT_METRIC = "memory.budget.waits";
+	public static final String SPILL_METRIC = "memory.budget.spills";
+	public static final String REJECTED_METRIC = "memory.budget.rejections";
+
+	/**
+	 * The name of the global budget
+	 */
+	private static final String GLOBAL = "global";
+
+	/**
+	 * The budgets of the single hosts, by host
+	 */
+	private static final Map<String, MemoryBudget> HOST_BUDGETS = new ConcurrentHashMap<>();
+
+	/**
+	 * The trackers of the bodies not yet released, whose release is run when
+	 * they are garbage collected
+	 */
+	private static final Set<Tracker> RELEASES = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The queue of the garbage collected bodies
+	 */
+	private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<>();
+
+	/**
+	 * The global budget or {@code null} if disabled
+	 */
+	private static volatile MemoryBudget globalBudget;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code MemoryBudgetService}
+	 */
+	private MemoryBudgetService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Enable the budget of all the hosts together, replacing any previous one,
+	 * or disable it if the given configuration is {@code null}
+	 *
+	 * @param config,
+	 *            the configuration of the budget or {@code null}
+	 */
+	public static synchronized void configure(MemoryBudgetConfig config) {
+		if (config == null) {
+			globalBudget = null;
+			MetricsService.unregisterGauge(USED_METRIC);
+		} else {
+			MemoryBudget budget = new MemoryBudget(GLOBAL, config);
+			globalBudget = budget;
+			MetricsService.registerGauge(USED_METRIC, budget::getUsed);
+		}
+	}
+
+	/**
+	 * Enable the budget of the given host, replacing any previous one, or
+	 * disable it if the given configuration is {@code null}
+	 *
+	 * @param host,
+	 *            the host, e.g. {@code api.example.com}
+	 * @param config,
+	 *            the configuration of the budget or {@code null}
+	 */
+	public static synchronized void configure(String host, MemoryBudgetConfig config) {
+		if (host == null) {
+			LOGGER.error("Host cannot be null");
+			return;
+		}
+		if (config == null) {
+			HOST_BUDGETS.remove(host);
+			MetricsService.unregisterGauge(MetricsService.nameOf(USED_METRIC, host));
+		} else {
+			MemoryBudget budget = new MemoryBudget(host, config);
+			HOST_BUDGETS.put(host, budget);
+			MetricsService.registerGauge(MetricsService.nameOf(USED_METRIC, host), budget::getUsed);
+		}
+	}
+
+	/**
+	 * Retrieve the bytes currently buffered against the global budget
+	 *
+	 * @return the bytes buffered or {@code -1} if the global budget is disabled
+	 */
+	public static long getUsed() {
+		releaseCollected();
+		MemoryBudget budget = globalBudget;
+		return budget == null ? -1 : budget.getUsed();
+	}
+
+	/**
+	 * Retrieve the bytes currently buffered against the budget of the given host
+	 *
+	 * @param host,
+	 *            the host
+	 * @return the bytes buffered or {@code -1} if the host has no budget
+	 */
+	public static long getUsed(String host) {
+		releaseCollected();
+		MemoryBudget budget = host == null ? null : HOST_BUDGETS.get(host);
+		return budget == null ? -1 : budget.getUsed();
+	}
+
+	/**
+	 * Check if any budget is configured, in which case the bodies are read by
+	 * {@link #buffer(Response, boolean)}
+	 *
+	 * @return a boolean indicating if any budget is configured
+	 */
+	static boolean isEnabled() {
+		return globalBudget != null || !HOST_BUDGETS.isEmpty();
+	}
+
+	/**
+	 * Buffer the body of the given response, streamed from the connection,
+	 * against the budgets of its host
+	 *
+	 * @param response,
+	 *            the response with a streamed body
+	 * @param wait,
+	 *            a boolean indicating if the calling thread can wait for the
+	 *            bytes in {@link MemoryBudgetMode#WAIT} mode, otherwise a body
+	 *            not fitting is spilled
+	 * @return the response with the body buffered in memory or spilled to a
+	 *         temporary file
+	 * @throws IOException
+	 *             if the body cannot be read or does not fit in the budgets
+	 */
+	static Response<ResponseBody> buffer(Response<ResponseBody> response, boolean wait) throws IOException {
+		releaseCollected();
+		List<MemoryBudget> budgets = new ArrayList<>(2);
+		MemoryBudget hostBudget = HOST_BUDGETS.get(response.raw().request().url().host());
+		if (hostBudget != null) {
+			budgets.add(hostBudget);
+		}
+		MemoryBudget budget = globalBudget;
+		if (budget != null) {
+			budgets.add(budget);
+		}
+		ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+		if (body == null || budgets.isEmpty()) {
+			return response;
+		}
+		ResponseBody bufferedBody;
+		try {
+			bufferedBody = buffer(body, new Reservation(budgets, wait));
+		} finally {
+			body.close();
+		}
+		return response.isSuccessful() ? Response.success(bufferedBody, response.raw())
+				: Response.error(bufferedBody, response.raw());
+	}
+
+	/**
+	 * Buffer the given body against the budgets of the given reservation. A body
+	 * of known length is reserved at once, the others chunk by chunk as read
+	 *
+	 * @param body,
+	 *            the streamed body
+	 * @param reservation,
+	 *            the reservation of the bytes of the body
+	 * @return the body buffered in memory or spilled to a temporary file
+	 * @throws IOException
+	 *             if the body cannot be read or does not fit in the budgets
+	 */
+	private static ResponseBody buffer(ResponseBody body, Reservation reservation) throws IOException {
+		BufferedSource source = body.source();
+		Buffer buffer = new Buffer();
+		try {
+			long length = body.contentLength();
+			if (length >= 0) {
+				MemoryBudget refused = reservation.acquire(length);
+				if (refused != null) {
+					return spill(body.contentType(), buffer, source, refused);
+				}
+				source.readAll(buffer);
+			} else {
+				while (!source.exhausted()) {
+					long chunk = source.buffer().size();
+					MemoryBudget refused = reservation.acquire(chunk);
+					if (refused != null) {
+						return spill(body.contentType(), buffer, source, refused);
+					}
+					buffer.write(source.buffer(), chunk);
+				}
+			}
+		} catch (IOException e) {
+			reservation.run();
+			throw e;
+		}
+		Release release = new Release(reservation);
+		release.track(buffer);
+		return new BufferedBody(body.contentType(), buffer, release);
+	}
+
+	/**
+	 * Spill a body not fitting in the budgets to a temporary file, deleted when
+	 * the body is read or closed
+	 *
+	 * @param contentType,
+	 *            the media type of the body
+	 * @param buffered,
+	 *            the bytes of the body already buffered
+	 * @param source,
+	 *            the source of the rest of the body
+	 * @param budget,
+	 *            the budget refusing the body
+	 * @return the body read from the temporary file
+	 * @throws IOException
+	 *             if the body cannot be written to the temporary file
+	 */
+	private static ResponseBody spill(MediaType contentType, Buffer buffered, BufferedSource source,
+			MemoryBudget budget) throws IOException {
+		Path file = Files.createTempFile(budget.getConfig().getSpillDirectory(), "reactiverest-", ".body");
+		long length;
+		try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+			length = buffered.size();
+			sink.write(buffered, buffered.size());
+			length += sink.writeAll(source);
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		MetricsService.increment(SPILL_METRIC);
+		Release release = new Release(() -> {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				LOGGER.warn("Unable to delete the spilled body %s: %s", file, e.getMessage());
+			}
+		});
+		BufferedSource fileSource = Okio.buffer(new ForwardingSource(Okio.source(file)) {
+			@Override
+			public void close() throws IOException {
+				super.close();
+				release.run();
+			}
+		});
+		release.track(fileSource);
+		return ResponseBody.create(contentType, length, fileSource);
+	}
+
+	/**
+	 * Run the releases of the bodies garbage collected without being closed
+	 */
+	private static void releaseCollected() {
+		Reference<?> reference;
+		while ((reference = COLLECTED.poll()) != null) {
+			((Tracker) reference).release.run();
+		}
+	}
+
+	/**
+	 * The bytes of a body acquired from the budgets of its host, released all
+	 * at once
+	 */
+	private static class Reservation implements Runnable {
+
+		/**
+		 * The budgets of the host, the one of the host first
+		 */
+		private final List<MemoryBudget> budgets;
+
+		/**
+		 * The boolean indicating if the bytes can be waited for
+		 */
+		private final boolean wait;
+
+		/**
+		 * The bytes acquired from each budget
+		 */
+		private long held;
+
+		/**
+		 * Construct a new {@link Reservation}
+		 *
+		 * @param budgets,
+		 *            the budgets of the host
+		 * @param wait,
+		 *            a boolean indicating if the bytes can be waited for in
+		 *            {@link MemoryBudgetMode#WAIT} mode
+		 */
+		Reservation(List<MemoryBudget> budgets, boolean wait) {
+			this.budgets = budgets;
+			this.wait = wait;
+		}
+
+		/**
+		 * Acquire the given bytes from all the budgets, as stated by the mode of
+		 * each budget
+		 *
+		 * @param bytes,
+		 *            the bytes to acquire
+		 * @return {@code null} if the bytes were acquired, otherwise the budget
+		 *         refusing them in {@link MemoryBudgetMode#SPILL} mode, or in
+		 *         {@link MemoryBudgetMode#WAIT} mode if the bytes cannot be
+		 *         waited for
+		 * @throws IOException
+		 *             if a budget refuses the bytes in another mode
+		 */
+		MemoryBudget acquire(long bytes) throws IOException {
+			for (int i = 0; i < budgets.size(); i++) {
+				MemoryBudget budget = budgets.get(i);
+				MemoryBudgetMode mode = budget.getConfig().getMode();
+				if (!budget.acquire(bytes, held, wait ? budget.getConfig().getMaxWait() : 0)) {
+					for (int j = 0; j < i; j++) {
+						budgets.get(j).release(bytes);
+					}
+					if (mode == MemoryBudgetMode.SPILL || (mode == MemoryBudgetMode.WAIT && !wait)) {
+						// the bytes buffered so far move to the file
+						run();
+						return budget;
+					}
+					MetricsService.increment(REJECTED_METRIC);
+					throw new MemoryBudgetExceededException(budget.getName());
+				}
+			}
+			held += bytes;
+			return null;
+		}
+
+		@Override
+		public void run() {
+			long bytes = held;
+			held = 0;
+			if (bytes > 0) {
+				budgets.forEach(budget -> budget.release(bytes));
+			}
+		}
+
+	}
+
+	/**
+	 * A body buffered in memory, whose source is the buffer itself, so that it
+	 * can be read again through views of the buffer, released when the body is
+	 * closed
+	 */
+	private static class BufferedBody extends ResponseBody {
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType contentType;
+
+		/**
+		 * The length in bytes of the body
+		 */
+		private final long contentLength;
+
+		/**
+		 * The bytes of the body
+		 */
+		private final Buffer buffer;
+
+		/**
+		 * The release of the body
+		 */
+		private final Release release;
+
+		/**
+		 * Construct a new {@link BufferedBody}
+		 *
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param buffer,
+		 *            the bytes of the body
+		 * @param release,
+		 *            the release of the body
+		 */
+		BufferedBody(MediaType contentType, Buffer buffer, Release release) {
+			this.contentType = contentType;
+			this.contentLength = buffer.size();
+			this.buffer = buffer;
+			this.release = release;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return contentType;
+		}
+
+		@Override
+		public long contentLength() {
+			return contentLength;
+		}
+
+		@Override
+		public BufferedSource source() {
+			return buffer;
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			release.run();
+		}
+
+	}
+
+	/**
+	 * The release of a body, run once when the body is closed or garbage
+	 * collected
+	 */
+	private static class Release implements Runnable {
+
+		/**
+		 * The action releasing the body
+		 */
+		private final Runnable action;
+
+		/**
+		 * The boolean indicating if the body was released
+		 */
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		/**
+		 * The reference tracking the garbage collection of the body
+		 */
+		private volatile Tracker tracker;
+
+		/**
+		 * Construct a new {@link Release}
+		 *
+		 * @param action,
+		 *            the action releasing the body
+		 */
+		Release(Runnable action) {
+			this.action = action;
+		}
+
+		/**
+		 * Track the given source of the body, to release the body once the
+		 * source is garbage collected
+		 *
+		 * @param source,
+		 *            the source of the body
+		 */
+		void track(Object source) {
+			Tracker newTracker = new Tracker(source, this);
+			tracker = newTracker;
+			RELEASES.add(newTracker);
+		}
+
+		@Override
+		public void run() {
+			if (released.compareAndSet(false, true)) {
+				Tracker currentTracker = tracker;
+				if (currentTracker != null) {
+					RELEASES.remove(currentTracker);
+				}
+				action.run();
+			}
+		}
+
+	}
+
+	/**
+	 * The reference to the source of a body, enqueued once the source is
+	 * garbage collected
+	 */
+	private static class Tracker extends PhantomReference<Object> {
+
+		/**
+		 * The release of the body
+		 */
+		private final Release release;
+
+		/**
+		 * Construct a new {@link Tracker}
+		 *
+		 * @param source,
+		 *            the source of the body
+		 * @param release,
+		 *            the release of the body
+		 */
+		Tracker(Object source, Release release) {
+			super(source, COLLECTED);
+			this.release = release;
+		}
+
+	}
+
+}
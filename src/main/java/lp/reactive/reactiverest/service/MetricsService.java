@@ -0,0 +1,141 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This service collects the metrics of the library: counters, incremented by
+ * the components on the call path, and gauges, read from their live state when
+ * the metrics are retrieved
+ *
+ * @author lucapompei
+ */
+public class MetricsService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(MetricsService.class);
+
+	/**
+	 * The counters, by metric name
+	 */
+	private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+	/**
+	 * The gauges, by metric name
+	 */
+	private static final Map<String, Supplier<? extends Number>> GAUGES = new ConcurrentHashMap<>();
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code MetricsService}
+	 */
+	private MetricsService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Build the name of a metric referring to a base url
+	 *
+	 * @param name,
+	 *            the name of the metric
+	 * @param baseUrl,
+	 *            the base url the metric refers to
+	 * @return the name of the metric of the base url, e.g.
+	 *         {@code concurrency.limit{http://localhost/}}
+	 */
+	public static String nameOf(String name, String baseUrl) {
+		return name + "{" + baseUrl + "}";
+	}
+
+	/**
+	 * Increment by one the given counter
+	 *
+	 * @param name,
+	 *            the name of the counter
+	 */
+	public static void increment(String name) {
+		add(name, 1);
+	}
+
+	/**
+	 * Increment by the given amount the given counter
+	 *
+	 * @param name,
+	 *            the name of the counter
+	 * @param amount,
+	 *            the amount to add
+	 */
+	public static void add(String name, long amount) {
+		COUNTERS.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+	}
+
+	/**
+	 * Register a gauge, replacing any previous one with the same name
+	 *
+	 * @param name,
+	 *            the name of the gauge
+	 * @param gauge,
+	 *            the supplier of the current value of the gauge
+	 */
+	public static void registerGauge(String name, Supplier<? extends Number> gauge) {
+		if (name == null || gauge == null) {
+			LOGGER.error("Gauge name and supplier cannot be null");
+			return;
+		}
+		GAUGES.put(name, gauge);
+	}
+
+	/**
+	 * Unregister a gauge
+	 *
+	 * @param name,
+	 *            the name of the gauge
+	 */
+	public static void unregisterGauge(String name) {
+		GAUGES.remove(name);
+	}
+
+	/**
+	 * Retrieve the current value of the given metric
+	 *
+	 * @param name,
+	 *            the name of the counter or gauge
+	 * @return the current value of the metric or {@code null} if not found
+	 */
+	public static Number getMetric(String name) {
+		LongAdder counter = COUNTERS.get(name);
+		if (counter != null) {
+			return counter.sum();
+		}
+		Supplier<? extends Number> gauge = GAUGES.get(name);
+		return gauge == null ? null : gauge.get();
+	}
+
+	/**
+	 * Retrieve a snapshot of all the metrics
+	 *
+	 * @return the current values of all the counters and gauges, sorted by name
+	 */
+	public static Map<String, Number> getMetrics() {
+		Map<String, Number> metrics = new TreeMap<>();
+		COUNTERS.forEach((name, counter) -> metrics.put(name, counter.sum()));
+		GAUGES.forEach((name, gauge) -> metrics.put(name, gauge.get()));
+		return metrics;
+	}
+
+	/**
+	 * Reset all the counters
+	 */
+	public static void resetCounters() {
+		COUNTERS.values().forEach(LongAdder::reset);
+	}
+
+}
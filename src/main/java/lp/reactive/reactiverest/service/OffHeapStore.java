@@ -0,0 +1,315 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * This class represents the off-heap storage of the large cached response
+ * bodies, so that they do not sit in the old generation of the heap. The
+ * storage is divided in slabs of {@value SLAB_SIZE} bytes, carved out of direct
+ * byte buffers allocated on demand, and a body is written in as many slabs as
+ * needed. The bodies are reference counted: their slabs are reused only when
+ * the cache and all the responses reading them have released them
+ *
+ * @author lucapompei
+ */
+class OffHeapStore {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(OffHeapStore.class);
+
+	/**
+	 * The size, in bytes, of a slab, also the minimum size of a body worth
+	 * storing off-heap
+	 */
+	static final int SLAB_SIZE = 32 * 1024;
+
+	/**
+	 * The number of slabs of a direct byte buffer, i.e. 8 MB
+	 */
+	private static final int SLABS_PER_ARENA = 256;
+
+	/**
+	 * The direct byte buffers, allocated on the first use of one of their slabs
+	 */
+	private final ByteBuffer[] arenas;
+
+	/**
+	 * The stack of the free slabs, the lowest ones on top
+	 */
+	private final int[] freeSlabs;
+
+	/**
+	 * The number of free slabs
+	 */
+	private int freeCount;
+
+	/**
+	 * Construct a new {@link OffHeapStore}
+	 *
+	 * @param maxSize,
+	 *            the maximum size in bytes of the stored bodies, rounded down
+	 *            to a multiple of {@value SLAB_SIZE}
+	 */
+	OffHeapStore(long maxSize) {
+		int slabCount = (int) Math.min(Integer.MAX_VALUE - 1, Math.max(0, maxSize) / SLAB_SIZE);
+		this.arenas = new ByteBuffer[(slabCount + SLABS_PER_ARENA - 1) / SLABS_PER_ARENA];
+		this.freeSlabs = new int[slabCount];
+		for (int i = 0; i < slabCount; i++) {
+			freeSlabs[i] = slabCount - 1 - i;
+		}
+		this.freeCount = slabCount;
+	}
+
+	/**
+	 * Retrieve the capacity of this store
+	 *
+	 * @return the maximum size in bytes of the stored bodies
+	 */
+	long getCapacity() {
+		return (long) freeSlabs.length * SLAB_SIZE;
+	}
+
+	/**
+	 * Retrieve the size of the slabs in use
+	 *
+	 * @return the size in bytes of the slabs in use
+	 */
+	synchronized long getSize() {
+		return (long) (freeSlabs.length - freeCount) * SLAB_SIZE;
+	}
+
+	/**
+	 * Store the given bytes off-heap
+	 *
+	 * @param bytes,
+	 *            the bytes to store
+	 * @return the stored {@link Body}, referenced once by the caller, or
+	 *         {@code null} if there are not enough free slabs
+	 */
+	Body store(byte[] bytes) {
+		int[] slabs = allocate((bytes.length + SLAB_SIZE - 1) / SLAB_SIZE);
+		if (slabs == null) {
+			return null;
+		}
+		for (int i = 0; i < slabs.length; i++) {
+			int offset = i * SLAB_SIZE;
+			slab(slabs[i]).put(bytes, offset, Math.min(SLAB_SIZE, bytes.length - offset));
+		}
+		return new Body(slabs, bytes.length);
+	}
+
+	/**
+	 * Take the given number of slabs from the free ones, allocating their
+	 * direct byte buffers if needed
+	 *
+	 * @param count,
+	 *            the number of slabs
+	 * @return the indexes of the slabs or {@code null} if there are not enough
+	 *         free slabs
+	 */
+	private synchronized int[] allocate(int count) {
+		if (count > freeCount) {
+			return null;
+		}
+		int[] slabs = new int[count];
+		for (int i = 0; i < count; i++) {
+			int slab = freeSlabs[--freeCount];
+			int arena = slab / SLABS_PER_ARENA;
+			if (arenas[arena] == null) {
+				try {
+					int slabsInArena = Math.min(SLABS_PER_ARENA, freeSlabs.length - arena * SLABS_PER_ARENA);
+					arenas[arena] = ByteBuffer.allocateDirect(slabsInArena * SLAB_SIZE);
+				} catch (OutOfMemoryError e) {
+					LOGGER.error("Unable to allocate off-heap memory: " + e.getMessage());
+					freeCount++;
+					free(slabs, i);
+					return null;
+				}
+			}
+			slabs[i] = slab;
+		}
+		return slabs;
+	}
+
+	/**
+	 * Give back the given slabs to the free ones
+	 *
+	 * @param slabs,
+	 *            the indexes of the slabs
+	 * @param count,
+	 *            the number of slabs to give back
+	 */
+	private synchronized void free(int[] slabs, int count) {
+		for (int i = count - 1; i >= 0; i--) {
+			freeSlabs[freeCount++] = slabs[i];
+		}
+	}
+
+	/**
+	 * Retrieve a view of the given slab, with its own position and limit
+	 *
+	 * @param slab,
+	 *            the index of the slab
+	 * @return the byte buffer of the slab
+	 */
+	private ByteBuffer slab(int slab) {
+		ByteBuffer view = arenas[slab / SLABS_PER_ARENA].duplicate();
+		int start = (slab % SLABS_PER_ARENA) * SLAB_SIZE;
+		view.limit(start + SLAB_SIZE);
+		view.position(start);
+		return view.slice();
+	}
+
+	/**
+	 * This class represents a body stored off-heap
+	 */
+	final class Body {
+
+		/**
+		 * The indexes of the slabs holding the body
+		 */
+		private final int[] slabs;
+
+		/**
+		 * The length, in bytes, of the body
+		 */
+		private final int length;
+
+		/**
+		 * The number of references to the body
+		 */
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		/**
+		 * Construct a new {@link Body}
+		 *
+		 * @param slabs,
+		 *            the indexes of the slabs holding the body
+		 * @param length,
+		 *            the length in bytes of the body
+		 */
+		private Body(int[] slabs, int length) {
+			this.slabs = slabs;
+			this.length = length;
+		}
+
+		/**
+		 * Retrieve the length of the body
+		 *
+		 * @return the length in bytes of the body
+		 */
+		int getLength() {
+			return length;
+		}
+
+		/**
+		 * Add a reference to the body, by a holder of another reference
+		 */
+		void retain() {
+			references.incrementAndGet();
+		}
+
+		/**
+		 * Remove a reference to the body, freeing its slabs with the last one
+		 */
+		void release() {
+			if (references.decrementAndGet() == 0) {
+				free(slabs, slabs.length);
+			}
+		}
+
+		/**
+		 * Build a response body reading directly from the slabs, referencing the
+		 * body until closed
+		 *
+		 * @param contentType,
+		 *            the media type of the body
+		 * @return the {@link ResponseBody}
+		 */
+		ResponseBody toResponseBody(MediaType contentType) {
+			retain();
+			BufferedSource source = Okio.buffer(new SlabSource());
+			return new ResponseBody() {
+				@Override
+				public MediaType contentType() {
+					return contentType;
+				}
+
+				@Override
+				public long contentLength() {
+					return length;
+				}
+
+				@Override
+				public BufferedSource source() {
+					return source;
+				}
+			};
+		}
+
+		/**
+		 * This class represents a source reading the body slab by slab
+		 */
+		private final class SlabSource implements Source {
+
+			/**
+			 * The position of the next byte to read
+			 */
+			private int position;
+
+			/**
+			 * The boolean indicating if the source is closed
+			 */
+			private boolean closed;
+
+			@Override
+			public long read(Buffer sink, long byteCount) throws IOException {
+				if (closed) {
+					throw new IllegalStateException("closed");
+				}
+				if (position == length) {
+					return -1;
+				}
+				int offset = position % SLAB_SIZE;
+				int count = (int) Math.min(byteCount, Math.min(length - position, SLAB_SIZE - offset));
+				ByteBuffer slab = slab(slabs[position / SLAB_SIZE]);
+				slab.position(offset);
+				slab.limit(offset + count);
+				sink.write(slab);
+				position += count;
+				return count;
+			}
+
+			@Override
+			public Timeout timeout() {
+				return Timeout.NONE;
+			}
+
+			@Override
+			public void close() {
+				if (!closed) {
+					closed = true;
+					release();
+				}
+			}
+
+		}
+
+	}
+
+}
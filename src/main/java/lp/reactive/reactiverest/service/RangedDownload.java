@@ -0,0 +1,486 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.ProgressListener;
+import lp.reactive.reactiverest.model.RetryPolicy;
+import okio.BufferedSource;
+
+/**
+ * This class downloads a resource to a file over parallel connections: a probe
+ * of the first byte tells if the server accepts byte ranges and the length of
+ * the resource, then the file is preallocated and the resource is split into
+ * ranges, fetched concurrently and written at their offsets. An interrupted
+ * range is resumed from its last byte written, after the delay of the retry
+ * policy scheduled without holding any thread, and every range is requested
+ * only if the resource is unchanged since the probe. When the server does not
+ * accept byte ranges, the resource is downloaded over a single connection
+ *
+ * @author lucapompei
+ */
+class RangedDownload {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(RangedDownload.class);
+
+	/**
+	 * The minimum size of a range, so that small resources are not split into
+	 * ranges costing more in round trips than they gain in throughput
+	 */
+	private static final long MIN_RANGE_SIZE = 1024 * 1024;
+
+	/**
+	 * The maximum number of bytes written at once to the file, between two
+	 * checks of the failure of the other ranges
+	 */
+	private static final long TRANSFER_SIZE = 64 * 1024;
+
+	/**
+	 * The http status code of a partial content
+	 */
+	private static final int PARTIAL_CONTENT = 206;
+
+	/**
+	 * The pattern of the {@code Content-Range} header of a partial content
+	 */
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+	/**
+	 * The http request of the resource
+	 */
+	private final HttpRequest httpRequest;
+
+	/**
+	 * The file written
+	 */
+	private final Path file;
+
+	/**
+	 * The maximum number of ranges fetched concurrently
+	 */
+	private final int parallelism;
+
+	/**
+	 * The maximum number of attempts of each range
+	 */
+	private final int attempts;
+
+	/**
+	 * The listener of the download progress or {@code null}
+	 */
+	private final ProgressListener listener;
+
+	/**
+	 * The number of bytes written so far, by all the ranges
+	 */
+	private final AtomicLong written = new AtomicLong();
+
+	/**
+	 * The first error of a range, which stops the others
+	 */
+	private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+	/**
+	 * The validator of the resource returned by the probe, sent as
+	 * {@code If-Range} by the ranges, or {@code null}
+	 */
+	private String validator;
+
+	/**
+	 * The length of the resource returned by the probe, reported to the
+	 * listener, or {@code -1} if unknown
+	 */
+	private long length = -1;
+
+	/**
+	 * Construct a new {@link RangedDownload}
+	 *
+	 * @param httpRequest,
+	 *            the http request of the resource
+	 * @param file,
+	 *            the file written
+	 * @param parallelism,
+	 *            the maximum number of ranges fetched concurrently
+	 * @param attempts,
+	 *            the maximum number of attempts of each range
+	 * @param listener,
+	 *            the listener of the download progress or {@code null}
+	 */
+	RangedDownload(HttpRequest httpRequest, Path file, int parallelism, int attempts, ProgressListener listener) {
+		this.httpRequest = httpRequest;
+		this.file = file;
+		this.parallelism = Math.max(1, parallelism);
+		this.attempts = Math.max(1, attempts);
+		this.listener = listener;
+	}
+
+	/**
+	 * Download the resource to the file, deleting the file if the download
+	 * fails
+	 *
+	 * @return the length of the resource
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	long execute() throws ExecutionException, IOException {
+		try {
+			return download();
+		} catch (ExecutionException | IOException | RuntimeException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * Probe the resource and download it, split into ranges if possible
+	 *
+	 * @return the length of the resource
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	private long download() throws ExecutionException, IOException {
+		HttpResponse probe = RestService.callSync(rangeRequest(0, 0, false), attempts, new CallHandle());
+		if (probe == null) {
+			throw new IOException("Unable to probe the resource");
+		}
+		int statusCode = probe.getStatus();
+		Matcher contentRange = CONTENT_RANGE.matcher(nullToEmpty(probe.getHeaders().get("Content-Range")));
+		if (statusCode == PARTIAL_CONTENT && contentRange.matches() && !"*".equals(contentRange.group(3))
+				&& !"none".equalsIgnoreCase(probe.getHeaders().get("Accept-Ranges"))) {
+			probe.close();
+			validator = getValidator(probe);
+			length = Long.parseLong(contentRange.group(3));
+			return downloadRanges();
+		}
+		if (statusCode == PARTIAL_CONTENT) {
+			// the length of the resource is unknown, the whole resource is requested
+			probe.close();
+			probe = RestService.callSync(rangeRequest(0, -1, false), attempts, new CallHandle());
+			if (probe == null) {
+				throw new IOException("Unable to request the resource");
+			}
+		}
+		if (!probe.isSuccessful()) {
+			probe.close();
+			throw new IOException("Unable to download the resource: " + probe.getStatusCode());
+		}
+		LOGGER.debug("Byte ranges not accepted by the server, downloading over a single connection");
+		long contentLength = probe.getContentLength();
+		long size = probe.writeTo(file, listener);
+		if (contentLength >= 0 && size != contentLength) {
+			throw new IOException("Downloaded " + size + " bytes instead of " + contentLength);
+		}
+		return size;
+	}
+
+	/**
+	 * Download the resource of the length returned by the probe split into
+	 * ranges, fetched concurrently into a preallocated file
+	 *
+	 * @return the length of the resource
+	 * @throws IOException
+	 *             if a range cannot be downloaded or the file cannot be written
+	 */
+	private long downloadRanges() throws IOException {
+		int count = (int) Math.max(1, Math.min(parallelism, (length + MIN_RANGE_SIZE - 1) / MIN_RANGE_SIZE));
+		long rangeSize = (length + count - 1) / count;
+		List<Range> ranges = new ArrayList<>(count);
+		for (long start = 0; start < length; start += rangeSize) {
+			ranges.add(new Range(start, Math.min(start + rangeSize, length) - 1));
+		}
+		LOGGER.debug("Downloading %d bytes in %d ranges", length, ranges.size());
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+			randomAccessFile.setLength(0);
+			randomAccessFile.setLength(length);
+			FileChannel channel = randomAccessFile.getChannel();
+			try {
+				Flowable.fromIterable(ranges)
+						.flatMapCompletable(range -> fetch(channel, range), true, ranges.size()).blockingAwait();
+			} catch (RuntimeException e) {
+				// the first failure is rethrown, the others are caused by it
+				IOException error = failure.get();
+				if (error != null) {
+					throw error;
+				}
+				throw e;
+			}
+			for (Range range : ranges) {
+				if (range.next != range.end + 1) {
+					throw new IOException("Range " + range + " incomplete");
+				}
+			}
+			if (written.get() != length || channel.size() != length) {
+				throw new IOException("Downloaded " + written.get() + " bytes instead of " + length);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Fetch the given range into the file on an io thread, resuming it from its
+	 * last byte written when interrupted. The delay of the retry policy before
+	 * resuming is scheduled on a timer, so that no thread waits for it and a
+	 * disposed download cancels it
+	 *
+	 * @param channel,
+	 *            the channel of the file
+	 * @param range,
+	 *            the range to fetch
+	 * @return the {@link Completable} failing if the range cannot be fetched
+	 *         within the allowed attempts or another range failed
+	 */
+	private Completable fetch(FileChannel channel, Range range) {
+		RetryPolicy retryPolicy = httpRequest.getRetryPolicy();
+		AtomicInteger attempt = new AtomicInteger(1);
+		return Completable.fromAction(() -> transfer(channel, range)).subscribeOn(Schedulers.io())
+				.retryWhen(errors -> errors.flatMap(error -> {
+					int retry = attempt.getAndIncrement();
+					if (!isResumable(error, retry)) {
+						if (error instanceof IOException) {
+							failure.compareAndSet(null, (IOException) error);
+						}
+						return Flowable.error(error);
+					}
+					LOGGER.warn("Range " + range + " interrupted, resuming: " + error.getMessage());
+					return Flowable.timer(retryPolicy.getDelay(retry), TimeUnit.MILLISECONDS);
+				}));
+	}
+
+	/**
+	 * Check if the given range can be resumed after the given failed attempt
+	 *
+	 * @param error,
+	 *            the error of the attempt
+	 * @param attempt,
+	 *            the number of the failed attempt, starting from 1
+	 * @return a boolean indicating if the range can be resumed
+	 */
+	private boolean isResumable(Throwable error, int attempt) {
+		if (!(error instanceof IOException) || failure.get() != null || attempt >= attempts) {
+			return false;
+		}
+		boolean retryable = !(error instanceof RangeException) || ((RangeException) error).retryable;
+		return retryable && httpRequest.getRetryPolicy().isRetryable(HttpMethod.GET, error);
+	}
+
+	/**
+	 * Request the bytes of the given range not written yet and write them to
+	 * the file, as they are received
+	 *
+	 * @param channel,
+	 *            the channel of the file
+	 * @param range,
+	 *            the range to fetch
+	 * @throws IOException
+	 *             if the bytes cannot be received or written, or another range
+	 *             failed
+	 */
+	private void transfer(FileChannel channel, Range range) throws IOException {
+		if (failure.get() != null) {
+			throw new RangeException("Download failed", false);
+		}
+		HttpResponse response;
+		try {
+			response = RestService.callSync(rangeRequest(range.next, range.end, true), 1, new CallHandle());
+		} catch (ExecutionException e) {
+			throw new RangeException("Unable to retrieve the REST client", false);
+		}
+		if (response == null) {
+			throw new RangeException("Unable to request the range " + range, false);
+		}
+		try {
+			int statusCode = response.getStatus();
+			if (statusCode == 200) {
+				// a full content answers an If-Range of a resource changed since the probe
+				throw new RangeException("The resource changed during the download", false);
+			}
+			if (statusCode != PARTIAL_CONTENT) {
+				throw new RangeException("Unexpected response to the range " + range + ": "
+						+ response.getStatusCode(),
+						httpRequest.getRetryPolicy().isRetryable(HttpMethod.GET, statusCode));
+			}
+			Matcher contentRange = CONTENT_RANGE.matcher(nullToEmpty(response.getHeaders().get("Content-Range")));
+			if (!contentRange.matches() || Long.parseLong(contentRange.group(1)) != range.next) {
+				throw new RangeException("Unexpected content range for the range " + range + ": "
+						+ response.getHeaders().get("Content-Range"), false);
+			}
+			BufferedSource source = response.getBodySource();
+			while (range.next <= range.end) {
+				if (failure.get() != null) {
+					throw new RangeException("Download failed", false);
+				}
+				long transferred = channel.transferFrom(source, range.next,
+						Math.min(TRANSFER_SIZE, range.end + 1 - range.next));
+				if (transferred <= 0) {
+					throw new IOException("Range " + range + " ended early");
+				}
+				range.next += transferred;
+				long total = written.addAndGet(transferred);
+				if (listener != null) {
+					listener.onProgress(total, length);
+				}
+			}
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Build the request of the given range of the resource
+	 *
+	 * @param first,
+	 *            the first byte requested
+	 * @param last,
+	 *            the last byte requested or {@code -1} for the whole resource
+	 * @param conditional,
+	 *            a boolean indicating if the range is requested only if the
+	 *            resource is unchanged since the probe
+	 * @return the {@link HttpRequest} of the range
+	 */
+	private HttpRequest rangeRequest(long first, long last, boolean conditional) {
+		Map<String, String> headers = httpRequest.getHeaders() == null ? new HashMap<>()
+				: new HashMap<>(httpRequest.getHeaders());
+		if (last >= 0) {
+			headers.put("Range", "bytes=" + first + "-" + last);
+		}
+		if (conditional && validator != null) {
+			headers.put("If-Range", validator);
+		}
+		return new HttpRequest.Builder(httpRequest.getBaseUrl(), httpRequest.getApiEndpoint())
+				.httpMethod(HttpMethod.GET).headers(headers).queryParams(httpRequest.getQueryParams())
+				.queryString(httpRequest.getQueryString())
+				.connectTimeout(httpRequest.getConnectTimeout(), TimeUnit.MILLISECONDS)
+				.readTimeout(httpRequest.getReadTimeout(), TimeUnit.MILLISECONDS)
+				.retryPolicy(httpRequest.getRetryPolicy()).streaming(true).build();
+	}
+
+	/**
+	 * Retrieve the validator of the resource usable as {@code If-Range}: its
+	 * strong entity tag or, if missing, its last modification date
+	 *
+	 * @param response,
+	 *            the response of the probe
+	 * @return the validator or {@code null} if the resource has none
+	 */
+	private static String getValidator(HttpResponse response) {
+		String etag = response.getHeaders().get("ETag");
+		if (etag != null && !etag.startsWith("W/")) {
+			return etag;
+		}
+		return response.getHeaders().get("Last-Modified");
+	}
+
+	/**
+	 * Return the given string or an empty one if {@code null}
+	 *
+	 * @param value,
+	 *            the string to check
+	 * @return the given string or an empty one
+	 */
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+
+	/**
+	 * This class represents a range of the resource, with the position of its
+	 * next byte to fetch
+	 */
+	private static final class Range {
+
+		/**
+		 * The first and the last byte of the range
+		 */
+		private final long start;
+		private final long end;
+
+		/**
+		 * The next byte to fetch, written only by the thread fetching the range
+		 */
+		private volatile long next;
+
+		/**
+		 * Construct a new {@link Range}
+		 *
+		 * @param start,
+		 *            the first byte of the range
+		 * @param end,
+		 *            the last byte of the range
+		 */
+		private Range(long start, long end) {
+			this.start = start;
+			this.end = end;
+			this.next = start;
+		}
+
+		/**
+		 * Return a prepared string to represent this object
+		 *
+		 * @return a prepared string to represent this object
+		 */
+		public String toString() {
+			return start + "-" + end;
+		}
+
+	}
+
+	/**
+	 * This exception represents a failure of a range, which can be resumed or
+	 * not
+	 */
+	private static final class RangeException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * A boolean indicating if the range can be resumed
+		 */
+		private final boolean retryable;
+
+		/**
+		 * Construct a new {@link RangeException}
+		 *
+		 * @param message,
+		 *            the message of the exception
+		 * @param retryable,
+		 *            a boolean indicating if the range can be resumed
+		 */
+		private RangeException(String message, boolean retryable) {
+			super(message);
+			this.retryable = retryable;
+		}
+
+	}
+
+}
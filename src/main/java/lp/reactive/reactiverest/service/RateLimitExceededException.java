@@ -0,0 +1,43 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+/**
+ * This exception signals that an api call failed because the rate limit of its
+ * base url or api endpoint allowed no permit in time
+ *
+ * @author lucapompei
+ */
+public class RateLimitExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The base url, possibly followed by the api endpoint, whose rate limit was
+	 * exceeded
+	 */
+	private final String name;
+
+	/**
+	 * Construct a new {@link RateLimitExceededException}
+	 *
+	 * @param name,
+	 *            the base url, possibly followed by the api endpoint, whose rate
+	 *            limit was exceeded
+	 */
+	public RateLimitExceededException(String name) {
+		super("Rate limit exceeded for " + name);
+		this.name = name;
+	}
+
+	/**
+	 * Retrieve the name of the exceeded rate limit
+	 *
+	 * @return the base url, possibly followed by the api endpoint, whose rate
+	 *         limit was exceeded
+	 */
+	public String getName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,132 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lp.reactive.reactiverest.model.RateLimitConfig;
+
+/**
+ * This class represents a lock-free token bucket limiting the rate of the api
+ * calls. The bucket is kept as the theoretical arrival time of the next call,
+ * in the style of the generic cell rate algorithm: each permit moves it one
+ * emission interval forward and a call can proceed as soon as it is no more
+ * than the burst ahead of the current time. A single compare-and-set reserves a
+ * permit, and the returned wait tells the caller when to proceed
+ *
+ * @author lucapompei
+ */
+public class RateLimiter {
+
+	/**
+	 * The name identifying this limiter, i.e. its base url, possibly followed by
+	 * its api endpoint
+	 */
+	private final String name;
+
+	/**
+	 * The configuration of this limiter
+	 */
+	private final RateLimitConfig config;
+
+	/**
+	 * The time, in nanoseconds, between two permits
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * The time, in nanoseconds, the theoretical arrival time can be ahead of the
+	 * current time without waiting, i.e. the burst capacity
+	 */
+	private final long burstNanos;
+
+	/**
+	 * The theoretical arrival time of the next call, expressed as
+	 * {@link System#nanoTime()}
+	 */
+	private final AtomicLong nextArrival;
+
+	/**
+	 * Construct a new {@link RateLimiter}
+	 *
+	 * @param name,
+	 *            the name identifying the limiter
+	 * @param config,
+	 *            the configuration of the limiter
+	 */
+	RateLimiter(String name, RateLimitConfig config) {
+		this.name = name;
+		this.config = config;
+		this.intervalNanos = Math.max(1, config.getPeriodNanos() / config.getPermits());
+		this.burstNanos = (config.getBurst() - 1) * intervalNanos;
+		this.nextArrival = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Retrieve the name identifying this limiter
+	 *
+	 * @return the base url, possibly followed by the api endpoint
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Retrieve the configuration of this limiter
+	 *
+	 * @return the configuration of this limiter
+	 */
+	public RateLimitConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Retrieve the number of permits currently available without waiting
+	 *
+	 * @return the number of available permits
+	 */
+	public int getAvailablePermits() {
+		long ahead = Math.max(0, nextArrival.get() - System.nanoTime());
+		long available = Math.floorDiv(burstNanos - ahead, intervalNanos) + 1;
+		return (int) Math.max(0, Math.min(available, config.getBurst()));
+	}
+
+	/**
+	 * Reserve a permit, provided it becomes available within the given time
+	 *
+	 * @param maxWaitNanos,
+	 *            the maximum time to wait for the permit in nanoseconds
+	 * @return the time to wait in nanoseconds before using the permit, or
+	 *         {@code -1} if no permit becomes available in time and nothing is
+	 *         reserved
+	 */
+	long reserve(long maxWaitNanos) {
+		while (true) {
+			long now = System.nanoTime();
+			long current = nextArrival.get();
+			long waitNanos = Math.max(0, current - burstNanos - now);
+			if (waitNanos > maxWaitNanos) {
+				return -1;
+			}
+			// an idle bucket does not accumulate more than the burst
+			if (nextArrival.compareAndSet(current, Math.max(current, now) + intervalNanos)) {
+				return waitNanos;
+			}
+		}
+	}
+
+	/**
+	 * Give back a reserved permit that will not be used. The theoretical arrival
+	 * time is never moved before the current time, which would grant a burst
+	 * beyond the configured capacity
+	 */
+	void refund() {
+		while (true) {
+			long now = System.nanoTime();
+			long current = nextArrival.get();
+			long refunded = Math.max(current - intervalNanos, now);
+			if (refunded >= current || nextArrival.compareAndSet(current, refunded)) {
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.RateLimitConfig;
+
+/**
+ * This service handles the token buckets limiting the rate of the api calls,
+ * configurable for a base url and for a single api endpoint of a base url. An
+ * api call takes a permit from both the limiter of its api endpoint and the
+ * limiter of its base url, if any
+ *
+ * @author lucapompei
+ */
+public class RateLimiterService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(RateLimiterService.class);
+
+	/**
+	 * The names of the metrics of each rate limiter
+	 */
+	public static final String AVAILABLE_METRIC = "ratelimit.available";
+	public static final String DELAYED_METRIC = "ratelimit.delayed";
+	public static final String REJECTED_METRIC = "ratelimit.rejected";
+
+	/**
+	 * The rate limiters of the base urls, by base url
+	 */
+	private static final Map<String, RateLimiter> BASE_URL_LIMITERS = new ConcurrentHashMap<>();
+
+	/**
+	 * The rate limiters of the api endpoints, by base url followed by api
+	 * endpoint
+	 */
+	private static final Map<String, RateLimiter> ENDPOINT_LIMITERS = new ConcurrentHashMap<>();
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code RateLimiterService}
+	 */
+	private RateLimiterService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Limit the rate of all the api calls made to the given base url, replacing
+	 * any previous limit
+	 *
+	 * @param baseUrl,
+	 *            the base url to limit
+	 * @param config,
+	 *            the configuration of the rate limit
+	 */
+	public static void configure(String baseUrl, RateLimitConfig config) {
+		if (baseUrl == null || config == null) {
+			LOGGER.error("Base url and rate limit configuration cannot be null");
+			return;
+		}
+		register(BASE_URL_LIMITERS, baseUrl, config);
+	}
+
+	/**
+	 * Limit the rate of the api calls made to the given api endpoint of a base
+	 * url, replacing any previous limit
+	 *
+	 * @param baseUrl,
+	 *            the base url of the api endpoint
+	 * @param apiEndpoint,
+	 *            the api endpoint to limit
+	 * @param config,
+	 *            the configuration of the rate limit
+	 */
+	public static void configure(String baseUrl, String apiEndpoint, RateLimitConfig config) {
+		if (baseUrl == null || apiEndpoint == null || config == null) {
+			LOGGER.error("Base url, api endpoint and rate limit configuration cannot be null");
+			return;
+		}
+		register(ENDPOINT_LIMITERS, baseUrl + apiEndpoint, config);
+	}
+
+	/**
+	 * Remove the rate limit of the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url no more limited
+	 */
+	public static void disable(String baseUrl) {
+		if (baseUrl != null && BASE_URL_LIMITERS.remove(baseUrl) != null) {
+			MetricsService.unregisterGauge(MetricsService.nameOf(AVAILABLE_METRIC, baseUrl));
+		}
+	}
+
+	/**
+	 * Remove the rate limit of the given api endpoint of a base url
+	 *
+	 * @param baseUrl,
+	 *            the base url of the api endpoint
+	 * @param apiEndpoint,
+	 *            the api endpoint no more limited
+	 */
+	public static void disable(String baseUrl, String apiEndpoint) {
+		if (baseUrl != null && apiEndpoint != null && ENDPOINT_LIMITERS.remove(baseUrl + apiEndpoint) != null) {
+			MetricsService.unregisterGauge(MetricsService.nameOf(AVAILABLE_METRIC, baseUrl + apiEndpoint));
+		}
+	}
+
+	/**
+	 * Retrieve the number of permits currently available for the given base url
+	 *
+	 * @param baseUrl,
+	 *            the base url to check
+	 * @return the number of available permits or {@code -1} if the base url is
+	 *         not limited
+	 */
+	public static int getAvailablePermits(String baseUrl) {
+		RateLimiter limiter = baseUrl == null ? null : BASE_URL_LIMITERS.get(baseUrl);
+		return limiter == null ? -1 : limiter.getAvailablePermits();
+	}
+
+	/**
+	 * Retrieve the number of permits currently available for the given api
+	 * endpoint of a base url
+	 *
+	 * @param baseUrl,
+	 *            the base url of the api endpoint
+	 * @param apiEndpoint,
+	 *            the api endpoint to check
+	 * @return the number of available permits or {@code -1} if the api endpoint
+	 *         is not limited
+	 */
+	public static int getAvailablePermits(String baseUrl, String apiEndpoint) {
+		RateLimiter limiter = baseUrl == null || apiEndpoint == null ? null
+				: ENDPOINT_LIMITERS.get(baseUrl + apiEndpoint);
+		return limiter == null ? -1 : limiter.getAvailablePermits();
+	}
+
+	/**
+	 * Reserve the permits needed by an attempt of the given http request
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @param deadline,
+	 *            the deadline of the api call, bounding the wait
+	 * @return the time to wait in nanoseconds before sending the attempt
+	 * @throws RateLimitExceededException,
+	 *             if a permit is not available within the allowed wait
+	 */
+	static long reserve(HttpRequest httpRequest, Deadline deadline) throws RateLimitExceededException {
+		RateLimiter endpointLimiter = getEndpointLimiter(httpRequest);
+		RateLimiter baseUrlLimiter = getBaseUrlLimiter(httpRequest);
+		if (endpointLimiter == null && baseUrlLimiter == null) {
+			return 0;
+		}
+		long waitNanos = 0;
+		if (endpointLimiter != null) {
+			waitNanos = reserve(endpointLimiter, deadline);
+		}
+		if (baseUrlLimiter != null) {
+			try {
+				waitNanos = Math.max(waitNanos, reserve(baseUrlLimiter, deadline));
+			} catch (RateLimitExceededException ex) {
+				if (endpointLimiter != null) {
+					endpointLimiter.refund();
+				}
+				throw ex;
+			}
+		}
+		if (waitNanos > 0) {
+			MetricsService.increment(MetricsService.nameOf(DELAYED_METRIC,
+					endpointLimiter != null ? endpointLimiter.getName() : baseUrlLimiter.getName()));
+		}
+		return waitNanos;
+	}
+
+	/**
+	 * Take the permits needed by an attempt of the given http request only if
+	 * immediately available, e.g. for a hedged request
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @return a boolean indicating if the permits were taken
+	 */
+	static boolean tryAcquire(HttpRequest httpRequest) {
+		RateLimiter endpointLimiter = getEndpointLimiter(httpRequest);
+		RateLimiter baseUrlLimiter = getBaseUrlLimiter(httpRequest);
+		if (endpointLimiter != null && endpointLimiter.reserve(0) < 0) {
+			return false;
+		}
+		if (baseUrlLimiter != null && baseUrlLimiter.reserve(0) < 0) {
+			if (endpointLimiter != null) {
+				endpointLimiter.refund();
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reserve a permit from the given limiter
+	 *
+	 * @param limiter,
+	 *            the limiter to use
+	 * @param deadline,
+	 *            the deadline of the api call, bounding the wait
+	 * @return the time to wait in nanoseconds before using the permit
+	 * @throws RateLimitExceededException,
+	 *             if a permit is not available within the allowed wait
+	 */
+	private static long reserve(RateLimiter limiter, Deadline deadline) throws RateLimitExceededException {
+		long maxWaitNanos = TimeUnit.MILLISECONDS
+				.toNanos(Math.min(limiter.getConfig().getMaxWait(), deadline.remainingMillis()));
+		long waitNanos = limiter.reserve(maxWaitNanos);
+		if (waitNanos < 0) {
+			MetricsService.increment(MetricsService.nameOf(REJECTED_METRIC, limiter.getName()));
+			throw new RateLimitExceededException(limiter.getName());
+		}
+		return waitNanos;
+	}
+
+	/**
+	 * Register a new rate limiter, replacing any previous one
+	 *
+	 * @param limiters,
+	 *            the limiters where to register the new one
+	 * @param name,
+	 *            the name identifying the limiter
+	 * @param config,
+	 *            the configuration of the limiter
+	 */
+	private static void register(Map<String, RateLimiter> limiters, String name, RateLimitConfig config) {
+		RateLimiter limiter = new RateLimiter(name, config);
+		limiters.put(name, limiter);
+		MetricsService.registerGauge(MetricsService.nameOf(AVAILABLE_METRIC, name), limiter::getAvailablePermits);
+		LOGGER.info("Rate limit of %s configured: %s", name, config);
+	}
+
+	/**
+	 * Retrieve the limiter of the base url of the given http request
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @return the {@link RateLimiter} or {@code null} if the base url is not
+	 *         limited
+	 */
+	private static RateLimiter getBaseUrlLimiter(HttpRequest httpRequest) {
+		if (BASE_URL_LIMITERS.isEmpty() || httpRequest.getBaseUrl() == null) {
+			return null;
+		}
+		return BASE_URL_LIMITERS.get(httpRequest.getBaseUrl());
+	}
+
+	/**
+	 * Retrieve the limiter of the api endpoint of the given http request
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @return the {@link RateLimiter} or {@code null} if the api endpoint is not
+	 *         limited
+	 */
+	private static RateLimiter getEndpointLimiter(HttpRequest httpRequest) {
+		if (ENDPOINT_LIMITERS.isEmpty() || httpRequest.getBaseUrl() == null
+				|| httpRequest.getApiEndpoint() == null) {
+			return null;
+		}
+		return ENDPOINT_LIMITERS.get(httpRequest.getBaseUrl() + httpRequest.getApiEndpoint());
+	}
+
+}
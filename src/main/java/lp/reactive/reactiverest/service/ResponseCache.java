@@ -0,0 +1,853 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * This class represents the in-memory tier of the http response cache, a least
+ * recently used map of the responses bounded by their size in bytes. The
+ * responses are kept with their headers, so that their freshness can be
+ * computed as described by RFC 7234 and the stale ones can be revalidated.
+ * With an off-heap store, the large bodies are moved out of the heap and the
+ * least recently used ones are evicted when the store is full
+ *
+ * @author lucapompei
+ */
+class ResponseCache {
+
+	/**
+	 * The status codes cacheable without explicit freshness information, as
+	 * listed by RFC 7231
+	 */
+	private static final Set<Integer> CACHEABLE_STATUS_CODES = new HashSet<>(
+			Arrays.asList(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501));
+
+	/**
+	 * The maximum size, in bytes, of the cached responses kept on the heap
+	 */
+	private final long maxSize;
+
+	/**
+	 * The maximum size, in bytes, of a single cached response
+	 */
+	private final long maxEntrySize;
+
+	/**
+	 * The off-heap store of the large bodies or {@code null} if disabled
+	 */
+	private final OffHeapStore offHeapStore;
+
+	/**
+	 * The cached responses, by url, from the least to the most recently used
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The current size, in bytes, of the cached responses kept on the heap
+	 */
+	private long size;
+
+	/**
+	 * Construct a new {@link ResponseCache}
+	 *
+	 * @param maxSize,
+	 *            the maximum size in bytes of the cached responses
+	 * @param maxEntrySize,
+	 *            the maximum size in bytes of a single cached response
+	 */
+	ResponseCache(long maxSize, long maxEntrySize) {
+		this(maxSize, maxEntrySize, null);
+	}
+
+	/**
+	 * Construct a new {@link ResponseCache}
+	 *
+	 * @param maxSize,
+	 *            the maximum size in bytes of the cached responses kept on the
+	 *            heap
+	 * @param maxEntrySize,
+	 *            the maximum size in bytes of a single cached response
+	 * @param offHeapStore,
+	 *            the off-heap store of the large bodies or {@code null} to keep
+	 *            them on the heap
+	 */
+	ResponseCache(long maxSize, long maxEntrySize, OffHeapStore offHeapStore) {
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxEntrySize;
+		this.offHeapStore = offHeapStore;
+	}
+
+	/**
+	 * Retrieve the maximum size of a single cached response
+	 *
+	 * @return the maximum size in bytes of a single cached response
+	 */
+	long getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Retrieve the current size of the cached responses kept on the heap
+	 *
+	 * @return the current size in bytes of the cached responses kept on the heap
+	 */
+	synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Retrieve the current size of the bodies stored off-heap
+	 *
+	 * @return the current size in bytes of the slabs in use or {@code -1} if the
+	 *         off-heap store is disabled
+	 */
+	long getOffHeapSize() {
+		return offHeapStore == null ? -1 : offHeapStore.getSize();
+	}
+
+	/**
+	 * Retrieve the number of cached responses
+	 *
+	 * @return the number of cached responses
+	 */
+	synchronized int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Retrieve the response cached for the given url. The entry is referenced
+	 * for the caller, which must release it once done, so that its off-heap
+	 * body is not reused in the meantime
+	 *
+	 * @param url,
+	 *            the url of the response
+	 * @return the cached {@link Entry} or {@code null} if not found
+	 */
+	synchronized Entry get(String url) {
+		Entry entry = entries.get(url);
+		if (entry != null) {
+			entry.retain();
+		}
+		return entry;
+	}
+
+	/**
+	 * Cache the given response, replacing any previous one for the same url and
+	 * evicting the least recently used ones when the maximum size is exceeded.
+	 * A large body is moved to the off-heap store, if any, evicting the least
+	 * recently used bodies stored off-heap when it is full. The cache takes over
+	 * the reference of the caller to the entry
+	 *
+	 * @param url,
+	 *            the url of the response
+	 * @param entry,
+	 *            the response to cache
+	 */
+	synchronized void put(String url, Entry entry) {
+		remove(url);
+		if (entry.getLength() > maxEntrySize) {
+			entry.release();
+			return;
+		}
+		if (offHeapStore != null && entry.getHeapBodyLength() >= OffHeapStore.SLAB_SIZE) {
+			entry = moveOffHeap(entry);
+		}
+		entries.put(url, entry);
+		size += entry.getSize();
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			evict(iterator, iterator.next().getValue());
+		}
+	}
+
+	/**
+	 * Remove the response cached for the given url
+	 *
+	 * @param url,
+	 *            the url of the response
+	 */
+	synchronized void remove(String url) {
+		Entry previous = entries.remove(url);
+		if (previous != null) {
+			size -= previous.getSize();
+			previous.release();
+		}
+	}
+
+	/**
+	 * Remove all the cached responses
+	 */
+	synchronized void clear() {
+		for (Entry entry : entries.values()) {
+			entry.release();
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * Move the body of the given entry to the off-heap store, evicting the least
+	 * recently used bodies stored off-heap until there is enough room
+	 *
+	 * @param entry,
+	 *            the entry whose body is kept on the heap
+	 * @return the entry with its body stored off-heap or the given one if the
+	 *         body does not fit in the off-heap store
+	 */
+	private Entry moveOffHeap(Entry entry) {
+		OffHeapStore.Body body = offHeapStore.store(entry.body);
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (body == null && iterator.hasNext()) {
+			Entry candidate = iterator.next().getValue();
+			if (candidate.offHeapBody != null) {
+				evict(iterator, candidate);
+				body = offHeapStore.store(entry.body);
+			}
+		}
+		return body == null ? entry : new Entry(entry, body);
+	}
+
+	/**
+	 * Evict the given cached response
+	 *
+	 * @param iterator,
+	 *            the iterator over the cached responses, which last returned
+	 *            the response to evict
+	 * @param evicted,
+	 *            the response to evict
+	 */
+	private void evict(Iterator<Map.Entry<String, Entry>> iterator, Entry evicted) {
+		size -= evicted.getSize();
+		iterator.remove();
+		evicted.release();
+		MetricsService.increment(ResponseCacheService.EVICTED_METRIC);
+	}
+
+	/**
+	 * Check if the given response can be cached
+	 *
+	 * @param request,
+	 *            the request of the response
+	 * @param response,
+	 *            the response to check
+	 * @return a boolean indicating if the response can be cached
+	 */
+	static boolean isCacheable(Request request, Response response) {
+		if (!CACHEABLE_STATUS_CODES.contains(response.code()) || "*".equals(response.header("Vary"))) {
+			return false;
+		}
+		return !request.cacheControl().noStore() && !response.cacheControl().noStore()
+				&& isShareable(request, response.cacheControl());
+	}
+
+	/**
+	 * Check if the given request carries credentials, i.e. an
+	 * {@code Authorization} header
+	 *
+	 * @param request,
+	 *            the request to check
+	 * @return a boolean indicating if the request carries credentials
+	 */
+	static boolean hasCredentials(Request request) {
+		return request.header("Authorization") != null;
+	}
+
+	/**
+	 * Check if a response can be shared by the callers of its url when used for
+	 * the given request. As in a shared cache, the entries are keyed by url
+	 * only, so a request carrying credentials can be answered from and stored
+	 * in the cache only if the server allows it with the {@code public},
+	 * {@code s-maxage} or {@code must-revalidate} directives
+	 *
+	 * @param request,
+	 *            the request answered or to answer with the response
+	 * @param responseCacheControl,
+	 *            the cache directives of the response
+	 * @return a boolean indicating if the response can be shared
+	 */
+	static boolean isShareable(Request request, CacheControl responseCacheControl) {
+		return !hasCredentials(request) || responseCacheControl.isPublic() || responseCacheControl.mustRevalidate()
+				|| responseCacheControl.sMaxAgeSeconds() != -1;
+	}
+
+	/**
+	 * This class represents a cached response or, with a negative caching
+	 * policy, a cached failure
+	 */
+	static final class Entry {
+
+		/**
+		 * The values of the request headers the response varies on
+		 */
+		private final Map<String, List<String>> varyHeaders;
+
+		/**
+		 * The protocol of the response
+		 */
+		private final Protocol protocol;
+
+		/**
+		 * The status code of the response
+		 */
+		private final int code;
+
+		/**
+		 * The status message of the response
+		 */
+		private final String message;
+
+		/**
+		 * The headers of the response
+		 */
+		private final Headers headers;
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType contentType;
+
+		/**
+		 * The bytes of the body kept on the heap or {@code null} if stored
+		 * off-heap
+		 */
+		private final byte[] body;
+
+		/**
+		 * The body stored off-heap or {@code null} if kept on the heap
+		 */
+		private final OffHeapStore.Body offHeapBody;
+
+		/**
+		 * The time, in milliseconds, the request was sent
+		 */
+		private final long sentRequestAtMillis;
+
+		/**
+		 * The time, in milliseconds, the response was received
+		 */
+		private final long receivedResponseAtMillis;
+
+		/**
+		 * The boolean indicating if this entry caches a failure, i.e. an error
+		 * response or a connection failure
+		 */
+		private final boolean negative;
+
+		/**
+		 * The size, in bytes, of the headers
+		 */
+		private final long headersSize;
+
+		/**
+		 * Construct a new {@link Entry}
+		 *
+		 * @param request,
+		 *            the request of the response
+		 * @param response,
+		 *            the response to cache, its body excluded
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param body,
+		 *            the bytes of the body
+		 */
+		Entry(Request request, Response response, MediaType contentType, byte[] body) {
+			this(request, response, contentType, body, false);
+		}
+
+		/**
+		 * Construct a new {@link Entry}
+		 *
+		 * @param request,
+		 *            the request of the response
+		 * @param response,
+		 *            the response to cache, its body excluded
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param body,
+		 *            the bytes of the body
+		 * @param negative,
+		 *            a boolean indicating if the response is a cached failure
+		 */
+		Entry(Request request, Response response, MediaType contentType, byte[] body, boolean negative) {
+			this(request, response, contentType, body, null, negative);
+		}
+
+		/**
+		 * Construct a new {@link Entry}, referencing its off-heap body if any
+		 *
+		 * @param request,
+		 *            the request of the response
+		 * @param response,
+		 *            the response to cache, its body excluded
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param body,
+		 *            the bytes of the body or {@code null} if stored off-heap
+		 * @param offHeapBody,
+		 *            the body stored off-heap or {@code null} if kept on the heap
+		 * @param negative,
+		 *            a boolean indicating if the response is a cached failure
+		 */
+		private Entry(Request request, Response response, MediaType contentType, byte[] body,
+				OffHeapStore.Body offHeapBody, boolean negative) {
+			this.negative = negative;
+			this.varyHeaders = varyHeaders(request.headers(), response.headers());
+			this.protocol = response.protocol();
+			this.code = response.code();
+			this.message = response.message();
+			this.headers = response.headers();
+			this.contentType = contentType;
+			this.body = body;
+			this.offHeapBody = offHeapBody;
+			this.sentRequestAtMillis = response.sentRequestAtMillis();
+			this.receivedResponseAtMillis = response.receivedResponseAtMillis();
+			long headersSize = 0;
+			for (int i = 0; i < headers.size(); i++) {
+				headersSize += headers.name(i).length() + headers.value(i).length();
+			}
+			this.headersSize = headersSize;
+			if (offHeapBody != null) {
+				offHeapBody.retain();
+			}
+		}
+
+		/**
+		 * Construct a new {@link Entry} copying the given one, its body moved
+		 * off-heap
+		 *
+		 * @param entry,
+		 *            the entry to copy
+		 * @param offHeapBody,
+		 *            the body stored off-heap, whose reference is taken over
+		 */
+		private Entry(Entry entry, OffHeapStore.Body offHeapBody) {
+			this.negative = entry.negative;
+			this.varyHeaders = entry.varyHeaders;
+			this.protocol = entry.protocol;
+			this.code = entry.code;
+			this.message = entry.message;
+			this.headers = entry.headers;
+			this.contentType = entry.contentType;
+			this.body = null;
+			this.offHeapBody = offHeapBody;
+			this.sentRequestAtMillis = entry.sentRequestAtMillis;
+			this.receivedResponseAtMillis = entry.receivedResponseAtMillis;
+			this.headersSize = entry.headersSize;
+		}
+
+		/**
+		 * Construct a new {@link Entry} caching a connection failure
+		 *
+		 * @param request,
+		 *            the failed request
+		 * @param failure,
+		 *            the connection failure
+		 */
+		Entry(Request request, IOException failure) {
+			this.negative = true;
+			this.varyHeaders = Collections.emptyMap();
+			this.protocol = null;
+			this.code = -1;
+			this.message = String.valueOf(failure.getMessage());
+			this.headers = new Headers.Builder().build();
+			this.contentType = null;
+			this.body = new byte[0];
+			this.offHeapBody = null;
+			this.sentRequestAtMillis = System.currentTimeMillis();
+			this.receivedResponseAtMillis = this.sentRequestAtMillis;
+			this.headersSize = message.length();
+		}
+
+		/**
+		 * Add a reference to the off-heap body of this entry, if any
+		 */
+		void retain() {
+			if (offHeapBody != null) {
+				offHeapBody.retain();
+			}
+		}
+
+		/**
+		 * Remove a reference to the off-heap body of this entry, if any
+		 */
+		void release() {
+			if (offHeapBody != null) {
+				offHeapBody.release();
+			}
+		}
+
+		/**
+		 * Check if this entry caches a failure
+		 *
+		 * @return a boolean indicating if this entry caches an error response or a
+		 *         connection failure
+		 */
+		boolean isNegative() {
+			return negative;
+		}
+
+		/**
+		 * Check if this entry caches a connection failure, with no response
+		 *
+		 * @return a boolean indicating if this entry caches a connection failure
+		 */
+		boolean isFailure() {
+			return code < 0;
+		}
+
+		/**
+		 * Build the exception replaying the cached connection failure
+		 *
+		 * @return the {@link IOException} replaying the cached failure
+		 */
+		IOException toFailure() {
+			return new IOException("Cached failure: " + message);
+		}
+
+		/**
+		 * Retrieve the time elapsed since this entry was received
+		 *
+		 * @param nowMillis,
+		 *            the current time in milliseconds
+		 * @return the time in milliseconds elapsed since this entry was received
+		 */
+		long getElapsed(long nowMillis) {
+			return nowMillis - receivedResponseAtMillis;
+		}
+
+		/**
+		 * Retrieve the size of this entry kept on the heap
+		 *
+		 * @return the size in bytes of this entry kept on the heap
+		 */
+		long getSize() {
+			return headersSize + getHeapBodyLength();
+		}
+
+		/**
+		 * Retrieve the size of this entry, wherever its body is stored
+		 *
+		 * @return the size in bytes of this entry
+		 */
+		long getLength() {
+			return headersSize + (offHeapBody == null ? body.length : offHeapBody.getLength());
+		}
+
+		/**
+		 * Retrieve the length of the body kept on the heap
+		 *
+		 * @return the length in bytes of the body kept on the heap or {@code 0}
+		 *         if stored off-heap
+		 */
+		int getHeapBodyLength() {
+			return body == null ? 0 : body.length;
+		}
+
+		/**
+		 * Check if this response can be used for the given request, i.e. if the
+		 * request headers it varies on have the same values and the response can
+		 * be shared with a request carrying credentials
+		 *
+		 * @param request,
+		 *            the request to check
+		 * @return a boolean indicating if this response matches the request
+		 */
+		boolean matches(Request request) {
+			for (Map.Entry<String, List<String>> varyHeader : varyHeaders.entrySet()) {
+				if (!varyHeader.getValue().equals(request.headers(varyHeader.getKey()))) {
+					return false;
+				}
+			}
+			return isShareable(request, CacheControl.parse(headers));
+		}
+
+		/**
+		 * Check if this response can be used without revalidation
+		 *
+		 * @param requestCacheControl,
+		 *            the cache directives of the request
+		 * @param ttl,
+		 *            the client-side time to live in milliseconds or {@code 0} to
+		 *            use the freshness decided by the server
+		 * @param nowMillis,
+		 *            the current time in milliseconds
+		 * @return a boolean indicating if this response is fresh
+		 */
+		boolean isFresh(CacheControl requestCacheControl, long ttl, long nowMillis) {
+			CacheControl responseCacheControl = CacheControl.parse(headers);
+			if (requestCacheControl.noCache() || (ttl == 0 && responseCacheControl.noCache())) {
+				return false;
+			}
+			long lifetime = getLifetime(ttl);
+			if (requestCacheControl.maxAgeSeconds() != -1) {
+				lifetime = Math.min(lifetime, TimeUnit.SECONDS.toMillis(requestCacheControl.maxAgeSeconds()));
+			}
+			long minFresh = requestCacheControl.minFreshSeconds() == -1 ? 0
+					: TimeUnit.SECONDS.toMillis(requestCacheControl.minFreshSeconds());
+			long maxStale = requestCacheControl.maxStaleSeconds() == -1 || responseCacheControl.mustRevalidate() ? 0
+					: TimeUnit.SECONDS.toMillis(requestCacheControl.maxStaleSeconds());
+			return getAge(ttl, nowMillis) + minFresh < lifetime + maxStale;
+		}
+
+		/**
+		 * Retrieve the time elapsed since this response expired
+		 *
+		 * @param ttl,
+		 *            the client-side time to live in milliseconds or {@code 0} to
+		 *            use the freshness decided by the server
+		 * @param nowMillis,
+		 *            the current time in milliseconds
+		 * @return the time in milliseconds elapsed since the expiration, negative
+		 *         while this response is fresh
+		 */
+		long getStaleness(long ttl, long nowMillis) {
+			return getAge(ttl, nowMillis) - getLifetime(ttl);
+		}
+
+		/**
+		 * Check if this response can be revalidated with a conditional request
+		 *
+		 * @return a boolean indicating if this response has an entity tag or a
+		 *         last modified date
+		 */
+		boolean hasValidators() {
+			return headers.get("ETag") != null || headers.get("Last-Modified") != null;
+		}
+
+		/**
+		 * Check if this response may be worth caching, i.e. if it can be fresh or
+		 * revalidated
+		 *
+		 * @param ttl,
+		 *            the client-side time to live in milliseconds or {@code 0} to
+		 *            use the freshness decided by the server
+		 * @return a boolean indicating if this response may be used again
+		 */
+		boolean isReusable(long ttl) {
+			return ttl > 0 || hasValidators() || getFreshnessLifetime() > 0;
+		}
+
+		/**
+		 * Build the conditional request revalidating this response
+		 *
+		 * @param request,
+		 *            the request to make conditional
+		 * @return the conditional request
+		 */
+		Request conditional(Request request) {
+			Request.Builder builder = request.newBuilder();
+			String etag = headers.get("ETag");
+			if (etag != null) {
+				builder.header("If-None-Match", etag);
+			}
+			String lastModified = headers.get("Last-Modified");
+			if (lastModified != null) {
+				builder.header("If-Modified-Since", lastModified);
+			}
+			return builder.build();
+		}
+
+		/**
+		 * Build the entry updated by a {@code 304 Not Modified} response, as
+		 * described by RFC 7234 section 4.3.4
+		 *
+		 * @param request,
+		 *            the request revalidating this response
+		 * @param notModified,
+		 *            the {@code 304 Not Modified} response
+		 * @return the updated {@link Entry}
+		 */
+		Entry revalidate(Request request, Response notModified) {
+			Headers.Builder builder = new Headers.Builder();
+			for (int i = 0; i < headers.size(); i++) {
+				String name = headers.name(i);
+				if (isContentSpecific(name) || notModified.header(name) == null) {
+					builder.add(name, headers.value(i));
+				}
+			}
+			Headers networkHeaders = notModified.headers();
+			for (int i = 0; i < networkHeaders.size(); i++) {
+				String name = networkHeaders.name(i);
+				if (!isContentSpecific(name)) {
+					builder.add(name, networkHeaders.value(i));
+				}
+			}
+			Response updated = notModified.newBuilder().code(code).message(message).headers(builder.build())
+					.body(null).build();
+			return new Entry(request, updated, contentType, body, offHeapBody, false);
+		}
+
+		/**
+		 * Build the response for the given request, served from this entry. An
+		 * off-heap body is read directly from its slabs, and stays referenced
+		 * until the response is closed
+		 *
+		 * @param request,
+		 *            the request served
+		 * @param networkResponse,
+		 *            the {@code 304 Not Modified} response if this entry was
+		 *            revalidated, otherwise {@code null}
+		 * @return the response served from this entry
+		 */
+		Response toResponse(Request request, Response networkResponse) {
+			Response cacheResponse = new Response.Builder().request(request).protocol(protocol).code(code)
+					.message(message).headers(headers).sentRequestAtMillis(sentRequestAtMillis)
+					.receivedResponseAtMillis(receivedResponseAtMillis).build();
+			Response.Builder builder = cacheResponse.newBuilder()
+					.body(offHeapBody == null ? ResponseBody.create(contentType, body)
+							: offHeapBody.toResponseBody(contentType))
+					.cacheResponse(cacheResponse);
+			if (networkResponse != null) {
+				builder.networkResponse(networkResponse.newBuilder().body(null).networkResponse(null)
+						.cacheResponse(null).priorResponse(null).build())
+						.sentRequestAtMillis(networkResponse.sentRequestAtMillis())
+						.receivedResponseAtMillis(networkResponse.receivedResponseAtMillis());
+			}
+			return builder.build();
+		}
+
+		/**
+		 * Compute the age of this response, the time elapsed since it was
+		 * received for a client-side time to live
+		 *
+		 * @param ttl,
+		 *            the client-side time to live in milliseconds or {@code 0} to
+		 *            use the freshness decided by the server
+		 * @param nowMillis,
+		 *            the current time in milliseconds
+		 * @return the age in milliseconds of this response
+		 */
+		private long getAge(long ttl, long nowMillis) {
+			return ttl > 0 ? getElapsed(nowMillis) : getCurrentAge(nowMillis);
+		}
+
+		/**
+		 * Compute the freshness lifetime of this response
+		 *
+		 * @param ttl,
+		 *            the client-side time to live in milliseconds or {@code 0} to
+		 *            use the freshness decided by the server
+		 * @return the freshness lifetime in milliseconds of this response
+		 */
+		private long getLifetime(long ttl) {
+			return ttl > 0 ? ttl : getFreshnessLifetime();
+		}
+
+		/**
+		 * Compute the current age of this response, as described by RFC 7234
+		 * section 4.2.3
+		 *
+		 * @param nowMillis,
+		 *            the current time in milliseconds
+		 * @return the age in milliseconds of this response
+		 */
+		private long getCurrentAge(long nowMillis) {
+			Date servedDate = headers.getDate("Date");
+			long apparentAge = servedDate == null ? 0
+					: Math.max(0, receivedResponseAtMillis - servedDate.getTime());
+			long ageHeader = parseSeconds(headers.get("Age"));
+			long correctedAge = Math.max(apparentAge, ageHeader == -1 ? 0 : TimeUnit.SECONDS.toMillis(ageHeader));
+			long responseDuration = receivedResponseAtMillis - sentRequestAtMillis;
+			return correctedAge + responseDuration + (nowMillis - receivedResponseAtMillis);
+		}
+
+		/**
+		 * Compute the time this response stays fresh after being generated, as
+		 * described by RFC 7234 section 4.2.1
+		 *
+		 * @return the freshness lifetime in milliseconds of this response
+		 */
+		private long getFreshnessLifetime() {
+			CacheControl responseCacheControl = CacheControl.parse(headers);
+			if (responseCacheControl.maxAgeSeconds() != -1) {
+				return TimeUnit.SECONDS.toMillis(responseCacheControl.maxAgeSeconds());
+			}
+			Date servedDate = headers.getDate("Date");
+			long served = servedDate == null ? receivedResponseAtMillis : servedDate.getTime();
+			Date expires = headers.getDate("Expires");
+			if (expires != null) {
+				return Math.max(0, expires.getTime() - served);
+			}
+			Date lastModified = headers.getDate("Last-Modified");
+			if (lastModified != null) {
+				// heuristic freshness of 10% of the time since the last modification
+				return Math.max(0, (served - lastModified.getTime()) / 10);
+			}
+			return 0;
+		}
+
+		/**
+		 * Retrieve the values of the request headers a response varies on
+		 *
+		 * @param requestHeaders,
+		 *            the headers of the request
+		 * @param responseHeaders,
+		 *            the headers of the response
+		 * @return the values of the request headers named by the {@code Vary}
+		 *         header of the response
+		 */
+		private static Map<String, List<String>> varyHeaders(Headers requestHeaders, Headers responseHeaders) {
+			Map<String, List<String>> varyHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (String vary : responseHeaders.values("Vary")) {
+				for (String name : vary.split(",")) {
+					String trimmed = name.trim();
+					if (!trimmed.isEmpty()) {
+						varyHeaders.put(trimmed, requestHeaders.values(trimmed));
+					}
+				}
+			}
+			return varyHeaders;
+		}
+
+		/**
+		 * Check if a header describes the body, so that a {@code 304 Not
+		 * Modified} response cannot replace it
+		 *
+		 * @param name,
+		 *            the name of the header
+		 * @return a boolean indicating if the header is content specific
+		 */
+		private static boolean isContentSpecific(String name) {
+			return "Content-Length".equalsIgnoreCase(name) || "Content-Encoding".equalsIgnoreCase(name)
+					|| "Content-Type".equalsIgnoreCase(name);
+		}
+
+		/**
+		 * Parse a header expressed in seconds
+		 *
+		 * @param value,
+		 *            the value of the header
+		 * @return the seconds or {@code -1} if missing or invalid
+		 */
+		private static long parseSeconds(String value) {
+			if (value == null) {
+				return -1;
+			}
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,250 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.CacheConfig;
+import okhttp3.Cache;
+
+/**
+ * This service handles the http response cache shared by all the REST clients.
+ * The cache is disabled by default and, once configured, keeps the cacheable
+ * responses of the GET requests in memory, in a least recently used map bounded
+ * by bytes, optionally moving the large bodies off-heap, and optionally on disk
+ *
+ * @author lucapompei
+ */
+public class ResponseCacheService {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(ResponseCacheService.class);
+
+	/**
+	 * The names of the metrics of the response cache
+	 */
+	public static final String HIT_METRIC = "cache.hits";
+	public static final String MISS_METRIC = "cache.misses";
+	public static final String REVALIDATED_METRIC = "cache.revalidated";
+	public static final String EVICTED_METRIC = "cache.evictions";
+	public static final String SIZE_METRIC = "cache.size";
+	public static final String OFF_HEAP_SIZE_METRIC = "cache.offheap.size";
+	public static final String DISK_HIT_METRIC = "cache.disk.hits";
+	public static final String DISK_SIZE_METRIC = "cache.disk.size";
+	public static final String STALE_REVALIDATE_METRIC = "cache.stale.revalidate";
+	public static final String STALE_ERROR_METRIC = "cache.stale.error";
+	public static final String NEGATIVE_HIT_METRIC = "cache.negative.hits";
+	public static final String REFRESH_METRIC = "cache.refreshes";
+	public static final String REFRESH_FAILED_METRIC = "cache.refresh.failures";
+
+	/**
+	 * The maximum size, in bytes, of the in-memory tier created on the first use
+	 * of a client-side caching policy when the cache is not configured
+	 */
+	private static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024;
+
+	/**
+	 * The in-memory tier or {@code null} if disabled
+	 */
+	private static volatile ResponseCache memoryCache;
+
+	/**
+	 * The disk tier or {@code null} if disabled
+	 */
+	private static volatile Cache diskCache;
+
+	/**
+	 * The boolean indicating if the cache was explicitly configured or disabled
+	 */
+	private static volatile boolean configured;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code ResponseCacheService}
+	 */
+	private ResponseCacheService() {
+		// Empty implementation
+	}
+
+	/**
+	 * Enable the response cache, replacing any previous one
+	 *
+	 * @param config,
+	 *            the configuration of the response cache
+	 */
+	public static synchronized void configure(CacheConfig config) {
+		if (config == null) {
+			LOGGER.error("Cache configuration cannot be null");
+			return;
+		}
+		configured = true;
+		OffHeapStore offHeapStore = config.getMaxOffHeapSize() > 0 ? new OffHeapStore(config.getMaxOffHeapSize())
+				: null;
+		setMemoryCache(config.getMaxSize() > 0
+				? new ResponseCache(config.getMaxSize(), config.getMaxEntrySize(), offHeapStore)
+				: null);
+		Cache disk = config.getDirectory() == null ? null : new Cache(config.getDirectory(), config.getMaxDiskSize());
+		setDiskCache(disk);
+		LOGGER.info("Response cache configured: %s", config);
+	}
+
+	/**
+	 * Disable the response cache, discarding the responses cached in memory
+	 */
+	public static synchronized void disable() {
+		configured = true;
+		setMemoryCache(null);
+		setDiskCache(null);
+	}
+
+	/**
+	 * Restore the cache to its initial state, disabled and never configured
+	 */
+	static synchronized void reset() {
+		setMemoryCache(null);
+		setDiskCache(null);
+		configured = false;
+	}
+
+	/**
+	 * Remove all the cached responses, from memory and from disk
+	 */
+	public static void clear() {
+		ResponseCache cache = memoryCache;
+		if (cache != null) {
+			cache.clear();
+		}
+		Cache disk = diskCache;
+		if (disk != null) {
+			try {
+				disk.evictAll();
+			} catch (IOException e) {
+				LOGGER.error("Unable to clear the disk cache: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the size of the responses cached in memory
+	 *
+	 * @return the size in bytes of the responses cached in memory or {@code -1}
+	 *         if the in-memory tier is disabled
+	 */
+	public static long getSize() {
+		ResponseCache cache = memoryCache;
+		return cache == null ? -1 : cache.getSize();
+	}
+
+	/**
+	 * Retrieve the size of the bodies stored off-heap
+	 *
+	 * @return the size in bytes of the off-heap slabs in use or {@code -1} if
+	 *         the off-heap store is disabled
+	 */
+	public static long getOffHeapSize() {
+		ResponseCache cache = memoryCache;
+		return cache == null ? -1 : cache.getOffHeapSize();
+	}
+
+	/**
+	 * Retrieve the in-memory tier
+	 *
+	 * @return the in-memory tier or {@code null} if disabled
+	 */
+	static ResponseCache getMemoryCache() {
+		return memoryCache;
+	}
+
+	/**
+	 * Check if the cache was explicitly configured or disabled
+	 *
+	 * @return a boolean indicating if the cache was explicitly configured or
+	 *         disabled
+	 */
+	static boolean isConfigured() {
+		return configured;
+	}
+
+	/**
+	 * Retrieve the in-memory tier, creating a default one of
+	 * {@value DEFAULT_MAX_SIZE} bytes if the cache was never configured, as
+	 * needed by a client-side caching policy. The default tier caches only the
+	 * requests with a caching policy
+	 *
+	 * @return the in-memory tier or {@code null} if disabled
+	 */
+	static ResponseCache getOrCreateMemoryCache() {
+		ResponseCache cache = memoryCache;
+		if (cache != null || configured) {
+			return cache;
+		}
+		synchronized (ResponseCacheService.class) {
+			if (memoryCache == null && !configured) {
+				LOGGER.info("Response cache not configured, caching up to %s bytes in memory", DEFAULT_MAX_SIZE);
+				setMemoryCache(new ResponseCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_SIZE / 4));
+			}
+			return memoryCache;
+		}
+	}
+
+	/**
+	 * Replace the in-memory tier
+	 *
+	 * @param cache,
+	 *            the new in-memory tier or {@code null} to disable it
+	 */
+	private static void setMemoryCache(ResponseCache cache) {
+		ResponseCache previous = memoryCache;
+		memoryCache = cache;
+		if (cache == null) {
+			MetricsService.unregisterGauge(SIZE_METRIC);
+		} else {
+			MetricsService.registerGauge(SIZE_METRIC, cache::getSize);
+		}
+		if (cache == null || cache.getOffHeapSize() < 0) {
+			MetricsService.unregisterGauge(OFF_HEAP_SIZE_METRIC);
+		} else {
+			MetricsService.registerGauge(OFF_HEAP_SIZE_METRIC, cache::getOffHeapSize);
+		}
+		if (previous != null) {
+			// the responses being read keep their off-heap bodies until closed
+			previous.clear();
+		}
+	}
+
+	/**
+	 * Replace the disk tier, closing the previous one
+	 *
+	 * @param disk,
+	 *            the new disk tier or {@code null} to disable it
+	 */
+	private static void setDiskCache(Cache disk) {
+		Cache previous = diskCache;
+		diskCache = disk;
+		ClientService.setCache(disk);
+		if (disk == null) {
+			MetricsService.unregisterGauge(DISK_HIT_METRIC);
+			MetricsService.unregisterGauge(DISK_SIZE_METRIC);
+		} else {
+			MetricsService.registerGauge(DISK_HIT_METRIC, disk::hitCount);
+			MetricsService.registerGauge(DISK_SIZE_METRIC, () -> {
+				try {
+					return disk.size();
+				} catch (IOException e) {
+					return -1;
+				}
+			});
+		}
+		if (previous != null && previous != disk) {
+			try {
+				previous.close();
+			} catch (IOException e) {
+				LOGGER.error("Unable to close the previous disk cache: " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -1,17 +1,27 @@
 package lp.reactive.reactiverest.service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import lp.reactive.reactiverest.model.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import io.reactivex.Flowable;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -31,9 +41,41 @@ public class RestService {
 	private static final Logger LOGGER = LogManager.getFormatterLogger(RestService.class);
 
 	/**
-	 * The seconds to wait before start a new api call when an error occurs
+	 * The names of the metrics of the retries
 	 */
-	private static final long SECONDS_TO_WAIT_BEFORE_RETRY = 2;
+	public static final String RETRY_METRIC = "retry.attempts";
+	public static final String RETRY_BUDGET_EXHAUSTED_METRIC = "retry.budget.exhausted";
+	public static final String RETRY_BUDGET_AVAILABLE_METRIC = "retry.budget.available";
+
+	/**
+	 * The timer used to cancel in-flight calls when their deadline expires, to
+	 * schedule asynchronous retries and to send hedged requests
+	 */
+	private static final HashedWheelTimer TIMER = new HashedWheelTimer("reactiverest-timer", 10,
+			TimeUnit.MILLISECONDS, 512);
+
+	/**
+	 * The budget capping hedged requests, by default to 10% of the regular
+	 * traffic
+	 */
+	private static volatile TrafficBudget hedgeBudget = new TrafficBudget(0.1, 100);
+
+	/**
+	 * The budget capping retries, by default to 20% of the regular traffic with
+	 * 10 retries allowed before any regular traffic
+	 */
+	private static volatile TrafficBudget retryBudget = new TrafficBudget(0.2, 10, 10);
+
+	static {
+		MetricsService.registerGauge(RETRY_BUDGET_AVAILABLE_METRIC, () -> retryBudget.getAvailable());
+	}
+
+	/**
+	 * The action returned when there is nothing to cancel
+	 */
+	private static final Runnable NO_OP = () -> {
+		// nothing to cancel
+	};
 
 	/**
 	 * Private constructor for an utility class, construct a new {@code RestService}
@@ -42,6 +84,35 @@ public class RestService {
 		// Empty implementation
 	}
 
+	/**
+	 * Configure the budget capping the hedged requests sent when a
+	 * {@link HedgePolicy} is used
+	 *
+	 * @param ratio,
+	 *            the allowed hedged requests expressed as a ratio of the regular
+	 *            traffic, e.g. {@code 0.1} for 10%
+	 * @param maxBurst,
+	 *            the maximum number of hedged requests that can be sent in a burst
+	 */
+	public static void configureHedgeBudget(double ratio, int maxBurst) {
+		hedgeBudget = new TrafficBudget(ratio, maxBurst);
+	}
+
+	/**
+	 * Configure the global budget capping the retries of all the api calls, so
+	 * that during an outage the retries cannot multiply the load of the upstream
+	 *
+	 * @param ratio,
+	 *            the allowed retries expressed as a ratio of the regular traffic,
+	 *            e.g. {@code 0.2} for 20%
+	 * @param maxBurst,
+	 *            the maximum number of retries that can be sent in a burst, also
+	 *            allowed before any regular traffic
+	 */
+	public static void configureRetryBudget(double ratio, int maxBurst) {
+		retryBudget = new TrafficBudget(ratio, maxBurst, maxBurst);
+	}
+
 	/**
 	 * This method is used to formulate a synchronous api call on the base of the
 	 * given parameters and return a {@code HttpResponse}
@@ -59,15 +130,155 @@ public class RestService {
 	 *             if a problem occurred talking to the server
 	 */
 	public static HttpResponse callSync(HttpRequest httpRequest, int attempts) throws ExecutionException, IOException {
+		return callSync(httpRequest, attempts, new CallHandle());
+	}
+
+	/**
+	 * This method is used to formulate a synchronous api call, tracked by the
+	 * given handle, on the base of the given parameters and return a
+	 * {@code HttpResponse}
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@code HttpRequest} used for api call
+	 * @param attempts,
+	 *            the number of attempts to test if an error occurs during the api
+	 *            call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @return the http response encapsulated into a {@code HttpResponse} or
+	 *         {@code null} is some error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if a problem occurred talking to the server or the api call was
+	 *             cancelled
+	 */
+	static HttpResponse callSync(HttpRequest httpRequest, int attempts, CallHandle handle)
+			throws ExecutionException, IOException {
+		if (SingleFlight.isApplicableTo(httpRequest)) {
+			return callShared(httpRequest, attempts, handle);
+		}
+		return executeSync(httpRequest, attempts, handle);
+	}
+
+	/**
+	 * This method is used to download the resource of the given GET http request
+	 * to a file over parallel connections: if the server accepts byte ranges,
+	 * the file is preallocated and the resource is split into byte ranges,
+	 * fetched concurrently over the shared client and written at their offsets,
+	 * otherwise the resource is downloaded over a single connection. An
+	 * interrupted range is resumed from its last byte written, the ranges are
+	 * requested only if the resource is unchanged since the first one, and the
+	 * total length is verified. The file is deleted if the download fails
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@code HttpRequest} of the resource
+	 * @param file,
+	 *            the path of the file, created or truncated
+	 * @param parallelism,
+	 *            the maximum number of ranges fetched concurrently
+	 * @param attempts,
+	 *            the maximum number of attempts of each range
+	 * @param listener,
+	 *            the listener notified, from any thread, of the bytes written
+	 *            by all the ranges, or {@code null}
+	 * @return the length of the downloaded resource
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if the resource cannot be downloaded or the file cannot be
+	 *             written
+	 */
+	public static long callDownload(HttpRequest httpRequest, Path file, int parallelism, int attempts,
+			ProgressListener listener) throws ExecutionException, IOException {
+		return new RangedDownload(httpRequest, file, parallelism, attempts, listener).execute();
+	}
+
+	/**
+	 * This method is used to formulate a synchronous api call sharing a single
+	 * upstream call with the concurrent identical ones: the first api call makes
+	 * the upstream call, the others wait for it and each one receives its own
+	 * copy of the response
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@code HttpRequest} used for api call
+	 * @param attempts,
+	 *            the number of attempts to test if an error occurs during the
+	 *            upstream call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @return the http response encapsulated into a {@code HttpResponse} or
+	 *         {@code null} is some error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if a problem occurred talking to the server or the api call was
+	 *             cancelled
+	 */
+	private static HttpResponse callShared(HttpRequest httpRequest, int attempts, CallHandle handle)
+			throws ExecutionException, IOException {
+		Deadline deadline = Deadline.after(httpRequest.getCallTimeout());
+		SingleFlight.Participant participant = SingleFlight.join(httpRequest, handle);
+		if (participant.isLeader()) {
+			try {
+				participant.complete(executeSync(httpRequest, attempts, participant.getSharedHandle()));
+			} catch (Throwable t) {
+				// the error is rethrown to every participant
+				participant.fail(t);
+			}
+		}
+		try {
+			HttpResponse response = participant.await(deadline);
+			handle.complete();
+			return response;
+		} catch (ExecutionException | IOException | RuntimeException ex) {
+			handle.fail();
+			throw ex;
+		}
+	}
+
+	/**
+	 * This method is used to execute a synchronous api call, tracked by the given
+	 * handle, on the base of the given parameters and return a
+	 * {@code HttpResponse}
+	 *
+	 * @param httpRequest,
+	 *            a prepared {@code HttpRequest} used for api call
+	 * @param attempts,
+	 *            the number of attempts to test if an error occurs during the api
+	 *            call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @return the http response encapsulated into a {@code HttpResponse} or
+	 *         {@code null} is some error occurs
+	 * @throws ExecutionException
+	 *             if a problem occurred during the retrieving of REST client
+	 * @throws IOException
+	 *             if a problem occurred talking to the server or the api call was
+	 *             cancelled
+	 */
+	private static HttpResponse executeSync(HttpRequest httpRequest, int attempts, CallHandle handle)
+			throws ExecutionException, IOException {
 		Date startTime = new Date();
+		// the call budget starts now and is shared by every attempt
+		Deadline deadline = Deadline.after(httpRequest == null ? 0 : httpRequest.getCallTimeout());
 		// prepare the call
-		Call<ResponseBody> call = prepareCall(httpRequest);
+		Call<ResponseBody> call = prepareCall(httpRequest, deadline);
 		if (call == null) {
 			LOGGER.error("Error during preparing call");
+			handle.fail();
 			return null;
 		}
 		// handle synchronous api call
-		HttpResponse response = executeCall(call, attempts);
+		retryBudget.onRequest();
+		HttpResponse response;
+		try {
+			response = executeCall(call, httpRequest, attempts, 1, deadline, handle);
+		} catch (IOException ex) {
+			handle.fail();
+			throw ex;
+		}
+		handle.complete();
 		Date endTime = new Date();
 		LOGGER.info("Returned response in " + String.format("%s ms", endTime.getTime() - startTime.getTime())
 				+ " milliseconds");
@@ -75,44 +286,795 @@ public class RestService {
 	}
 
 	/**
-	 * Executes a sync api call on the base of the prepared call and the
-	 * maximum number of attempts
+	 * Executes a sync api call on the base of the prepared call, the maximum
+	 * number of attempts and the call deadline, retrying the failed attempts as
+	 * allowed by the retry policy and the retry budget
 	 * 
 	 * @param call,
 	 *            the call to synchronously execute
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
 	 * @param attempts,
-	 *            the maximum number of attempts
+	 *            the maximum number of remaining attempts
+	 * @param attempt,
+	 *            the number of the current attempt, starting from 1
+	 * @param deadline,
+	 *            the deadline shared by all the attempts
+	 * @param handle,
+	 *            the handle tracking the api call
 	 * @return the received httpResponse
-	 * @throws IOException, if the call execution fails
+	 * @throws IOException, if the call execution fails, the deadline is exceeded
+	 *             or the api call is cancelled
 	 */
-	private static HttpResponse executeCall(Call<ResponseBody> call, int attempts) throws IOException {
-		int remainingAttempts = attempts;
+	private static HttpResponse executeCall(Call<ResponseBody> call, HttpRequest httpRequest, int attempts,
+			int attempt, Deadline deadline, CallHandle handle) throws IOException {
+		int remainingAttempts = attempts - 1;
 		// preparing response
 		Response<ResponseBody> rawResponse = null;
+		IOException lastError = null;
 		try {
-			remainingAttempts--;
 			// make synchronous http request and get http response
-			rawResponse = call.clone().execute();
+			rawResponse = executeAttempt(call, httpRequest, deadline, handle);
 		} catch (IOException ex) {
+			if (isFailFast(ex)) {
+				// retrying would only add load to an upstream already refusing it
+				throw ex;
+			}
+			if (deadline.isExpired()) {
+				// the call was cancelled or timed out because of the deadline
+				throw deadline.exceeded(ex);
+			}
 			LOGGER.error("Received " + ex.getMessage());
-			if (remainingAttempts < 1) {
+			if (remainingAttempts < 1 || handle.isCancelled()) {
 				// no remaining attempts, throw the exception
 				throw ex;
 			}
+			lastError = ex;
+		}
+		if (remainingAttempts < 1 || (rawResponse != null && rawResponse.isSuccessful())) {
+			return prepareHttpResponse(rawResponse, httpRequest);
+		}
+		long retryDelay = planRetry(httpRequest, attempt, rawResponse, lastError);
+		if (retryDelay >= 0 && !deadline.allows(retryDelay)) {
+			// the remaining budget does not allow a new attempt
+			LOGGER.error("No budget left to retry within the call deadline");
+			if (rawResponse == null) {
+				throw deadline.exceeded(lastError);
+			}
+			retryDelay = -1;
+		}
+		if (retryDelay < 0 || !acquireRetryBudget()) {
+			if (rawResponse == null) {
+				throw lastError;
+			}
+			return prepareHttpResponse(rawResponse, httpRequest);
+		}
+		// handling not successful response
+		if (rawResponse != null) {
+			closeQuietly(rawResponse);
+		}
+		LOGGER.error("Waiting " + retryDelay + " ms before retry... (remaining " + remainingAttempts + " attempts)");
+		if (handle.awaitCancellation(retryDelay)) {
+			throw new IOException("Canceled");
+		}
+		return executeCall(call, httpRequest, remainingAttempts, attempt + 1, deadline, handle);
+	}
+
+	/**
+	 * Plan the retry of a failed attempt according to the retry policy of the
+	 * http request: the failure must be transient, the http method idempotent or
+	 * the request never sent, and the wait requested by the server through the
+	 * {@code Retry-After} header not longer than the maximum delay
+	 *
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} of the failed attempt
+	 * @param retry,
+	 *            the number of the planned retry, starting from 1
+	 * @param response,
+	 *            the unsuccessful response of the attempt or {@code null}
+	 * @param error,
+	 *            the error of the attempt if no response was received
+	 * @return the time in milliseconds to wait before retrying or {@code -1} if
+	 *         the attempt must not be retried
+	 */
+	static long planRetry(HttpRequest httpRequest, int retry, Response<ResponseBody> response,
+			Throwable error) {
+		RetryPolicy retryPolicy = httpRequest.getRetryPolicy();
+		HttpMethod httpMethod = httpRequest.getHttpMethod() == null ? HttpMethod.GET : httpRequest.getHttpMethod();
+		boolean retryable = response != null ? retryPolicy.isRetryable(httpMethod, response.code())
+				: retryPolicy.isRetryable(httpMethod, error);
+		if (!retryable) {
+			LOGGER.debug("The failure is not retryable for a " + httpMethod + " request");
+			return -1;
+		}
+		long delay = retryPolicy.getDelay(retry);
+		if (response != null && retryPolicy.isRetryAfterHonored()) {
+			long retryAfter = getRetryAfter(response);
+			if (retryAfter > retryPolicy.getMaxDelay()) {
+				LOGGER.error("The server asked to retry after " + retryAfter + " ms, beyond the maximum delay");
+				return -1;
+			}
+			delay = Math.max(delay, retryAfter);
+		}
+		return delay;
+	}
+
+	/**
+	 * Retrieve the wait requested by the server through the {@code Retry-After}
+	 * header, expressed either in seconds or as an http date
+	 *
+	 * @param response,
+	 *            the response to check
+	 * @return the time in milliseconds to wait or {@code -1} if the header is
+	 *         missing or invalid
+	 */
+	static long getRetryAfter(Response<ResponseBody> response) {
+		String retryAfter = response.headers().get("Retry-After");
+		if (retryAfter == null) {
+			return -1;
 		}
-		if (remainingAttempts > 0 && (rawResponse == null || !rawResponse.isSuccessful())) {
-			// handling not successful response
-			LOGGER.error("Waiting " + SECONDS_TO_WAIT_BEFORE_RETRY + " seconds before retry... (remaining "
-					+ remainingAttempts + " attempts)");
+		try {
+			return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+		} catch (NumberFormatException e) {
 			try {
-				Thread.sleep(SECONDS_TO_WAIT_BEFORE_RETRY * 1000);
+				ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+			} catch (DateTimeParseException ex) {
+				LOGGER.debug("Ignoring invalid Retry-After header " + retryAfter);
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Try to withdraw a retry from the global retry budget
+	 *
+	 * @return a boolean indicating if the retry is allowed or not
+	 */
+	static boolean acquireRetryBudget() {
+		if (!retryBudget.tryAcquire()) {
+			LOGGER.error("Retry budget exhausted, no retry is sent");
+			MetricsService.increment(RETRY_BUDGET_EXHAUSTED_METRIC);
+			return false;
+		}
+		MetricsService.increment(RETRY_METRIC);
+		return true;
+	}
+
+	/**
+	 * Executes a single sync attempt of an api call, hedging it if required by
+	 * the http request
+	 *
+	 * @param call,
+	 *            the prepared call
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @return the raw response of the attempt
+	 * @throws IOException,
+	 *             if the attempt fails or is cancelled
+	 */
+	private static Response<ResponseBody> executeAttempt(Call<ResponseBody> call, HttpRequest httpRequest,
+			Deadline deadline, CallHandle handle) throws IOException {
+		if (getHedgeDelay(httpRequest) >= 0) {
+			// hedged requests are raced on the dispatcher, waiting for the first response
+			CompletableFuture<Response<ResponseBody>> futureResponse = new CompletableFuture<>();
+			Runnable canceller = enqueueAttempt(call, httpRequest, deadline, handle, true, new Callback<ResponseBody>() {
+				@Override
+				public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+					futureResponse.complete(response);
+				}
+
+				@Override
+				public void onFailure(Call<ResponseBody> call, Throwable t) {
+					futureResponse.completeExceptionally(t);
+				}
+			});
+			Response<ResponseBody> response;
+			try {
+				response = futureResponse.get();
 			} catch (InterruptedException e) {
-				// Unhandled exception
+				canceller.run();
 				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the response");
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+			}
+			// unlike the dispatcher thread, the calling thread can wait for the memory budget
+			return bufferResponse(response, httpRequest, true);
+		}
+		awaitRateLimit(httpRequest, deadline, handle);
+		CircuitBreaker.Permission permission = acquirePermission(httpRequest);
+		ConcurrencyLimiter limiter;
+		try {
+			limiter = acquireSlot(httpRequest, deadline, handle);
+		} catch (IOException ex) {
+			recordOutcome(permission, null, handle, System.nanoTime(), -1, true);
+			throw ex;
+		}
+		hedgeBudget.onRequest();
+		Call<ResponseBody> attemptCall = call.clone();
+		long startNanos = System.nanoTime();
+		if (!handle.track(attemptCall::cancel)) {
+			recordOutcome(permission, limiter, handle, startNanos, -1, true);
+			throw new IOException("Canceled");
+		}
+		HashedWheelTimer.Timeout deadlineTimer = scheduleDeadline(attemptCall::cancel, deadline);
+		try {
+			Response<ResponseBody> response = bufferResponse(attemptCall.execute(), httpRequest, true);
+			recordLatency(httpRequest, startNanos);
+			recordOutcome(permission, limiter, handle, startNanos, response.code(), false);
+			return response;
+		} catch (IOException ex) {
+			recordOutcome(permission, limiter, handle, startNanos, -1, false);
+			throw ex;
+		} finally {
+			cancelTimer(deadlineTimer);
+		}
+	}
+
+	/**
+	 * Enqueues a single async attempt of an api call, hedging it if required by
+	 * the http request. When the rate limit of the base url or of the api
+	 * endpoint allows no immediate permit, the attempt is delayed on the timer,
+	 * so that no thread is blocked
+	 *
+	 * @param call,
+	 *            the prepared call
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param unbuffered,
+	 *            a boolean indicating if the response is delivered unbuffered,
+	 *            for the calling thread to buffer it waiting for the memory budget
+	 * @param callback,
+	 *            the callback receiving the outcome of the attempt
+	 * @return the action cancelling the attempt
+	 */
+	private static Runnable enqueueAttempt(Call<ResponseBody> call, HttpRequest httpRequest, Deadline deadline,
+			CallHandle handle, boolean unbuffered, Callback<ResponseBody> callback) {
+		long waitNanos;
+		try {
+			waitNanos = RateLimiterService.reserve(httpRequest, deadline);
+		} catch (RateLimitExceededException ex) {
+			callback.onFailure(call, ex);
+			return NO_OP;
+		}
+		if (waitNanos > 0) {
+			// delay the attempt without blocking the calling thread, which may be
+			// the timer worker running a retry or the dispatcher running a callback
+			AtomicReference<Runnable> canceller = new AtomicReference<>();
+			HashedWheelTimer.Timeout delay = TIMER.schedule(
+					() -> canceller.set(admitAttempt(call, httpRequest, deadline, handle, unbuffered, callback)), waitNanos,
+					TimeUnit.NANOSECONDS);
+			Runnable cancelDelay = () -> {
+				if (delay.cancel()) {
+					callback.onFailure(call, new IOException("Canceled"));
+				}
+			};
+			handle.track(cancelDelay);
+			return () -> {
+				cancelDelay.run();
+				Runnable currentCanceller = canceller.get();
+				if (currentCanceller != null) {
+					currentCanceller.run();
+				}
+			};
+		}
+		return admitAttempt(call, httpRequest, deadline, handle, unbuffered, callback);
+	}
+
+	/**
+	 * Admits a single async attempt of an api call through the circuit breaker
+	 * and the concurrency limiter of the base url. When the concurrency limit is
+	 * reached, the attempt waits for a free slot without blocking the calling
+	 * thread
+	 *
+	 * @param call,
+	 *            the prepared call
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param unbuffered,
+	 *            a boolean indicating if the response is delivered unbuffered,
+	 *            for the calling thread to buffer it waiting for the memory budget
+	 * @param callback,
+	 *            the callback receiving the outcome of the attempt
+	 * @return the action cancelling the attempt
+	 */
+	private static Runnable admitAttempt(Call<ResponseBody> call, HttpRequest httpRequest, Deadline deadline,
+			CallHandle handle, boolean unbuffered, Callback<ResponseBody> callback) {
+		CircuitBreaker.Permission permission;
+		try {
+			permission = acquirePermission(httpRequest);
+		} catch (CircuitBreakerOpenException ex) {
+			callback.onFailure(call, ex);
+			return NO_OP;
+		}
+		ConcurrencyLimiter limiter = ConcurrencyLimiterService.getLimiter(httpRequest.getBaseUrl());
+		if (limiter == null) {
+			return sendAttempt(call, httpRequest, deadline, handle, unbuffered, callback, permission, null);
+		}
+		// the waiting attempt is tracked until it acquires a slot and is sent
+		AtomicReference<Runnable> dequeue = new AtomicReference<>();
+		AtomicReference<Runnable> canceller = new AtomicReference<>();
+		Runnable cancelWait = () -> {
+			Runnable currentDequeue = dequeue.get();
+			if (currentDequeue != null) {
+				currentDequeue.run();
 			}
-			return executeCall(call, remainingAttempts);
+		};
+		if (!handle.track(cancelWait)) {
+			recordOutcome(permission, null, handle, System.nanoTime(), -1, true);
+			callback.onFailure(call, new IOException("Canceled"));
+			return cancelWait;
+		}
+		dequeue.set(limiter.acquire(getQueueWait(limiter, deadline), TIMER,
+				() -> canceller.set(
+						sendAttempt(call, httpRequest, deadline, handle, unbuffered, callback, permission, limiter)),
+				() -> {
+					recordOutcome(permission, null, handle, System.nanoTime(), -1, true);
+					callback.onFailure(call, handle.isCancelled() ? new IOException("Canceled")
+							: new ConcurrencyLimitExceededException(httpRequest.getBaseUrl()));
+				}));
+		if (handle.isCancelled()) {
+			cancelWait.run();
+		}
+		return () -> {
+			cancelWait.run();
+			Runnable currentCanceller = canceller.get();
+			if (currentCanceller != null) {
+				currentCanceller.run();
+			}
+		};
+	}
+
+	/**
+	 * Sends a single async attempt of an api call, once permitted by the circuit
+	 * breaker and the concurrency limiter of the base url. The duplicate of a
+	 * hedged attempt takes its own permission and slot, so that it counts
+	 * against the limit and its outcome reaches the circuit breaker
+	 *
+	 * @param call,
+	 *            the prepared call
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param unbuffered,
+	 *            a boolean indicating if the response is delivered unbuffered,
+	 *            for the calling thread to buffer it waiting for the memory budget
+	 * @param callback,
+	 *            the callback receiving the outcome of the attempt
+	 * @param permission,
+	 *            the permission of the circuit breaker of the base url or
+	 *            {@code null}
+	 * @param limiter,
+	 *            the concurrency limiter of the base url or {@code null}
+	 * @return the action cancelling the attempt
+	 */
+	private static Runnable sendAttempt(Call<ResponseBody> call, HttpRequest httpRequest, Deadline deadline,
+			CallHandle handle, boolean unbuffered, Callback<ResponseBody> callback,
+			CircuitBreaker.Permission permission, ConcurrencyLimiter limiter) {
+		hedgeBudget.onRequest();
+		long hedgeDelay = getHedgeDelay(httpRequest);
+		AtomicReference<HashedWheelTimer.Timeout> deadlineTimer = new AtomicReference<>();
+		Callback<ResponseBody> attemptCallback = new Callback<ResponseBody>() {
+			@Override
+			public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+				cancelTimer(deadlineTimer.get());
+				callback.onResponse(call, response);
+			}
+
+			@Override
+			public void onFailure(Call<ResponseBody> call, Throwable t) {
+				cancelTimer(deadlineTimer.get());
+				callback.onFailure(call, t);
+			}
+		};
+		Runnable canceller;
+		HedgedCall hedgedCall = null;
+		Call<ResponseBody> attemptCall = null;
+		if (hedgeDelay >= 0) {
+			hedgedCall = new HedgedCall(call, attemptCallback);
+			canceller = hedgedCall::cancel;
 		} else {
-			return prepareHttpResponse(rawResponse);
+			attemptCall = call.clone();
+			canceller = attemptCall::cancel;
+		}
+		if (!handle.track(canceller)) {
+			recordOutcome(permission, limiter, handle, System.nanoTime(), -1, true);
+			callback.onFailure(call, new IOException("Canceled"));
+			return canceller;
+		}
+		deadlineTimer.set(scheduleDeadline(canceller, deadline));
+		UnaryOperator<Callback<ResponseBody>> admission = next -> recordOutcome(httpRequest, deadline, handle,
+				unbuffered, permission, limiter, next);
+		if (hedgedCall != null) {
+			hedgedCall.start(TIMER, hedgeDelay, admission,
+					() -> admitHedge(httpRequest, deadline, handle, unbuffered));
+		} else {
+			attemptCall.enqueue(admission.apply(attemptCallback));
+		}
+		return canceller;
+	}
+
+	/**
+	 * Admit the duplicate of a hedged attempt, taking its own permission of the
+	 * circuit breaker and its own slot of the concurrency limiter of the base
+	 * url, without waiting, and the permits of the hedge budget and of the rate
+	 * limits
+	 *
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} of the hedged attempt
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param unbuffered,
+	 *            a boolean indicating if the response is delivered unbuffered
+	 * @return the admission recording the outcome of the duplicate or
+	 *         {@code null} if the duplicate must not be sent
+	 */
+	private static UnaryOperator<Callback<ResponseBody>> admitHedge(HttpRequest httpRequest, Deadline deadline,
+			CallHandle handle, boolean unbuffered) {
+		CircuitBreaker circuitBreaker = CircuitBreakerService.getCircuitBreaker(httpRequest.getBaseUrl());
+		CircuitBreaker.Permission permission = null;
+		if (circuitBreaker != null) {
+			permission = circuitBreaker.tryAcquirePermission();
+			if (permission == null) {
+				return null;
+			}
+		}
+		ConcurrencyLimiter limiter = ConcurrencyLimiterService.getLimiter(httpRequest.getBaseUrl());
+		if (limiter != null && !limiter.tryAcquire()) {
+			recordOutcome(permission, null, handle, System.nanoTime(), -1, true);
+			return null;
+		}
+		if (!hedgeBudget.tryAcquire() || !RateLimiterService.tryAcquire(httpRequest)) {
+			recordOutcome(permission, limiter, handle, System.nanoTime(), -1, true);
+			return null;
+		}
+		CircuitBreaker.Permission hedgePermission = permission;
+		return next -> recordOutcome(httpRequest, deadline, handle, unbuffered, hedgePermission, limiter, next);
+	}
+
+	/**
+	 * Decorate the callback of a sent request so that its outcome is recorded
+	 * in the given circuit breaker permission and concurrency limiter slot
+	 * before being handled, buffering the body of its response against the
+	 * memory budgets unless left to the calling thread. A request cancelled
+	 * because the other request of its hedged attempt answered first is
+	 * recorded as ignored
+	 *
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} of the request
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param unbuffered,
+	 *            a boolean indicating if the response is delivered unbuffered
+	 * @param permission,
+	 *            the permission of the circuit breaker of the base url or
+	 *            {@code null}
+	 * @param limiter,
+	 *            the concurrency limiter of the base url, whose slot is held by
+	 *            the request, or {@code null}
+	 * @param callback,
+	 *            the callback handling the outcome of the request
+	 * @return the decorated callback
+	 */
+	private static Callback<ResponseBody> recordOutcome(HttpRequest httpRequest, Deadline deadline,
+			CallHandle handle, boolean unbuffered, CircuitBreaker.Permission permission, ConcurrencyLimiter limiter,
+			Callback<ResponseBody> callback) {
+		long startNanos = System.nanoTime();
+		return new Callback<ResponseBody>() {
+			@Override
+			public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+				Response<ResponseBody> bufferedResponse = response;
+				if (!unbuffered) {
+					try {
+						// the dispatcher thread must not wait for the memory budget
+						bufferedResponse = bufferResponse(response, httpRequest, false);
+					} catch (IOException ex) {
+						onFailure(call, ex);
+						return;
+					}
+				}
+				recordLatency(httpRequest, startNanos);
+				recordOutcome(permission, limiter, handle, startNanos, bufferedResponse.code(), false);
+				callback.onResponse(call, bufferedResponse);
+			}
+
+			@Override
+			public void onFailure(Call<ResponseBody> call, Throwable t) {
+				// only the losing request of a hedged attempt is cancelled before the deadline
+				recordOutcome(permission, limiter, handle, startNanos, -1, call.isCanceled() && !deadline.isExpired());
+				callback.onFailure(call, t);
+			}
+		};
+	}
+
+	/**
+	 * Wait, blocking the calling thread, for the permit of the rate limit of the
+	 * base url and of the api endpoint, if any
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @throws IOException,
+	 *             if no permit is available in time or the api call is cancelled
+	 */
+	private static void awaitRateLimit(HttpRequest httpRequest, Deadline deadline, CallHandle handle)
+			throws IOException {
+		long waitNanos = RateLimiterService.reserve(httpRequest, deadline);
+		if (waitNanos > 0 && handle.awaitCancellation(toMillisCeil(waitNanos))) {
+			throw new IOException("Canceled");
+		}
+	}
+
+	/**
+	 * Convert the given nanoseconds into milliseconds, rounding up
+	 *
+	 * @param nanos,
+	 *            the nanoseconds to convert
+	 * @return the milliseconds, rounded up
+	 */
+	private static long toMillisCeil(long nanos) {
+		return (nanos + 999_999) / 1_000_000;
+	}
+
+	/**
+	 * Check if the given error comes from a protection failing the api call fast,
+	 * in which case the api call is not retried
+	 *
+	 * @param t,
+	 *            the error to check
+	 * @return a boolean indicating if the error fails the api call fast
+	 */
+	private static boolean isFailFast(Throwable t) {
+		return t instanceof CircuitBreakerOpenException || t instanceof ConcurrencyLimitExceededException
+				|| t instanceof RateLimitExceededException || t instanceof MemoryBudgetExceededException;
+	}
+
+	/**
+	 * Buffer the body of the given response against the memory budgets, unless
+	 * the api call is streaming or no budget is configured
+	 *
+	 * @param response,
+	 *            the response of an attempt
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used for api call
+	 * @param wait,
+	 *            a boolean indicating if the calling thread can wait for the
+	 *            memory budget, i.e. the api call is synchronous
+	 * @return the response with the body buffered or the given one
+	 * @throws IOException
+	 *             if the body cannot be read or does not fit in the budgets
+	 */
+	private static Response<ResponseBody> bufferResponse(Response<ResponseBody> response, HttpRequest httpRequest,
+			boolean wait) throws IOException {
+		if (httpRequest.isStreaming() || !MemoryBudgetService.isEnabled()) {
+			return response;
+		}
+		return MemoryBudgetService.buffer(response, wait);
+	}
+
+	/**
+	 * Obtain from the circuit breaker of the base url, if any, the permission to
+	 * send an attempt of the given http request
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @return the {@link CircuitBreaker.Permission} of the attempt or
+	 *         {@code null} if the base url is not protected
+	 * @throws CircuitBreakerOpenException,
+	 *             if the circuit of the base url is open
+	 */
+	private static CircuitBreaker.Permission acquirePermission(HttpRequest httpRequest)
+			throws CircuitBreakerOpenException {
+		CircuitBreaker circuitBreaker = CircuitBreakerService.getCircuitBreaker(httpRequest.getBaseUrl());
+		if (circuitBreaker == null) {
+			return null;
+		}
+		CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+		if (permission == null) {
+			throw new CircuitBreakerOpenException(httpRequest.getBaseUrl());
+		}
+		return permission;
+	}
+
+	/**
+	 * Acquire from the concurrency limiter of the base url, if any, a slot to
+	 * send a sync attempt of the given http request, waiting for a free slot if
+	 * the limit is reached
+	 *
+	 * @param httpRequest,
+	 *            the http request to send
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @return the {@link ConcurrencyLimiter} of the base url or {@code null} if
+	 *         the base url is not limited
+	 * @throws IOException,
+	 *             if no slot frees up in time or the api call is cancelled
+	 */
+	private static ConcurrencyLimiter acquireSlot(HttpRequest httpRequest, Deadline deadline, CallHandle handle)
+			throws IOException {
+		ConcurrencyLimiter limiter = ConcurrencyLimiterService.getLimiter(httpRequest.getBaseUrl());
+		if (limiter == null) {
+			return null;
+		}
+		CompletableFuture<Boolean> acquired = new CompletableFuture<>();
+		if (!handle.track(() -> acquired.complete(false))) {
+			throw new IOException("Canceled");
+		}
+		Runnable dequeue = limiter.acquire(getQueueWait(limiter, deadline), TIMER, () -> {
+			if (!acquired.complete(true)) {
+				// the wait was abandoned, give the slot back
+				limiter.releaseIgnored();
+			}
+		}, () -> acquired.complete(false));
+		boolean granted;
+		try {
+			granted = acquired.get();
+		} catch (InterruptedException e) {
+			acquired.complete(false);
+			dequeue.run();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a free slot");
+		} catch (ExecutionException e) {
+			granted = false;
+		}
+		if (!granted) {
+			dequeue.run();
+			throw handle.isCancelled() ? new IOException("Canceled")
+					: new ConcurrencyLimitExceededException(httpRequest.getBaseUrl());
+		}
+		return limiter;
+	}
+
+	/**
+	 * Retrieve the time an attempt can wait for a free slot of the given
+	 * concurrency limiter without exceeding the deadline of the api call
+	 *
+	 * @param limiter,
+	 *            the concurrency limiter of the base url
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @return the maximum wait in milliseconds
+	 */
+	private static long getQueueWait(ConcurrencyLimiter limiter, Deadline deadline) {
+		return Math.min(limiter.getMaxQueueWait(), deadline.remainingMillis());
+	}
+
+	/**
+	 * Record the outcome of an attempt in the given circuit breaker and
+	 * concurrency limiter, if any. Attempts of cancelled api calls are not
+	 * recorded
+	 *
+	 * @param permission,
+	 *            the permission of the circuit breaker of the base url or
+	 *            {@code null}
+	 * @param limiter,
+	 *            the concurrency limiter of the base url or {@code null}
+	 * @param handle,
+	 *            the handle tracking the api call
+	 * @param startNanos,
+	 *            the instant, expressed as {@link System#nanoTime()}, at which the
+	 *            attempt started
+	 * @param statusCode,
+	 *            the http status code of the response or {@code -1} if the
+	 *            attempt failed without a response
+	 * @param ignored,
+	 *            a boolean indicating if the attempt was never sent
+	 */
+	private static void recordOutcome(CircuitBreaker.Permission permission, ConcurrencyLimiter limiter,
+			CallHandle handle, long startNanos, int statusCode, boolean ignored) {
+		boolean skipped = ignored || handle.isCancelled();
+		long durationNanos = System.nanoTime() - startNanos;
+		if (permission != null) {
+			if (skipped) {
+				permission.onIgnored();
+			} else {
+				permission.onResult(TimeUnit.NANOSECONDS.toMillis(durationNanos),
+						statusCode < 0 || statusCode >= 500);
+			}
+		}
+		if (limiter != null) {
+			if (skipped) {
+				limiter.releaseIgnored();
+			} else {
+				// an upstream refusing the load is a drop as much as a timeout
+				limiter.release(durationNanos, statusCode < 0 || statusCode == 429 || statusCode == 503);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the delay after which the attempts of the given http request are
+	 * hedged
+	 *
+	 * @param httpRequest,
+	 *            the http request to check
+	 * @return the hedge delay in milliseconds or {@code -1} if the attempts are
+	 *         not hedged
+	 */
+	private static long getHedgeDelay(HttpRequest httpRequest) {
+		HedgePolicy hedgePolicy = httpRequest.getHedgePolicy();
+		HttpMethod httpMethod = httpRequest.getHttpMethod() == null ? HttpMethod.GET : httpRequest.getHttpMethod();
+		if (hedgePolicy == null || !hedgePolicy.isApplicableTo(httpMethod)) {
+			return -1;
+		}
+		if (hedgePolicy.isDynamicDelay()) {
+			long p95 = LatencyTracker.of(httpRequest.getBaseUrl(), httpRequest.getApiEndpoint()).getP95();
+			if (p95 >= 0) {
+				// an api endpoint answering within a millisecond must not be hedged at once
+				return Math.max(p95, hedgePolicy.getMinDelay());
+			}
+		}
+		return hedgePolicy.getDelay();
+	}
+
+	/**
+	 * Record the latency of an attempt of the given http request
+	 *
+	 * @param httpRequest,
+	 *            the http request of the attempt
+	 * @param startNanos,
+	 *            the instant, expressed as {@link System#nanoTime()}, at which the
+	 *            attempt started
+	 */
+	private static void recordLatency(HttpRequest httpRequest, long startNanos) {
+		LatencyTracker.of(httpRequest.getBaseUrl(), httpRequest.getApiEndpoint())
+				.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+	}
+
+	/**
+	 * Schedule the cancellation of an in-flight attempt when the deadline expires
+	 *
+	 * @param canceller,
+	 *            the action cancelling the in-flight attempt
+	 * @param deadline,
+	 *            the deadline of the call
+	 * @return the scheduled cancellation, to be cancelled when the attempt
+	 *         completes, or {@code null} if no deadline is set
+	 */
+	private static HashedWheelTimer.Timeout scheduleDeadline(Runnable canceller, Deadline deadline) {
+		if (!deadline.isSet()) {
+			return null;
+		}
+		return TIMER.schedule(() -> {
+			LOGGER.debug("Call deadline expired, cancelling the in-flight call");
+			canceller.run();
+		}, deadline.getDeadlineNanos() - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Cancel the given scheduled task, if any
+	 *
+	 * @param timeout,
+	 *            the scheduled task to cancel or {@code null}
+	 */
+	private static void cancelTimer(HashedWheelTimer.Timeout timeout) {
+		if (timeout != null) {
+			timeout.cancel();
 		}
 	}
 
@@ -129,75 +1091,182 @@ public class RestService {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	public static void callAsync(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
+	public static CallHandle callAsync(HttpRequest httpRequest, Consumer<HttpResponse> consumerOnSuccess,
 			Consumer<Throwable> consumerOnError, int attempts) throws ExecutionException {
+		// the call budget starts now and is shared by every attempt
+		Deadline deadline = Deadline.after(httpRequest == null ? 0 : httpRequest.getCallTimeout());
 		// prepare the call
-		Call<ResponseBody> call = prepareCall(httpRequest);
+		Call<ResponseBody> call = prepareCall(httpRequest, deadline);
 		if (call == null) {
 			LOGGER.error("Call cannot be null");
-			return;
+			return null;
 		}
 		if (consumerOnSuccess == null) {
 			LOGGER.error("Async consumer on success cannot be null");
-			return;
+			return null;
 		}
 		Date startTime = new Date();
+		CallHandle handle = new CallHandle();
+		if (SingleFlight.isApplicableTo(httpRequest)) {
+			// share a single upstream call with the concurrent identical api calls
+			SingleFlight.Participant participant = SingleFlight.join(httpRequest, handle);
+			if (participant.isLeader()) {
+				retryBudget.onRequest();
+				enqueueCall(call, httpRequest, participant::complete, participant::fail, attempts, 1, deadline,
+						participant.getSharedHandle(), startTime);
+			}
+			awaitShared(participant, consumerOnSuccess, consumerOnError, deadline, handle);
+			return handle;
+		}
+		retryBudget.onRequest();
 		// make asynchronous http request and get http response
-		enqueueCall(call, consumerOnSuccess, consumerOnError, attempts, startTime);
+		enqueueCall(call, httpRequest, consumerOnSuccess, consumerOnError, attempts, 1, deadline, handle, startTime);
+		return handle;
+	}
+
+	/**
+	 * Deliver the copy of the shared response to the consumers of an
+	 * asynchronous api call taking part in a single flight
+	 *
+	 * @param participant,
+	 *            the participant of the single flight
+	 * @param consumerOnSuccess,
+	 *            the consumer used to handle success response
+	 * @param consumerOnError,
+	 *            the consumer used to handle error response
+	 * @param deadline,
+	 *            the deadline of the api call
+	 * @param handle,
+	 *            the handle tracking the api call
+	 */
+	private static void awaitShared(SingleFlight.Participant participant, Consumer<HttpResponse> consumerOnSuccess,
+			Consumer<Throwable> consumerOnError, Deadline deadline, CallHandle handle) {
+		HashedWheelTimer.Timeout timeout = deadline.isSet() ? TIMER.schedule(() -> {
+			if (handle.fail()) {
+				participant.leave();
+				if (consumerOnError != null) {
+					consumerOnError.accept(deadline.exceeded(null));
+				}
+			}
+		}, Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS) : null;
+		participant.getResponse().whenComplete((httpResponse, t) -> {
+			cancelTimer(timeout);
+			if (t == null) {
+				if (handle.complete()) {
+					consumerOnSuccess.accept(httpResponse);
+				}
+			} else if (!(t instanceof CancellationException) && handle.fail() && consumerOnError != null) {
+				consumerOnError.accept(t);
+			}
+		});
 	}
 
 	/**
 	 * This method starts a new asynchronous api call based on an already prepared
-	 * call and return a {@link HttpResponse}
+	 * call and return a {@link HttpResponse}, retrying the failed attempts as
+	 * allowed by the retry policy and the retry budget
 	 *
 	 * @param call,
 	 *            a prepared {@link Call} used for api call
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used to prepare the call
 	 * @param consumerOnSuccess,
 	 *            the consumer used to handle success response
 	 * @param consumerOnError,
 	 *            the consumer used to handle error response
 	 * @param attempts,
-	 *            the number of attempts to test if an error occurs during the api
-	 *            call
+	 *            the number of remaining attempts to test if an error occurs
+	 *            during the api call
+	 * @param attempt,
+	 *            the number of the current attempt, starting from 1
+	 * @param deadline,
+	 *            the deadline shared by all the attempts
+	 * @param handle,
+	 *            the handle tracking the api call
 	 * @param startTime,
 	 *            the start time of async api call
 	 */
-	private static void enqueueCall(Call<ResponseBody> call, Consumer<HttpResponse> consumerOnSuccess,
-			Consumer<Throwable> consumerOnError, int attempts, Date startTime) {
+	private static void enqueueCall(Call<ResponseBody> call, HttpRequest httpRequest,
+			Consumer<HttpResponse> consumerOnSuccess, Consumer<Throwable> consumerOnError, int attempts, int attempt,
+			Deadline deadline, CallHandle handle, Date startTime) {
 		// make asynchronous http request and get http response
-		call.clone().enqueue(new Callback<ResponseBody>() {
+		enqueueAttempt(call, httpRequest, deadline, handle, false, new Callback<ResponseBody>() {
 			@Override
 			public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-				HttpResponse httpResponse = prepareHttpResponse(response);
-				if ((httpResponse != null && httpResponse.isSuccessful()) || attempts <= 1) {
-					Date endTime = new Date();
-					LOGGER.info("Returned response in "
-							+ String.format("%s ms", endTime.getTime() - startTime.getTime()) + " milliseconds");
+				if (handle.isCancelled()) {
+					closeQuietly(response);
+					return;
+				}
+				long retryDelay = response.isSuccessful() || attempts <= 1 ? -1
+						: planRetry(httpRequest, attempt, response, null);
+				if (retryDelay >= 0 && !deadline.allows(retryDelay)) {
+					// the remaining budget does not allow a new attempt
+					LOGGER.error("No budget left to retry within the call deadline");
+					retryDelay = -1;
+				}
+				if (retryDelay >= 0 && acquireRetryBudget()) {
+					LOGGER.error("Received " + response.code() + ", waiting " + retryDelay
+							+ " ms for retry... (remaining " + (attempts - 1) + " attempts)");
+					closeQuietly(response);
+					retry(retryDelay);
+					return;
+				}
+				HttpResponse httpResponse = prepareHttpResponse(response, httpRequest);
+				Date endTime = new Date();
+				LOGGER.info("Returned response in " + String.format("%s ms", endTime.getTime() - startTime.getTime())
+						+ " milliseconds");
+				if (handle.complete()) {
 					consumerOnSuccess.accept(httpResponse);
 				} else {
-					onFailure(call, new Throwable(
-							httpResponse == null ? "HttpResponse is null" : httpResponse.getStatusCode()));
+					httpResponse.close();
 				}
 			}
 
 			@Override
 			public void onFailure(Call<ResponseBody> call, Throwable t) {
+				if (handle.isCancelled()) {
+					LOGGER.debug("Asynchronous api call cancelled");
+					return;
+				}
 				LOGGER.error("Error during executing asynchronous api call, received " + t.getMessage());
-				if (attempts > 1) {
-					int remainingAttempts = attempts - 1;
-					LOGGER.error("Waiting " + SECONDS_TO_WAIT_BEFORE_RETRY + " seconds for retry... (remaining "
-							+ remainingAttempts + " attempts)");
-					try {
-						Thread.sleep(SECONDS_TO_WAIT_BEFORE_RETRY * 1000);
-					} catch (InterruptedException e) {
-						// Unhandled exception
-						Thread.currentThread().interrupt();
-					}
-					enqueueCall(call, consumerOnSuccess, consumerOnError, remainingAttempts, startTime);
-				} else if (consumerOnError != null) {
+				if (isFailFast(t)) {
+					// retrying would only add load to an upstream already refusing it
+					fail(t);
+					return;
+				}
+				if (deadline.isExpired()) {
+					// the call was cancelled because of the deadline
+					fail(deadline.exceeded(t));
+					return;
+				}
+				long retryDelay = attempts > 1 ? planRetry(httpRequest, attempt, null, t) : -1;
+				if (retryDelay >= 0 && !deadline.allows(retryDelay)) {
+					// the remaining budget does not allow a new attempt
+					fail(deadline.exceeded(t));
+				} else if (retryDelay >= 0 && acquireRetryBudget()) {
+					LOGGER.error("Waiting " + retryDelay + " ms for retry... (remaining " + (attempts - 1)
+							+ " attempts)");
+					retry(retryDelay);
+				} else {
+					fail(t);
+				}
+			}
+
+			private void retry(long retryDelay) {
+				// schedule the retry without blocking the dispatcher thread
+				HashedWheelTimer.Timeout retry = TIMER.schedule(() -> enqueueCall(call, httpRequest, consumerOnSuccess,
+						consumerOnError, attempts - 1, attempt + 1, deadline, handle, startTime), retryDelay,
+						TimeUnit.MILLISECONDS);
+				handle.track(retry::cancel);
+			}
+
+			private void fail(Throwable t) {
+				if (handle.fail() && consumerOnError != null) {
 					consumerOnError.accept(t);
 				}
 			}
@@ -210,12 +1279,15 @@ public class RestService {
 	 *
 	 * @param httpRequest,
 	 *            a prepared {@link HttpRequest} used for api call
+	 * @param deadline,
+	 *            the deadline of the api call
 	 * @return the {@link Call<ResponseBody>} object used for execute REST
 	 *         communications or {@code null} is some error occurs
 	 * @throws ExecutionException
 	 *             if a problem occurred during the retrieving of REST client
 	 */
-	private static Call<ResponseBody> prepareCall(HttpRequest httpRequest) throws ExecutionException {
+	private static Call<ResponseBody> prepareCall(HttpRequest httpRequest, Deadline deadline)
+			throws ExecutionException {
 		if (httpRequest == null) {
 			LOGGER.error("HttpRequest cannot be null");
 			return null;
@@ -233,9 +1305,38 @@ public class RestService {
 		// handle possible null values for query string and body parameters
 		HttpMethod httpMethod = httpRequest.getHttpMethod() == null ? HttpMethod.GET : httpRequest.getHttpMethod();
 		String apiEndpoint = httpRequest.getApiEndpoint();
-		Map<String, String> headers = httpRequest.getHeaders() == null ? new HashMap<>() : httpRequest.getHeaders();
+		Map<String, String> headers = httpRequest.getHeaders() == null ? new HashMap<>()
+				: new HashMap<>(httpRequest.getHeaders());
+		// per-request timeouts are applied by the TimeoutInterceptor
+		if (httpRequest.getConnectTimeout() > 0) {
+			headers.put(TimeoutInterceptor.CONNECT_TIMEOUT_HEADER, String.valueOf(httpRequest.getConnectTimeout()));
+		}
+		if (httpRequest.getReadTimeout() > 0) {
+			headers.put(TimeoutInterceptor.READ_TIMEOUT_HEADER, String.valueOf(httpRequest.getReadTimeout()));
+		}
+		if (deadline.isSet()) {
+			headers.put(TimeoutInterceptor.DEADLINE_HEADER, String.valueOf(deadline.getDeadlineNanos()));
+		}
+		// the client-side caching policy is applied by the CacheInterceptor
+		if (httpRequest.getCachePolicy() != null && httpMethod == HttpMethod.GET) {
+			headers.put(CacheInterceptor.CACHE_POLICY_HEADER, CacheInterceptor.encode(httpRequest.getCachePolicy()));
+		}
+		// the compression of the body is applied by the CompressionInterceptor
+		CompressionPolicy compressionPolicy = httpRequest.getCompressionPolicy() == null
+				? CompressionService.getPolicy(httpRequest.getBaseUrl())
+				: httpRequest.getCompressionPolicy();
+		if (compressionPolicy != null && compressionPolicy.isEnabled() && httpMethod != HttpMethod.GET) {
+			headers.put(CompressionInterceptor.COMPRESSION_POLICY_HEADER,
+					CompressionInterceptor.encode(compressionPolicy));
+		}
+		// the binary body format of the base url is negotiated, unless the accepted types are given
+		BodyFormat bodyFormat = ClientService.getBodyFormat(httpRequest.getBaseUrl());
+		if (bodyFormat != BodyFormat.JSON && headers.keySet().stream().noneMatch("Accept"::equalsIgnoreCase)) {
+			headers.put("Accept", bodyFormat.getMediaType() + ", " + BodyFormat.JSON.getMediaType() + ";q=0.5");
+		}
+		// the query string is merged into a copy, leaving the http request unchanged
 		Map<String, String> queryParams = httpRequest.getQueryParams() == null ? new HashMap<>()
-				: httpRequest.getQueryParams();
+				: new HashMap<>(httpRequest.getQueryParams());
 		String queryString = httpRequest.getQueryString();
 		if (queryString != null) {
 			String[] queryStringSplitted = queryString.split("&");
@@ -250,10 +1351,49 @@ public class RestService {
 		}
 		Map<String, String> bodyParams = httpRequest.getBodyParams() == null ? new HashMap<>()
 				: httpRequest.getBodyParams();
+		// under a memory budget the body is read from the connection by the MemoryBudgetService
+		boolean streaming = httpRequest.isStreaming() || MemoryBudgetService.isEnabled();
+		// a body, if any, is sent as it is instead of the body parameters, by every attempt
+		HttpBody body = httpRequest.getBody();
+		if (body != null && httpMethod != HttpMethod.GET) {
+			RequestBody requestBody = body.toRequestBody(bodyFormat, httpRequest.getUploadListener());
+			if (requestBody == null) {
+				LOGGER.error("Unable to convert the body of the http request");
+				return null;
+			}
+			switch (httpMethod) {
+			case POST:
+				return streaming ? httpCall.streamPOST(apiEndpoint, headers, queryParams, requestBody)
+						: httpCall.makePOST(apiEndpoint, headers, queryParams, requestBody);
+			case PUT:
+				return streaming ? httpCall.streamPUT(apiEndpoint, headers, queryParams, requestBody)
+						: httpCall.makePUT(apiEndpoint, headers, queryParams, requestBody);
+			case DELETE:
+				return streaming ? httpCall.streamDELETE(apiEndpoint, headers, queryParams, requestBody)
+						: httpCall.makeDELETE(apiEndpoint, headers, queryParams, requestBody);
+			default:
+				return null;
+			}
+		}
 		// initialize the call
 		Call<ResponseBody> call;
 		// make the http request with respect to the indicated http method
 		// as default will be considered a GET http method
+		// a streaming api call does not buffer the response body
+		if (streaming) {
+			switch (httpMethod) {
+			case GET:
+				return httpCall.streamGET(apiEndpoint, headers, queryParams);
+			case POST:
+				return httpCall.streamPOST(apiEndpoint, headers, queryParams, bodyParams);
+			case PUT:
+				return httpCall.streamPUT(apiEndpoint, headers, queryParams, bodyParams);
+			case DELETE:
+				return httpCall.streamDELETE(apiEndpoint, headers, queryParams, bodyParams);
+			default:
+				return null;
+			}
+		}
 		switch (httpMethod) {
 		case GET:
 			call = httpCall.makeGET(apiEndpoint, headers, queryParams);
@@ -274,20 +1414,36 @@ public class RestService {
 		return call;
 	}
 
+	/**
+	 * Close the body of a discarded response, giving its connection back to the
+	 * pool
+	 *
+	 * @param response,
+	 *            the discarded response
+	 */
+	private static void closeQuietly(Response<ResponseBody> response) {
+		ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+		if (body != null) {
+			body.close();
+		}
+	}
+
 	/**
 	 * Convert the obtained {@link Response<ResponseBody>} rawResponse into a
 	 * {@link HttpResponse}
 	 *
 	 * @param rawResponse,
 	 *            the raw response obtained from http request
+	 * @param httpRequest,
+	 *            the {@link HttpRequest} used for api call
 	 * @return a {@link HttpResponse}
 	 */
-	private static HttpResponse prepareHttpResponse(Response<ResponseBody> rawResponse) {
+	private static HttpResponse prepareHttpResponse(Response<ResponseBody> rawResponse, HttpRequest httpRequest) {
 		if (rawResponse == null) {
 			LOGGER.debug("The raw response is null");
 			return null;
 		} else {
-			HttpResponse httpResponse = new HttpResponse(rawResponse);
+			HttpResponse httpResponse = new HttpResponse(rawResponse, httpRequest.isStreaming());
 			LOGGER.debug("Response obtained with http status code: " + httpResponse.getStatusCode());
 			return httpResponse;
 		}
@@ -296,7 +1452,9 @@ public class RestService {
 	/**
 	 * This method prepares and dispatch a {@code EventResponse} event on event bus
 	 * using the given {@code eventIdentifier} through the
-	 * {@link CoordinatorService}
+	 * {@link CoordinatorService}. The api call is enqueued like an asynchronous
+	 * one, so that no thread is blocked waiting for its response or for a rate
+	 * limit
 	 *
 	 * @param httpRequest,
 	 *            a prepared {@link HttpRequest} used for api call
@@ -308,39 +1466,45 @@ public class RestService {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void callEvent(HttpRequest httpRequest, String eventIdentifier, CoordinatorService coordinatorService,
-			int attempts) {
+	public static CallHandle callEvent(HttpRequest httpRequest, String eventIdentifier,
+			CoordinatorService coordinatorService, int attempts) {
 		// prepare and dispatch event response on event bus
 		if (coordinatorService == null) {
 			LOGGER.error("Coordinator service cannot be null");
-			return;
+			return null;
 		}
-		new Thread(() -> {
-			try {
-				// obtaining http response
-				HttpResponse httpResponse = callSync(httpRequest, attempts);
-				if (httpRequest == null) {
-					throw new ExecutionException("HttpResponse is null", null);
-				} else {
-					// preparing the event response based on http response
-					EventResponse eventResponse = new EventResponse(eventIdentifier, httpResponse);
-					// dispatching event response on event bus
-					LOGGER.debug("Posting event response on event bus identifier by " + eventIdentifier);
-					coordinatorService.post(eventResponse);
-				}
-			} catch (ExecutionException | IOException ex) {
-				// preparing the event response based on http error
-				EventResponse eventResponse = new EventResponse(eventIdentifier, ex.getMessage());
+		Consumer<Throwable> consumerOnError = t -> {
+			// preparing the event response based on http error
+			EventResponse eventResponse = new EventResponse(eventIdentifier, t.getMessage());
+			// dispatching event response on event bus
+			LOGGER.error("Error during preparing event response for event " + eventIdentifier, t.getMessage());
+			coordinatorService.post(eventResponse);
+		};
+		try {
+			CallHandle handle = callAsync(httpRequest, httpResponse -> {
+				// preparing the event response based on http response
+				EventResponse eventResponse = new EventResponse(eventIdentifier, httpResponse);
 				// dispatching event response on event bus
-				LOGGER.error("Error during preparing event response for event " + eventIdentifier, ex.getMessage());
+				LOGGER.debug("Posting event response on event bus identifier by " + eventIdentifier);
 				coordinatorService.post(eventResponse);
+			}, consumerOnError, attempts);
+			if (handle == null) {
+				consumerOnError.accept(new ExecutionException("Unable to prepare the api call", null));
 			}
-		}).start();
+			return handle;
+		} catch (ExecutionException ex) {
+			consumerOnError.accept(ex);
+			return null;
+		}
 	}
 
 	/**
-	 * This method prepares and executes a reactive based REST communication
+	 * This method prepares and executes a reactive based REST communication. The
+	 * api call is enqueued like an asynchronous one, so that no thread is blocked
+	 * waiting for its response or for a rate limit
 	 *
 	 * @param httpRequest,
 	 *            a prepared {@link HttpRequest} used for api call
@@ -351,28 +1515,49 @@ public class RestService {
 	 * @param attempts,
 	 *            the number of attempts to test if an error occurs during the api
 	 *            call
+	 * @return the {@link CallHandle} usable to cancel the api call or
+	 *         {@code null} if some error occurs
 	 */
-	public static void callReact(HttpRequest httpRequest,
+	public static CallHandle callReact(HttpRequest httpRequest,
 			io.reactivex.functions.Consumer<HttpResponse> consumerOnSuccess,
 			io.reactivex.functions.Consumer<Throwable> consumerOnError, int attempts) {
 		if (consumerOnSuccess == null) {
 			LOGGER.error("Reactive consumer on success cannot be null");
-			return;
-		}
-		// prepare flowable to handle async response
-		Flowable<HttpResponse> flowable = Flowable.fromCallable(() -> RestService.callSync(httpRequest, attempts));
-		new Thread(() -> {
-			if (consumerOnError == null) {
-				LOGGER.debug("No consumer on error specified, using a default one");
-				flowable.subscribe(consumerOnSuccess, err -> {
-                    // unhandled event
-                    LOGGER.error("Default consumer onError has received: " + err.getMessage());
-                });
-			} else {
-				flowable.subscribe(consumerOnSuccess, consumerOnError);
+			return null;
+		}
+		io.reactivex.functions.Consumer<Throwable> onError = consumerOnError;
+		if (onError == null) {
+			LOGGER.debug("No consumer on error specified, using a default one");
+			onError = err -> {
+				// unhandled event
+				LOGGER.error("Default consumer onError has received: " + err.getMessage());
+			};
+		}
+		io.reactivex.functions.Consumer<Throwable> reactOnError = onError;
+		Consumer<Throwable> errorConsumer = err -> {
+			try {
+				reactOnError.accept(err);
+			} catch (Exception ex) {
+				LOGGER.error("Error during reacting to the http error: " + ex.getMessage());
 			}
-			flowable.publish();
-		}).start();
+		};
+		try {
+			CallHandle handle = callAsync(httpRequest, httpResponse -> {
+				try {
+					consumerOnSuccess.accept(httpResponse);
+				} catch (Exception ex) {
+					// as in a reactive stream, the error of the consumer is handled as an error
+					errorConsumer.accept(ex);
+				}
+			}, errorConsumer, attempts);
+			if (handle == null) {
+				errorConsumer.accept(new ExecutionException("Unable to prepare the api call", null));
+			}
+			return handle;
+		} catch (ExecutionException ex) {
+			errorConsumer.accept(ex);
+			return null;
+		}
 	}
 
 }
@@ -0,0 +1,441 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * This class represents a single upstream call shared by the concurrent
+ * identical api calls, i.e. the ones with equal {@link HttpRequest}s. The first
+ * participant leads the flight and makes the upstream call, the others wait for
+ * its outcome, and every participant receives its own copy of the response, as
+ * the body is buffered once and replayed. A participant cancelling its api call
+ * leaves the flight, and the upstream call is cancelled only when no
+ * participant is left
+ *
+ * @author lucapompei
+ */
+public class SingleFlight {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(SingleFlight.class);
+
+	/**
+	 * The names of the metrics of the single flights
+	 */
+	public static final String LEADER_METRIC = "singleflight.leaders";
+	public static final String SHARED_METRIC = "singleflight.shared";
+	public static final String IN_FLIGHT_METRIC = "singleflight.inflight";
+
+	/**
+	 * The flights in progress, by http request
+	 */
+	private static final Map<HttpRequest, SingleFlight> FLIGHTS = new ConcurrentHashMap<>();
+
+	static {
+		MetricsService.registerGauge(IN_FLIGHT_METRIC, FLIGHTS::size);
+	}
+
+	/**
+	 * The http request identifying this flight
+	 */
+	private final HttpRequest httpRequest;
+
+	/**
+	 * The handle tracking the shared upstream call
+	 */
+	private final CallHandle handle = new CallHandle();
+
+	/**
+	 * The outcome of the shared upstream call
+	 */
+	private final CompletableFuture<SharedResponse> result = new CompletableFuture<>();
+
+	/**
+	 * The number of participants still waiting for the outcome
+	 */
+	private int participants;
+
+	/**
+	 * The boolean indicating if a participant already leads this flight
+	 */
+	private boolean led;
+
+	/**
+	 * The boolean indicating if this flight accepts no more participants
+	 */
+	private boolean closed;
+
+	/**
+	 * Construct a new {@link SingleFlight}
+	 *
+	 * @param httpRequest,
+	 *            the http request identifying the flight
+	 */
+	private SingleFlight(HttpRequest httpRequest) {
+		this.httpRequest = httpRequest;
+	}
+
+	/**
+	 * Check if the api call of the given http request can share a single
+	 * upstream call with the concurrent identical ones
+	 *
+	 * @param httpRequest,
+	 *            the http request to check
+	 * @return a boolean indicating if the single flight applies
+	 */
+	static boolean isApplicableTo(HttpRequest httpRequest) {
+		if (httpRequest == null || !httpRequest.isSingleFlight() || httpRequest.isStreaming()) {
+			return false;
+		}
+		HttpMethod httpMethod = httpRequest.getHttpMethod() == null ? HttpMethod.GET : httpRequest.getHttpMethod();
+		return httpMethod.isIdempotent();
+	}
+
+	/**
+	 * Join the flight of the given http request, starting a new one if none is
+	 * in progress
+	 *
+	 * @param httpRequest,
+	 *            the http request of the api call
+	 * @param handle,
+	 *            the handle tracking the api call of the participant
+	 * @return the {@link Participant} joining the flight
+	 */
+	static Participant join(HttpRequest httpRequest, CallHandle handle) {
+		while (true) {
+			SingleFlight flight = FLIGHTS.computeIfAbsent(httpRequest, SingleFlight::new);
+			Participant participant = flight.enter(handle);
+			if (participant != null) {
+				return participant;
+			}
+			// the flight completed meanwhile, a new one is needed
+			FLIGHTS.remove(httpRequest, flight);
+		}
+	}
+
+	/**
+	 * Enter this flight as a new participant
+	 *
+	 * @param handle,
+	 *            the handle tracking the api call of the participant
+	 * @return the new {@link Participant} or {@code null} if the flight accepts
+	 *         no more participants
+	 */
+	private Participant enter(CallHandle handle) {
+		boolean leader;
+		synchronized (this) {
+			if (closed) {
+				return null;
+			}
+			participants++;
+			leader = !led;
+			led = true;
+		}
+		MetricsService.increment(leader ? LEADER_METRIC : SHARED_METRIC);
+		if (!leader) {
+			LOGGER.debug("Sharing the in-flight api call to %s%s", httpRequest.getBaseUrl(),
+					httpRequest.getApiEndpoint());
+		}
+		return new Participant(this, handle, leader);
+	}
+
+	/**
+	 * Leave this flight, cancelling the upstream call if no participant is left
+	 */
+	private void leave() {
+		synchronized (this) {
+			participants--;
+			if (participants > 0 || result.isDone()) {
+				return;
+			}
+			closed = true;
+		}
+		FLIGHTS.remove(httpRequest, this);
+		LOGGER.debug("No participant left, cancelling the shared api call");
+		handle.cancel();
+		result.completeExceptionally(new CancellationException("Shared api call abandoned"));
+	}
+
+	/**
+	 * Close this flight, so that the following identical api calls start a new
+	 * upstream call
+	 */
+	private void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		FLIGHTS.remove(httpRequest, this);
+	}
+
+	/**
+	 * Complete this flight with the response of the upstream call
+	 *
+	 * @param httpResponse,
+	 *            the response of the upstream call
+	 */
+	private void complete(HttpResponse httpResponse) {
+		close();
+		try {
+			result.complete(SharedResponse.of(httpResponse));
+		} catch (IOException ex) {
+			LOGGER.error("Unable to buffer the shared response: " + ex.getMessage());
+			result.completeExceptionally(ex);
+		}
+	}
+
+	/**
+	 * Complete this flight with the error of the upstream call
+	 *
+	 * @param t,
+	 *            the error of the upstream call
+	 */
+	private void fail(Throwable t) {
+		close();
+		result.completeExceptionally(t);
+	}
+
+	/**
+	 * This class represents an api call taking part in a flight
+	 */
+	static class Participant {
+
+		/**
+		 * The flight joined
+		 */
+		private final SingleFlight flight;
+
+		/**
+		 * The boolean indicating if this participant makes the upstream call
+		 */
+		private final boolean leader;
+
+		/**
+		 * The copy of the shared response for this participant
+		 */
+		private final CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+
+		/**
+		 * Construct a new {@link Participant}
+		 *
+		 * @param flight,
+		 *            the flight joined
+		 * @param handle,
+		 *            the handle tracking the api call of the participant
+		 * @param leader,
+		 *            a boolean indicating if the participant makes the upstream
+		 *            call
+		 */
+		private Participant(SingleFlight flight, CallHandle handle, boolean leader) {
+			this.flight = flight;
+			this.leader = leader;
+			flight.result.whenComplete((sharedResponse, t) -> {
+				if (t != null) {
+					response.completeExceptionally(t);
+				} else {
+					response.complete(sharedResponse == null ? null : sharedResponse.replay());
+				}
+			});
+			handle.track(this::leave);
+		}
+
+		/**
+		 * Retrieve if this participant makes the upstream call
+		 *
+		 * @return a boolean indicating if this participant leads the flight
+		 */
+		boolean isLeader() {
+			return leader;
+		}
+
+		/**
+		 * Retrieve the handle tracking the shared upstream call, used by the
+		 * leader to make it
+		 *
+		 * @return the handle tracking the shared upstream call
+		 */
+		CallHandle getSharedHandle() {
+			return flight.handle;
+		}
+
+		/**
+		 * Complete the flight with the response of the upstream call
+		 *
+		 * @param httpResponse,
+		 *            the response of the upstream call
+		 */
+		void complete(HttpResponse httpResponse) {
+			flight.complete(httpResponse);
+		}
+
+		/**
+		 * Complete the flight with the error of the upstream call
+		 *
+		 * @param t,
+		 *            the error of the upstream call
+		 */
+		void fail(Throwable t) {
+			flight.fail(t);
+		}
+
+		/**
+		 * Retrieve the copy of the shared response for this participant
+		 *
+		 * @return the future completed with the response or with the error of
+		 *         the upstream call, or cancelled if this participant leaves
+		 */
+		CompletableFuture<HttpResponse> getResponse() {
+			return response;
+		}
+
+		/**
+		 * Wait for the copy of the shared response for this participant
+		 *
+		 * @param deadline,
+		 *            the deadline of the api call of this participant
+		 * @return the copy of the shared response
+		 * @throws ExecutionException,
+		 *             if the upstream call could not be prepared
+		 * @throws IOException,
+		 *             if the upstream call fails, the deadline is exceeded or the
+		 *             api call of this participant is cancelled
+		 */
+		HttpResponse await(Deadline deadline) throws ExecutionException, IOException {
+			try {
+				return deadline.isSet() ? response.get(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS)
+						: response.get();
+			} catch (CancellationException e) {
+				throw new IOException("Canceled");
+			} catch (TimeoutException e) {
+				leave();
+				throw deadline.exceeded(null);
+			} catch (InterruptedException e) {
+				// Unhandled exception
+				Thread.currentThread().interrupt();
+				leave();
+				throw new InterruptedIOException("Interrupted while waiting for the shared api call");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof ExecutionException) {
+					throw (ExecutionException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+
+		/**
+		 * Leave the flight, once
+		 */
+		void leave() {
+			if (response.cancel(false)) {
+				flight.leave();
+			}
+		}
+
+	}
+
+	/**
+	 * This class represents a response buffered once and replayed for each
+	 * participant of a flight
+	 */
+	private static class SharedResponse {
+
+		/**
+		 * The raw response, without body
+		 */
+		private final okhttp3.Response rawResponse;
+
+		/**
+		 * The media type of the body
+		 */
+		private final MediaType contentType;
+
+		/**
+		 * The bytes of the body or {@code null} if the response has no body
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Construct a new {@link SharedResponse}
+		 *
+		 * @param rawResponse,
+		 *            the raw response
+		 * @param contentType,
+		 *            the media type of the body
+		 * @param bytes,
+		 *            the bytes of the body
+		 */
+		private SharedResponse(okhttp3.Response rawResponse, MediaType contentType, byte[] bytes) {
+			this.rawResponse = rawResponse;
+			this.contentType = contentType;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Buffer the given response
+		 *
+		 * @param httpResponse,
+		 *            the response to buffer
+		 * @return the {@link SharedResponse} or {@code null} if the response is
+		 *         {@code null}
+		 * @throws IOException,
+		 *             if the body cannot be read
+		 */
+		private static SharedResponse of(HttpResponse httpResponse) throws IOException {
+			if (httpResponse == null) {
+				return null;
+			}
+			try (HttpResponse sharedResponse = httpResponse) {
+				Response<ResponseBody> response = sharedResponse.getRawResponse();
+				ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+				if (body == null) {
+					return new SharedResponse(response.raw(), null, null);
+				}
+				return new SharedResponse(response.raw(), body.contentType(), body.bytes());
+			}
+		}
+
+		/**
+		 * Replay this response with a new body
+		 *
+		 * @return a new {@link HttpResponse} reading its own copy of the body
+		 */
+		private HttpResponse replay() {
+			ResponseBody body = bytes == null ? null : ResponseBody.create(contentType, bytes);
+			if (rawResponse.isSuccessful()) {
+				return new HttpResponse(Response.success(body, rawResponse));
+			}
+			return new HttpResponse(Response.error(body == null ? ResponseBody.create(null, new byte[0]) : body,
+					rawResponse));
+		}
+
+	}
+
+}
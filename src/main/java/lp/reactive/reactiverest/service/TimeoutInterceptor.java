@@ -0,0 +1,76 @@
+package lp.reactive.reactiverest.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * This interceptor applies the per-request timeouts configured on a
+ * {@code HttpRequest}. The timeouts travel with the call as internal headers,
+ * which are removed before the request is sent to the server, and each attempt
+ * is clamped to the remaining call budget
+ *
+ * @author lucapompei
+ */
+public class TimeoutInterceptor implements Interceptor {
+
+	/**
+	 * Internal header carrying the connect timeout in milliseconds
+	 */
+	static final String CONNECT_TIMEOUT_HEADER = "X-ReactiveRest-Connect-Timeout";
+
+	/**
+	 * Internal header carrying the read timeout in milliseconds
+	 */
+	static final String READ_TIMEOUT_HEADER = "X-ReactiveRest-Read-Timeout";
+
+	/**
+	 * Internal header carrying the call deadline, expressed as
+	 * {@link System#nanoTime()}
+	 */
+	static final String DEADLINE_HEADER = "X-ReactiveRest-Deadline";
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		String connectTimeoutHeader = request.header(CONNECT_TIMEOUT_HEADER);
+		String readTimeoutHeader = request.header(READ_TIMEOUT_HEADER);
+		String deadlineHeader = request.header(DEADLINE_HEADER);
+		if (connectTimeoutHeader == null && readTimeoutHeader == null && deadlineHeader == null) {
+			return chain.proceed(request);
+		}
+		long connectTimeout = connectTimeoutHeader == null ? chain.connectTimeoutMillis()
+				: Long.parseLong(connectTimeoutHeader);
+		long readTimeout = readTimeoutHeader == null ? chain.readTimeoutMillis() : Long.parseLong(readTimeoutHeader);
+		if (deadlineHeader != null) {
+			// clamp the attempt to the remaining call budget
+			long remaining = TimeUnit.NANOSECONDS.toMillis(Long.parseLong(deadlineHeader) - System.nanoTime());
+			if (remaining <= 0) {
+				throw new InterruptedIOException("Call deadline exceeded before sending the request");
+			}
+			connectTimeout = connectTimeout == 0 ? remaining : Math.min(connectTimeout, remaining);
+			readTimeout = readTimeout == 0 ? remaining : Math.min(readTimeout, remaining);
+		}
+		Request cleanRequest = request.newBuilder().removeHeader(CONNECT_TIMEOUT_HEADER)
+				.removeHeader(READ_TIMEOUT_HEADER).removeHeader(DEADLINE_HEADER).build();
+		return chain.withConnectTimeout(toIntMillis(connectTimeout), TimeUnit.MILLISECONDS)
+				.withReadTimeout(toIntMillis(readTimeout), TimeUnit.MILLISECONDS).proceed(cleanRequest);
+	}
+
+	/**
+	 * Narrow the given timeout to the int expected by the chain, capping the
+	 * timeouts too large to be represented
+	 *
+	 * @param timeout,
+	 *            the timeout in milliseconds
+	 * @return the timeout in milliseconds, at most {@link Integer#MAX_VALUE}
+	 */
+	private static int toIntMillis(long timeout) {
+		return (int) Math.min(timeout, Integer.MAX_VALUE);
+	}
+
+}
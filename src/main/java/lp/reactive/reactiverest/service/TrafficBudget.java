@@ -0,0 +1,110 @@
+package lp.reactive.reactiverest.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class caps the extra load generated by additional requests, such as
+ * hedges or retries, to a percentage of the regular traffic. Each regular
+ * request deposits a fraction of a token and each additional request withdraws
+ * a whole token, if available
+ *
+ * @author lucapompei
+ */
+public class TrafficBudget {
+
+	/**
+	 * The scale used to store fractions of tokens as integers
+	 */
+	private static final long TOKEN = 1000;
+
+	/**
+	 * The fraction of token deposited by each regular request
+	 */
+	private final long deposit;
+
+	/**
+	 * The maximum balance, used to bound the burst of additional requests
+	 */
+	private final long maxBalance;
+
+	/**
+	 * The current balance
+	 */
+	private final AtomicLong balance = new AtomicLong();
+
+	/**
+	 * Construct a new {@link TrafficBudget}
+	 *
+	 * @param ratio,
+	 *            the allowed additional requests expressed as a ratio of the
+	 *            regular traffic, e.g. {@code 0.1} for 10%
+	 * @param maxBurst,
+	 *            the maximum number of additional requests that can be sent in a
+	 *            burst
+	 */
+	public TrafficBudget(double ratio, int maxBurst) {
+		this(ratio, maxBurst, 0);
+	}
+
+	/**
+	 * Construct a new {@link TrafficBudget} with an initial balance, so that a few
+	 * additional requests are allowed before any regular traffic
+	 *
+	 * @param ratio,
+	 *            the allowed additional requests expressed as a ratio of the
+	 *            regular traffic, e.g. {@code 0.1} for 10%
+	 * @param maxBurst,
+	 *            the maximum number of additional requests that can be sent in a
+	 *            burst
+	 * @param initialBalance,
+	 *            the number of additional requests initially allowed, capped to
+	 *            the maximum burst
+	 */
+	public TrafficBudget(double ratio, int maxBurst, int initialBalance) {
+		if (ratio < 0 || maxBurst < 0 || initialBalance < 0) {
+			throw new IllegalArgumentException("Ratio, maximum burst and initial balance cannot be negative");
+		}
+		this.deposit = Math.round(ratio * TOKEN);
+		this.maxBalance = maxBurst * TOKEN;
+		this.balance.set(Math.min(initialBalance, maxBurst) * TOKEN);
+	}
+
+	/**
+	 * Deposit the credit earned by a regular request
+	 */
+	public void onRequest() {
+		long current;
+		do {
+			current = balance.get();
+			if (current >= maxBalance) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+	}
+
+	/**
+	 * Try to withdraw the token needed by an additional request
+	 *
+	 * @return a boolean indicating if the additional request is allowed or not
+	 */
+	public boolean tryAcquire() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < TOKEN) {
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - TOKEN));
+		return true;
+	}
+
+	/**
+	 * Retrieve the number of additional requests currently allowed
+	 *
+	 * @return the number of additional requests currently allowed
+	 */
+	public long getAvailable() {
+		return balance.get() / TOKEN;
+	}
+
+}
@@ -0,0 +1,367 @@
+package lp.reactive.reactiverest.utils;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class pools the buffers used to read and copy the response bodies, so
+ * that the same memory is reused instead of allocating new arrays for each
+ * body. The buffers are grouped in size classes, the powers of two from
+ * {@value MIN_POOLED_SIZE} to {@value MAX_POOLED_SIZE} bytes, kept apart for
+ * heap and direct buffers; a larger buffer is allocated and dropped as usual.
+ * In debug mode, the buffers garbage collected without being released are
+ * logged as leaks, with the stack trace of their acquisition
+ *
+ * @author lucapompei
+ */
+public class BufferPool {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LogManager.getFormatterLogger(BufferPool.class);
+
+	/**
+	 * The size, in bytes, of the smallest size class
+	 */
+	public static final int MIN_POOLED_SIZE = 4096;
+
+	/**
+	 * The size, in bytes, of the largest size class
+	 */
+	public static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+	/**
+	 * The maximum number of bytes kept by each size class, so that a burst of
+	 * large bodies does not keep its memory forever
+	 */
+	private static final int MAX_POOLED_BYTES_PER_CLASS = 2 * 1024 * 1024;
+
+	/**
+	 * The pool of the heap buffers
+	 */
+	private static final Arena HEAP = new Arena(false);
+
+	/**
+	 * The pool of the direct buffers
+	 */
+	private static final Arena DIRECT = new Arena(true);
+
+	/**
+	 * The leak detection records of the buffers not yet released
+	 */
+	private static final Set<Leak> TRACKED = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The queue of the garbage collected buffers
+	 */
+	private static final ReferenceQueue<PooledBuffer> COLLECTED = new ReferenceQueue<>();
+
+	/**
+	 * The number of leaks detected
+	 */
+	private static final LongAdder LEAKS = new LongAdder();
+
+	/**
+	 * The boolean indicating if the leak detection is enabled
+	 */
+	private static volatile boolean leakDetection;
+
+	/**
+	 * Private constructor for an utility class, construct a new
+	 * {@code BufferPool}
+	 */
+	private BufferPool() {
+		// Empty implementation
+	}
+
+	/**
+	 * Borrow a heap buffer of at least the given size
+	 *
+	 * @param size,
+	 *            the size in bytes
+	 * @return the {@link PooledBuffer}, to be closed once used
+	 */
+	public static PooledBuffer acquire(int size) {
+		return acquire(HEAP, size);
+	}
+
+	/**
+	 * Borrow a direct buffer of at least the given size, e.g. to copy a body to
+	 * a channel without an intermediate copy
+	 *
+	 * @param size,
+	 *            the size in bytes
+	 * @return the {@link PooledBuffer}, to be closed once used
+	 */
+	public static PooledBuffer acquireDirect(int size) {
+		return acquire(DIRECT, size);
+	}
+
+	/**
+	 * Enable or disable the leak detection, which records the stack trace of
+	 * each acquisition and is therefore meant for debugging
+	 *
+	 * @param enabled,
+	 *            a boolean indicating if the leak detection is enabled
+	 */
+	public static void setLeakDetection(boolean enabled) {
+		leakDetection = enabled;
+	}
+
+	/**
+	 * Retrieve the number of leaks detected
+	 *
+	 * @return the number of buffers garbage collected without being released
+	 *         while the leak detection was enabled
+	 */
+	public static long getLeakCount() {
+		detectLeaks();
+		return LEAKS.sum();
+	}
+
+	/**
+	 * Retrieve the number of bytes kept by the pool
+	 *
+	 * @return the bytes of the heap and direct buffers ready to be borrowed
+	 */
+	public static long getPooledBytes() {
+		return HEAP.getPooledBytes() + DIRECT.getPooledBytes();
+	}
+
+	/**
+	 * Borrow a buffer of at least the given size from the given arena
+	 *
+	 * @param arena,
+	 *            the arena of heap or direct buffers
+	 * @param size,
+	 *            the size in bytes
+	 * @return the {@link PooledBuffer}
+	 */
+	private static PooledBuffer acquire(Arena arena, int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Buffer size cannot be negative");
+		}
+		detectLeaks();
+		ByteBuffer buffer = arena.acquire(size);
+		buffer.limit(size);
+		PooledBuffer pooledBuffer = new PooledBuffer(buffer);
+		if (leakDetection) {
+			Leak leak = new Leak(pooledBuffer, buffer.capacity());
+			TRACKED.add(leak);
+			pooledBuffer.setLeak(leak);
+		}
+		return pooledBuffer;
+	}
+
+	/**
+	 * Give back a borrowed buffer
+	 *
+	 * @param buffer,
+	 *            the borrowed buffer
+	 * @param leak,
+	 *            the leak detection record of the buffer or {@code null}
+	 */
+	static void release(ByteBuffer buffer, Leak leak) {
+		if (leak != null) {
+			TRACKED.remove(leak);
+			leak.clear();
+		}
+		(buffer.isDirect() ? DIRECT : HEAP).release(buffer);
+	}
+
+	/**
+	 * Report a buffer released twice, in debug mode
+	 *
+	 * @param buffer,
+	 *            the buffer released twice
+	 */
+	static void doubleRelease(ByteBuffer buffer) {
+		if (leakDetection) {
+			LOGGER.warn("Pooled buffer of %d bytes released twice", buffer.capacity(),
+					new IllegalStateException("Released again here"));
+		}
+	}
+
+	/**
+	 * Log the buffers garbage collected without being released
+	 */
+	private static void detectLeaks() {
+		Reference<? extends PooledBuffer> reference;
+		while ((reference = COLLECTED.poll()) != null) {
+			Leak leak = (Leak) reference;
+			if (TRACKED.remove(leak)) {
+				LEAKS.increment();
+				LOGGER.error("Pooled buffer of %d bytes garbage collected without being released", leak.capacity,
+						leak.acquisition);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the index of the size class fitting the given size
+	 *
+	 * @param size,
+	 *            the size in bytes
+	 * @return the index of the size class or {@code -1} if the size is larger
+	 *         than the largest size class
+	 */
+	private static int sizeClass(int size) {
+		if (size > MAX_POOLED_SIZE) {
+			return -1;
+		}
+		int rounded = Math.max(MIN_POOLED_SIZE, Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+		return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+	}
+
+	/**
+	 * The buffers of a kind, heap or direct, grouped by size class
+	 */
+	private static class Arena {
+
+		/**
+		 * The boolean indicating if the buffers are direct
+		 */
+		private final boolean direct;
+
+		/**
+		 * The buffers ready to be borrowed, by size class
+		 */
+		private final List<Deque<ByteBuffer>> classes;
+
+		/**
+		 * The number of buffers ready to be borrowed, by size class
+		 */
+		private final AtomicInteger[] counts;
+
+		/**
+		 * Construct a new {@link Arena}
+		 *
+		 * @param direct,
+		 *            a boolean indicating if the buffers are direct
+		 */
+		Arena(boolean direct) {
+			this.direct = direct;
+			int size = sizeClass(MAX_POOLED_SIZE) + 1;
+			this.classes = new ArrayList<>(size);
+			this.counts = new AtomicInteger[size];
+			for (int i = 0; i < size; i++) {
+				classes.add(new ConcurrentLinkedDeque<>());
+				counts[i] = new AtomicInteger();
+			}
+		}
+
+		/**
+		 * Borrow a buffer of at least the given size, the most recently released
+		 * one of its size class if any
+		 *
+		 * @param size,
+		 *            the size in bytes
+		 * @return the cleared buffer
+		 */
+		ByteBuffer acquire(int size) {
+			int index = sizeClass(size);
+			if (index < 0) {
+				return allocate(size);
+			}
+			ByteBuffer buffer = classes.get(index).pollFirst();
+			if (buffer == null) {
+				return allocate(MIN_POOLED_SIZE << index);
+			}
+			counts[index].decrementAndGet();
+			buffer.clear();
+			return buffer;
+		}
+
+		/**
+		 * Give back a buffer, dropping it if its size class is full or it does
+		 * not belong to any
+		 *
+		 * @param buffer,
+		 *            the buffer to give back
+		 */
+		void release(ByteBuffer buffer) {
+			int capacity = buffer.capacity();
+			int index = sizeClass(capacity);
+			if (index < 0 || capacity != MIN_POOLED_SIZE << index) {
+				return;
+			}
+			if (counts[index].incrementAndGet() > Math.max(2, MAX_POOLED_BYTES_PER_CLASS / capacity)) {
+				counts[index].decrementAndGet();
+				return;
+			}
+			classes.get(index).offerFirst(buffer);
+		}
+
+		/**
+		 * Retrieve the number of bytes kept by this arena
+		 *
+		 * @return the bytes of the buffers ready to be borrowed
+		 */
+		long getPooledBytes() {
+			long bytes = 0;
+			for (int i = 0; i < counts.length; i++) {
+				bytes += (long) counts[i].get() * (MIN_POOLED_SIZE << i);
+			}
+			return bytes;
+		}
+
+		/**
+		 * Allocate a new buffer
+		 *
+		 * @param capacity,
+		 *            the capacity in bytes
+		 * @return the new buffer
+		 */
+		private ByteBuffer allocate(int capacity) {
+			return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		}
+
+	}
+
+	/**
+	 * The leak detection record of a borrowed buffer, enqueued once the buffer
+	 * is garbage collected
+	 */
+	static class Leak extends PhantomReference<PooledBuffer> {
+
+		/**
+		 * The capacity of the buffer
+		 */
+		private final int capacity;
+
+		/**
+		 * The stack trace of the acquisition of the buffer
+		 */
+		private final Throwable acquisition;
+
+		/**
+		 * Construct a new {@link Leak}
+		 *
+		 * @param pooledBuffer,
+		 *            the borrowed buffer
+		 * @param capacity,
+		 *            the capacity of the buffer
+		 */
+		Leak(PooledBuffer pooledBuffer, int capacity) {
+			super(pooledBuffer, COLLECTED);
+			this.capacity = capacity;
+			this.acquisition = new Throwable("Acquired here");
+		}
+
+	}
+
+}
@@ -0,0 +1,239 @@
+package lp.reactive.reactiverest.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+/**
+ * This class extracts some fields of a json document with the Jackson streaming
+ * parser, without building the whole document: the subtrees containing no
+ * requested field are skipped, only the requested values are read as trees and
+ * the parsing stops as soon as all of them are found
+ *
+ * @author lucapompei
+ */
+class JsonProjection {
+
+	/**
+	 * The mapper reading the requested values
+	 */
+	private final ObjectMapper mapper;
+
+	/**
+	 * The requested values found, by path
+	 */
+	private final Map<String, JsonNode> values = new LinkedHashMap<>();
+
+	/**
+	 * The number of the requested paths
+	 */
+	private final int pathCount;
+
+	/**
+	 * The requested fields, relative to the root of the document
+	 */
+	private final List<Target> targets = new ArrayList<>();
+
+	/**
+	 * Construct a new {@link JsonProjection}
+	 *
+	 * @param mapper,
+	 *            the mapper reading the requested values
+	 * @param paths,
+	 *            the requested paths, as json pointers, e.g. {@code /items/0/id},
+	 *            or as dotted paths, e.g. {@code items[0].id}
+	 * @throws IllegalArgumentException,
+	 *             if a path is not valid
+	 */
+	JsonProjection(ObjectMapper mapper, String... paths) {
+		this.mapper = mapper;
+		for (String path : paths) {
+			if (targets.stream().noneMatch(target -> target.path.equals(path))) {
+				targets.add(new Target(path, toPointer(path)));
+			}
+		}
+		this.pathCount = targets.size();
+	}
+
+	/**
+	 * Extract the requested values from the document read by the given parser,
+	 * closing it
+	 *
+	 * @param parser,
+	 *            the streaming parser of the json document
+	 * @return the requested values found, by path, in the order of the requested
+	 *         paths
+	 * @throws IOException,
+	 *             if the document cannot be read or is not valid json
+	 */
+	Map<String, JsonNode> extract(JsonParser parser) throws IOException {
+		try (JsonParser p = parser) {
+			if (p.nextToken() != null && !targets.isEmpty()) {
+				scan(p, targets);
+			}
+		}
+		Map<String, JsonNode> ordered = new LinkedHashMap<>();
+		for (Target target : targets) {
+			JsonNode value = values.get(target.path);
+			if (value != null) {
+				ordered.put(target.path, value);
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * Scan the value the parser is positioned on, looking for the given fields
+	 *
+	 * @param parser,
+	 *            the streaming parser, positioned on the first token of the
+	 *            value
+	 * @param pending,
+	 *            the requested fields, relative to the value
+	 * @return a boolean indicating if all the requested values are found, so
+	 *         that the parsing can stop
+	 * @throws IOException,
+	 *             if the document cannot be read or is not valid json
+	 */
+	private boolean scan(JsonParser parser, List<Target> pending) throws IOException {
+		for (Target target : pending) {
+			if (target.pointer.matches()) {
+				// the value is requested: read it once and resolve the nested fields on it
+				JsonNode node = mapper.readTree(parser);
+				if (node == null) {
+					node = NullNode.getInstance();
+				}
+				for (Target found : pending) {
+					JsonNode value = node.at(found.pointer);
+					if (!value.isMissingNode()) {
+						values.putIfAbsent(found.path, value);
+					}
+				}
+				return values.size() == pathCount;
+			}
+		}
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.START_OBJECT) {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				List<Target> children = new ArrayList<>();
+				for (Target target : pending) {
+					if (target.pointer.matchesProperty(name)) {
+						children.add(target.tail());
+					}
+				}
+				parser.nextToken();
+				if (children.isEmpty()) {
+					parser.skipChildren();
+				} else if (scan(parser, children)) {
+					return true;
+				}
+			}
+		} else if (token == JsonToken.START_ARRAY) {
+			int index = 0;
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				List<Target> children = new ArrayList<>();
+				for (Target target : pending) {
+					if (target.pointer.matchesElement(index)) {
+						children.add(target.tail());
+					}
+				}
+				if (children.isEmpty()) {
+					parser.skipChildren();
+				} else if (scan(parser, children)) {
+					return true;
+				}
+				index++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Convert the given path to a json pointer
+	 *
+	 * @param path,
+	 *            a json pointer, e.g. {@code /items/0/id}, or a dotted path,
+	 *            e.g. {@code items[0].id}
+	 * @return the {@link JsonPointer}
+	 * @throws IllegalArgumentException,
+	 *             if the path is not valid
+	 */
+	private static JsonPointer toPointer(String path) {
+		if (path == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		}
+		if (path.isEmpty() || path.startsWith("/")) {
+			return JsonPointer.compile(path);
+		}
+		StringBuilder pointer = new StringBuilder();
+		for (String segment : path.split("\\.", -1)) {
+			int bracket = segment.indexOf('[');
+			String name = bracket < 0 ? segment : segment.substring(0, bracket);
+			if (!name.isEmpty() || bracket < 0) {
+				pointer.append('/').append(name.replace("~", "~0").replace("/", "~1"));
+			}
+			while (bracket >= 0) {
+				int end = segment.indexOf(']', bracket);
+				if (end < 0) {
+					throw new IllegalArgumentException("Invalid path: " + path);
+				}
+				pointer.append('/').append(segment, bracket + 1, end);
+				bracket = segment.indexOf('[', end);
+			}
+		}
+		return JsonPointer.compile(pointer.toString());
+	}
+
+	/**
+	 * This class represents a requested field, relative to the value being
+	 * scanned
+	 */
+	private static final class Target {
+
+		/**
+		 * The requested path
+		 */
+		private final String path;
+
+		/**
+		 * The pointer to the field, relative to the value being scanned
+		 */
+		private final JsonPointer pointer;
+
+		/**
+		 * Construct a new {@link Target}
+		 *
+		 * @param path,
+		 *            the requested path
+		 * @param pointer,
+		 *            the pointer to the field, relative to the value being
+		 *            scanned
+		 */
+		private Target(String path, JsonPointer pointer) {
+			this.path = path;
+			this.pointer = pointer;
+		}
+
+		/**
+		 * Build the target relative to the child value matched by the first
+		 * segment of the pointer
+		 *
+		 * @return the {@link Target} relative to the child value
+		 */
+		private Target tail() {
+			return new Target(path, pointer.tail());
+		}
+
+	}
+
+}
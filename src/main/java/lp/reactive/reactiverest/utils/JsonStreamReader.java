@@ -0,0 +1,87 @@
+package lp.reactive.reactiverest.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * This class reads incrementally the json values of a stream, with the Jackson
+ * streaming parser: the elements of a top-level array or the values of a
+ * stream of json values, such as newline delimited json. Only the value being
+ * read is held in memory and the {@code null} values are skipped
+ *
+ * @param <T>,
+ *            the type of the values
+ * @author lucapompei
+ */
+public class JsonStreamReader<T> implements Closeable {
+
+	/**
+	 * The streaming parser of the json stream
+	 */
+	private final JsonParser parser;
+
+	/**
+	 * The reader converting a json value
+	 */
+	private final ObjectReader reader;
+
+	/**
+	 * The boolean indicating if the stream is a top-level array, or
+	 * {@code null} until the first token is read
+	 */
+	private Boolean array;
+
+	/**
+	 * Construct a new {@link JsonStreamReader}
+	 *
+	 * @param parser,
+	 *            the streaming parser of the json stream
+	 * @param reader,
+	 *            the reader converting a json value
+	 */
+	JsonStreamReader(JsonParser parser, ObjectReader reader) {
+		this.parser = parser;
+		this.reader = reader;
+	}
+
+	/**
+	 * Read the next json value
+	 *
+	 * @return the object represented by the next json value or {@code null} if
+	 *         there are no more values
+	 * @throws IOException,
+	 *             if the stream cannot be read or is not valid json
+	 */
+	public T next() throws IOException {
+		JsonToken token = parser.nextToken();
+		if (array == null) {
+			array = token == JsonToken.START_ARRAY;
+			if (array) {
+				token = parser.nextToken();
+			}
+		}
+		while (token == JsonToken.VALUE_NULL) {
+			token = parser.nextToken();
+		}
+		if (token == null || (array && token == JsonToken.END_ARRAY)) {
+			return null;
+		}
+		return reader.readValue(parser);
+	}
+
+	/**
+	 * Close the parser and the json stream
+	 *
+	 * @throws IOException,
+	 *             if the stream cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+
+}
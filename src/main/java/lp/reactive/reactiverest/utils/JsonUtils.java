@@ -1,15 +1,42 @@
 package lp.reactive.reactiverest.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
+import lp.reactive.reactiverest.model.BodyFormat;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
 /**
- * This class exposes utils to handle json string
+ * This class exposes utils to handle json string. The conversions share a
+ * single {@code ObjectMapper}, safely published to all the threads, and reuse
+ * the readers and writers of the types already converted, whose serializers
+ * and deserializers are resolved once. The bodies in a binary
+ * {@link BodyFormat} are converted by a mapper of the format, sharing the same
+ * data binding
  *
  * @author lucapompei
  */
@@ -21,9 +48,21 @@ public class JsonUtils {
 	private static final Logger LOGGER = LogManager.getFormatterLogger(JsonUtils.class);
 
 	/**
-	 * Jackson instance
+	 * The maximum number of readers, and of writers, cached by an engine
+	 */
+	private static final int MAX_CACHED_TYPES = 512;
+
+	/**
+	 * The json engine set by {@link #configure(ObjectMapper)} or {@code null} to
+	 * use the default one
+	 */
+	private static volatile Engine configuredEngine;
+
+	/**
+	 * The engines of the binary formats, by format, created on first use or set
+	 * by {@link #configure(BodyFormat, ObjectMapper)}
 	 */
-	private static ObjectMapper instance;
+	private static final Map<BodyFormat, Engine> FORMAT_ENGINES = new ConcurrentHashMap<>();
 
 	/**
 	 * Private constructor for an utility class, construct a new {@code JsonUtils}
@@ -33,23 +72,135 @@ public class JsonUtils {
 	}
 
 	/**
-	 * Static method used to initialize and retrieve the {@code ObjectMapper}
-	 * instance
+	 * Create a new {@code ObjectMapper} with the default configuration of the
+	 * json conversions, optionally registering the Afterburner module, which
+	 * replaces the reflection used to access the properties of the beans with
+	 * generated bytecode
+	 *
+	 * @param afterburner,
+	 *            a boolean indicating if the Afterburner module is registered
+	 * @return a new {@code ObjectMapper}
+	 */
+	public static ObjectMapper createMapper(boolean afterburner) {
+		return createMapper(BodyFormat.JSON, afterburner);
+	}
+
+	/**
+	 * Create a new {@code ObjectMapper} reading and writing the given format,
+	 * with the default configuration of the json conversions
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} read and written by the mapper
+	 * @param afterburner,
+	 *            a boolean indicating if the Afterburner module is registered
+	 * @return a new {@code ObjectMapper}
+	 */
+	public static ObjectMapper createMapper(BodyFormat format, boolean afterburner) {
+		ObjectMapper mapper = new ObjectMapper(createFactory(format));
+		mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+		if (afterburner) {
+			mapper.registerModule(new AfterburnerModule());
+		}
+		return mapper;
+	}
+
+	/**
+	 * Replace the {@code ObjectMapper} used by the json conversions, discarding
+	 * the cached readers and writers. The REST clients convert each request body
+	 * with the mapper in use, hence the new one applies to the next api calls;
+	 * only the converters already returned by {@link #getConverterInstance()}
+	 * keep the previous one
+	 *
+	 * @param mapper,
+	 *            the {@code ObjectMapper} to use, e.g. created by
+	 *            {@link #createMapper(boolean)}, or {@code null} to restore the
+	 *            default one
+	 */
+	public static void configure(ObjectMapper mapper) {
+		configuredEngine = mapper == null ? null : new Engine(mapper);
+	}
+
+	/**
+	 * Replace the {@code ObjectMapper} used by the conversions of the given
+	 * format, discarding the cached readers and writers. As for
+	 * {@link #configure(ObjectMapper)}, the new mapper applies to the next api
+	 * calls
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} converted by the mapper
+	 * @param mapper,
+	 *            the {@code ObjectMapper} to use, e.g. created by
+	 *            {@link #createMapper(BodyFormat, boolean)}, or {@code null} to
+	 *            restore the default one
+	 */
+	public static void configure(BodyFormat format, ObjectMapper mapper) {
+		if (format == BodyFormat.JSON) {
+			configure(mapper);
+		} else if (mapper == null) {
+			FORMAT_ENGINES.remove(format);
+		} else {
+			FORMAT_ENGINES.put(format, new Engine(mapper));
+		}
+	}
+
+	/**
+	 * Retrieve the json engine in use
+	 *
+	 * @return the {@link Engine} set by {@link #configure(ObjectMapper)} or the
+	 *         default one
+	 */
+	private static Engine getEngine() {
+		Engine engine = configuredEngine;
+		return engine == null ? DefaultEngine.INSTANCE : engine;
+	}
+
+	/**
+	 * Retrieve the engine in use for the given format
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} to convert
+	 * @return the {@link Engine} of the format
+	 */
+	private static Engine getEngine(BodyFormat format) {
+		if (format == null || format == BodyFormat.JSON) {
+			return getEngine();
+		}
+		return FORMAT_ENGINES.computeIfAbsent(format, f -> new Engine(createMapper(f, false)));
+	}
+
+	/**
+	 * Create the factory of the parsers and generators of the given format
+	 *
+	 * @param format,
+	 *            the {@link BodyFormat} to parse and generate
+	 * @return the {@code JsonFactory} of the format
+	 */
+	private static JsonFactory createFactory(BodyFormat format) {
+		switch (format) {
+		case SMILE:
+			return new SmileFactory();
+		case CBOR:
+			return new CBORFactory();
+		case MESSAGE_PACK:
+			return new MessagePackFactory();
+		default:
+			return new JsonFactory();
+		}
+	}
+
+	/**
+	 * Static method used to retrieve the {@code ObjectMapper} instance
 	 *
 	 * @return a valid {@code ObjectMapper} instance
 	 */
 	private static ObjectMapper getInstance() {
-		if (instance == null) {
-			// lazy initialization
-			instance = new ObjectMapper();
-			instance.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-		}
-		return instance;
+		return getEngine().mapper;
 	}
 
 	/**
 	 * Create a Jackson converter instance using an instance of {@code ObjectMapper}
-	 * for json conversion
+	 * for json conversion. The converter is bound to the mapper in use, and is
+	 * not affected by a later {@link #configure(ObjectMapper)}
 	 *
 	 * @return an instance of {@link JacksonConverterFactory}
 	 */
@@ -67,13 +218,65 @@ public class JsonUtils {
 	 */
 	public static String toJson(Object object) {
 		try {
-			return getInstance().writeValueAsString(object);
+			if (object == null) {
+				return getInstance().writeValueAsString(null);
+			}
+			return getEngine().getWriter(object.getClass()).writeValueAsString(object);
 		} catch (Exception e) {
 			LOGGER.error("Error during converting to json", e);
 			return null;
 		}
 	}
 
+	/**
+	 * Convert the given object to the bytes of the given format
+	 *
+	 * @param object,
+	 *            the object to be converted
+	 * @param format,
+	 *            the {@link BodyFormat} of the bytes
+	 * @return the encoded representation of the given object or {@code null} if
+	 *         some exception occurs during conversion
+	 */
+	public static byte[] toBytes(Object object, BodyFormat format) {
+		try {
+			Engine engine = getEngine(format);
+			if (object == null) {
+				return engine.mapper.writeValueAsBytes(null);
+			}
+			return engine.getWriter(object.getClass()).writeValueAsBytes(object);
+		} catch (Exception e) {
+			LOGGER.error("Error during converting to %s", format, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Convert the given stream of the given format to a json string, copying
+	 * the tokens without binding them. The stream is not closed
+	 *
+	 * @param stream,
+	 *            the stream to be converted
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @return the json string represented by the stream or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static String toJson(InputStream stream, BodyFormat format) {
+		try (JsonParser parser = getEngine(format).mapper.getFactory().createParser(stream)) {
+			StringWriter json = new StringWriter();
+			try (JsonGenerator generator = getInstance().getFactory().createGenerator(json)) {
+				while (parser.nextToken() != null) {
+					generator.copyCurrentStructure(parser);
+				}
+			}
+			return json.toString();
+		} catch (Exception e) {
+			LOGGER.error("Error during converting %s to json", format, e);
+			return null;
+		}
+	}
+
 	/**
 	 * Convert the given json string to its represented object
 	 *
@@ -88,11 +291,365 @@ public class JsonUtils {
 	 */
 	public static <T> T fromJson(String json, Class<T> cls) {
 		try {
-			return getInstance().readValue(json, cls);
+			return getReader(cls).readValue(json);
+		} catch (Exception e) {
+			LOGGER.error("Error during reading json", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Convert the given json string to its represented object
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param json,
+	 *            the json string from which re-create the represented object
+	 * @param typeReference,
+	 *            the reference to the generic type of the represented object
+	 *            used to re-create it
+	 * @return the object represented by the json string or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static <T> T fromJson(String json, TypeReference<T> typeReference) {
+		try {
+			return getReader(typeReference.getType()).readValue(json);
+		} catch (Exception e) {
+			LOGGER.error("Error during reading json", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Convert the given json stream to its represented object, parsing the
+	 * bytes directly. The stream is not closed
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the json stream from which re-create the represented object
+	 * @param cls,
+	 *            the class of the represented object used to re-create it
+	 * @return the object represented by the json stream or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static <T> T fromJson(InputStream stream, Class<T> cls) {
+		return fromJson(stream, BodyFormat.JSON, cls);
+	}
+
+	/**
+	 * Convert the given stream of the given format to its represented object,
+	 * parsing the bytes directly. The stream is not closed
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the stream from which re-create the represented object
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @param cls,
+	 *            the class of the represented object used to re-create it
+	 * @return the object represented by the stream or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static <T> T fromJson(InputStream stream, BodyFormat format, Class<T> cls) {
+		try {
+			return getEngine(format).getReader(cls).readValue(stream);
+		} catch (Exception e) {
+			LOGGER.error("Error during reading %s", format, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Convert the given json stream to its represented object, parsing the
+	 * bytes directly. The stream is not closed
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the json stream from which re-create the represented object
+	 * @param typeReference,
+	 *            the reference to the generic type of the represented object
+	 *            used to re-create it
+	 * @return the object represented by the json stream or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static <T> T fromJson(InputStream stream, TypeReference<T> typeReference) {
+		return fromJson(stream, BodyFormat.JSON, typeReference);
+	}
+
+	/**
+	 * Convert the given stream of the given format to its represented object,
+	 * parsing the bytes directly. The stream is not closed
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the stream from which re-create the represented object
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @param typeReference,
+	 *            the reference to the generic type of the represented object
+	 *            used to re-create it
+	 * @return the object represented by the stream or {@code null} if some
+	 *         exception occurs during conversion
+	 */
+	public static <T> T fromJson(InputStream stream, BodyFormat format, TypeReference<T> typeReference) {
+		try {
+			return getEngine(format).getReader(typeReference.getType()).readValue(stream);
+		} catch (Exception e) {
+			LOGGER.error("Error during reading %s", format, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Iterate over the json values of the given stream, parsing them
+	 * incrementally: the elements of a top-level array or the values of a
+	 * stream of json values, such as newline delimited json. Closing the
+	 * reader closes the stream
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the json stream from which re-create the represented objects
+	 * @param cls,
+	 *            the class of the represented objects used to re-create them
+	 * @return the {@link JsonStreamReader} of the objects represented by the
+	 *         json stream
+	 * @throws IOException,
+	 *             if the stream cannot be read
+	 */
+	public static <T> JsonStreamReader<T> readValues(InputStream stream, Class<T> cls) throws IOException {
+		return readValues(stream, BodyFormat.JSON, cls);
+	}
+
+	/**
+	 * Iterate over the values of the given stream of the given format, parsing
+	 * them incrementally: the elements of a top-level array or a sequence of
+	 * values. Closing the reader closes the stream
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the stream from which re-create the represented objects
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @param cls,
+	 *            the class of the represented objects used to re-create them
+	 * @return the {@link JsonStreamReader} of the objects represented by the
+	 *         stream
+	 * @throws IOException,
+	 *             if the stream cannot be read
+	 */
+	public static <T> JsonStreamReader<T> readValues(InputStream stream, BodyFormat format, Class<T> cls)
+			throws IOException {
+		ObjectReader reader = getEngine(format).getReader(cls);
+		return new JsonStreamReader<>(reader.getFactory().createParser(stream), reader);
+	}
+
+	/**
+	 * Iterate over the json values of the given stream, parsing them
+	 * incrementally: the elements of a top-level array or the values of a
+	 * stream of json values, such as newline delimited json. Closing the
+	 * reader closes the stream
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the json stream from which re-create the represented objects
+	 * @param typeReference,
+	 *            the reference to the generic type of the represented objects
+	 *            used to re-create them
+	 * @return the {@link JsonStreamReader} of the objects represented by the
+	 *         json stream
+	 * @throws IOException,
+	 *             if the stream cannot be read
+	 */
+	public static <T> JsonStreamReader<T> readValues(InputStream stream, TypeReference<T> typeReference)
+			throws IOException {
+		return readValues(stream, BodyFormat.JSON, typeReference);
+	}
+
+	/**
+	 * Iterate over the values of the given stream of the given format, parsing
+	 * them incrementally: the elements of a top-level array or a sequence of
+	 * values. Closing the reader closes the stream
+	 *
+	 * @param <T>,
+	 *            generic type
+	 * @param stream,
+	 *            the stream from which re-create the represented objects
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @param typeReference,
+	 *            the reference to the generic type of the represented objects
+	 *            used to re-create them
+	 * @return the {@link JsonStreamReader} of the objects represented by the
+	 *         stream
+	 * @throws IOException,
+	 *             if the stream cannot be read
+	 */
+	public static <T> JsonStreamReader<T> readValues(InputStream stream, BodyFormat format,
+			TypeReference<T> typeReference) throws IOException {
+		ObjectReader reader = getEngine(format).getReader(typeReference.getType());
+		return new JsonStreamReader<>(reader.getFactory().createParser(stream), reader);
+	}
+
+	/**
+	 * Extract some fields of the given json string, without converting the whole
+	 * document
+	 *
+	 * @param json,
+	 *            the json string
+	 * @param paths,
+	 *            the paths of the fields, as json pointers, e.g.
+	 *            {@code /items/0/id}, or as dotted paths, e.g.
+	 *            {@code items[0].id}
+	 * @return the values of the fields found, by path, in the order of the
+	 *         paths, or {@code null} if some exception occurs during
+	 *         conversion
+	 */
+	public static Map<String, JsonNode> project(String json, String... paths) {
+		try {
+			ObjectMapper mapper = getInstance();
+			return new JsonProjection(mapper, paths).extract(mapper.getFactory().createParser(json));
 		} catch (Exception e) {
 			LOGGER.error("Error during reading json", e);
 			return null;
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Extract some fields of the given json stream with the streaming parser,
+	 * without converting the whole document: the subtrees with no requested
+	 * field are skipped and the parsing stops once all the fields are found.
+	 * The stream is closed
+	 *
+	 * @param stream,
+	 *            the json stream
+	 * @param paths,
+	 *            the paths of the fields, as json pointers, e.g.
+	 *            {@code /items/0/id}, or as dotted paths, e.g.
+	 *            {@code items[0].id}
+	 * @return the values of the fields found, by path, in the order of the
+	 *         paths, or {@code null} if some exception occurs during
+	 *         conversion
+	 */
+	public static Map<String, JsonNode> project(InputStream stream, String... paths) {
+		return project(stream, BodyFormat.JSON, paths);
+	}
+
+	/**
+	 * Extract some fields of the given stream of the given format with the
+	 * streaming parser, as {@link #project(InputStream, String...)}. The stream
+	 * is closed
+	 *
+	 * @param stream,
+	 *            the stream
+	 * @param format,
+	 *            the {@link BodyFormat} of the stream
+	 * @param paths,
+	 *            the paths of the fields, as json pointers, e.g.
+	 *            {@code /items/0/id}, or as dotted paths, e.g.
+	 *            {@code items[0].id}
+	 * @return the values of the fields found, by path, in the order of the
+	 *         paths, or {@code null} if some exception occurs during
+	 *         conversion
+	 */
+	public static Map<String, JsonNode> project(InputStream stream, BodyFormat format, String... paths) {
+		try {
+			ObjectMapper mapper = getEngine(format).mapper;
+			return new JsonProjection(mapper, paths).extract(mapper.getFactory().createParser(stream));
+		} catch (Exception e) {
+			LOGGER.error("Error during reading %s", format, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve the reader of the given type, creating it on first use
+	 *
+	 * @param type,
+	 *            the type to read
+	 * @return the {@link ObjectReader} of the type
+	 */
+	private static ObjectReader getReader(Type type) {
+		return getEngine().getReader(type);
+	}
+
+	/**
+	 * This class holds the default json engine, created on first use and
+	 * safely published by the class initialization
+	 */
+	private static final class DefaultEngine {
+
+		/**
+		 * The default json engine
+		 */
+		private static final Engine INSTANCE = new Engine(createMapper(false));
+
+	}
+
+	/**
+	 * This class represents a json engine, an {@code ObjectMapper} with the
+	 * readers and writers of the types already converted, up to
+	 * {@value MAX_CACHED_TYPES} of each, the least recently used being evicted
+	 */
+	private static final class Engine {
+
+		/**
+		 * The mapper of the engine
+		 */
+		private final ObjectMapper mapper;
+
+		/**
+		 * The readers of the types already read
+		 */
+		private final LoadingCache<Type, ObjectReader> readers;
+
+		/**
+		 * The writers of the classes already written
+		 */
+		private final LoadingCache<Class<?>, ObjectWriter> writers;
+
+		/**
+		 * Construct a new {@link Engine}
+		 *
+		 * @param mapper,
+		 *            the mapper of the engine
+		 */
+		private Engine(ObjectMapper mapper) {
+			this.mapper = mapper;
+			this.readers = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TYPES)
+					.build(CacheLoader.from(type -> mapper.readerFor(mapper.getTypeFactory().constructType(type))));
+			this.writers = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TYPES)
+					.build(CacheLoader.from(mapper::writerFor));
+		}
+
+		/**
+		 * Retrieve the reader of the given type, creating it on first use
+		 *
+		 * @param type,
+		 *            the type to read
+		 * @return the {@link ObjectReader} of the type
+		 */
+		private ObjectReader getReader(Type type) {
+			return readers.getUnchecked(type);
+		}
+
+		/**
+		 * Retrieve the writer of the given class, creating it on first use
+		 *
+		 * @param cls,
+		 *            the class to write
+		 * @return the {@link ObjectWriter} of the class
+		 */
+		private ObjectWriter getWriter(Class<?> cls) {
+			return writers.getUnchecked(cls);
+		}
+
+	}
+
+}
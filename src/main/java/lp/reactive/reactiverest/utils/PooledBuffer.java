@@ -0,0 +1,79 @@
+package lp.reactive.reactiverest.utils;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class represents a buffer borrowed from the {@link BufferPool}, which
+ * must be closed, once, to give the buffer back. The buffer must not be used
+ * after closing it
+ *
+ * @author lucapompei
+ */
+public final class PooledBuffer implements Closeable {
+
+	/**
+	 * The borrowed buffer
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * The boolean indicating if the buffer was given back
+	 */
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	/**
+	 * The leak detection record of the buffer or {@code null} if the leak
+	 * detection is disabled
+	 */
+	private volatile BufferPool.Leak leak;
+
+	/**
+	 * Construct a new {@link PooledBuffer}
+	 *
+	 * @param buffer,
+	 *            the borrowed buffer
+	 */
+	PooledBuffer(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Getter method for retrieve the buffer
+	 *
+	 * @return the borrowed {@link ByteBuffer}, positioned at zero and limited
+	 *         to the requested size
+	 * @throws IllegalStateException
+	 *             if the buffer was already given back
+	 */
+	public ByteBuffer buffer() {
+		if (released.get()) {
+			throw new IllegalStateException("The pooled buffer was already released");
+		}
+		return buffer;
+	}
+
+	/**
+	 * Give the buffer back to the {@link BufferPool}. Closing it again has no
+	 * effect
+	 */
+	public void close() {
+		if (released.compareAndSet(false, true)) {
+			BufferPool.release(buffer, leak);
+		} else {
+			BufferPool.doubleRelease(buffer);
+		}
+	}
+
+	/**
+	 * Setter method for the leak detection record
+	 *
+	 * @param leak,
+	 *            the leak detection record of the buffer
+	 */
+	void setLeak(BufferPool.Leak leak) {
+		this.leak = leak;
+	}
+
+}
@@ -0,0 +1,141 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lp.reactive.reactiverest.utils.BufferPool;
+import lp.reactive.reactiverest.utils.PooledBuffer;
+
+/**
+ * This class tests the size classes, the reuse and the leak detection of
+ * {@link BufferPool}
+ *
+ * @author lucapompei
+ */
+public class TestBufferPool {
+
+	@Test
+	public void testBuffersAreRoundedUpToTheirSizeClass() {
+		assertCapacity(0, BufferPool.MIN_POOLED_SIZE);
+		assertCapacity(1, BufferPool.MIN_POOLED_SIZE);
+		assertCapacity(BufferPool.MIN_POOLED_SIZE, BufferPool.MIN_POOLED_SIZE);
+		assertCapacity(BufferPool.MIN_POOLED_SIZE + 1, 2 * BufferPool.MIN_POOLED_SIZE);
+		assertCapacity(100_000, 128 * 1024);
+		assertCapacity(BufferPool.MAX_POOLED_SIZE, BufferPool.MAX_POOLED_SIZE);
+		// beyond the largest size class the buffer is allocated as requested
+		assertCapacity(BufferPool.MAX_POOLED_SIZE + 1, BufferPool.MAX_POOLED_SIZE + 1);
+	}
+
+	@Test
+	public void testReleasedBufferIsReusedCleared() {
+		PooledBuffer first = BufferPool.acquire(5000);
+		ByteBuffer buffer = first.buffer();
+		buffer.put((byte) 1).position(100);
+		first.close();
+		try (PooledBuffer second = BufferPool.acquire(6000)) {
+			assertSame(buffer, second.buffer());
+			assertEquals(0, second.buffer().position());
+			assertEquals(6000, second.buffer().limit());
+		}
+	}
+
+	@Test
+	public void testHeapAndDirectBuffersAreKeptApart() {
+		PooledBuffer direct = BufferPool.acquireDirect(20_000);
+		ByteBuffer directBuffer = direct.buffer();
+		assertTrue(directBuffer.isDirect());
+		direct.close();
+		try (PooledBuffer heap = BufferPool.acquire(20_000)) {
+			assertFalse(heap.buffer().isDirect());
+		}
+		try (PooledBuffer reused = BufferPool.acquireDirect(20_000)) {
+			assertSame(directBuffer, reused.buffer());
+		}
+	}
+
+	@Test
+	public void testOversizedBuffersAreNotPooled() {
+		long pooledBytes = BufferPool.getPooledBytes();
+		BufferPool.acquire(BufferPool.MAX_POOLED_SIZE + 1).close();
+		assertEquals(pooledBytes, BufferPool.getPooledBytes());
+	}
+
+	@Test
+	public void testSizeClassKeepsABoundedNumberOfBytes() {
+		List<PooledBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			buffers.add(BufferPool.acquire(BufferPool.MAX_POOLED_SIZE));
+		}
+		long pooledBytes = BufferPool.getPooledBytes();
+		buffers.forEach(PooledBuffer::close);
+		// 2 MB at most for the largest size class
+		assertEquals(pooledBytes + 2L * BufferPool.MAX_POOLED_SIZE, BufferPool.getPooledBytes());
+	}
+
+	@Test
+	public void testDoubleCloseGivesTheBufferBackOnce() {
+		PooledBuffer pooledBuffer = BufferPool.acquire(40_000);
+		pooledBuffer.close();
+		pooledBuffer.close();
+		try (PooledBuffer first = BufferPool.acquire(40_000); PooledBuffer second = BufferPool.acquire(40_000)) {
+			assertNotSame(first.buffer(), second.buffer());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedBufferCannotBeUsed() {
+		PooledBuffer pooledBuffer = BufferPool.acquire(10);
+		pooledBuffer.close();
+		pooledBuffer.buffer();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSizeIsRejected() {
+		BufferPool.acquire(-1);
+	}
+
+	@Test
+	public void testBufferCollectedWithoutCloseIsReportedAsLeak() throws InterruptedException {
+		BufferPool.setLeakDetection(true);
+		try {
+			long leaks = BufferPool.getLeakCount();
+			BufferPool.acquire(100).close();
+			BufferPool.acquire(100);
+			for (int i = 0; i < 50 && BufferPool.getLeakCount() == leaks; i++) {
+				System.gc();
+				Thread.sleep(20);
+			}
+			System.gc();
+			Thread.sleep(50);
+			// the buffer closed is not a leak
+			assertEquals(leaks + 1, BufferPool.getLeakCount());
+		} finally {
+			BufferPool.setLeakDetection(false);
+		}
+	}
+
+	/**
+	 * Check the capacity of the buffer borrowed for the given size
+	 *
+	 * @param size,
+	 *            the size in bytes requested
+	 * @param capacity,
+	 *            the expected capacity in bytes
+	 */
+	private static void assertCapacity(int size, int capacity) {
+		try (PooledBuffer pooledBuffer = BufferPool.acquire(size)) {
+			assertEquals(capacity, pooledBuffer.buffer().capacity());
+			assertEquals(size, pooledBuffer.buffer().limit());
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.DownloadAPI;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.RetryPolicy;
+
+/**
+ * This class tests the downloads over parallel byte ranges of
+ * {@link DownloadAPI}: the progress reported and the resume of an interrupted
+ * range
+ *
+ * @author lucapompei
+ */
+public class TestDownloadAPI {
+
+	/**
+	 * The pattern of the {@code Range} header of a request
+	 */
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	/**
+	 * The downloaded resource, split into 3 ranges
+	 */
+	private static final byte[] RESOURCE = new byte[3 * 1024 * 1024];
+
+	static {
+		new Random(42).nextBytes(RESOURCE);
+	}
+
+	/**
+	 * The boolean indicating if the next range starting after the first byte
+	 * is interrupted halfway
+	 */
+	private final AtomicBoolean interrupt = new AtomicBoolean();
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	/**
+	 * The file written
+	 */
+	private Path file;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+		file = Files.createTempFile("download", ".bin");
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testProgressReportsTheLengthOfTheResource() throws Exception {
+		AtomicLong transferred = new AtomicLong();
+		AtomicBoolean unknownTotal = new AtomicBoolean();
+		long length = DownloadAPI.download(request(), file, 3, 1, (bytes, total) -> {
+			transferred.accumulateAndGet(bytes, Math::max);
+			if (total != RESOURCE.length) {
+				unknownTotal.set(true);
+			}
+		});
+		assertEquals(RESOURCE.length, length);
+		assertEquals(RESOURCE.length, transferred.get());
+		assertFalse(unknownTotal.get());
+		assertArrayEquals(RESOURCE, Files.readAllBytes(file));
+	}
+
+	@Test
+	public void testInterruptedRangeIsResumedAfterTheRetryDelay() throws Exception {
+		interrupt.set(true);
+		long start = System.nanoTime();
+		long length = DownloadAPI.download(request(), file, 3, 2, null);
+		assertEquals(RESOURCE.length, length);
+		assertFalse(interrupt.get());
+		assertArrayEquals(RESOURCE, Files.readAllBytes(file));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertFalse("Resumed after " + elapsedMillis + " ms", elapsedMillis < 200);
+	}
+
+	/**
+	 * Build the request of the resource, resumed after 200 ms
+	 *
+	 * @return the {@link HttpRequest} of the resource
+	 */
+	private HttpRequest request() {
+		return new HttpRequest.Builder("http://127.0.0.1:" + server.getLocalPort() + "/", "resource")
+				.retryPolicy(new RetryPolicy.Builder().delay(200, TimeUnit.MILLISECONDS).build()).build();
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Answer a request with the requested range of the resource, or with the
+	 * whole resource
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			int first = 0;
+			int last = RESOURCE.length - 1;
+			boolean ranged = false;
+			String line;
+			while ((line = reader.readLine()) != null && !line.isEmpty()) {
+				if (line.toLowerCase().startsWith("range:")) {
+					Matcher range = RANGE.matcher(line.substring(6).trim());
+					if (range.matches()) {
+						ranged = true;
+						first = Integer.parseInt(range.group(1));
+						last = Math.min(Integer.parseInt(range.group(2)), RESOURCE.length - 1);
+					}
+				}
+			}
+			int length = last - first + 1;
+			OutputStream out = s.getOutputStream();
+			String headers = (ranged ? "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes " + first + "-" + last
+					+ "/" + RESOURCE.length : "HTTP/1.1 200 OK") + "\r\nETag: \"v1\"\r\nAccept-Ranges: bytes\r\n"
+					+ "Connection: close\r\nContent-Length: " + length + "\r\n\r\n";
+			out.write(headers.getBytes(StandardCharsets.US_ASCII));
+			if (first > 0 && interrupt.compareAndSet(true, false)) {
+				// the connection is lost halfway
+				out.write(RESOURCE, first, length / 2);
+				out.flush();
+				return;
+			}
+			out.write(RESOURCE, first, length);
+			out.flush();
+		} catch (IOException e) {
+			// the client gave up
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.RetryPolicy;
+
+/**
+ * This class tests that every kind of body of an {@link HttpRequest} is sent
+ * unchanged by each attempt of an api call
+ *
+ * @author lucapompei
+ */
+public class TestHttpBody {
+
+	/**
+	 * The bytes of the tested bodies
+	 */
+	private static final byte[] BYTES = bytes(100_000);
+
+	/**
+	 * The bodies received by the server, in arrival order
+	 */
+	private final List<byte[]> bodies = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The number of requests received by the server
+	 */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	/**
+	 * The temporary file of the file bodies
+	 */
+	private Path file;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+		file = Files.createTempFile("body", ".bin");
+		Files.write(file, BYTES);
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testBytesBodyIsResent() throws Exception {
+		assertResent(builder().body(BYTES.clone(), "application/octet-stream"), BYTES);
+	}
+
+	@Test
+	public void testBufferBodyIsResent() throws Exception {
+		ByteBuffer heap = ByteBuffer.wrap(BYTES.clone());
+		assertResent(builder().body(heap, "application/octet-stream"), BYTES);
+		ByteBuffer direct = ByteBuffer.allocateDirect(BYTES.length);
+		direct.put(BYTES).flip();
+		assertResent(builder().body(direct, "application/octet-stream"), BYTES);
+		// the buffer given by the caller is left untouched
+		assertEquals(0, direct.position());
+	}
+
+	@Test
+	public void testJsonBodyIsResent() throws Exception {
+		String json = "{\"name\":\"value\"}";
+		assertResent(builder().jsonBody(json), json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testValueBodyIsResent() throws Exception {
+		assertResent(builder().body(Collections.singletonMap("name", "value")),
+				"{\"name\":\"value\"}".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testStreamBodyIsResent() throws Exception {
+		AtomicInteger opened = new AtomicInteger();
+		assertResent(builder().body(() -> {
+			opened.incrementAndGet();
+			return new ByteArrayInputStream(BYTES);
+		}, "application/octet-stream"), BYTES);
+		// a new stream for each attempt
+		assertEquals(2, opened.get());
+	}
+
+	@Test
+	public void testFileBodyIsResent() throws Exception {
+		assertResent(builder().body(file, "application/octet-stream"), BYTES);
+	}
+
+	@Test
+	public void testChannelBodyIsResentFromItsPosition() throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			channel.position(1000);
+			assertResent(builder().body(channel, "application/octet-stream"),
+					Arrays.copyOfRange(BYTES, 1000, BYTES.length));
+			// the channel of the caller is read without moving its position
+			assertEquals(1000, channel.position());
+		}
+	}
+
+	/**
+	 * Send a request whose first attempt is answered with a 503, and check that
+	 * both attempts sent the expected body
+	 *
+	 * @param builder,
+	 *            the builder of the request, with its body
+	 * @param expected,
+	 *            the expected body
+	 * @throws Exception
+	 *             if the api call fails
+	 */
+	private void assertResent(HttpRequest.Builder builder, byte[] expected) throws Exception {
+		bodies.clear();
+		requests.set(0);
+		try (HttpResponse response = SyncAPI.call(builder.build(), 2)) {
+			assertEquals(200, response.getStatus());
+		}
+		assertEquals(2, bodies.size());
+		assertArrayEquals(expected, bodies.get(0));
+		assertArrayEquals(expected, bodies.get(1));
+	}
+
+	/**
+	 * Create the builder of a PUT request retried after 10 ms
+	 *
+	 * @return the {@link HttpRequest.Builder} of the request
+	 */
+	private HttpRequest.Builder builder() {
+		return new HttpRequest.Builder("http://127.0.0.1:" + server.getLocalPort() + "/", "resource")
+				.httpMethod(HttpMethod.PUT)
+				.retryPolicy(new RetryPolicy.Builder().delay(10, TimeUnit.MILLISECONDS).build());
+	}
+
+	/**
+	 * Create a body whose bytes depend on their position
+	 *
+	 * @param length,
+	 *            the length in bytes of the body
+	 * @return the bytes of the body
+	 */
+	private static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Read the body of a request and answer the odd requests with a 503, the
+	 * even ones with a 200
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			long contentLength = -1;
+			boolean chunked = false;
+			String line;
+			while (!(line = readLine(in)).isEmpty()) {
+				String header = line.toLowerCase();
+				if (header.startsWith("content-length:")) {
+					contentLength = Long.parseLong(line.substring(15).trim());
+				} else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+					chunked = true;
+				}
+			}
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			if (chunked) {
+				long size;
+				while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+					copy(in, body, size);
+					readLine(in);
+				}
+				readLine(in);
+			} else if (contentLength > 0) {
+				copy(in, body, contentLength);
+			}
+			bodies.add(body.toByteArray());
+			String status = requests.incrementAndGet() % 2 == 1 ? "503 Service Unavailable" : "200 OK";
+			OutputStream out = s.getOutputStream();
+			out.write(("HTTP/1.1 " + status + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+		} catch (IOException e) {
+			// the client gave up
+		}
+	}
+
+	/**
+	 * Read a line of the request, without its terminator
+	 *
+	 * @param in,
+	 *            the stream of the request
+	 * @return the line read
+	 * @throws IOException
+	 *             if the stream ends before the line
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while ((read = in.read()) != '\n') {
+			if (read == -1) {
+				throw new IOException("Unexpected end of the request");
+			}
+			if (read != '\r') {
+				line.append((char) read);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Copy the given number of bytes of the request
+	 *
+	 * @param in,
+	 *            the stream of the request
+	 * @param out,
+	 *            the stream receiving the bytes
+	 * @param count,
+	 *            the number of bytes to copy
+	 * @throws IOException
+	 *             if the stream ends before the bytes
+	 */
+	private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+		byte[] buffer = new byte[8192];
+		long remaining = count;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read == -1) {
+				throw new IOException("Unexpected end of the request");
+			}
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+}
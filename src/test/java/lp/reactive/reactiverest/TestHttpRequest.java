@@ -0,0 +1,91 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import lp.reactive.reactiverest.model.CachePolicy;
+import lp.reactive.reactiverest.model.CompressionPolicy;
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.RetryPolicy;
+
+/**
+ * This class tests the equality of {@link HttpRequest}, used as the key of the
+ * shared upstream calls
+ *
+ * @author lucapompei
+ */
+public class TestHttpRequest {
+
+	@Test
+	public void testRequestsSendingTheSameCallAreEqual() {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Accept", "application/json");
+		HttpRequest request = new HttpRequest.Builder("http://test/", "items").headers(headers).build();
+		HttpRequest sameRequest = new HttpRequest.Builder("http://test/", "items").httpMethod(HttpMethod.GET)
+				.headers(new HashMap<>(headers)).readTimeout(1000, TimeUnit.MILLISECONDS)
+				.retryPolicy(new RetryPolicy.Builder().delay(10, TimeUnit.MILLISECONDS).build()).build();
+		assertEquals(request, sameRequest);
+		assertEquals(request.hashCode(), sameRequest.hashCode());
+		assertNotEquals(request, new HttpRequest.Builder("http://test/", "items").build());
+	}
+
+	@Test
+	public void testPoliciesChangingTheResponseAreCompared() {
+		HttpRequest request = new HttpRequest.Builder("http://test/", "items")
+				.cachePolicy(new CachePolicy.Builder().ttl(1, TimeUnit.MINUTES).build())
+				.compressionPolicy(new CompressionPolicy.Builder().minSize(10).build())
+				.callTimeout(1000, TimeUnit.MILLISECONDS).build();
+		HttpRequest sameRequest = new HttpRequest.Builder("http://test/", "items")
+				.cachePolicy(new CachePolicy.Builder().ttl(60, TimeUnit.SECONDS).build())
+				.compressionPolicy(new CompressionPolicy.Builder().minSize(10).build())
+				.callTimeout(1, TimeUnit.SECONDS).build();
+		assertEquals(request, sameRequest);
+		assertEquals(request.hashCode(), sameRequest.hashCode());
+		assertNotEquals(request, new HttpRequest.Builder("http://test/", "items")
+				.compressionPolicy(new CompressionPolicy.Builder().minSize(10).build())
+				.callTimeout(1000, TimeUnit.MILLISECONDS).build());
+		assertNotEquals(request, new HttpRequest.Builder("http://test/", "items")
+				.cachePolicy(new CachePolicy.Builder().ttl(1, TimeUnit.MINUTES).build())
+				.compressionPolicy(CompressionPolicy.NONE).callTimeout(1000, TimeUnit.MILLISECONDS).build());
+		assertNotEquals(request, new HttpRequest.Builder("http://test/", "items")
+				.cachePolicy(new CachePolicy.Builder().ttl(1, TimeUnit.MINUTES).build())
+				.compressionPolicy(new CompressionPolicy.Builder().minSize(10).build())
+				.callTimeout(2000, TimeUnit.MILLISECONDS).build());
+		assertNotEquals(new HttpRequest.Builder("http://test/", "items").build(),
+				new HttpRequest.Builder("http://test/", "items").streaming(true).build());
+	}
+
+	@Test
+	public void testMapsAreCopiedWhenBuilt() {
+		Map<String, String> queryParams = new HashMap<>();
+		queryParams.put("page", "1");
+		HttpRequest request = new HttpRequest.Builder("http://test/", "items").queryParams(queryParams).build();
+		Set<HttpRequest> keys = new HashSet<>();
+		keys.add(request);
+		queryParams.put("page", "2");
+		assertEquals("1", request.getQueryParams().get("page"));
+		assertTrue(keys.contains(request));
+		assertTrue(keys.contains(new HttpRequest.Builder("http://test/", "items").queryParams(
+				Collections.singletonMap("page", "1")).build()));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testBuiltMapsAreUnmodifiable() {
+		Map<String, String> bodyParams = new HashMap<>();
+		bodyParams.put("name", "value");
+		new HttpRequest.Builder("http://test/", "items").bodyParams(bodyParams).build().getBodyParams().put("name",
+				"other");
+	}
+
+}
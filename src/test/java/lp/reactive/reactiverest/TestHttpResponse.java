@@ -0,0 +1,251 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+
+/**
+ * This class tests the reading of the body of {@link HttpResponse}, buffered
+ * or streamed, its writing to a file and its release
+ *
+ * @author lucapompei
+ */
+public class TestHttpResponse {
+
+	/**
+	 * The json body of the responses
+	 */
+	private static final String BODY = "{\"name\":\"value\"}";
+
+	/**
+	 * The binary body of the large resource, written in several chunks
+	 */
+	private static final byte[] LARGE_BODY = new byte[200_000];
+
+	static {
+		for (int i = 0; i < LARGE_BODY.length; i++) {
+			LARGE_BODY[i] = (byte) (i * 31);
+		}
+	}
+
+	/**
+	 * The number of connections accepted by the server
+	 */
+	private final AtomicInteger connections = new AtomicInteger();
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testToStringDoesNotConsumeAStreamedBody() throws Exception {
+		try (HttpResponse response = SyncAPI.call(request(true))) {
+			assertTrue(response.toString().contains("[streamed body]"));
+			assertEquals(BODY, response.getJsonBody());
+			// once read, the json body is described
+			assertTrue(response.toString().contains(BODY));
+		}
+		try (HttpResponse response = SyncAPI.call(request(false))) {
+			assertTrue(response.toString().contains(BODY));
+			assertEquals(BODY, response.getJsonBody());
+		}
+	}
+
+	@Test
+	public void testBufferedBodyIsReadAgain() throws Exception {
+		try (HttpResponse response = SyncAPI.call(request(false))) {
+			assertEquals(BODY, read(response.getBodyStream()));
+			StringBuilder chunks = new StringBuilder();
+			for (ByteBuffer chunk : response.getBodyChunks(4).blockingIterable()) {
+				chunks.append(StandardCharsets.UTF_8.decode(chunk));
+			}
+			assertEquals(BODY, chunks.toString());
+			assertEquals("value", response.getBody(Map.class).get("name"));
+			assertEquals(BODY, response.getJsonBody());
+			assertEquals(BODY, read(response.getBodyStream()));
+			assertEquals(BODY.length(), response.getContentLength());
+			response.close();
+			assertTrue(response.isClosed());
+			assertNull(response.getBodyStream());
+			// the json body already read is kept
+			assertEquals(BODY, response.getJsonBody());
+		}
+	}
+
+	@Test
+	public void testCloseGivesTheStreamingConnectionBack() throws Exception {
+		HttpResponse response = SyncAPI.call(request(true));
+		assertTrue(response.isStreaming());
+		response.close();
+		response.close();
+		try (HttpResponse next = SyncAPI.call(request(true))) {
+			assertEquals(BODY, next.getJsonBody());
+		}
+		try (HttpResponse next = SyncAPI.call(request(false))) {
+			assertEquals(BODY, next.getJsonBody());
+		}
+		// the unread body was discarded and the connection reused
+		assertEquals(1, connections.get());
+	}
+
+	@Test
+	public void testWriteToWritesTheBodyAndReportsProgress() throws Exception {
+		Path file = Files.createTempFile("response", ".bin");
+		try {
+			for (boolean streaming : new boolean[] { true, false }) {
+				List<long[]> progress = new ArrayList<>();
+				HttpRequest httpRequest = new HttpRequest.Builder(baseUrl(), "large").streaming(streaming).build();
+				try (HttpResponse response = SyncAPI.call(httpRequest)) {
+					assertEquals(LARGE_BODY.length, response.writeTo(file,
+							(transferred, total) -> progress.add(new long[] { transferred, total })));
+				}
+				assertArrayEquals(LARGE_BODY, Files.readAllBytes(file));
+				assertTrue(progress.size() > 1);
+				long previous = 0;
+				for (long[] step : progress) {
+					assertTrue(step[0] > previous);
+					assertEquals(LARGE_BODY.length, step[1]);
+					previous = step[0];
+				}
+				assertEquals(LARGE_BODY.length, previous);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Read the given stream as a string
+	 *
+	 * @param stream,
+	 *            the stream to read
+	 * @return the content of the stream
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	private static String read(InputStream stream) throws IOException {
+		try (InputStream in = stream) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Build the request of the json resource
+	 *
+	 * @param streaming,
+	 *            a boolean indicating if the body is streamed
+	 * @return the {@link HttpRequest} of the resource
+	 */
+	private HttpRequest request(boolean streaming) {
+		return new HttpRequest.Builder(baseUrl(), "resource").streaming(streaming).build();
+	}
+
+	/**
+	 * Retrieve the base url of the server
+	 *
+	 * @return the base url of the server
+	 */
+	private String baseUrl() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/";
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				connections.incrementAndGet();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Answer every request of a kept alive connection with the json body, or
+	 * with the binary body if the large resource is requested
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = s.getOutputStream();
+			String requestLine = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					// skip the request headers
+					requestLine = requestLine == null ? line : requestLine;
+					continue;
+				}
+				if (requestLine != null && requestLine.contains("/large")) {
+					out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\nContent-Length: "
+							+ LARGE_BODY.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+					out.write(LARGE_BODY);
+				} else {
+					out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+							+ BODY.length() + "\r\n\r\n" + BODY).getBytes(StandardCharsets.US_ASCII));
+				}
+				out.flush();
+				requestLine = null;
+			}
+		} catch (IOException e) {
+			// the client closed the connection
+		}
+	}
+
+}
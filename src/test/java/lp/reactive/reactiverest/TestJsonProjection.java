@@ -0,0 +1,96 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lp.reactive.reactiverest.model.BodyFormat;
+import lp.reactive.reactiverest.utils.JsonUtils;
+
+/**
+ * This class tests the projection of some fields of a document by
+ * {@link JsonUtils#project(String, String...)}
+ *
+ * @author lucapompei
+ */
+public class TestJsonProjection {
+
+	/**
+	 * The projected document
+	 */
+	private static final String JSON = "{\"total\":2,\"items\":[{\"id\":1,\"name\":\"first\",\"tags\":[\"a\",\"b\"]},"
+			+ "{\"id\":2,\"name\":\"second\",\"owner\":null}],\"a/b\":{\"c~d\":true}}";
+
+	@Test
+	public void testPointersAndDottedPathsSelectTheSameFields() {
+		Map<String, JsonNode> values = JsonUtils.project(JSON, "/items/1/name", "items[0].tags[1]", "total");
+		assertEquals("second", values.get("/items/1/name").asText());
+		assertEquals("b", values.get("items[0].tags[1]").asText());
+		assertEquals(2, values.get("total").asInt());
+	}
+
+	@Test
+	public void testValuesFollowTheOrderOfThePaths() {
+		Map<String, JsonNode> values = JsonUtils.project(JSON, "items[1].id", "total", "/items/0/id");
+		assertEquals(Arrays.asList("items[1].id", "total", "/items/0/id"), new ArrayList<>(values.keySet()));
+	}
+
+	@Test
+	public void testMissingFieldsAreLeftOutAndNullIsKept() {
+		Map<String, JsonNode> values = JsonUtils.project(JSON, "items[0].owner", "items[1].owner", "items[5].id",
+				"total.value");
+		assertEquals(Collections.singleton("items[1].owner"), values.keySet());
+		assertTrue(values.get("items[1].owner").isNull());
+	}
+
+	@Test
+	public void testNestedPathsAreResolvedOnTheSameValue() {
+		Map<String, JsonNode> values = JsonUtils.project(JSON, "items[0]", "items[0].tags[0]", "items[0].tags[0]");
+		assertEquals(2, values.size());
+		assertEquals("first", values.get("items[0]").get("name").asText());
+		assertEquals("a", values.get("items[0].tags[0]").asText());
+	}
+
+	@Test
+	public void testEscapedNamesAndWholeDocument() {
+		assertTrue(JsonUtils.project(JSON, "/a~1b/c~0d").get("/a~1b/c~0d").asBoolean());
+		assertTrue(JsonUtils.project(JSON, "a/b.c~d").get("a/b.c~d").asBoolean());
+		assertEquals(2, JsonUtils.project(JSON, "").get("").get("total").asInt());
+	}
+
+	@Test
+	public void testParsingStopsOnceAllFieldsAreFound() {
+		// the document is truncated after the requested field
+		Map<String, JsonNode> values = JsonUtils.project("{\"id\":7,\"rest\":[1,2,", "id");
+		assertEquals(7, values.get("id").asInt());
+		assertNull(JsonUtils.project("{\"rest\":[1,2,", "id"));
+	}
+
+	@Test
+	public void testInvalidPathFailsTheProjection() {
+		assertNull(JsonUtils.project(JSON, "items[0"));
+	}
+
+	@Test
+	public void testBinaryFormatsAreProjected() {
+		Map<String, Object> document = new HashMap<>();
+		document.put("items", Arrays.asList(Collections.singletonMap("id", 3)));
+		for (BodyFormat format : BodyFormat.values()) {
+			byte[] bytes = JsonUtils.toBytes(document, format);
+			Map<String, JsonNode> values = JsonUtils.project(new ByteArrayInputStream(bytes), format, "items[0].id");
+			assertEquals(format.toString(), 3, values.get("items[0].id").asInt());
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package lp.reactive.reactiverest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lp.reactive.reactiverest.service.ClientService;
+import lp.reactive.reactiverest.utils.JsonUtils;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * This class tests the replacement of the {@code ObjectMapper} used by
+ * {@link JsonUtils} and the REST clients
+ *
+ * @author lucapompei
+ */
+public class TestJsonUtils {
+
+	@After
+	public void restoreMapper() {
+		JsonUtils.configure(null);
+	}
+
+	@Test
+	public void testConfiguredMapperAppliesToExistingRestClients() throws ExecutionException, IOException {
+		Retrofit restClient = ClientService.getRestClient("http://json.test/");
+		Map<String, String> body = Collections.singletonMap("name", "value");
+		assertEquals("{\"name\":\"value\"}", convert(restClient, body));
+		JsonUtils.configure(JsonUtils.createMapper(false).enable(SerializationFeature.INDENT_OUTPUT));
+		assertTrue(convert(restClient, body).contains("\n"));
+		JsonUtils.configure(null);
+		assertEquals("{\"name\":\"value\"}", convert(restClient, body));
+	}
+
+	@Test
+	public void testConfiguredMapperDiscardsCachedWriters() {
+		Map<String, String> body = Collections.singletonMap("name", "value");
+		assertEquals("{\"name\":\"value\"}", JsonUtils.toJson(body));
+		JsonUtils.configure(JsonUtils.createMapper(false).enable(SerializationFeature.INDENT_OUTPUT));
+		assertTrue(JsonUtils.toJson(body).contains("\n"));
+	}
+
+	/**
+	 * Convert the given request body with the converter of the given REST
+	 * client
+	 *
+	 * @param restClient,
+	 *            the REST client
+	 * @param body,
+	 *            the request body
+	 * @return the converted request body
+	 * @throws IOException,
+	 *             if the body cannot be converted
+	 */
+	private static String convert(Retrofit restClient, Map<String, String> body) throws IOException {
+		Converter<Map<String, String>, RequestBody> converter = restClient.requestBodyConverter(Map.class,
+				new Annotation[0], new Annotation[0]);
+		Buffer buffer = new Buffer();
+		converter.convert(body).writeTo(buffer);
+		return buffer.readUtf8();
+	}
+
+}
@@ -3,6 +3,7 @@ package lp.reactive.reactiverest;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.ImmutableMap;
 
@@ -33,6 +34,7 @@ public class TestSyncAPI {
 	private static final Map<String, String> QUERY_PARAMS = ImmutableMap.of("sort", "desc");
 	private static final Map<String, String> BODY_PARAMS = ImmutableMap.of("code", "first");
 	private static final int MAXIMUM_ATTEMPTS = 3;
+	private static final long CALL_TIMEOUT_SECONDS = 5;
 
 	public static void main(String[] argv) {
 		try {
@@ -53,6 +55,12 @@ public class TestSyncAPI {
 		} catch (ExecutionException | IOException ex) {
 			ex.printStackTrace();
 		}
+		try {
+			// testing sync api with retry option bounded by a call timeout
+			TestSyncAPI.testSyncAPIWithCallTimeout();
+		} catch (ExecutionException | IOException ex) {
+			ex.printStackTrace();
+		}
 	}
 
 	public static void testBasicSyncAPI() throws ExecutionException, IOException {
@@ -92,4 +100,18 @@ public class TestSyncAPI {
 		}
 	}
 
+	public static void testSyncAPIWithCallTimeout() throws ExecutionException, IOException {
+		System.out.println("Testing SyncAPI call with retry option (maximum attempts " + MAXIMUM_ATTEMPTS
+				+ ") and call timeout (" + CALL_TIMEOUT_SECONDS + " seconds)");
+		// prepare http request
+		HttpRequest httpRequest = new HttpRequest.Builder(BASE_URL, API_ENDPOINT)
+				.callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS).build();
+		System.out.println(httpRequest.toString());
+		// execute api call and getting http response
+		HttpResponse httpResponse = SyncAPI.call(httpRequest, MAXIMUM_ATTEMPTS);
+		if (httpResponse != null) {
+			System.out.println(httpResponse.toString());
+		}
+	}
+
 }
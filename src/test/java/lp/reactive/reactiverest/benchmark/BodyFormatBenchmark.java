@@ -0,0 +1,143 @@
+package lp.reactive.reactiverest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lp.reactive.reactiverest.model.BodyFormat;
+import lp.reactive.reactiverest.utils.JsonUtils;
+
+/**
+ * This benchmark compares the encoding and decoding time of the body formats
+ * on a representative page of items, a document dominated by repeated
+ * property names and short values, and on a single small object. Running the
+ * main method prints the wire size of the documents in each format first
+ *
+ * @author lucapompei
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyFormatBenchmark {
+
+	/**
+	 * The tested body format
+	 */
+	@Param({ "JSON", "SMILE", "CBOR", "MESSAGE_PACK" })
+	private BodyFormat format;
+
+	/**
+	 * The number of items of the converted document
+	 */
+	@Param({ "1", "100" })
+	private int items;
+
+	/**
+	 * The reader and the writer of the tested format
+	 */
+	private ObjectReader reader;
+	private ObjectWriter writer;
+
+	/**
+	 * The converted document, as object and encoded bytes
+	 */
+	private Page page;
+	private byte[] bytes;
+
+	public static void main(String[] argv) throws IOException, RunnerException {
+		for (int items : new int[] { 1, 100 }) {
+			for (BodyFormat format : BodyFormat.values()) {
+				byte[] encoded = JsonUtils.createMapper(format, false).writeValueAsBytes(createPage(items));
+				System.out.println(String.format("%-12s items=%-4d wire size=%d bytes", format, items,
+						encoded.length));
+			}
+		}
+		new Runner(new OptionsBuilder().include(BodyFormatBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		ObjectMapper mapper = JsonUtils.createMapper(format, false);
+		reader = mapper.readerFor(Page.class);
+		writer = mapper.writerFor(Page.class);
+		page = createPage(items);
+		bytes = writer.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return writer.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public Page decode() throws IOException {
+		return reader.readValue(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Create a page of the given number of items
+	 *
+	 * @param items,
+	 *            the number of items
+	 * @return the {@link Page}
+	 */
+	private static Page createPage(int items) {
+		Page page = new Page();
+		page.total = items;
+		page.items = new ArrayList<>(items);
+		for (int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.id = 1000000L + i;
+			item.name = "item-" + i;
+			item.category = i % 3 == 0 ? "books" : "music";
+			item.price = i * 1.5;
+			item.available = i % 2 == 0;
+			page.items.add(item);
+		}
+		return page;
+	}
+
+	/**
+	 * The converted document
+	 */
+	public static class Page {
+		public int total;
+		public List<Item> items;
+	}
+
+	/**
+	 * An item of the converted document
+	 */
+	public static class Item {
+		public long id;
+		public String name;
+		public String category;
+		public double price;
+		public boolean available;
+	}
+
+}
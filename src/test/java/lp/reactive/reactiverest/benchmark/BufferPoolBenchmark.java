@@ -0,0 +1,83 @@
+package lp.reactive.reactiverest.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import lp.reactive.reactiverest.model.HttpResponse;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * This benchmark compares reading a body as a string through a fresh byte
+ * array, as done by {@link ResponseBody#string()}, with reading it through a
+ * pooled buffer, as done by {@link HttpResponse#getJsonBody()}. Running the
+ * main method adds the gc profiler, showing the allocation rate of each
+ *
+ * @author lucapompei
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferPoolBenchmark {
+
+	/**
+	 * The media type of the body
+	 */
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+	/**
+	 * The size in bytes of the body
+	 */
+	@Param({ "1024", "65536", "524288" })
+	private int size;
+
+	/**
+	 * The bytes of the body
+	 */
+	private byte[] bytes;
+
+	public static void main(String[] argv) throws RunnerException {
+		new Runner(new OptionsBuilder().include(BufferPoolBenchmark.class.getSimpleName()).addProfiler("gc").build())
+				.run();
+	}
+
+	@Setup
+	public void setup() {
+		bytes = new byte[size];
+		Arrays.fill(bytes, (byte) 'a');
+	}
+
+	@Benchmark
+	public String freshArray() throws IOException {
+		// the same response as the pooled read, so that only the reading differs
+		ResponseBody body = ResponseBody.create(JSON, bytes);
+		new HttpResponse(Response.success(body));
+		return body.string();
+	}
+
+	@Benchmark
+	public String pooledBuffer() {
+		return new HttpResponse(Response.success(ResponseBody.create(JSON, bytes))).getJsonBody();
+	}
+
+}
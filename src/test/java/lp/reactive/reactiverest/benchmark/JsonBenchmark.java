@@ -0,0 +1,163 @@
+package lp.reactive.reactiverest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lp.reactive.reactiverest.utils.JsonUtils;
+
+/**
+ * This benchmark compares the json conversions through the generic
+ * {@code ObjectMapper} methods with the cached readers and writers used by
+ * {@link JsonUtils}, parsing a string or directly the bytes of a body, with and
+ * without the Afterburner module
+ *
+ * @author lucapompei
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	/**
+	 * The boolean indicating if the Afterburner module is registered
+	 */
+	@Param({ "false", "true" })
+	private boolean afterburner;
+
+	/**
+	 * The number of items of the converted document
+	 */
+	@Param({ "100" })
+	private int items;
+
+	/**
+	 * The tested mapper, with its cached reader and writer
+	 */
+	private ObjectMapper mapper;
+	private ObjectReader reader;
+	private ObjectWriter writer;
+
+	/**
+	 * The converted document, as object, string and bytes
+	 */
+	private Page page;
+	private String json;
+	private byte[] bytes;
+
+	public static void main(String[] argv) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JsonBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		mapper = JsonUtils.createMapper(afterburner);
+		reader = mapper.readerFor(Page.class);
+		writer = mapper.writerFor(Page.class);
+		JsonUtils.configure(mapper);
+		page = new Page();
+		page.total = items;
+		page.items = new ArrayList<>(items);
+		for (int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.id = i;
+			item.name = "item-" + i;
+			item.price = i * 1.5;
+			item.available = i % 2 == 0;
+			page.items.add(item);
+		}
+		json = mapper.writeValueAsString(page);
+		bytes = json.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown
+	public void tearDown() {
+		JsonUtils.configure(null);
+	}
+
+	@Benchmark
+	public Page mapperReadString() throws IOException {
+		return mapper.readValue(json, Page.class);
+	}
+
+	@Benchmark
+	public Page readerReadString() throws IOException {
+		return reader.readValue(json);
+	}
+
+	@Benchmark
+	public Page readerDecodeAndReadString() throws IOException {
+		// the former body access, decoding the bytes into a string first
+		return reader.readValue(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public Page readerReadBytes() throws IOException {
+		return reader.readValue(new ByteArrayInputStream(bytes));
+	}
+
+	@Benchmark
+	public Page utilsReadBytes() {
+		return JsonUtils.fromJson(new ByteArrayInputStream(bytes), Page.class);
+	}
+
+	@Benchmark
+	public String mapperWrite() throws IOException {
+		return mapper.writeValueAsString(page);
+	}
+
+	@Benchmark
+	public String writerWrite() throws IOException {
+		return writer.writeValueAsString(page);
+	}
+
+	@Benchmark
+	public String utilsWrite() {
+		return JsonUtils.toJson(page);
+	}
+
+	/**
+	 * The converted document
+	 */
+	public static class Page {
+		public int total;
+		public List<Item> items;
+	}
+
+	/**
+	 * An item of the converted document
+	 */
+	public static class Item {
+		public long id;
+		public String name;
+		public double price;
+		public boolean available;
+	}
+
+}
@@ -0,0 +1,94 @@
+package lp.reactive.reactiverest.benchmark;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import lp.reactive.reactiverest.service.HashedWheelTimer;
+
+/**
+ * This benchmark compares the {@link HashedWheelTimer} used by the REST
+ * service with the JDK {@link ScheduledThreadPoolExecutor}, scheduling and
+ * cancelling a call deadline while a large number of timers are pending
+ *
+ * @author lucapompei
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+
+	/**
+	 * The number of timers pending while measuring
+	 */
+	@Param({ "100000" })
+	private int pendingTimers;
+
+	/**
+	 * The tested timers
+	 */
+	private HashedWheelTimer wheelTimer;
+	private ScheduledThreadPoolExecutor jdkScheduler;
+
+	/**
+	 * The task scheduled by the benchmark, never executed
+	 */
+	private final Runnable task = () -> {
+		// Empty implementation
+	};
+
+	public static void main(String[] argv) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TimerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Setup
+	public void setup() {
+		wheelTimer = new HashedWheelTimer("benchmark-timer", 10, TimeUnit.MILLISECONDS, 512);
+		jdkScheduler = new ScheduledThreadPoolExecutor(1);
+		jdkScheduler.setRemoveOnCancelPolicy(true);
+		// fill both timers with long living pending deadlines
+		for (int i = 0; i < pendingTimers; i++) {
+			long delay = TimeUnit.MINUTES.toMillis(30) + i;
+			wheelTimer.schedule(task, delay, TimeUnit.MILLISECONDS);
+			jdkScheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		wheelTimer.stop();
+		jdkScheduler.shutdownNow();
+	}
+
+	@Benchmark
+	public boolean wheelScheduleAndCancel() {
+		HashedWheelTimer.Timeout timeout = wheelTimer.schedule(task, 10, TimeUnit.SECONDS);
+		return timeout.cancel();
+	}
+
+	@Benchmark
+	public boolean jdkScheduleAndCancel() {
+		ScheduledFuture<?> future = jdkScheduler.schedule(task, 10, TimeUnit.SECONDS);
+		return future.cancel(false);
+	}
+
+}
@@ -0,0 +1,326 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.model.CacheConfig;
+import lp.reactive.reactiverest.model.CachePolicy;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * This class tests the stale-if-error and negative caching policies of
+ * {@link CacheInterceptor}, that the calls abandoned by the client leave the
+ * cache untouched, that the responses to requests carrying credentials are
+ * not shared and that the default cache created by a caching policy leaves
+ * the other requests to the network
+ *
+ * @author lucapompei
+ */
+public class TestCacheInterceptor {
+
+	/**
+	 * The client serving the requests through the cache
+	 */
+	private static final OkHttpClient CLIENT = new OkHttpClient.Builder().addInterceptor(new CacheInterceptor())
+			.retryOnConnectionFailure(false).build();
+
+	/**
+	 * The caching policy of the tested requests
+	 */
+	private static final CachePolicy POLICY = new CachePolicy.Builder().ttl(50, TimeUnit.MILLISECONDS)
+			.staleIfError(10, TimeUnit.SECONDS).negativeTtl(10, TimeUnit.SECONDS).build();
+
+	/**
+	 * The number of the next response of the server, {@code -1} to make the
+	 * server never answer
+	 */
+	private final AtomicInteger version = new AtomicInteger(1);
+
+	/**
+	 * The {@code Cache-Control} header of the responses or {@code null} if none
+	 */
+	private volatile String cacheControl;
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void configureCache() throws IOException {
+		ResponseCacheService.configure(new CacheConfig.Builder(1024 * 1024).build());
+		startServer();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+		ResponseCacheService.disable();
+	}
+
+	@Test
+	public void testStaleResponseIsServedWhenServerIsUnreachable() throws IOException, InterruptedException {
+		String url = url();
+		assertEquals("1", get(url));
+		server.close();
+		Thread.sleep(100);
+		assertEquals("1", get(url));
+	}
+
+	@Test
+	public void testFailureIsCachedOutsideTheStaleWindow() throws IOException, InterruptedException {
+		String url = url();
+		server.close();
+		try {
+			get(url);
+			fail("The server is unreachable");
+		} catch (IOException e) {
+			// expected
+		}
+		startServer();
+		try {
+			// a new server on another port, the failure of the first url is replayed
+			get(url);
+			fail("The failure is cached");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Cached failure"));
+		}
+	}
+
+	@Test
+	public void testCancelledCallDoesNotServeStaleResponse() throws IOException, InterruptedException {
+		String url = url();
+		assertEquals("1", get(url));
+		Thread.sleep(100);
+		version.set(-1);
+		Call call = newCall(url);
+		cancelLater(call);
+		try {
+			call.execute().close();
+			fail("The call is cancelled");
+		} catch (IOException e) {
+			assertTrue(call.isCanceled());
+		}
+		// the stale response is still cached and revalidated
+		version.set(2);
+		assertEquals("2", get(url));
+	}
+
+	@Test
+	public void testCancelledCallDoesNotCacheFailure() throws IOException {
+		String url = url();
+		version.set(-1);
+		Call call = newCall(url);
+		cancelLater(call);
+		try {
+			call.execute().close();
+			fail("The call is cancelled");
+		} catch (IOException e) {
+			assertTrue(call.isCanceled());
+		}
+		version.set(1);
+		assertEquals("1", get(url));
+	}
+
+	@Test
+	public void testCallersWithDifferentTokensNeverShareAnEntry() throws IOException {
+		cacheControl = "max-age=60";
+		String url = url();
+		assertEquals("1", get(url, "Bearer first"));
+		version.set(2);
+		assertEquals("2", get(url, "Bearer second"));
+		version.set(3);
+		// neither response was stored
+		assertEquals("3", get(url, "Bearer first"));
+		assertEquals("3", get(url, null));
+		version.set(4);
+		// the response stored for the anonymous callers is not served to a token
+		assertEquals("4", get(url, "Bearer first"));
+		assertEquals("3", get(url, null));
+	}
+
+	@Test
+	public void testPublicResponseIsSharedBetweenTokens() throws IOException {
+		cacheControl = "public, max-age=60";
+		String url = url();
+		assertEquals("1", get(url, "Bearer first"));
+		version.set(2);
+		assertEquals("1", get(url, "Bearer second"));
+	}
+
+	@Test
+	public void testFailureOfTokenIsNotCached() throws IOException {
+		String url = url();
+		server.close();
+		try {
+			CLIENT.newCall(new Request.Builder().url(url).header("Authorization", "Bearer first")
+					.header(CacheInterceptor.CACHE_POLICY_HEADER, CacheInterceptor.encode(POLICY)).build()).execute()
+					.close();
+			fail("The server is unreachable");
+		} catch (IOException e) {
+			assertFalse(e.getMessage().startsWith("Cached failure"));
+		}
+		assertNull(ResponseCacheService.getMemoryCache().get(url));
+	}
+
+	@Test
+	public void testPolicyDoesNotCacheTheRequestsWithoutPolicy() throws IOException {
+		ResponseCacheService.reset();
+		cacheControl = "max-age=60";
+		assertEquals("1", get(url()));
+		// the default tier is created by the caching policy
+		assertNotNull(ResponseCacheService.getMemoryCache());
+		String url = url() + "?policy=none";
+		assertEquals("1", get(url, null));
+		version.set(2);
+		assertEquals("2", get(url, null));
+		assertNull(ResponseCacheService.getMemoryCache().get(url));
+	}
+
+	/**
+	 * Start a server answering the requests on a new port
+	 *
+	 * @throws IOException,
+	 *             if the server cannot be started
+	 */
+	private void startServer() throws IOException {
+		ServerSocket serverSocket = new ServerSocket(0);
+		server = serverSocket;
+		Thread thread = new Thread(() -> serve(serverSocket));
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Retrieve the url of the tested resource on the current server
+	 *
+	 * @return the url of the tested resource
+	 */
+	private String url() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/resource";
+	}
+
+	/**
+	 * Send a GET request with the tested caching policy
+	 *
+	 * @param url,
+	 *            the url of the request
+	 * @return the body of the response
+	 * @throws IOException,
+	 *             if the request fails
+	 */
+	private static String get(String url) throws IOException {
+		try (Response response = newCall(url).execute()) {
+			assertNotNull(response.body());
+			return response.body().string();
+		}
+	}
+
+	/**
+	 * Send a GET request without caching policy, relying on the freshness
+	 * decided by the server
+	 *
+	 * @param url,
+	 *            the url of the request
+	 * @param authorization,
+	 *            the value of the {@code Authorization} header or {@code null}
+	 *            if none
+	 * @return the body of the response
+	 * @throws IOException,
+	 *             if the request fails
+	 */
+	private static String get(String url, String authorization) throws IOException {
+		Request.Builder request = new Request.Builder().url(url);
+		if (authorization != null) {
+			request.header("Authorization", authorization);
+		}
+		try (Response response = CLIENT.newCall(request.build()).execute()) {
+			assertNotNull(response.body());
+			return response.body().string();
+		}
+	}
+
+	/**
+	 * Create a GET call with the tested caching policy
+	 *
+	 * @param url,
+	 *            the url of the request
+	 * @return the new {@link Call}
+	 */
+	private static Call newCall(String url) {
+		return CLIENT.newCall(new Request.Builder().url(url)
+				.header(CacheInterceptor.CACHE_POLICY_HEADER, CacheInterceptor.encode(POLICY)).build());
+	}
+
+	/**
+	 * Cancel the given call once its request has reached the server
+	 *
+	 * @param call,
+	 *            the call to cancel
+	 */
+	private static void cancelLater(Call call) {
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			call.cancel();
+		});
+		canceller.setDaemon(true);
+		canceller.start();
+	}
+
+	/**
+	 * Answer each request with the current version as body, or never while the
+	 * version is negative
+	 *
+	 * @param serverSocket,
+	 *            the socket accepting the connections
+	 */
+	private void serve(ServerSocket serverSocket) {
+		while (!serverSocket.isClosed()) {
+			try (Socket socket = serverSocket.accept()) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null && !line.isEmpty()) {
+					// skip the request headers
+				}
+				while (version.get() < 0 && !serverSocket.isClosed()) {
+					Thread.sleep(10);
+				}
+				String body = String.valueOf(version.get());
+				OutputStream out = socket.getOutputStream();
+				String headers = cacheControl == null ? "" : "Cache-Control: " + cacheControl + "\r\n";
+				out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\n" + headers + "Content-Length: " + body.length()
+						+ "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			} catch (IOException | InterruptedException e) {
+				// the client gave up or the server is stopped
+			}
+		}
+	}
+
+}
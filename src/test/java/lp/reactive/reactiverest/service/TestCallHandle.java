@@ -0,0 +1,309 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import lp.reactive.reactiverest.api.AsyncAPI;
+import lp.reactive.reactiverest.api.CoordinatorAPI;
+import lp.reactive.reactiverest.api.EventAPI;
+import lp.reactive.reactiverest.api.ReactiveAPI;
+import lp.reactive.reactiverest.model.EventResponse;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.RetryPolicy;
+
+/**
+ * This class tests the states of {@link CallHandle}, its races with the
+ * tracked steps of an api call and the cancellation of the api calls issued by
+ * {@link AsyncAPI}, {@link ReactiveAPI} and {@link EventAPI}
+ *
+ * @author lucapompei
+ */
+public class TestCallHandle {
+
+	/**
+	 * The identifier of the events of the cancelled api calls
+	 */
+	private static final String EVENT_IDENTIFIER = "CANCELLED_CALL";
+
+	/**
+	 * The number of notifications received by the consumers of the api calls
+	 */
+	private final AtomicInteger notifications = new AtomicInteger();
+
+	/**
+	 * The permits released when the server receives a request
+	 */
+	private final Semaphore received = new Semaphore(0);
+
+	/**
+	 * The permits released when a connection is closed by the client
+	 */
+	private final Semaphore closed = new Semaphore(0);
+
+	/**
+	 * The boolean indicating if the server answers 503 instead of holding the
+	 * requests
+	 */
+	private volatile boolean unavailable;
+
+	/**
+	 * The server receiving the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testCancelIsAppliedOnce() {
+		AtomicInteger cancellations = new AtomicInteger();
+		CallHandle handle = new CallHandle();
+		assertTrue(handle.track(cancellations::incrementAndGet));
+		assertFalse(handle.isCancelled());
+		assertFalse(handle.isDone());
+		assertTrue(handle.cancel());
+		assertFalse(handle.cancel());
+		assertEquals(1, cancellations.get());
+		assertTrue(handle.isCancelled());
+		assertTrue(handle.isDone());
+		assertEquals(CallHandle.State.CANCELLED, handle.getState());
+		// a cancelled api call cannot complete or fail afterwards
+		assertFalse(handle.complete());
+		assertFalse(handle.fail());
+		assertEquals(CallHandle.State.CANCELLED, handle.getState());
+	}
+
+	@Test
+	public void testTrackAfterCancelCancelsTheStep() {
+		AtomicInteger cancellations = new AtomicInteger();
+		CallHandle handle = new CallHandle();
+		handle.cancel();
+		assertFalse(handle.track(cancellations::incrementAndGet));
+		assertEquals(1, cancellations.get());
+	}
+
+	@Test
+	public void testTerminatedCallCannotBeCancelled() {
+		AtomicInteger cancellations = new AtomicInteger();
+		CallHandle completed = new CallHandle();
+		completed.track(cancellations::incrementAndGet);
+		assertTrue(completed.complete());
+		assertFalse(completed.cancel());
+		assertFalse(completed.isCancelled());
+		assertEquals(CallHandle.State.COMPLETED, completed.getState());
+		CallHandle failed = new CallHandle();
+		assertTrue(failed.fail());
+		assertFalse(failed.complete());
+		assertFalse(failed.cancel());
+		assertEquals(CallHandle.State.FAILED, failed.getState());
+		assertEquals(0, cancellations.get());
+	}
+
+	@Test
+	public void testConcurrentCancelsWinOnce() throws InterruptedException {
+		CallHandle handle = new CallHandle();
+		AtomicInteger cancellations = new AtomicInteger();
+		AtomicInteger winners = new AtomicInteger();
+		handle.track(cancellations::incrementAndGet);
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (handle.cancel()) {
+					winners.incrementAndGet();
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, winners.get());
+		assertEquals(1, cancellations.get());
+	}
+
+	@Test
+	public void testCancelWakesUpTheWaitForRetry() throws InterruptedException {
+		CallHandle handle = new CallHandle();
+		new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			handle.cancel();
+		}).start();
+		long start = System.nanoTime();
+		assertTrue(handle.awaitCancellation(TimeUnit.SECONDS.toMillis(10)));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+		assertFalse(new CallHandle().awaitCancellation(10));
+	}
+
+	@Test
+	public void testAsyncCallIsCancelled() throws Exception {
+		CallHandle handle = AsyncAPI.call(request(), response -> notifications.incrementAndGet(),
+				t -> notifications.incrementAndGet());
+		assertCancelled(handle);
+	}
+
+	@Test
+	public void testReactiveCallIsCancelled() throws Exception {
+		CallHandle handle = ReactiveAPI.call(request(), response -> notifications.incrementAndGet(),
+				t -> notifications.incrementAndGet());
+		assertCancelled(handle);
+	}
+
+	@Test
+	public void testEventCallIsCancelled() throws Exception {
+		Object subscriber = new Object() {
+			@Subscribe
+			public void onEvent(EventResponse eventResponse) {
+				if (CoordinatorAPI.getCoordinator().isEventForMe(eventResponse, EVENT_IDENTIFIER)) {
+					notifications.incrementAndGet();
+				}
+			}
+		};
+		CoordinatorAPI.getCoordinator().register(subscriber);
+		try {
+			assertCancelled(EventAPI.call(request(), EVENT_IDENTIFIER));
+		} finally {
+			CoordinatorAPI.getCoordinator().unregister(subscriber);
+		}
+	}
+
+	@Test
+	public void testCancelStopsThePendingRetry() throws Exception {
+		unavailable = true;
+		HttpRequest httpRequest = new HttpRequest.Builder(baseUrl(), "unavailable")
+				.retryPolicy(new RetryPolicy.Builder().delay(300, TimeUnit.MILLISECONDS).build()).build();
+		CallHandle handle = AsyncAPI.call(httpRequest, response -> notifications.incrementAndGet(),
+				t -> notifications.incrementAndGet(), 3);
+		assertTrue(received.tryAcquire(5, TimeUnit.SECONDS));
+		assertTrue(handle.cancel());
+		Thread.sleep(600);
+		assertEquals(0, received.availablePermits());
+		assertEquals(0, notifications.get());
+	}
+
+	/**
+	 * Cancel the given api call once its request reached the server, and check
+	 * that the connection is closed and that no consumer is notified
+	 *
+	 * @param handle,
+	 *            the handle of the api call
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 */
+	private void assertCancelled(CallHandle handle) throws InterruptedException {
+		assertTrue(received.tryAcquire(5, TimeUnit.SECONDS));
+		assertFalse(handle.isDone());
+		assertTrue(handle.cancel());
+		assertTrue(handle.isCancelled());
+		assertTrue("The connection was not closed", closed.tryAcquire(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(0, notifications.get());
+		assertEquals(CallHandle.State.CANCELLED, handle.getState());
+	}
+
+	/**
+	 * Build the request of a resource never answered by the server
+	 *
+	 * @return the {@link HttpRequest} of the resource
+	 */
+	private HttpRequest request() {
+		return new HttpRequest.Builder(baseUrl(), "held").build();
+	}
+
+	/**
+	 * Retrieve the base url of the server
+	 *
+	 * @return the base url of the server
+	 */
+	private String baseUrl() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/";
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Answer a request with a 503 or hold it until the client closes the
+	 * connection
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			String line;
+			while ((line = reader.readLine()) != null && !line.isEmpty()) {
+				// skip the request headers
+			}
+			received.release();
+			if (unavailable) {
+				OutputStream out = s.getOutputStream();
+				out.write("HTTP/1.1 503 Service Unavailable\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"
+						.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+				return;
+			}
+			while (reader.read() >= 0) {
+				// hold the request until the client gives up
+			}
+		} catch (IOException e) {
+			// the client reset the connection
+		}
+		closed.release();
+	}
+
+}
@@ -0,0 +1,161 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import lp.reactive.reactiverest.model.CircuitBreakerConfig;
+import lp.reactive.reactiverest.model.CircuitBreakerEvent;
+import lp.reactive.reactiverest.model.CircuitBreakerState;
+
+/**
+ * This class tests the state machine of {@link CircuitBreaker}
+ *
+ * @author lucapompei
+ */
+public class TestCircuitBreaker {
+
+	/**
+	 * The wait in open state, in milliseconds
+	 */
+	private static final long WAIT_MILLIS = 50;
+
+	/**
+	 * The transitions published by the circuit breaker under test
+	 */
+	private final List<CircuitBreakerEvent> events = new ArrayList<>();
+
+	@Test
+	public void testOpensOnceFailureRateReachesThreshold() {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(2);
+		record(circuitBreaker, false, false, true);
+		// below the minimum number of calls nothing is decided
+		assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+		record(circuitBreaker, true);
+		assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+		assertNull(circuitBreaker.tryAcquirePermission());
+		assertEquals(1, events.size());
+		assertEquals(CircuitBreakerState.CLOSED, events.get(0).getFromState());
+		assertEquals(50f, events.get(0).getFailureRate(), 0f);
+	}
+
+	@Test
+	public void testOpensOnceSlowCallRateReachesThreshold() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("http://slow/", new CircuitBreakerConfig.Builder()
+				.slidingWindowSize(4).minimumNumberOfCalls(4).slowCallRateThreshold(50)
+				.slowCallDuration(100, TimeUnit.MILLISECONDS).build(), events::add);
+		for (long duration : new long[] { 10, 10, 200, 200 }) {
+			circuitBreaker.tryAcquirePermission().onResult(duration, false);
+		}
+		assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+		assertEquals(50f, events.get(0).getSlowCallRate(), 0f);
+	}
+
+	@Test
+	public void testSlidingWindowEvictsOldestOutcomes() {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(2);
+		record(circuitBreaker, true, false, false, false, false, false);
+		// the window of 4 calls only holds successes
+		assertEquals(0f, circuitBreaker.getFailureRate(), 0f);
+		assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testClosesAfterSuccessfulTrials() throws InterruptedException {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(2);
+		record(circuitBreaker, true, true, true, true);
+		Thread.sleep(WAIT_MILLIS + 10);
+		CircuitBreaker.Permission first = circuitBreaker.tryAcquirePermission();
+		CircuitBreaker.Permission second = circuitBreaker.tryAcquirePermission();
+		assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNull(circuitBreaker.tryAcquirePermission());
+		first.onResult(1, false);
+		second.onResult(1, false);
+		assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+		assertEquals(3, events.size());
+	}
+
+	@Test
+	public void testOpensAgainAfterFailedTrials() throws InterruptedException {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(2);
+		record(circuitBreaker, true, true, true, true);
+		Thread.sleep(WAIT_MILLIS + 10);
+		circuitBreaker.tryAcquirePermission().onResult(1, true);
+		circuitBreaker.tryAcquirePermission().onResult(1, false);
+		assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+		assertNull(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testIgnoredTrialReleasesItsPermission() throws InterruptedException {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(1);
+		record(circuitBreaker, true, true, true, true);
+		Thread.sleep(WAIT_MILLIS + 10);
+		CircuitBreaker.Permission trial = circuitBreaker.tryAcquirePermission();
+		assertNull(circuitBreaker.tryAcquirePermission());
+		trial.onIgnored();
+		assertNotNull(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testStaleOutcomesAreNotCountedAsTrials() throws InterruptedException {
+		CircuitBreaker circuitBreaker = newCircuitBreaker(2);
+		// permitted while closed, completed after the circuit went half-open
+		CircuitBreaker.Permission staleFailure = circuitBreaker.tryAcquirePermission();
+		CircuitBreaker.Permission staleSuccess = circuitBreaker.tryAcquirePermission();
+		CircuitBreaker.Permission staleIgnored = circuitBreaker.tryAcquirePermission();
+		record(circuitBreaker, true, true, true, true);
+		Thread.sleep(WAIT_MILLIS + 10);
+		CircuitBreaker.Permission first = circuitBreaker.tryAcquirePermission();
+		CircuitBreaker.Permission second = circuitBreaker.tryAcquirePermission();
+		assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+		staleFailure.onResult(1, true);
+		staleSuccess.onResult(1, false);
+		staleIgnored.onIgnored();
+		assertEquals(CircuitBreakerState.HALF_OPEN, circuitBreaker.getState());
+		assertNull(circuitBreaker.tryAcquirePermission());
+		first.onResult(1, false);
+		second.onResult(1, false);
+		assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+		// the window is reset by the transition
+		assertEquals(-1f, circuitBreaker.getFailureRate(), 0f);
+	}
+
+	/**
+	 * Create a circuit breaker opening at 50% of failures over a window of 4
+	 * calls
+	 *
+	 * @param trials,
+	 *            the number of trial calls in half-open state
+	 * @return the new {@link CircuitBreaker}
+	 */
+	private CircuitBreaker newCircuitBreaker(int trials) {
+		return new CircuitBreaker("http://test/", new CircuitBreakerConfig.Builder().slidingWindowSize(4)
+				.minimumNumberOfCalls(4).failureRateThreshold(50)
+				.waitDurationInOpenState(WAIT_MILLIS, TimeUnit.MILLISECONDS).permittedCallsInHalfOpenState(trials)
+				.build(), events::add);
+	}
+
+	/**
+	 * Record the given outcomes of fast calls
+	 *
+	 * @param circuitBreaker,
+	 *            the circuit breaker recording the outcomes
+	 * @param failures,
+	 *            the outcomes, {@code true} for a failed call
+	 */
+	private static void record(CircuitBreaker circuitBreaker, boolean... failures) {
+		for (boolean failed : failures) {
+			circuitBreaker.tryAcquirePermission().onResult(1, failed);
+		}
+	}
+
+}
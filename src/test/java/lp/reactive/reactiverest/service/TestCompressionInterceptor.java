@@ -0,0 +1,406 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.CompressionCodec;
+import lp.reactive.reactiverest.model.CompressionPolicy;
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+
+/**
+ * This class tests the compression of the request bodies and the
+ * decompression of the response bodies by {@link CompressionInterceptor},
+ * along with the metrics counting their bytes
+ *
+ * @author lucapompei
+ */
+public class TestCompressionInterceptor {
+
+	/**
+	 * The json body of the compressed responses
+	 */
+	private static final String BODY = "{\"name\":\"value\",\"names\":[\"value\",\"value\",\"value\",\"value\"]}";
+
+	/**
+	 * The compressible bytes of the request bodies
+	 */
+	private static final byte[] BYTES = bytes(100_000);
+
+	/**
+	 * The gzip policy of the request bodies, from 1 KB
+	 */
+	private static final CompressionPolicy POLICY = new CompressionPolicy.Builder().minSize(1024).build();
+
+	/**
+	 * The headers of the last request received by the server, by lower case
+	 * name
+	 */
+	private volatile Map<String, String> headers;
+
+	/**
+	 * The body of the last request received by the server, as sent
+	 */
+	private volatile byte[] body;
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testBodyBelowTheMinSizeIsSentRaw() throws Exception {
+		long skipped = count(CompressionService.SKIPPED_METRIC);
+		long compressed = count(CompressionService.COMPRESSED_METRIC);
+		byte[] small = bytes(1000);
+		send(builder("resource").body(small, "application/octet-stream"));
+		assertNull(headers.get("content-encoding"));
+		assertEquals(String.valueOf(small.length), headers.get("content-length"));
+		assertArrayEquals(small, body);
+		assertEquals(skipped + 1, count(CompressionService.SKIPPED_METRIC));
+		assertEquals(compressed, count(CompressionService.COMPRESSED_METRIC));
+	}
+
+	@Test
+	public void testIncompressibleBodyIsSentRaw() throws Exception {
+		long skipped = count(CompressionService.SKIPPED_METRIC);
+		long compressed = count(CompressionService.COMPRESSED_METRIC);
+		byte[] random = new byte[4096];
+		new Random(7).nextBytes(random);
+		send(builder("resource").body(random, "application/octet-stream"));
+		assertNull(headers.get("content-encoding"));
+		assertArrayEquals(random, body);
+		assertEquals(skipped + 1, count(CompressionService.SKIPPED_METRIC));
+		assertEquals(compressed, count(CompressionService.COMPRESSED_METRIC));
+	}
+
+	@Test
+	public void testBodyIsCompressedWithItsLength() throws Exception {
+		long compressed = count(CompressionService.COMPRESSED_METRIC);
+		long rawBytes = count(CompressionService.RAW_BYTES_METRIC);
+		long compressedBytes = count(CompressionService.COMPRESSED_BYTES_METRIC);
+		send(builder("resource").body(BYTES.clone(), "application/octet-stream"));
+		assertEquals("gzip", headers.get("content-encoding"));
+		assertEquals(String.valueOf(body.length), headers.get("content-length"));
+		assertArrayEquals(BYTES, gunzip(body));
+		assertEquals(compressed + 1, count(CompressionService.COMPRESSED_METRIC));
+		assertEquals(rawBytes + BYTES.length, count(CompressionService.RAW_BYTES_METRIC));
+		assertEquals(compressedBytes + body.length, count(CompressionService.COMPRESSED_BYTES_METRIC));
+	}
+
+	@Test
+	public void testStreamedBodyIsCompressedWhileSent() throws Exception {
+		long compressed = count(CompressionService.COMPRESSED_METRIC);
+		long rawBytes = count(CompressionService.RAW_BYTES_METRIC);
+		long compressedBytes = count(CompressionService.COMPRESSED_BYTES_METRIC);
+		send(builder("resource").body(() -> new ByteArrayInputStream(BYTES), "application/octet-stream"));
+		// a body of unknown length is compressed on the connection, in chunks
+		assertEquals("gzip", headers.get("content-encoding"));
+		assertNull(headers.get("content-length"));
+		assertEquals("chunked", headers.get("transfer-encoding"));
+		assertArrayEquals(BYTES, gunzip(body));
+		assertEquals(compressed + 1, count(CompressionService.COMPRESSED_METRIC));
+		assertEquals(rawBytes + BYTES.length, count(CompressionService.RAW_BYTES_METRIC));
+		assertEquals(compressedBytes + body.length, count(CompressionService.COMPRESSED_BYTES_METRIC));
+	}
+
+	@Test
+	public void testGzipAndDeflateResponsesAreDecompressed() throws Exception {
+		CompressionService.registerCodec(CompressionCodec.DEFLATE);
+		try {
+			long decompressed = count(CompressionService.DECOMPRESSED_METRIC);
+			long rawBytes = count(CompressionService.DECOMPRESSION_RAW_BYTES_METRIC);
+			long compressedBytes = count(CompressionService.DECOMPRESSION_COMPRESSED_BYTES_METRIC);
+			assertEquals(BODY, read("gzip"));
+			assertEquals("deflate, gzip", headers.get("accept-encoding"));
+			assertEquals(BODY, read("deflate"));
+			assertEquals(decompressed + 2, count(CompressionService.DECOMPRESSED_METRIC));
+			assertEquals(rawBytes + 2 * BODY.length(), count(CompressionService.DECOMPRESSION_RAW_BYTES_METRIC));
+			assertEquals(compressedBytes + encode("gzip").length + encode("deflate").length,
+					count(CompressionService.DECOMPRESSION_COMPRESSED_BYTES_METRIC));
+		} finally {
+			CompressionService.unregisterCodec(CompressionCodec.DEFLATE.getEncoding());
+		}
+	}
+
+	@Test
+	public void testGzipResponseIsDecompressedWithoutItsCodec() throws Exception {
+		CompressionService.unregisterCodec(CompressionCodec.GZIP.getEncoding());
+		try {
+			// no codec registered, the http client decompresses the gzip responses
+			assertEquals(BODY, read("gzip"));
+			assertEquals("gzip", headers.get("accept-encoding"));
+			// the advertised codings no longer include gzip, sent by the server anyway
+			CompressionService.registerCodec(CompressionCodec.DEFLATE);
+			assertEquals(BODY, read("gzip"));
+			assertEquals("deflate", headers.get("accept-encoding"));
+		} finally {
+			CompressionService.unregisterCodec(CompressionCodec.DEFLATE.getEncoding());
+			CompressionService.registerCodec(CompressionCodec.GZIP);
+		}
+	}
+
+	/**
+	 * Send the given request, whose response must be successful
+	 *
+	 * @param builder,
+	 *            the builder of the request, with its body
+	 * @throws Exception
+	 *             if the api call fails
+	 */
+	private static void send(HttpRequest.Builder builder) throws Exception {
+		try (HttpResponse response = SyncAPI.call(builder.build())) {
+			assertEquals(200, response.getStatus());
+		}
+	}
+
+	/**
+	 * Read the json body of the resource compressed with the given coding
+	 *
+	 * @param encoding,
+	 *            the coding of the response body
+	 * @return the json body of the response
+	 * @throws Exception
+	 *             if the api call fails
+	 */
+	private String read(String encoding) throws Exception {
+		HttpRequest httpRequest = new HttpRequest.Builder(baseUrl(), encoding).build();
+		try (HttpResponse response = SyncAPI.call(httpRequest)) {
+			assertEquals(200, response.getStatus());
+			return response.getJsonBody();
+		}
+	}
+
+	/**
+	 * Create the builder of a PUT request compressed by {@link #POLICY}
+	 *
+	 * @param apiEndpoint,
+	 *            the api endpoint of the request
+	 * @return the {@link HttpRequest.Builder} of the request
+	 */
+	private HttpRequest.Builder builder(String apiEndpoint) {
+		return new HttpRequest.Builder(baseUrl(), apiEndpoint).httpMethod(HttpMethod.PUT).compressionPolicy(POLICY);
+	}
+
+	/**
+	 * Retrieve the base url of the server
+	 *
+	 * @return the base url of the server
+	 */
+	private String baseUrl() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/";
+	}
+
+	/**
+	 * Retrieve the value of a counter
+	 *
+	 * @param name,
+	 *            the name of the counter
+	 * @return the value of the counter, {@code 0} if never incremented
+	 */
+	private static long count(String name) {
+		Number value = MetricsService.getMetric(name);
+		return value == null ? 0 : value.longValue();
+	}
+
+	/**
+	 * Create a compressible body of repeated lines
+	 *
+	 * @param length,
+	 *            the length in bytes of the body
+	 * @return the bytes of the body
+	 */
+	private static byte[] bytes(int length) {
+		byte[] line = "the quick brown fox jumps over the lazy dog\n".getBytes(StandardCharsets.US_ASCII);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = line[i % line.length];
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decompress the given gzip bytes
+	 *
+	 * @param compressed,
+	 *            the gzip bytes
+	 * @return the decompressed bytes
+	 * @throws IOException
+	 *             if the bytes are not gzip
+	 */
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Compress the json body with the given coding
+	 *
+	 * @param encoding,
+	 *            the coding, gzip or deflate
+	 * @return the compressed json body
+	 * @throws IOException
+	 *             if the body cannot be compressed
+	 */
+	private static byte[] encode(String encoding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (OutputStream compressor = "gzip".equals(encoding) ? new GZIPOutputStream(out)
+				: new DeflaterOutputStream(out)) {
+			compressor.write(BODY.getBytes(StandardCharsets.UTF_8));
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Record the headers and the body of a request, then answer the gzip and
+	 * deflate resources with the json body compressed with their coding, the
+	 * other ones with an empty body
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			String requestLine = readLine(in);
+			Map<String, String> received = new HashMap<>();
+			String line;
+			while (!(line = readLine(in)).isEmpty()) {
+				int separator = line.indexOf(':');
+				received.put(line.substring(0, separator).trim().toLowerCase(), line.substring(separator + 1).trim());
+			}
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			if ("chunked".equalsIgnoreCase(received.get("transfer-encoding"))) {
+				long size;
+				while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+					copy(in, content, size);
+					readLine(in);
+				}
+				readLine(in);
+			} else if (received.containsKey("content-length")) {
+				copy(in, content, Long.parseLong(received.get("content-length")));
+			}
+			headers = received;
+			body = content.toByteArray();
+			String encoding = requestLine.contains("/gzip ") ? "gzip"
+					: requestLine.contains("/deflate ") ? "deflate" : null;
+			byte[] responseBody = encoding == null ? new byte[0] : encode(encoding);
+			OutputStream out = s.getOutputStream();
+			out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Type: application/json\r\n"
+					+ (encoding == null ? "" : "Content-Encoding: " + encoding + "\r\n") + "Content-Length: "
+					+ responseBody.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.write(responseBody);
+			out.flush();
+		} catch (IOException e) {
+			// the client gave up
+		}
+	}
+
+	/**
+	 * Read a line of the request, without its terminator
+	 *
+	 * @param in,
+	 *            the stream of the request
+	 * @return the line read
+	 * @throws IOException
+	 *             if the stream ends before the line
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int read;
+		while ((read = in.read()) != '\n') {
+			if (read == -1) {
+				throw new IOException("Unexpected end of the request");
+			}
+			if (read != '\r') {
+				line.append((char) read);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Copy the given number of bytes of the request
+	 *
+	 * @param in,
+	 *            the stream of the request
+	 * @param out,
+	 *            the stream receiving the bytes
+	 * @param count,
+	 *            the number of bytes to copy
+	 * @throws IOException
+	 *             if the stream ends before the bytes
+	 */
+	private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+		byte[] buffer = new byte[8192];
+		long remaining = count;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read == -1) {
+				throw new IOException("Unexpected end of the request");
+			}
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.model.ConcurrencyLimitConfig;
+
+/**
+ * This class tests the queueing and the AIMD limit of
+ * {@link ConcurrencyLimiter}
+ *
+ * @author lucapompei
+ */
+public class TestConcurrencyLimiter {
+
+	/**
+	 * The timer expiring the waits
+	 */
+	private static final HashedWheelTimer TIMER = new HashedWheelTimer("test-limiter-timer", 1,
+			TimeUnit.MILLISECONDS, 64);
+
+	@AfterClass
+	public static void stopTimer() {
+		TIMER.stop();
+	}
+
+	@Test
+	public void testCallsBeyondTheLimitAreShedWithoutQueue() {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(2));
+		AtomicInteger acquired = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire(0, TIMER, acquired::incrementAndGet, rejected::incrementAndGet);
+		}
+		assertEquals(2, acquired.get());
+		assertEquals(1, rejected.get());
+		assertEquals(2, limiter.getInFlight());
+	}
+
+	@Test
+	public void testWaitingCallsAcquireReleasedSlotsInArrivalOrder() {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(1));
+		List<String> acquired = Collections.synchronizedList(new ArrayList<>());
+		limiter.acquire(0, TIMER, () -> acquired.add("first"), () -> acquired.add("rejected"));
+		limiter.acquire(1000, TIMER, () -> acquired.add("second"), () -> acquired.add("rejected"));
+		limiter.acquire(1000, TIMER, () -> acquired.add("third"), () -> acquired.add("rejected"));
+		assertEquals(2, limiter.getQueued());
+		limiter.releaseIgnored();
+		limiter.releaseIgnored();
+		assertEquals(Arrays.asList("first", "second", "third"), acquired);
+		assertEquals(0, limiter.getQueued());
+	}
+
+	@Test
+	public void testWaitExpiresAfterMaximumWait() throws InterruptedException {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(1));
+		CountDownLatch rejected = new CountDownLatch(1);
+		limiter.acquire(0, TIMER, () -> {
+		}, () -> {
+		});
+		long start = System.nanoTime();
+		limiter.acquire(30, TIMER, () -> {
+		}, rejected::countDown);
+		assertTrue(rejected.await(2, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+		assertEquals(0, limiter.getQueued());
+	}
+
+	@Test
+	public void testCancelledWaitIsRejectedOnce() {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(1));
+		AtomicInteger rejected = new AtomicInteger();
+		limiter.acquire(0, TIMER, () -> {
+		}, () -> {
+		});
+		Runnable cancel = limiter.acquire(1000, TIMER, () -> {
+		}, rejected::incrementAndGet);
+		cancel.run();
+		cancel.run();
+		limiter.releaseIgnored();
+		assertEquals(1, rejected.get());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testDropDecreasesLimitMultiplicatively() throws InterruptedException {
+		ConcurrencyLimiter limiter = newLimiter(
+				new ConcurrencyLimitConfig.Builder().initialLimit(20).minLimit(4).backoffRatio(0.5));
+		acquire(limiter, 3);
+		limiter.release(TimeUnit.MICROSECONDS.toNanos(100), false);
+		Thread.sleep(1);
+		limiter.release(0, true);
+		assertEquals(10, limiter.getLimit());
+		Thread.sleep(1);
+		limiter.release(0, true);
+		// never below the minimum limit
+		assertEquals(5, limiter.getLimit());
+		acquire(limiter, 1);
+		Thread.sleep(1);
+		limiter.release(0, true);
+		assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testLimitDecreasesAtMostOncePerRoundTrip() {
+		ConcurrencyLimiter limiter = newLimiter(
+				new ConcurrencyLimitConfig.Builder().initialLimit(20).backoffRatio(0.5));
+		acquire(limiter, 3);
+		limiter.release(TimeUnit.SECONDS.toNanos(10), false);
+		limiter.release(0, true);
+		limiter.release(0, true);
+		assertEquals(20, limiter.getLimit());
+	}
+
+	@Test
+	public void testGrowingLatencyDecreasesLimit() throws InterruptedException {
+		ConcurrencyLimiter limiter = newLimiter(
+				new ConcurrencyLimitConfig.Builder().initialLimit(20).backoffRatio(0.5).rttTolerance(2));
+		acquire(limiter, 2);
+		Thread.sleep(20);
+		limiter.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+		assertEquals(20, limiter.getLimit());
+		// the smoothed latency moves to 10.9 ms, an estimated queue of 18 calls
+		limiter.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+		assertEquals(10, limiter.getLimit());
+	}
+
+	@Test
+	public void testUsedLimitIncreasesAdditivelyUpToMaximum() {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(4).maxLimit(6));
+		for (int round = 0; round < 50; round++) {
+			int slots = limiter.getLimit();
+			acquire(limiter, slots);
+			for (int i = 0; i < slots; i++) {
+				limiter.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+			}
+		}
+		assertEquals(6, limiter.getLimit());
+	}
+
+	@Test
+	public void testIgnoredReleaseKeepsLimit() {
+		ConcurrencyLimiter limiter = newLimiter(new ConcurrencyLimitConfig.Builder().initialLimit(4));
+		acquire(limiter, 4);
+		for (int i = 0; i < 4; i++) {
+			limiter.releaseIgnored();
+		}
+		assertEquals(4, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	/**
+	 * Create a limiter with the given configuration
+	 *
+	 * @param builder,
+	 *            the builder of the configuration
+	 * @return the new {@link ConcurrencyLimiter}
+	 */
+	private static ConcurrencyLimiter newLimiter(ConcurrencyLimitConfig.Builder builder) {
+		return new ConcurrencyLimiter("http://test/", builder.build());
+	}
+
+	/**
+	 * Acquire the given number of slots, failing if any is not free
+	 *
+	 * @param limiter,
+	 *            the limiter
+	 * @param slots,
+	 *            the number of slots to acquire
+	 */
+	private static void acquire(ConcurrencyLimiter limiter, int slots) {
+		for (int i = 0; i < slots; i++) {
+			limiter.acquire(0, TIMER, () -> {
+			}, () -> {
+				throw new AssertionError("Slot not acquired");
+			});
+		}
+	}
+
+}
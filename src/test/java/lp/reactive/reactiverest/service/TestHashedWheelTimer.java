@@ -0,0 +1,123 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * This class tests {@link HashedWheelTimer}: the order of expiration, the
+ * cancellation and the timeouts lasting more than a round of the wheel
+ *
+ * @author lucapompei
+ */
+public class TestHashedWheelTimer {
+
+	/**
+	 * The timer under test
+	 */
+	private HashedWheelTimer timer;
+
+	@After
+	public void stopTimer() {
+		if (timer != null) {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testTasksExpireInDeadlineOrder() throws InterruptedException {
+		timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(4);
+		for (int delay : new int[] { 60, 0, 30, 15 }) {
+			timer.schedule(() -> {
+				executed.add(delay);
+				latch.countDown();
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(0, 15, 30, 60), executed);
+		assertEquals(0, timer.pendingTimeouts());
+	}
+
+	@Test
+	public void testCancelledTaskIsNotExecuted() throws InterruptedException {
+		timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+		CountDownLatch cancelledRun = new CountDownLatch(1);
+		CountDownLatch otherRun = new CountDownLatch(1);
+		HashedWheelTimer.Timeout timeout = timer.schedule(cancelledRun::countDown, 30, TimeUnit.MILLISECONDS);
+		timer.schedule(otherRun::countDown, 60, TimeUnit.MILLISECONDS);
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+		assertTrue(timeout.isCancelled());
+		assertTrue(otherRun.await(2, TimeUnit.SECONDS));
+		assertEquals(1, cancelledRun.getCount());
+		assertFalse(timeout.isExpired());
+		assertEquals(0, timer.pendingTimeouts());
+	}
+
+	@Test
+	public void testExpiredTaskCannotBeCancelled() throws InterruptedException {
+		timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+		CountDownLatch latch = new CountDownLatch(1);
+		HashedWheelTimer.Timeout timeout = timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertFalse(timeout.cancel());
+		assertTrue(timeout.isExpired());
+	}
+
+	@Test
+	public void testTaskLastingSeveralRounds() throws InterruptedException {
+		// 4 buckets of 10 ms: a round lasts 40 ms, the task waits 3 rounds
+		timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 4);
+		CountDownLatch shortRun = new CountDownLatch(1);
+		CountDownLatch longRun = new CountDownLatch(1);
+		long start = System.nanoTime();
+		long[] elapsedMillis = new long[2];
+		timer.schedule(() -> {
+			elapsedMillis[1] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			longRun.countDown();
+		}, 150, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> {
+			elapsedMillis[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			shortRun.countDown();
+		}, 20, TimeUnit.MILLISECONDS);
+		assertTrue(shortRun.await(2, TimeUnit.SECONDS));
+		assertEquals(1, longRun.getCount());
+		assertTrue(longRun.await(2, TimeUnit.SECONDS));
+		assertTrue("Expired after " + elapsedMillis[1] + " ms", elapsedMillis[1] >= 150);
+		assertTrue(elapsedMillis[0] < elapsedMillis[1]);
+	}
+
+	@Test
+	public void testTaskFailureDoesNotStopTheWorker() throws InterruptedException {
+		timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+		CountDownLatch latch = new CountDownLatch(1);
+		timer.schedule(() -> {
+			throw new IllegalStateException("Failing task");
+		}, 0, TimeUnit.MILLISECONDS);
+		timer.schedule(latch::countDown, 10, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStoppedTimerRejectsTasks() {
+		timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+		timer.schedule(() -> {
+		}, 0, TimeUnit.MILLISECONDS);
+		timer.stop();
+		timer.schedule(() -> {
+		}, 0, TimeUnit.MILLISECONDS);
+	}
+
+}
@@ -0,0 +1,268 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.AsyncAPI;
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.ConcurrencyLimitConfig;
+import lp.reactive.reactiverest.model.HedgePolicy;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+
+/**
+ * This class tests the hedged attempts sent by {@link HedgedCall}: the hedge
+ * delay, its dynamic lower bound, the hedge budget and the slot taken by each
+ * duplicate, along with {@link LatencyTracker} and {@link TrafficBudget}
+ *
+ * @author lucapompei
+ */
+public class TestHedgedCall {
+
+	/**
+	 * The api endpoint of the hedged requests
+	 */
+	private static final String API_ENDPOINT = "hedged";
+
+	/**
+	 * The number of requests received by the server
+	 */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * The time, in milliseconds, the server waits before answering the first
+	 * request, the following ones being answered at once
+	 */
+	private volatile long firstDelay;
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+		// a duplicate allowed by each regular request
+		RestService.configureHedgeBudget(1, 10);
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		RestService.configureHedgeBudget(0.1, 100);
+		server.close();
+	}
+
+	@Test
+	public void testDuplicateIsSentAfterTheDelay() throws Exception {
+		firstDelay = 1500;
+		long start = System.nanoTime();
+		try (HttpResponse response = SyncAPI.call(request(new HedgePolicy.Builder(100, TimeUnit.MILLISECONDS)))) {
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertEquals("2", response.getJsonBody());
+			assertTrue("Answered after " + elapsedMillis + " ms", elapsedMillis >= 100 && elapsedMillis < 1000);
+		}
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testAsyncDuplicateIsSentAfterTheDelay() throws Exception {
+		firstDelay = 1500;
+		CompletableFuture<HttpResponse> completed = new CompletableFuture<>();
+		AsyncAPI.call(request(new HedgePolicy.Builder(100, TimeUnit.MILLISECONDS)), completed::complete,
+				completed::completeExceptionally);
+		try (HttpResponse response = completed.get(1, TimeUnit.SECONDS)) {
+			assertEquals("2", response.getJsonBody());
+		}
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testNoDuplicateIsSentBeforeTheDelay() throws Exception {
+		firstDelay = 50;
+		try (HttpResponse response = SyncAPI.call(request(new HedgePolicy.Builder(500, TimeUnit.MILLISECONDS)))) {
+			assertEquals("1", response.getJsonBody());
+		}
+		Thread.sleep(600);
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testHedgeBudgetCapsTheDuplicates() throws Exception {
+		RestService.configureHedgeBudget(0, 0);
+		firstDelay = 500;
+		try (HttpResponse response = SyncAPI.call(request(new HedgePolicy.Builder(50, TimeUnit.MILLISECONDS)))) {
+			assertEquals("1", response.getJsonBody());
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testDynamicDelayIsBoundedBelow() throws Exception {
+		LatencyTracker tracker = LatencyTracker.of(baseUrl(), API_ENDPOINT);
+		for (int i = 0; i < 32; i++) {
+			tracker.record(0);
+		}
+		assertEquals(0, tracker.getP95());
+		firstDelay = 100;
+		HedgePolicy.Builder hedgePolicy = new HedgePolicy.Builder(1, TimeUnit.SECONDS).dynamicDelay(true)
+				.minDelay(400, TimeUnit.MILLISECONDS);
+		try (HttpResponse response = SyncAPI.call(request(hedgePolicy))) {
+			assertEquals("1", response.getJsonBody());
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testDuplicateTakesItsOwnSlot() throws Exception {
+		ConcurrencyLimiterService.configure(baseUrl(),
+				new ConcurrencyLimitConfig.Builder().initialLimit(1).minLimit(1).maxLimit(1).build());
+		firstDelay = 500;
+		try (HttpResponse response = SyncAPI.call(request(new HedgePolicy.Builder(50, TimeUnit.MILLISECONDS)))) {
+			assertEquals("1", response.getJsonBody());
+		}
+		assertEquals(1, requests.get());
+		assertEquals(0, ConcurrencyLimiterService.getLimiter(baseUrl()).getInFlight());
+	}
+
+	@Test
+	public void testSlotsOfTheDuplicateAndTheLoserAreReleased() throws Exception {
+		ConcurrencyLimiterService.configure(baseUrl(),
+				new ConcurrencyLimitConfig.Builder().initialLimit(2).minLimit(2).maxLimit(2).build());
+		firstDelay = 1500;
+		try (HttpResponse response = SyncAPI.call(request(new HedgePolicy.Builder(100, TimeUnit.MILLISECONDS)))) {
+			assertEquals("2", response.getJsonBody());
+		}
+		assertEquals(2, requests.get());
+		ConcurrencyLimiter limiter = ConcurrencyLimiterService.getLimiter(baseUrl());
+		for (int i = 0; i < 50 && limiter.getInFlight() > 0; i++) {
+			Thread.sleep(20);
+		}
+		// the cancelled loser gives its slot back without shrinking the limit
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testLatencyTrackerNeedsEnoughSamples() {
+		LatencyTracker tracker = new LatencyTracker();
+		for (int i = 1; i < 20; i++) {
+			tracker.record(i);
+		}
+		assertEquals(-1, tracker.getP95());
+		for (int i = 20; i <= 100; i++) {
+			tracker.record(i);
+		}
+		assertEquals(95, tracker.getPercentile(0.95));
+		assertEquals(50, tracker.getPercentile(0.5));
+	}
+
+	@Test
+	public void testTrafficBudgetIsEarnedByRegularRequests() {
+		TrafficBudget budget = new TrafficBudget(0.5, 2);
+		assertFalse(budget.tryAcquire());
+		budget.onRequest();
+		assertFalse(budget.tryAcquire());
+		budget.onRequest();
+		assertTrue(budget.tryAcquire());
+		assertFalse(budget.tryAcquire());
+		for (int i = 0; i < 100; i++) {
+			budget.onRequest();
+		}
+		// the burst is capped
+		assertEquals(2, budget.getAvailable());
+		assertEquals(3, new TrafficBudget(0.1, 5, 3).getAvailable());
+		assertEquals(5, new TrafficBudget(0.1, 5, 10).getAvailable());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTrafficBudgetRejectsNegativeRatio() {
+		new TrafficBudget(-0.1, 1);
+	}
+
+	/**
+	 * Build the hedged request of the resource
+	 *
+	 * @param hedgePolicy,
+	 *            the builder of the hedge policy of the request
+	 * @return the hedged {@link HttpRequest} of the resource
+	 */
+	private HttpRequest request(HedgePolicy.Builder hedgePolicy) {
+		return new HttpRequest.Builder(baseUrl(), API_ENDPOINT).hedgePolicy(hedgePolicy.build()).build();
+	}
+
+	/**
+	 * Retrieve the base url of the server
+	 *
+	 * @return the base url of the server
+	 */
+	private String baseUrl() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/";
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Answer a request with its number, after the delay of the first request if
+	 * it is the first one
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			String line;
+			while ((line = reader.readLine()) != null && !line.isEmpty()) {
+				// skip the request headers
+			}
+			int number = requests.incrementAndGet();
+			if (number == 1) {
+				Thread.sleep(firstDelay);
+			}
+			OutputStream out = s.getOutputStream();
+			out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 1\r\n\r\n" + number)
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+		} catch (IOException e) {
+			// the client gave up
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.AsyncAPI;
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.HedgePolicy;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.MemoryBudgetConfig;
+
+/**
+ * This class tests the waits of {@link MemoryBudgetService} in
+ * {@code WAIT} mode, taken by the synchronous api calls only
+ *
+ * @author lucapompei
+ */
+public class TestMemoryBudgetService {
+
+	/**
+	 * The length of the body of every response
+	 */
+	private static final int BODY_LENGTH = 800;
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+		// room for a single body
+		MemoryBudgetService.configure(new MemoryBudgetConfig.Builder(1000).maxWait(5, TimeUnit.SECONDS).build());
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		MemoryBudgetService.configure(null);
+		server.close();
+	}
+
+	@Test
+	public void testSyncCallWaitsForReleasedBytes() throws Exception {
+		assertSyncCallWaits(request());
+	}
+
+	@Test
+	public void testSyncHedgedCallWaitsForReleasedBytes() throws Exception {
+		// the hedged attempt is raced on the dispatcher, but buffered by the calling thread
+		assertSyncCallWaits(new HttpRequest.Builder("http://127.0.0.1:" + server.getLocalPort() + "/", "body")
+				.hedgePolicy(new HedgePolicy.Builder(10, TimeUnit.SECONDS).build()).build());
+	}
+
+	@Test
+	public void testAsyncCallSpillsInsteadOfWaiting() throws Exception {
+		HttpResponse held = SyncAPI.call(request());
+		long spills = getSpills();
+		CompletableFuture<HttpResponse> completed = new CompletableFuture<>();
+		long start = System.nanoTime();
+		AsyncAPI.call(request(), completed::complete, completed::completeExceptionally);
+		HttpResponse response = completed.get(5, TimeUnit.SECONDS);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertNotNull(response);
+		assertTrue("Completed after " + elapsedMillis + " ms", elapsedMillis < 2000);
+		assertEquals(spills + 1, getSpills());
+		// the spilled body is not counted against the budget
+		assertEquals(BODY_LENGTH, MemoryBudgetService.getUsed());
+		assertEquals(BODY_LENGTH, response.getJsonBody().length());
+		response.close();
+		held.close();
+		assertEquals(0, MemoryBudgetService.getUsed());
+	}
+
+	/**
+	 * Make a synchronous api call while the budget is held by another response,
+	 * released after 300 ms, and check that the call waits for the released
+	 * bytes
+	 *
+	 * @param httpRequest,
+	 *            the http request of the api call
+	 * @throws Exception
+	 *             if the api call fails
+	 */
+	private void assertSyncCallWaits(HttpRequest httpRequest) throws Exception {
+		HttpResponse held = SyncAPI.call(request());
+		assertEquals(BODY_LENGTH, MemoryBudgetService.getUsed());
+		Thread releaser = new Thread(() -> {
+			try {
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			held.close();
+		});
+		releaser.start();
+		long start = System.nanoTime();
+		HttpResponse response = SyncAPI.call(httpRequest);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("Buffered after " + elapsedMillis + " ms", elapsedMillis >= 250);
+		assertEquals(BODY_LENGTH, response.getJsonBody().length());
+		response.close();
+		assertEquals(0, MemoryBudgetService.getUsed());
+	}
+
+	/**
+	 * Build the request of a body of {@value BODY_LENGTH} bytes
+	 *
+	 * @return the {@link HttpRequest} of the body
+	 */
+	private HttpRequest request() {
+		return new HttpRequest.Builder("http://127.0.0.1:" + server.getLocalPort() + "/", "body").build();
+	}
+
+	/**
+	 * Retrieve the number of the bodies spilled so far
+	 *
+	 * @return the number of the bodies spilled
+	 */
+	private static long getSpills() {
+		Number spills = MetricsService.getMetric(MemoryBudgetService.SPILL_METRIC);
+		return spills == null ? 0 : spills.longValue();
+	}
+
+	/**
+	 * Answer each request with a body of {@value BODY_LENGTH} bytes
+	 */
+	private void serve() {
+		byte[] body = new byte[BODY_LENGTH];
+		Arrays.fill(body, (byte) 'a');
+		while (!server.isClosed()) {
+			try (Socket socket = server.accept()) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null && !line.isEmpty()) {
+					// skip the request headers
+				}
+				OutputStream out = socket.getOutputStream();
+				out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: " + BODY_LENGTH + "\r\n\r\n")
+						.getBytes(StandardCharsets.US_ASCII));
+				out.write(body);
+				out.flush();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * This class tests the bodies stored off-heap by {@link OffHeapStore}, their
+ * reference counting and their use by {@link ResponseCache}
+ *
+ * @author lucapompei
+ */
+public class TestOffHeapStore {
+
+	/**
+	 * The request of the tested responses
+	 */
+	private static final Request REQUEST = new Request.Builder().url("http://test/items").build();
+
+	@Test
+	public void testBodyIsReadBackAcrossSlabs() throws IOException {
+		OffHeapStore store = new OffHeapStore(4 * OffHeapStore.SLAB_SIZE);
+		byte[] bytes = bytes(2 * OffHeapStore.SLAB_SIZE + OffHeapStore.SLAB_SIZE / 2, 1);
+		OffHeapStore.Body body = store.store(bytes);
+		assertNotNull(body);
+		assertEquals(bytes.length, body.getLength());
+		assertEquals(3L * OffHeapStore.SLAB_SIZE, store.getSize());
+		try (ResponseBody responseBody = body.toResponseBody(null)) {
+			assertEquals(bytes.length, responseBody.contentLength());
+			assertArrayEquals(bytes, responseBody.bytes());
+		}
+		body.release();
+		assertEquals(0, store.getSize());
+	}
+
+	@Test
+	public void testSlabsAreFreedAfterTheLastRelease() {
+		OffHeapStore store = new OffHeapStore(2 * OffHeapStore.SLAB_SIZE);
+		OffHeapStore.Body body = store.store(bytes(OffHeapStore.SLAB_SIZE, 2));
+		ResponseBody responseBody = body.toResponseBody(null);
+		body.retain();
+		body.release();
+		body.release();
+		// the response still reads the body
+		assertEquals(OffHeapStore.SLAB_SIZE, store.getSize());
+		responseBody.close();
+		assertEquals(0, store.getSize());
+		// the slabs are reused
+		assertNotNull(store.store(bytes(2 * OffHeapStore.SLAB_SIZE, 3)));
+		assertEquals(store.getCapacity(), store.getSize());
+	}
+
+	@Test
+	public void testBodyNotFittingStaysOnTheHeap() throws IOException {
+		OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+		byte[] bytes = bytes(OffHeapStore.SLAB_SIZE + 1, 4);
+		assertNull(store.store(bytes));
+		assertEquals(0, store.getSize());
+		ResponseCache cache = new ResponseCache(10 * OffHeapStore.SLAB_SIZE, 10 * OffHeapStore.SLAB_SIZE, store);
+		cache.put("http://test/large", entry(bytes));
+		assertEquals(0, cache.getOffHeapSize());
+		assertTrue(cache.getSize() >= bytes.length);
+		assertArrayEquals(bytes, read(cache, "http://test/large"));
+	}
+
+	@Test
+	public void testEvictedEntryStaysIntactWhileRead() throws IOException {
+		OffHeapStore store = new OffHeapStore(2 * OffHeapStore.SLAB_SIZE);
+		ResponseCache cache = new ResponseCache(10 * OffHeapStore.SLAB_SIZE, 10 * OffHeapStore.SLAB_SIZE, store);
+		byte[] first = bytes(2 * OffHeapStore.SLAB_SIZE, 5);
+		cache.put("http://test/first", entry(first));
+		assertEquals(2L * OffHeapStore.SLAB_SIZE, cache.getOffHeapSize());
+		ResponseCache.Entry entry = cache.get("http://test/first");
+		Response response = entry.toResponse(REQUEST, null);
+		entry.release();
+		BufferedSource source = response.body().source();
+		byte[] head = source.readByteArray(100);
+		// the second body evicts the first one, whose slabs are still being read
+		byte[] second = bytes(2 * OffHeapStore.SLAB_SIZE, 6);
+		cache.put("http://test/second", entry(second));
+		assertNull(cache.get("http://test/first"));
+		byte[] tail = source.readByteArray();
+		response.close();
+		byte[] read = new byte[head.length + tail.length];
+		System.arraycopy(head, 0, read, 0, head.length);
+		System.arraycopy(tail, 0, read, head.length, tail.length);
+		assertArrayEquals(first, read);
+		// the second body found no free slab and was kept on the heap
+		assertEquals(0, cache.getOffHeapSize());
+		assertArrayEquals(second, read(cache, "http://test/second"));
+		// once the slabs are free, the next large body goes off-heap again
+		cache.put("http://test/third", entry(bytes(OffHeapStore.SLAB_SIZE, 7)));
+		assertEquals(OffHeapStore.SLAB_SIZE, cache.getOffHeapSize());
+	}
+
+	/**
+	 * Read the body of the response cached for the given url
+	 *
+	 * @param cache,
+	 *            the cache of the response
+	 * @param url,
+	 *            the url of the response
+	 * @return the bytes of the body
+	 * @throws IOException,
+	 *             if the body cannot be read
+	 */
+	private static byte[] read(ResponseCache cache, String url) throws IOException {
+		ResponseCache.Entry entry = cache.get(url);
+		assertNotNull(entry);
+		try (Response response = entry.toResponse(REQUEST, null)) {
+			return response.body().bytes();
+		} finally {
+			entry.release();
+		}
+	}
+
+	/**
+	 * Create a cached response to {@link #REQUEST} with the given body
+	 *
+	 * @param body,
+	 *            the bytes of the body
+	 * @return the new {@link ResponseCache.Entry}
+	 */
+	private static ResponseCache.Entry entry(byte[] body) {
+		Response response = new Response.Builder().request(REQUEST).protocol(Protocol.HTTP_1_1).code(200)
+				.message("OK").build();
+		return new ResponseCache.Entry(REQUEST, response, null, body);
+	}
+
+	/**
+	 * Create a body whose bytes depend on their position and on the given seed
+	 *
+	 * @param length,
+	 *            the length in bytes of the body
+	 * @param seed,
+	 *            the seed distinguishing the bodies
+	 * @return the bytes of the body
+	 */
+	private static byte[] bytes(int length, int seed) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i * 31 + seed);
+		}
+		return bytes;
+	}
+
+}
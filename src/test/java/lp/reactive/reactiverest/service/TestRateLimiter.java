@@ -0,0 +1,232 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.AsyncAPI;
+import lp.reactive.reactiverest.api.ReactiveAPI;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.RateLimitConfig;
+import lp.reactive.reactiverest.model.RateLimitMode;
+import lp.reactive.reactiverest.model.RetryPolicy;
+
+/**
+ * This class tests the reservations and refunds of {@link RateLimiter} and the
+ * rate limited asynchronous and reactive api calls
+ *
+ * @author lucapompei
+ */
+public class TestRateLimiter {
+
+	/**
+	 * The time between two permits of the tested limiters
+	 */
+	private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void testBurstIsGrantedWithoutWait() {
+		RateLimiter limiter = newLimiter(3);
+		assertEquals(3, limiter.getAvailablePermits());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.reserve(0));
+		}
+		assertEquals(0, limiter.getAvailablePermits());
+		assertEquals(-1, limiter.reserve(0));
+	}
+
+	@Test
+	public void testReservationBeyondBurstWaitsOneInterval() {
+		RateLimiter limiter = newLimiter(1);
+		assertEquals(0, limiter.reserve(0));
+		long waitNanos = limiter.reserve(2 * INTERVAL_NANOS);
+		assertTrue(waitNanos > INTERVAL_NANOS / 2 && waitNanos <= INTERVAL_NANOS);
+		// the next one queues behind the reserved permit
+		long nextWaitNanos = limiter.reserve(3 * INTERVAL_NANOS);
+		assertTrue(nextWaitNanos > INTERVAL_NANOS + INTERVAL_NANOS / 2 && nextWaitNanos <= 2 * INTERVAL_NANOS);
+	}
+
+	@Test
+	public void testRejectedReservationTakesNothing() {
+		RateLimiter limiter = newLimiter(1);
+		assertEquals(0, limiter.reserve(0));
+		assertEquals(-1, limiter.reserve(INTERVAL_NANOS / 2));
+		long waitNanos = limiter.reserve(2 * INTERVAL_NANOS);
+		assertTrue(waitNanos > INTERVAL_NANOS / 2 && waitNanos <= INTERVAL_NANOS);
+	}
+
+	@Test
+	public void testRefundGivesBackReservedPermit() {
+		RateLimiter limiter = newLimiter(2);
+		limiter.reserve(0);
+		limiter.reserve(0);
+		assertEquals(0, limiter.getAvailablePermits());
+		limiter.refund();
+		assertEquals(1, limiter.getAvailablePermits());
+		assertEquals(0, limiter.reserve(0));
+	}
+
+	@Test
+	public void testRefundNeverExceedsBurst() {
+		RateLimiter limiter = newLimiter(3);
+		for (int i = 0; i < 5; i++) {
+			limiter.refund();
+		}
+		assertEquals(3, limiter.getAvailablePermits());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.reserve(0));
+		}
+		assertEquals(-1, limiter.reserve(0));
+	}
+
+	@Test
+	public void testAsyncWaitDoesNotDelayOtherDeadlines() throws Exception {
+		// a closed port refusing the connections of the rate limited call
+		int refusingPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			refusingPort = socket.getLocalPort();
+		}
+		String limitedUrl = "http://127.0.0.1:" + refusingPort + "/";
+		RateLimiterService.configure(limitedUrl, new RateLimitConfig.Builder(1, 3, TimeUnit.SECONDS).burst(1)
+				.mode(RateLimitMode.WAIT).maxWait(5, TimeUnit.SECONDS).build());
+		try (ServerSocket slowServer = new ServerSocket(0)) {
+			Thread server = new Thread(() -> trickle(slowServer));
+			server.setDaemon(true);
+			server.start();
+			// the retry runs on the timer and finds the only permit taken by the first attempt
+			CallHandle limitedCall = AsyncAPI.call(
+					new HttpRequest.Builder(limitedUrl, "limited")
+							.retryPolicy(new RetryPolicy.Builder().delay(10, TimeUnit.MILLISECONDS).build()).build(),
+					response -> {
+					}, error -> {
+					}, 2);
+			Thread.sleep(200);
+			CompletableFuture<Throwable> timedOut = new CompletableFuture<>();
+			long start = System.nanoTime();
+			AsyncAPI.call(new HttpRequest.Builder("http://127.0.0.1:" + slowServer.getLocalPort() + "/", "slow")
+					.callTimeout(300, TimeUnit.MILLISECONDS).build(), response -> timedOut.complete(null),
+					timedOut::complete);
+			assertTrue(timedOut.get(5, TimeUnit.SECONDS) != null);
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue("Deadline expired after " + elapsedMillis + " ms", elapsedMillis < 1500);
+			limitedCall.cancel();
+		} finally {
+			RateLimiterService.disable(limitedUrl);
+		}
+	}
+
+	@Test
+	public void testReactiveCallWaitsOnTheTimer() throws Exception {
+		try (ServerSocket okServer = new ServerSocket(0)) {
+			Thread server = new Thread(() -> answerOk(okServer));
+			server.setDaemon(true);
+			server.start();
+			String limitedUrl = "http://127.0.0.1:" + okServer.getLocalPort() + "/";
+			RateLimiterService.configure(limitedUrl,
+					new RateLimitConfig.Builder(1, 500, TimeUnit.MILLISECONDS).burst(1).build());
+			try {
+				HttpRequest httpRequest = new HttpRequest.Builder(limitedUrl, "limited").build();
+				CompletableFuture<Long> first = new CompletableFuture<>();
+				CompletableFuture<Long> second = new CompletableFuture<>();
+				long start = System.nanoTime();
+				ReactiveAPI.call(httpRequest, response -> complete(first, response), first::completeExceptionally);
+				ReactiveAPI.call(httpRequest, response -> complete(second, response), second::completeExceptionally);
+				// the second call is delayed on the timer, the calling thread is not held
+				assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 300);
+				long firstMillis = TimeUnit.NANOSECONDS.toMillis(first.get(5, TimeUnit.SECONDS) - start);
+				long secondMillis = TimeUnit.NANOSECONDS.toMillis(second.get(5, TimeUnit.SECONDS) - start);
+				assertTrue("First answered after " + firstMillis + " ms", firstMillis < 300);
+				assertTrue("Second answered after " + secondMillis + " ms", secondMillis >= 300);
+			} finally {
+				RateLimiterService.disable(limitedUrl);
+			}
+		}
+	}
+
+	/**
+	 * Complete the given future with the instant the given response arrived
+	 *
+	 * @param future,
+	 *            the future of the api call
+	 * @param response,
+	 *            the response of the api call
+	 */
+	private static void complete(CompletableFuture<Long> future, HttpResponse response) {
+		long arrival = System.nanoTime();
+		response.close();
+		future.complete(arrival);
+	}
+
+	/**
+	 * Create a limiter granting a permit per second
+	 *
+	 * @param burst,
+	 *            the burst capacity
+	 * @return the new {@link RateLimiter}
+	 */
+	private static RateLimiter newLimiter(int burst) {
+		return new RateLimiter("test", new RateLimitConfig.Builder(1, 1, TimeUnit.SECONDS).burst(burst).build());
+	}
+
+	/**
+	 * Answer each connection with a body sent a byte at a time, slowly enough
+	 * to end only through the deadline of the api call, while every read
+	 * completes within the read timeout
+	 *
+	 * @param serverSocket,
+	 *            the socket accepting the connections
+	 */
+	private static void trickle(ServerSocket serverSocket) {
+		while (!serverSocket.isClosed()) {
+			try (Socket socket = serverSocket.accept()) {
+				OutputStream out = socket.getOutputStream();
+				out.write("HTTP/1.1 200 OK\r\nContent-Length: 1000\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+				for (int i = 0; i < 1000; i++) {
+					out.write('a');
+					out.flush();
+					Thread.sleep(50);
+				}
+			} catch (IOException | InterruptedException e) {
+				// the client gave up
+			}
+		}
+	}
+
+	/**
+	 * Answer each connection at once with an empty body
+	 *
+	 * @param serverSocket,
+	 *            the socket accepting the connections
+	 */
+	private static void answerOk(ServerSocket serverSocket) {
+		while (!serverSocket.isClosed()) {
+			try (Socket socket = serverSocket.accept()) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null && !line.isEmpty()) {
+					// skip the request headers
+				}
+				OutputStream out = socket.getOutputStream();
+				out.write("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"
+						.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			} catch (IOException e) {
+				// the client gave up
+			}
+		}
+	}
+
+}
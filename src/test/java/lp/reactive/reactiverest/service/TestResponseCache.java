@@ -0,0 +1,231 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * This class tests the freshness computed by {@link ResponseCache} as
+ * described by RFC 7234, the revalidation of the cached responses and the
+ * bounds of the cache
+ *
+ * @author lucapompei
+ */
+public class TestResponseCache {
+
+	/**
+	 * The time, in milliseconds, the tested responses are received
+	 */
+	private static final long RECEIVED_MILLIS = 1_500_000_000_000L;
+
+	/**
+	 * The request of the tested responses
+	 */
+	private static final Request REQUEST = new Request.Builder().url("http://test/items").build();
+
+	/**
+	 * The cache directives of a request without any
+	 */
+	private static final CacheControl NO_DIRECTIVES = new CacheControl.Builder().build();
+
+	@Test
+	public void testMaxAgeIsReducedByTheCurrentAge() {
+		// 60 s of lifetime, 10 s of age on arrival and 1 s of response delay
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS - 1000, "Cache-Control", "max-age=60", "Age", "10",
+				"Date", date(RECEIVED_MILLIS - 2000));
+		assertTrue(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 48_000));
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 49_000));
+		assertEquals(1000, entry.getStaleness(0, RECEIVED_MILLIS + 50_000));
+	}
+
+	@Test
+	public void testApparentAgeWinsOverSmallerAgeHeader() {
+		// the server clock is 20 s behind the reception, the age header says 5 s
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Cache-Control", "max-age=30", "Age", "5", "Date",
+				date(RECEIVED_MILLIS - 20_000));
+		assertEquals(-10_000, entry.getStaleness(0, RECEIVED_MILLIS));
+	}
+
+	@Test
+	public void testExpiresIsRelativeToTheDateHeader() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Date", date(RECEIVED_MILLIS), "Expires",
+				date(RECEIVED_MILLIS + 30_000));
+		assertTrue(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 29_000));
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 30_000));
+	}
+
+	@Test
+	public void testMaxAgeOverridesExpires() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Cache-Control", "max-age=10", "Date",
+				date(RECEIVED_MILLIS), "Expires", date(RECEIVED_MILLIS + 60_000));
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 10_000));
+	}
+
+	@Test
+	public void testHeuristicFreshnessIsTenPercentOfTheLastModifiedAge() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Date", date(RECEIVED_MILLIS), "Last-Modified",
+				date(RECEIVED_MILLIS - 100_000));
+		assertTrue(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 9_000));
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS + 10_000));
+		assertTrue(entry.hasValidators());
+	}
+
+	@Test
+	public void testResponseWithoutFreshnessInformationIsStale() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Date", date(RECEIVED_MILLIS));
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS));
+		assertFalse(entry.isReusable(0));
+		assertTrue(entry.isReusable(1000));
+	}
+
+	@Test
+	public void testClientTimeToLiveReplacesServerFreshness() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS - 1000, "Cache-Control", "no-cache", "Age", "100");
+		assertFalse(entry.isFresh(NO_DIRECTIVES, 0, RECEIVED_MILLIS));
+		// the time to live starts at the reception, the age header is ignored
+		assertTrue(entry.isFresh(NO_DIRECTIVES, 5000, RECEIVED_MILLIS + 4000));
+		assertEquals(1000, entry.getStaleness(5000, RECEIVED_MILLIS + 6000));
+	}
+
+	@Test
+	public void testRequestDirectivesNarrowOrWidenFreshness() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Cache-Control", "max-age=60", "Date",
+				date(RECEIVED_MILLIS));
+		long now = RECEIVED_MILLIS + 30_000;
+		assertTrue(entry.isFresh(NO_DIRECTIVES, 0, now));
+		assertFalse(entry.isFresh(new CacheControl.Builder().noCache().build(), 0, now));
+		assertFalse(entry.isFresh(new CacheControl.Builder().maxAge(20, TimeUnit.SECONDS).build(), 0, now));
+		assertFalse(entry.isFresh(new CacheControl.Builder().minFresh(40, TimeUnit.SECONDS).build(), 0, now));
+		CacheControl maxStale = new CacheControl.Builder().maxStale(30, TimeUnit.SECONDS).build();
+		assertTrue(entry.isFresh(maxStale, 0, RECEIVED_MILLIS + 80_000));
+		assertFalse(entry.isFresh(maxStale, 0, RECEIVED_MILLIS + 90_000));
+	}
+
+	@Test
+	public void testMustRevalidateIgnoresMaxStale() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Cache-Control", "max-age=60, must-revalidate",
+				"Date", date(RECEIVED_MILLIS));
+		CacheControl maxStale = new CacheControl.Builder().maxStale(30, TimeUnit.SECONDS).build();
+		assertFalse(entry.isFresh(maxStale, 0, RECEIVED_MILLIS + 70_000));
+	}
+
+	@Test
+	public void testRevalidationKeepsTheContentHeaders() {
+		ResponseCache.Entry entry = entry(RECEIVED_MILLIS, "Cache-Control", "max-age=10", "ETag", "\"v1\"",
+				"Content-Type", "application/json", "Date", date(RECEIVED_MILLIS));
+		Request conditional = entry.conditional(REQUEST);
+		assertEquals("\"v1\"", conditional.header("If-None-Match"));
+		long revalidatedMillis = RECEIVED_MILLIS + 60_000;
+		Response notModified = response(revalidatedMillis, revalidatedMillis, 304, "Cache-Control", "max-age=120",
+				"Content-Type", "text/plain", "Date", date(revalidatedMillis));
+		ResponseCache.Entry revalidated = entry.revalidate(conditional, notModified);
+		assertTrue(revalidated.isFresh(NO_DIRECTIVES, 0, revalidatedMillis + 100_000));
+		Response served = revalidated.toResponse(REQUEST, null);
+		assertEquals(200, served.code());
+		assertEquals("application/json", served.header("Content-Type"));
+		assertEquals("max-age=120", served.header("Cache-Control"));
+	}
+
+	@Test
+	public void testVaryHeadersMustMatch() {
+		Request json = REQUEST.newBuilder().header("Accept", "application/json").build();
+		Response response = response(RECEIVED_MILLIS, RECEIVED_MILLIS, 200, "Vary", "Accept");
+		ResponseCache.Entry entry = new ResponseCache.Entry(json, response, null, new byte[0]);
+		assertTrue(entry.matches(json));
+		assertFalse(entry.matches(REQUEST.newBuilder().header("Accept", "text/xml").build()));
+		assertFalse(entry.matches(REQUEST));
+	}
+
+	@Test
+	public void testCacheEvictsTheLeastRecentlyUsedResponses() {
+		ResponseCache cache = new ResponseCache(250, 200);
+		cache.put("http://test/a", entry(100));
+		cache.put("http://test/b", entry(100));
+		cache.get("http://test/a").release();
+		cache.put("http://test/c", entry(100));
+		assertNotNull(cache.get("http://test/a"));
+		assertNull(cache.get("http://test/b"));
+		assertNotNull(cache.get("http://test/c"));
+		assertEquals(200, cache.getSize());
+		// a response larger than the maximum entry size is not cached
+		cache.put("http://test/d", entry(201));
+		assertNull(cache.get("http://test/d"));
+		assertEquals(2, cache.getCount());
+	}
+
+	/**
+	 * Create a cached response to {@link #REQUEST} received at
+	 * {@link #RECEIVED_MILLIS}
+	 *
+	 * @param sentMillis,
+	 *            the time in milliseconds the request was sent
+	 * @param namesAndValues,
+	 *            the headers of the response
+	 * @return the new {@link ResponseCache.Entry}
+	 */
+	private static ResponseCache.Entry entry(long sentMillis, String... namesAndValues) {
+		return new ResponseCache.Entry(REQUEST, response(sentMillis, RECEIVED_MILLIS, 200, namesAndValues), null,
+				new byte[0]);
+	}
+
+	/**
+	 * Create a cached response without headers
+	 *
+	 * @param bodyLength,
+	 *            the length in bytes of the body
+	 * @return the new {@link ResponseCache.Entry}
+	 */
+	private static ResponseCache.Entry entry(int bodyLength) {
+		return new ResponseCache.Entry(REQUEST, response(RECEIVED_MILLIS, RECEIVED_MILLIS, 200), null,
+				new byte[bodyLength]);
+	}
+
+	/**
+	 * Create a response to {@link #REQUEST}, without body
+	 *
+	 * @param sentMillis,
+	 *            the time in milliseconds the request was sent
+	 * @param receivedMillis,
+	 *            the time in milliseconds the response was received
+	 * @param code,
+	 *            the status code
+	 * @param namesAndValues,
+	 *            the headers of the response
+	 * @return the new {@link Response}
+	 */
+	private static Response response(long sentMillis, long receivedMillis, int code, String... namesAndValues) {
+		return new Response.Builder().request(REQUEST).protocol(Protocol.HTTP_1_1).code(code).message("OK")
+				.headers(Headers.of(namesAndValues)).sentRequestAtMillis(sentMillis)
+				.receivedResponseAtMillis(receivedMillis).build();
+	}
+
+	/**
+	 * Format the given time as an http date
+	 *
+	 * @param millis,
+	 *            the time in milliseconds
+	 * @return the http date
+	 */
+	private static String date(long millis) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(millis));
+	}
+
+}
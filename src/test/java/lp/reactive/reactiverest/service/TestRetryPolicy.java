@@ -0,0 +1,242 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.HttpMethod;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.RetryPolicy;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * This class tests the classification of the failures by {@link RetryPolicy},
+ * the retries planned by {@link RestService} from the {@code Retry-After}
+ * header and the global retry budget
+ *
+ * @author lucapompei
+ */
+public class TestRetryPolicy {
+
+	/**
+	 * The default retry policy
+	 */
+	private static final RetryPolicy POLICY = RetryPolicy.DEFAULT;
+
+	@Test
+	public void testStatusCodesAreClassified() {
+		assertTrue(POLICY.isRetryable(HttpMethod.GET, 503));
+		assertTrue(POLICY.isRetryable(HttpMethod.PUT, 429));
+		assertTrue(POLICY.isRetryable(HttpMethod.DELETE, 408));
+		assertFalse(POLICY.isRetryable(HttpMethod.GET, 404));
+		assertFalse(POLICY.isRetryable(HttpMethod.GET, 501));
+		// a POST may have been processed by the server
+		assertFalse(POLICY.isRetryable(HttpMethod.POST, 503));
+		RetryPolicy nonIdempotent = new RetryPolicy.Builder().nonIdempotentAllowed(true).retryableStatusCodes(501)
+				.build();
+		assertTrue(nonIdempotent.isRetryable(HttpMethod.POST, 501));
+		assertFalse(nonIdempotent.isRetryable(HttpMethod.POST, 503));
+	}
+
+	@Test
+	public void testExceptionsAreClassified() {
+		assertTrue(POLICY.isRetryable(HttpMethod.GET, new SocketTimeoutException()));
+		assertFalse(POLICY.isRetryable(HttpMethod.POST, new SocketTimeoutException()));
+		// a refused connection never reached the server, even for a POST
+		assertTrue(POLICY.isRetryable(HttpMethod.POST, new ConnectException()));
+		// the tls errors do not go away on retry
+		assertFalse(POLICY.isRetryable(HttpMethod.GET, new SSLHandshakeException("handshake")));
+		assertFalse(POLICY.isRetryable(HttpMethod.GET, new SSLPeerUnverifiedException("peer")));
+		RetryPolicy noIOException = new RetryPolicy.Builder().retryOnIOException(false).build();
+		assertFalse(noIOException.isRetryable(HttpMethod.GET, new ConnectException()));
+		RetryPolicy noTimeout = new RetryPolicy.Builder().nonRetryableException(SocketTimeoutException.class).build();
+		assertFalse(noTimeout.isRetryable(HttpMethod.GET, new SocketTimeoutException()));
+		assertTrue(noTimeout.isRetryable(HttpMethod.GET, new IOException()));
+	}
+
+	@Test
+	public void testBackoffIsCappedByMaxDelay() {
+		RetryPolicy retryPolicy = new RetryPolicy.Builder().delay(100, TimeUnit.MILLISECONDS).backoffMultiplier(2)
+				.maxDelay(500, TimeUnit.MILLISECONDS).build();
+		assertEquals(100, retryPolicy.getDelay(1));
+		assertEquals(200, retryPolicy.getDelay(2));
+		assertEquals(400, retryPolicy.getDelay(3));
+		assertEquals(500, retryPolicy.getDelay(4));
+	}
+
+	@Test
+	public void testRetryAfterInSeconds() {
+		assertEquals(3000, RestService.getRetryAfter(response(503, "3")));
+		assertEquals(0, RestService.getRetryAfter(response(503, "-5")));
+		assertEquals(-1, RestService.getRetryAfter(response(503, "soon")));
+		assertEquals(-1, RestService.getRetryAfter(response(503, null)));
+	}
+
+	@Test
+	public void testRetryAfterAsHttpDate() {
+		String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+		long retryAfter = RestService.getRetryAfter(response(503, date));
+		assertTrue("Retry after " + retryAfter + " ms", retryAfter > 8000 && retryAfter <= 10000);
+		String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusHours(1));
+		assertEquals(0, RestService.getRetryAfter(response(503, past)));
+	}
+
+	@Test
+	public void testRetryIsPlannedFromTheRetryAfter() {
+		HttpRequest httpRequest = request(new RetryPolicy.Builder().delay(100, TimeUnit.MILLISECONDS));
+		assertEquals(100, RestService.planRetry(httpRequest, 1, response(503, null), null));
+		// the longer wait wins
+		assertEquals(2000, RestService.planRetry(httpRequest, 1, response(429, "2"), null));
+		// a wait beyond the maximum delay stops the retries
+		assertEquals(-1, RestService.planRetry(httpRequest, 1, response(503, "31"), null));
+		HttpRequest ignoring = request(
+				new RetryPolicy.Builder().delay(100, TimeUnit.MILLISECONDS).retryAfterHonored(false));
+		assertEquals(100, RestService.planRetry(ignoring, 1, response(503, "31"), null));
+		assertEquals(-1, RestService.planRetry(httpRequest, 1, response(404, null), null));
+	}
+
+	@Test
+	public void testRetryIsPlannedFromTheError() {
+		RetryPolicy.Builder retryPolicy = new RetryPolicy.Builder().delay(100, TimeUnit.MILLISECONDS);
+		HttpRequest get = request(retryPolicy);
+		HttpRequest post = new HttpRequest.Builder("http://localhost/", "resource").httpMethod(HttpMethod.POST)
+				.retryPolicy(retryPolicy.build()).build();
+		assertEquals(100, RestService.planRetry(get, 1, null, new SocketTimeoutException()));
+		assertEquals(-1, RestService.planRetry(get, 1, null, new SSLHandshakeException("handshake")));
+		assertEquals(100, RestService.planRetry(post, 1, null, new ConnectException()));
+		assertEquals(-1, RestService.planRetry(post, 1, null, new SocketTimeoutException()));
+	}
+
+	@Test
+	public void testRetryBudgetIsExhausted() {
+		long retries = count(RestService.RETRY_METRIC);
+		long exhausted = count(RestService.RETRY_BUDGET_EXHAUSTED_METRIC);
+		RestService.configureRetryBudget(0, 2);
+		try {
+			assertTrue(RestService.acquireRetryBudget());
+			assertTrue(RestService.acquireRetryBudget());
+			assertFalse(RestService.acquireRetryBudget());
+			assertEquals(retries + 2, count(RestService.RETRY_METRIC));
+			assertEquals(exhausted + 1, count(RestService.RETRY_BUDGET_EXHAUSTED_METRIC));
+		} finally {
+			RestService.configureRetryBudget(0.2, 10);
+		}
+	}
+
+	@Test
+	public void testExhaustedBudgetStopsTheRetries() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		RestService.configureRetryBudget(0, 1);
+		try (ServerSocket server = new ServerSocket(0)) {
+			Thread thread = new Thread(() -> answerUnavailable(server, requests));
+			thread.setDaemon(true);
+			thread.start();
+			HttpRequest httpRequest = new HttpRequest.Builder("http://127.0.0.1:" + server.getLocalPort() + "/",
+					"unavailable").retryPolicy(new RetryPolicy.Builder().delay(10, TimeUnit.MILLISECONDS).build())
+							.build();
+			try (HttpResponse response = SyncAPI.call(httpRequest, 5)) {
+				assertEquals(503, response.getStatus());
+			}
+			// the first attempt and the only retry of the budget
+			assertEquals(2, requests.get());
+		} finally {
+			RestService.configureRetryBudget(0.2, 10);
+		}
+	}
+
+	/**
+	 * Build a request of a resource with the given retry policy
+	 *
+	 * @param retryPolicy,
+	 *            the builder of the retry policy
+	 * @return the {@link HttpRequest} of the resource
+	 */
+	private static HttpRequest request(RetryPolicy.Builder retryPolicy) {
+		return new HttpRequest.Builder("http://localhost/", "resource").retryPolicy(retryPolicy.build()).build();
+	}
+
+	/**
+	 * Build an unsuccessful response
+	 *
+	 * @param code,
+	 *            the http status code of the response
+	 * @param retryAfter,
+	 *            the value of the {@code Retry-After} header or {@code null}
+	 * @return the unsuccessful response
+	 */
+	private static Response<ResponseBody> response(int code, String retryAfter) {
+		okhttp3.Response.Builder rawResponse = new okhttp3.Response.Builder()
+				.request(new Request.Builder().url("http://localhost/resource").build()).protocol(Protocol.HTTP_1_1)
+				.code(code).message("Error");
+		if (retryAfter != null) {
+			rawResponse.header("Retry-After", retryAfter);
+		}
+		return Response.error(ResponseBody.create(null, new byte[0]), rawResponse.build());
+	}
+
+	/**
+	 * Retrieve the value of a counter
+	 *
+	 * @param name,
+	 *            the name of the counter
+	 * @return the value of the counter, {@code 0} if never incremented
+	 */
+	private static long count(String name) {
+		Number value = MetricsService.getMetric(name);
+		return value == null ? 0 : value.longValue();
+	}
+
+	/**
+	 * Answer each connection with a 503
+	 *
+	 * @param server,
+	 *            the socket accepting the connections
+	 * @param requests,
+	 *            the number of requests received
+	 */
+	private static void answerUnavailable(ServerSocket server, AtomicInteger requests) {
+		while (!server.isClosed()) {
+			try (Socket socket = server.accept()) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null && !line.isEmpty()) {
+					// skip the request headers
+				}
+				requests.incrementAndGet();
+				OutputStream out = socket.getOutputStream();
+				out.write("HTTP/1.1 503 Service Unavailable\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"
+						.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+}
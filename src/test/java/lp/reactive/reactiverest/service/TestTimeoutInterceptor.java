@@ -0,0 +1,249 @@
+package lp.reactive.reactiverest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lp.reactive.reactiverest.api.SyncAPI;
+import lp.reactive.reactiverest.model.HttpRequest;
+import lp.reactive.reactiverest.model.HttpResponse;
+import lp.reactive.reactiverest.model.RetryPolicy;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * This class tests the per-request timeouts applied by
+ * {@link TimeoutInterceptor} and the call deadline shared by all the attempts
+ * of an api call
+ *
+ * @author lucapompei
+ */
+public class TestTimeoutInterceptor {
+
+	/**
+	 * The length of the body trickled by the server
+	 */
+	private static final int SLOW_BODY_LENGTH = 100;
+
+	/**
+	 * The timeouts seen by the network, after the interceptor
+	 */
+	private final AtomicReference<int[]> timeouts = new AtomicReference<>();
+
+	/**
+	 * The request seen by the network, after the interceptor
+	 */
+	private final AtomicReference<Request> sentRequest = new AtomicReference<>();
+
+	/**
+	 * The client recording the timeouts and the request of each attempt
+	 */
+	private final OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new TimeoutInterceptor())
+			.addNetworkInterceptor(chain -> {
+				timeouts.set(new int[] { chain.connectTimeoutMillis(), chain.readTimeoutMillis() });
+				sentRequest.set(chain.request());
+				return chain.proceed(chain.request());
+			}).build();
+
+	/**
+	 * The number of requests received by the server
+	 */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * The boolean indicating if the server trickles the body of its responses
+	 * instead of answering 503
+	 */
+	private volatile boolean slow;
+
+	/**
+	 * The server answering the requests
+	 */
+	private ServerSocket server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new ServerSocket(0);
+		Thread thread = new Thread(this::serve);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	@Test
+	public void testTimeoutsAreClampedToTheRemainingDeadline() throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+		Request request = new Request.Builder().url(url())
+				.header(TimeoutInterceptor.CONNECT_TIMEOUT_HEADER, "10000")
+				.header(TimeoutInterceptor.READ_TIMEOUT_HEADER, "10000")
+				.header(TimeoutInterceptor.DEADLINE_HEADER, String.valueOf(deadline)).build();
+		try (Response response = client.newCall(request).execute()) {
+			assertEquals(503, response.code());
+		}
+		assertTrue("Connect timeout " + timeouts.get()[0], timeouts.get()[0] > 0 && timeouts.get()[0] <= 500);
+		assertTrue("Read timeout " + timeouts.get()[1], timeouts.get()[1] > 0 && timeouts.get()[1] <= 500);
+		// the internal headers never reach the server
+		assertNull(sentRequest.get().header(TimeoutInterceptor.CONNECT_TIMEOUT_HEADER));
+		assertNull(sentRequest.get().header(TimeoutInterceptor.READ_TIMEOUT_HEADER));
+		assertNull(sentRequest.get().header(TimeoutInterceptor.DEADLINE_HEADER));
+	}
+
+	@Test
+	public void testShorterTimeoutsAreKept() throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		Request request = new Request.Builder().url(url()).header(TimeoutInterceptor.READ_TIMEOUT_HEADER, "300")
+				.header(TimeoutInterceptor.DEADLINE_HEADER, String.valueOf(deadline)).build();
+		client.newCall(request).execute().close();
+		assertEquals(300, timeouts.get()[1]);
+		// the client default is clamped to the deadline
+		assertTrue("Connect timeout " + timeouts.get()[0],
+				timeouts.get()[0] > 9000 && timeouts.get()[0] <= client.connectTimeoutMillis());
+	}
+
+	@Test
+	public void testLargeTimeoutsAreCapped() throws IOException {
+		Request request = new Request.Builder().url(url())
+				.header(TimeoutInterceptor.READ_TIMEOUT_HEADER, String.valueOf(TimeUnit.DAYS.toMillis(365 * 100)))
+				.build();
+		client.newCall(request).execute().close();
+		assertEquals(Integer.MAX_VALUE, timeouts.get()[1]);
+	}
+
+	@Test
+	public void testExpiredDeadlineSendsNoRequest() {
+		Request request = new Request.Builder().url(url())
+				.header(TimeoutInterceptor.DEADLINE_HEADER, String.valueOf(System.nanoTime() - 1)).build();
+		try {
+			client.newCall(request).execute().close();
+			fail("The request was sent after the deadline");
+		} catch (IOException e) {
+			assertTrue(e instanceof InterruptedIOException);
+		}
+		assertEquals(0, requests.get());
+	}
+
+	@Test
+	public void testCallDeadlineCancelsSlowResponse() throws Exception {
+		slow = true;
+		// the body keeps flowing, so only the deadline can stop the call
+		HttpRequest httpRequest = new HttpRequest.Builder(baseUrl(), "slow")
+				.readTimeout(10, TimeUnit.SECONDS).callTimeout(400, TimeUnit.MILLISECONDS).build();
+		long start = System.nanoTime();
+		try {
+			SyncAPI.call(httpRequest).close();
+			fail("The slow response was not cancelled");
+		} catch (InterruptedIOException e) {
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			// the whole body would take 5 seconds
+			assertTrue("Cancelled after " + elapsedMillis + " ms", elapsedMillis < 2000);
+		}
+	}
+
+	@Test
+	public void testRetriesStopAtTheDeadline() throws Exception {
+		HttpRequest httpRequest = new HttpRequest.Builder(baseUrl(), "unavailable")
+				.retryPolicy(new RetryPolicy.Builder().delay(200, TimeUnit.MILLISECONDS).build())
+				.callTimeout(500, TimeUnit.MILLISECONDS).build();
+		long start = System.nanoTime();
+		try (HttpResponse response = SyncAPI.call(httpRequest, 10)) {
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertEquals(503, response.getStatus());
+			assertTrue("Returned after " + elapsedMillis + " ms", elapsedMillis < 1000);
+		}
+		assertTrue("Sent " + requests.get() + " attempts", requests.get() >= 2 && requests.get() <= 3);
+	}
+
+	/**
+	 * Retrieve the base url of the server
+	 *
+	 * @return the base url of the server
+	 */
+	private String baseUrl() {
+		return "http://127.0.0.1:" + server.getLocalPort() + "/";
+	}
+
+	/**
+	 * Retrieve the url of a resource of the server
+	 *
+	 * @return the url of a resource of the server
+	 */
+	private String url() {
+		return baseUrl() + "resource";
+	}
+
+	/**
+	 * Accept the connections, answering each one on its own thread
+	 */
+	private void serve() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> answer(socket));
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				// the server is stopped
+			}
+		}
+	}
+
+	/**
+	 * Answer a request with a 503 or, if slow, with a body trickled a byte every
+	 * 50 ms
+	 *
+	 * @param socket,
+	 *            the socket of the connection
+	 */
+	private void answer(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			String line;
+			while ((line = reader.readLine()) != null && !line.isEmpty()) {
+				// skip the request headers
+			}
+			requests.incrementAndGet();
+			OutputStream out = s.getOutputStream();
+			if (!slow) {
+				out.write("HTTP/1.1 503 Service Unavailable\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"
+						.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+				return;
+			}
+			out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: " + SLOW_BODY_LENGTH + "\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			for (int i = 0; i < SLOW_BODY_LENGTH; i++) {
+				out.write('a');
+				out.flush();
+				Thread.sleep(50);
+			}
+		} catch (IOException e) {
+			// the client gave up
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}